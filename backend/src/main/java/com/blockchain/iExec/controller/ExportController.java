@@ -0,0 +1,62 @@
+package com.blockchain.iExec.controller;
+
+import com.blockchain.iExec.service.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 数据导出 API - 以 NDJSON 流式导出任务和任务历史，供离线分析使用
+ * 时间参数为 ISO 格式（如 2025-01-01T00:00:00），按创建时间过滤，区间为 [from, to)
+ */
+@RestController
+@RequestMapping("/export")
+public class ExportController {
+    
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    
+    @Autowired
+    private ExportService exportService;
+    
+    /**
+     * 导出任务历史
+     */
+    @GetMapping("/task-history")
+    public ResponseEntity<?> exportTaskHistory(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String serviceId) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "from must be before to"));
+        }
+        StreamingResponseBody body = out -> exportService.exportTaskHistory(from, to, serviceId, out);
+        return ResponseEntity.ok()
+            .contentType(NDJSON)
+            .header("Content-Disposition", "attachment; filename=\"task_history.ndjson\"")
+            .body(body);
+    }
+    
+    /**
+     * 导出任务
+     */
+    @GetMapping("/tasks")
+    public ResponseEntity<?> exportTasks(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String serviceId) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "from must be before to"));
+        }
+        StreamingResponseBody body = out -> exportService.exportTasks(from, to, serviceId, out);
+        return ResponseEntity.ok()
+            .contentType(NDJSON)
+            .header("Content-Disposition", "attachment; filename=\"tasks.ndjson\"")
+            .body(body);
+    }
+}
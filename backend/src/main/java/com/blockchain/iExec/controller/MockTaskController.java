@@ -1,6 +1,7 @@
 package com.blockchain.iExec.controller;
 
 import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
 import com.blockchain.iExec.service.MockIexecService;
 import com.blockchain.iExec.service.TaskService;
 import org.slf4j.Logger;
@@ -67,7 +68,7 @@ public class MockTaskController {
             task.setTaskId(taskId);
             task.setIexecTaskId(mockIexecTaskId);
             task.setUserAddress(userAddress);
-            task.setStatus("Running");
+            task.setStatus(TaskStatus.RUNNING);
             task.setCreatedAt(LocalDateTime.now());
             task.setUpdatedAt(LocalDateTime.now());
             
@@ -84,7 +85,8 @@ public class MockTaskController {
             response.put("userAddress", userAddress);
             response.put("status", "Running");
             response.put("message", "Mock task created. It will complete in 30-120 seconds.");
-            response.put("hint", "Check status at: GET /api/tasks/task-id/" + taskId);
+            response.put("hint", "Check status at: GET /api/tasks/task-id/" + taskId
+                + " or subscribe to changes: GET /api/tasks/stream?taskId=" + taskId);
             
             return ResponseEntity.ok(response);
             
@@ -131,7 +133,7 @@ public class MockTaskController {
                 "taskId", taskId,
                 "iexecTaskId", iexecTaskId,
                 "completed", success,
-                "message", "Task will be updated in next monitoring cycle (max 30s)"
+                "message", "Task will be updated in next monitoring cycle (max 30s), the change is pushed on GET /api/tasks/stream"
             ));
             
         } catch (Exception e) {
@@ -212,7 +214,7 @@ public class MockTaskController {
                 task.setTaskId(taskId);
                 task.setIexecTaskId(mockIexecTaskId);
                 task.setUserAddress(userAddress);
-                task.setStatus("Running");
+                task.setStatus(TaskStatus.RUNNING);
                 task.setCreatedAt(LocalDateTime.now());
                 task.setUpdatedAt(LocalDateTime.now());
                 
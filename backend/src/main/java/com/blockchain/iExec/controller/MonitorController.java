@@ -1,11 +1,30 @@
 package com.blockchain.iExec.controller;
 
+import com.blockchain.iExec.predictor.PredictorEnsemble;
+import com.blockchain.iExec.service.BacktestService;
+import com.blockchain.iExec.service.ComputeRouter;
+import com.blockchain.iExec.service.DeadlineService;
+import com.blockchain.iExec.service.HistoryRollupService;
+import com.blockchain.iExec.service.LatencySketch;
+import com.blockchain.iExec.service.RecoveryService;
+import com.blockchain.iExec.service.ResponseCacheService;
+import com.blockchain.iExec.service.ResourceUsageStats;
+import com.blockchain.iExec.service.RetentionService;
+import com.blockchain.iExec.service.TaskDispatchService;
 import com.blockchain.iExec.service.TaskMonitorService;
 import com.blockchain.iExec.service.TaskSchedulerService;
+import com.blockchain.iExec.service.TaskStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
 /**
  * 监控与调度 API 控制器
  * 提供任务监控统计和调度算法相关接口
@@ -20,13 +39,39 @@ public class MonitorController {
     @Autowired
     private TaskSchedulerService taskSchedulerService;
     
+    @Autowired
+    private TaskDispatchService taskDispatchService;
+    
+    @Autowired
+    private BacktestService backtestService;
+    
+    @Autowired
+    private DeadlineService deadlineService;
+    
+    @Autowired
+    private ComputeRouter computeRouter;
+    
+    @Autowired
+    private HistoryRollupService historyRollupService;
+    
+    @Autowired
+    private RetentionService retentionService;
+    
+    @Autowired
+    private RecoveryService recoveryService;
+    
+    @Autowired
+    private TaskStreamService taskStreamService;
+    
+    @Autowired
+    private ResponseCacheService responseCacheService;
+    
     /**
-     * 获取监控统计信息
+     * 获取监控统计信息（带 ETag，内容未变化时返回 304）
      */
     @GetMapping("/stats")
     public ResponseEntity<TaskMonitorService.MonitoringStats> getMonitoringStats() {
-        TaskMonitorService.MonitoringStats stats = taskMonitorService.getMonitoringStats();
-        return ResponseEntity.ok(stats);
+        return cached("stats", taskMonitorService::getMonitoringStats);
     }
     
     /**
@@ -40,20 +85,97 @@ public class MonitorController {
     
     /**
      * 预测任务完成时间
+     * 不带 q 时返回加权移动平均，带 q 时返回对应分位数（如 q=0.95）；带 ETag，内容未变化时返回 304
      */
     @GetMapping("/predict/{serviceId}")
-    public ResponseEntity<Long> predictCompletionTime(@PathVariable String serviceId) {
-        long predictedTime = taskSchedulerService.predictCompletionTime(serviceId);
-        return ResponseEntity.ok(predictedTime);
+    public ResponseEntity<?> predictCompletionTime(
+            @PathVariable String serviceId,
+            @RequestParam(required = false) Double q) {
+        if (q == null) {
+            return cached("predict:" + serviceId, () -> taskSchedulerService.predictCompletionTime(serviceId));
+        }
+        if (q < 0 || q > 1) {
+            return ResponseEntity.badRequest().body(Map.of("error", "q must be between 0 and 1"));
+        }
+        return cached("predict:" + serviceId + ":" + q,
+            () -> taskSchedulerService.predictCompletionTimeQuantile(serviceId, q));
     }
     
     /**
-     * 获取自适应调度策略
+     * 预测完成时间区间（如 level=0.9 返回 [p5, p95]）
+     */
+    @GetMapping("/predict/{serviceId}/interval")
+    public ResponseEntity<?> predictCompletionInterval(
+            @PathVariable String serviceId,
+            @RequestParam(required = false, defaultValue = "0.9") double level) {
+        if (level <= 0 || level >= 1) {
+            return ResponseEntity.badRequest().body(Map.of("error", "level must be between 0 and 1"));
+        }
+        return ResponseEntity.ok(taskSchedulerService.predictCompletionInterval(serviceId, level));
+    }
+    
+    /**
+     * 按用户预测完成时间分位数
+     */
+    @GetMapping("/predict/user/{userAddress}")
+    public ResponseEntity<?> predictUserCompletionTime(
+            @PathVariable String userAddress,
+            @RequestParam(required = false, defaultValue = "0.95") double q) {
+        if (q < 0 || q > 1) {
+            return ResponseEntity.badRequest().body(Map.of("error", "q must be between 0 and 1"));
+        }
+        return ResponseEntity.ok(taskSchedulerService.predictUserCompletionTimeQuantile(userAddress, q));
+    }
+    
+    /**
+     * 获取服务的影子预测器状态（滚动误差、当前选中的预测器）
+     */
+    @GetMapping("/predictors/{serviceId}")
+    public ResponseEntity<List<PredictorEnsemble.PredictorStatus>> getPredictorStatus(@PathVariable String serviceId) {
+        return ResponseEntity.ok(taskSchedulerService.getPredictorStatus(serviceId));
+    }
+    
+    /**
+     * 导出服务延迟草图（供其他节点合并）
+     */
+    @GetMapping("/sketch/{serviceId}")
+    public ResponseEntity<LatencySketch> getLatencySketch(@PathVariable String serviceId) {
+        LatencySketch sketch = taskSchedulerService.getServiceLatencySketch(serviceId);
+        return sketch != null ? ResponseEntity.ok(sketch) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * 获取自适应调度策略（带 ETag，内容未变化时返回 304）
      */
     @GetMapping("/strategy")
     public ResponseEntity<TaskSchedulerService.SchedulingStrategy> getSchedulingStrategy() {
-        TaskSchedulerService.SchedulingStrategy strategy = taskSchedulerService.getAdaptiveSchedulingStrategy();
-        return ResponseEntity.ok(strategy);
+        return cached("strategy", taskSchedulerService::getAdaptiveSchedulingStrategy);
+    }
+    
+    /**
+     * 获取任务分发器状态（队列长度、执行中任务数、并发上限）
+     */
+    @GetMapping("/dispatcher")
+    public ResponseEntity<TaskDispatchService.DispatcherStats> getDispatcherStats() {
+        return ResponseEntity.ok(taskDispatchService.getStats());
+    }
+    
+    /**
+     * 获取计算后端状态（执行中任务数、观测延迟、错误率、是否降级、预测完成时间）
+     * @param serviceId 用于计算预测完成时间的服务 ID（可选）
+     */
+    @GetMapping("/backends")
+    public ResponseEntity<List<ComputeRouter.BackendStatus>> getBackendStatus(
+            @RequestParam(required = false) String serviceId) {
+        return ResponseEntity.ok(computeRouter.getBackendStatus(serviceId));
+    }
+    
+    /**
+     * 获取截止时间统计（达成数、错过数、准入拒绝数、错过率）
+     */
+    @GetMapping("/deadlines")
+    public ResponseEntity<DeadlineService.DeadlineStats> getDeadlineStats() {
+        return ResponseEntity.ok(deadlineService.getStats());
     }
     
     /**
@@ -65,6 +187,66 @@ public class MonitorController {
         return ResponseEntity.ok(comparison);
     }
     
+    /**
+     * 离线回测：按时间顺序重放任务历史，比较各预测器的 MAE / RMSE / p95 误差
+     * @param serviceId 服务 ID（可选，缺省时回测全部服务）
+     */
+    @GetMapping("/backtest")
+    public ResponseEntity<BacktestService.BacktestReport> backtest(
+            @RequestParam(required = false) String serviceId) {
+        return ResponseEntity.ok(backtestService.backtest(serviceId));
+    }
+    
+    /**
+     * 查询服务的分钟 / 小时汇总序列（任务数、完成 / 失败数、完成时间分布）
+     * @param granularity minute 或 hour，默认 hour
+     * @param from 起始时间（ISO 格式，可选，默认最近 60 个时间桶）
+     * @param to 结束时间（ISO 格式，可选，默认当前时间）
+     */
+    @GetMapping("/rollups/{serviceId}")
+    public ResponseEntity<?> getRollups(
+            @PathVariable String serviceId,
+            @RequestParam(required = false, defaultValue = "hour") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        int bucketSeconds;
+        if ("hour".equals(granularity)) {
+            bucketSeconds = HistoryRollupService.HOUR;
+        } else if ("minute".equals(granularity)) {
+            bucketSeconds = HistoryRollupService.MINUTE;
+        } else {
+            return ResponseEntity.badRequest().body(Map.of("error", "granularity must be minute or hour"));
+        }
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusSeconds(60L * bucketSeconds);
+        return ResponseEntity.ok(historyRollupService.getRollups(serviceId, bucketSeconds, start, end));
+    }
+    
+    /**
+     * 最近一次数据保留清理的结果（删除条数、耗时、是否删完）
+     */
+    @GetMapping("/retention")
+    public ResponseEntity<RetentionService.RetentionReport> getRetentionReport() {
+        RetentionService.RetentionReport report = retentionService.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+    
+    /**
+     * 启动恢复各步骤的耗时和重新排队的任务数
+     */
+    @GetMapping("/recovery")
+    public ResponseEntity<RecoveryService.RecoveryReport> getRecoveryReport() {
+        return ResponseEntity.ok(recoveryService.getReport());
+    }
+    
+    /**
+     * 任务推送连接数、发布与送达的事件数、缓冲区溢出次数
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<TaskStreamService.StreamStats> getStreamStats() {
+        return ResponseEntity.ok(taskStreamService.getStats());
+    }
+    
     /**
      * 预测资源需求
      */
@@ -73,4 +255,26 @@ public class MonitorController {
         TaskSchedulerService.ResourceRequirement requirement = taskSchedulerService.predictResourceRequirement(serviceId);
         return ResponseEntity.ok(requirement);
     }
+    
+    /**
+     * 资源使用统计（均值、最大值、分位数）
+     */
+    @GetMapping("/resources/{serviceId}/stats")
+    public ResponseEntity<ResourceUsageStats> getResourceUsageStats(@PathVariable String serviceId) {
+        ResourceUsageStats stats = taskSchedulerService.getResourceUsageStats(serviceId);
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * 从响应缓存读取结果并带上 ETag / Last-Modified；请求的 If-None-Match 匹配时由 Spring MVC 直接返回 304
+     * no-cache 要求客户端每次都重新验证，避免按 Last-Modified 启发式缓存读到过期数据
+     */
+    private <T> ResponseEntity<T> cached(String key, Supplier<T> loader) {
+        ResponseCacheService.CachedResponse<T> response = responseCacheService.get(key, loader);
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noCache())
+            .eTag(response.getETag())
+            .lastModified(response.getLastModified())
+            .body(response.getValue());
+    }
 }
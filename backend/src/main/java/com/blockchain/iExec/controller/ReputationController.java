@@ -0,0 +1,42 @@
+package com.blockchain.iExec.controller;
+
+import com.blockchain.iExec.service.ReputationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 用户信誉 API 控制器
+ */
+@RestController
+@RequestMapping("/reputation")
+public class ReputationController {
+    
+    // 单次请求返回的最大用户数
+    private static final int MAX_TOP_K = 1000;
+    
+    @Autowired
+    private ReputationService reputationService;
+    
+    /**
+     * 按衰减分数（综合分数 × 衰减任务数）获取前 K 名用户
+     */
+    @GetMapping("/top")
+    public ResponseEntity<?> getTopReputations(@RequestParam(required = false, defaultValue = "10") int k) {
+        if (k <= 0 || k > MAX_TOP_K) {
+            return ResponseEntity.badRequest().body(Map.of("error", "k must be between 1 and " + MAX_TOP_K));
+        }
+        return ResponseEntity.ok(reputationService.getTopReputations(k));
+    }
+    
+    /**
+     * 获取用户衰减到当前时刻的信誉
+     */
+    @GetMapping("/{address}")
+    public ResponseEntity<ReputationService.DecayedReputation> getReputation(@PathVariable String address) {
+        ReputationService.DecayedReputation reputation = reputationService.getDecayedReputation(address);
+        return reputation != null ? ResponseEntity.ok(reputation) : ResponseEntity.notFound().build();
+    }
+}
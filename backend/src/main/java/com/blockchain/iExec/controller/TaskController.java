@@ -1,12 +1,21 @@
 package com.blockchain.iExec.controller;
 
 import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
 import com.blockchain.iExec.service.TaskService;
+import com.blockchain.iExec.service.TaskStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
+import java.time.ZoneId;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -16,25 +25,59 @@ public class TaskController {
     @Autowired
     private TaskService taskService;
     
+    @Autowired
+    private TaskStreamService taskStreamService;
+    
+    /**
+     * 游标分页查询任务（按创建时间倒序），可按状态、用户、服务过滤
+     * 翻页时把上一页返回的 nextCursor 作为 cursor 参数传入；status 使用状态名称，如 Completed
+     */
     @GetMapping
-    public ResponseEntity<List<TaskEntity>> getAllTasks() {
-        List<TaskEntity> tasks = taskService.getAllTasks();
-        return ResponseEntity.ok(tasks);
+    public ResponseEntity<?> getTasks(@RequestParam(required = false) String status,
+                                      @RequestParam(required = false) String userAddress,
+                                      @RequestParam(required = false) String serviceId,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(required = false, defaultValue = "50") int size) {
+        try {
+            TaskStatus taskStatus = status != null ? TaskStatus.fromLabel(status) : null;
+            return ResponseEntity.ok(taskService.getTaskPage(taskStatus, userAddress, serviceId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * 订阅任务变更（Server-Sent Events），可按用户地址或任务 ID 过滤，均为空时接收全部任务的变更
+     * 事件 task 的数据为任务的当前状态；事件 resync 表示有事件未能送达，客户端应重新查询一次
+     * 断线后浏览器自动重连并带上 Last-Event-ID，服务端补发错过的事件
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTasks(@RequestParam(required = false) String userAddress,
+                                                  @RequestParam(required = false) String taskId,
+                                                  @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = taskStreamService.subscribe(userAddress, taskId, lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+        return ResponseEntity.ok(emitter);
     }
     
+    /**
+     * 按任务 ID 或数据库 ID 查询任务，带 ETag / Last-Modified，任务未变化时返回 304
+     */
     @GetMapping("/{id}")
     public ResponseEntity<TaskEntity> getTaskById(@PathVariable String id) {
         // 首先尝试作为区块链 taskId 查询（最常见的情况）
         TaskEntity task = taskService.getTaskByTaskId(id);
         if (task != null) {
-            return ResponseEntity.ok(task);
+            return conditional(task);
         }
         
         // 如果没找到，尝试作为数据库 ID 查询
         try {
             Long dbId = Long.parseLong(id);
             Optional<TaskEntity> taskById = taskService.getTaskById(dbId);
-            return taskById.map(ResponseEntity::ok)
+            return taskById.map(TaskController::conditional)
                            .orElseGet(() -> ResponseEntity.notFound().build());
         } catch (NumberFormatException e) {
             // 如果不是有效的数字，返回 404
@@ -45,13 +88,13 @@ public class TaskController {
     @GetMapping("/task-id/{taskId}")
     public ResponseEntity<TaskEntity> getTaskByTaskId(@PathVariable String taskId) {
         TaskEntity task = taskService.getTaskByTaskId(taskId);
-        return task != null ? ResponseEntity.ok(task) : ResponseEntity.notFound().build();
+        return task != null ? conditional(task) : ResponseEntity.notFound().build();
     }
     
     @GetMapping("/iexec-task-id/{iexecTaskId}")
     public ResponseEntity<TaskEntity> getTaskByIexecTaskId(@PathVariable String iexecTaskId) {
         TaskEntity task = taskService.getTaskByIexecTaskId(iexecTaskId);
-        return task != null ? ResponseEntity.ok(task) : ResponseEntity.notFound().build();
+        return task != null ? conditional(task) : ResponseEntity.notFound().build();
     }
     
     @PostMapping
@@ -60,47 +103,79 @@ public class TaskController {
         return ResponseEntity.ok(savedTask);
     }
     
+    /**
+     * 更新任务，请求体中的 version 为客户端读取时的版本号，任务已被修改时返回 409；
+     * 不允许的状态转换和已归档（只读）的任务同样返回 409
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<TaskEntity> updateTask(@PathVariable Long id, @RequestBody TaskEntity taskDetails) {
-        Optional<TaskEntity> optionalTask = taskService.getTaskById(id);
-        
-        if (!optionalTask.isPresent()) {
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<?> updateTask(@PathVariable Long id, @RequestBody TaskEntity taskDetails) {
+        try {
+            Optional<TaskEntity> updatedTask = taskService.updateTaskDetails(id, taskDetails);
+            return updatedTask.<ResponseEntity<?>>map(ResponseEntity::ok)
+                              .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Task was modified concurrently, reload and retry"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
         }
-        
-        TaskEntity existingTask = optionalTask.get();
-        existingTask.setTaskId(taskDetails.getTaskId());
-        existingTask.setIexecTaskId(taskDetails.getIexecTaskId());
-        existingTask.setUserAddress(taskDetails.getUserAddress());
-        existingTask.setStatus(taskDetails.getStatus());
-        existingTask.setResultHash(taskDetails.getResultHash());
-        
-        TaskEntity updatedTask = taskService.saveTask(existingTask);
-        return ResponseEntity.ok(updatedTask);
     }
     
+    /**
+     * 删除任务（包括已归档的任务），任务不存在时返回 404
+     */
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteTask(@PathVariable Long id) {
-        try {
-            taskService.deleteTask(id);
-            return ResponseEntity.ok().build();
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
-        }
+        return taskService.deleteTask(id) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
     
+    /**
+     * 按状态机更新任务状态，不允许的转换（如已结束的任务）或已归档的任务返回 409
+     */
     @PutMapping("/{id}/status")
-    public ResponseEntity<TaskEntity> updateTaskStatus(@PathVariable Long id, @RequestParam String status) {
+    public ResponseEntity<?> updateTaskStatus(@PathVariable Long id, @RequestParam String status) {
         Optional<TaskEntity> optionalTask = taskService.getTaskById(id);
         
         if (!optionalTask.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
+        TaskStatus taskStatus;
+        try {
+            taskStatus = TaskStatus.fromLabel(status);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        
         TaskEntity task = optionalTask.get();
-        task.setStatus(status);
-        TaskEntity updatedTask = taskService.saveTask(task);
+        if (!taskService.updateTaskStatus(task.getTaskId(), taskStatus)) {
+            if (taskService.isArchived(id)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", TaskService.archivedMessage(id)));
+            }
+            return illegalTransition(task.getStatus(), taskStatus);
+        }
         
-        return ResponseEntity.ok(updatedTask);
+        return ResponseEntity.ok(taskService.getTaskByTaskId(task.getTaskId()));
+    }
+    
+    /**
+     * 以数据库 ID、更新时间和乐观锁版本号作为 ETag，任务每次修改都会改变；
+     * 请求的 If-None-Match / If-Modified-Since 匹配时由 Spring MVC 直接返回 304，不再序列化任务。
+     * Last-Modified 只有秒级精度，ETag 中的更新时间同样截断到秒，两个校验器对同一版本的任务始终一致
+     */
+    private static ResponseEntity<TaskEntity> conditional(TaskEntity task) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        if (task.getUpdatedAt() != null) {
+            long updatedAt = task.getUpdatedAt().atZone(ZoneId.systemDefault()).toEpochSecond() * 1000;
+            String version = task.getVersion() != null ? "-" + task.getVersion() : "";
+            builder.eTag("\"" + task.getId() + "-" + Long.toHexString(updatedAt) + version + "\"")
+                .lastModified(updatedAt);
+        }
+        return builder.body(task);
+    }
+    
+    private static ResponseEntity<?> illegalTransition(TaskStatus from, TaskStatus to) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+            .body(Map.of("error", "Illegal status transition: " + from + " -> " + to));
     }
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package com.blockchain.iExec.listener;
 
 import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.service.DeadlineService;
 import com.blockchain.iExec.service.TaskService;
-import com.blockchain.iExec.service.ArbitrumTaskService;
+import com.blockchain.iExec.service.TaskDispatchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +27,7 @@ import org.web3j.protocol.core.DefaultBlockParameterNumber;
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executors;
@@ -33,7 +36,7 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * 监听本地链（Hardhat）的 TaskCreated 事件
- * 当检测到新任务时，自动提交到 Arbitrum Sepolia 进行计算
+ * 当检测到新任务时，交给分发队列，按优先级提交到 Arbitrum Sepolia 进行计算
  */
 @Component
 public class TaskCreatedListener {
@@ -48,7 +51,10 @@ public class TaskCreatedListener {
     private TaskService taskService;
     
     @Autowired
-    private ArbitrumTaskService arbitrumTaskService;
+    private TaskDispatchService taskDispatchService;
+    
+    @Autowired
+    private DeadlineService deadlineService;
     
     @Value("${contract.address}")
     private String contractAddress;
@@ -191,19 +197,17 @@ public class TaskCreatedListener {
             task.setTaskId(taskId.toString());
             task.setUserAddress(buyerAddress);
             task.setServiceId(serviceId.toString());
-            task.setStatus("Created");
+            task.setStatus(TaskStatus.CREATED);
+            task.setPaymentAmount(amount);
+            task.setCreatedAt(LocalDateTime.now());
+            task.setDeadline(deadlineService.computeDeadline(task.getServiceId(), amount, task.getCreatedAt()));
             
             // 保存任务到数据库
             taskService.saveTask(task);
-            logger.info("Task {} saved to database with status: Created", taskId);
-            
-            // 立即更新为 Processing 状态（确保前端能看到）
-            taskService.updateTaskStatus(taskId.toString(), "Processing");
-            logger.info("Task {} status updated to Processing (ready for computation)", taskId);
+            logger.info("Task {} saved to database with status: Created, deadline: {}", taskId, task.getDeadline());
             
-            // 提交任务到 Arbitrum Sepolia 进行计算
-            logger.info("Submitting task {} to Arbitrum Sepolia...", taskId);
-            arbitrumTaskService.submitTaskToArbitrum(taskId.toString(), serviceId, buyerAddress);
+            // 按优先级排队，分发时更新为 Processing 并提交到 Arbitrum Sepolia 进行计算
+            taskDispatchService.submit(task, serviceId);
             
         } catch (Exception e) {
             logger.error("Error processing TaskCreated event", e);
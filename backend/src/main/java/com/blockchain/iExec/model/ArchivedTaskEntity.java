@@ -0,0 +1,41 @@
+package com.blockchain.iExec.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * 归档任务实体 - 已结束且超过保留期的任务从热表移到这里，ID 与原任务相同
+ */
+@Entity
+@Table(name = "task_archive", indexes = {
+    @Index(name = "idx_archive_task_id", columnList = "task_id"),
+    @Index(name = "idx_archive_iexec_task_id", columnList = "iexec_task_id"),
+    @Index(name = "idx_archive_created", columnList = "created_at, id"),
+    @Index(name = "idx_archive_status_created", columnList = "status, created_at, id")
+})
+public class ArchivedTaskEntity extends TaskRecord {
+    @Id
+    private Long id;
+
+    private LocalDateTime archivedAt;  // 归档时间
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+
+    public void setArchivedAt(LocalDateTime archivedAt) {
+        this.archivedAt = archivedAt;
+    }
+}
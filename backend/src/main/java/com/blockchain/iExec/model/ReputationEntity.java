@@ -21,6 +21,13 @@ public class ReputationEntity {
     private Integer completedTasks = 0; // 已完成任务数
     private Integer onTimeTasks = 0;    // 准时完成任务数
     
+    // 指数衰减计数：存储的是 decayUpdatedAt 时刻的值，读取时再按经过的时间衰减
+    // 各比率与综合分数基于衰减计数计算，近期任务权重更高
+    private Double decayedTotalTasks = 0.0;
+    private Double decayedCompletedTasks = 0.0;
+    private Double decayedOnTimeTasks = 0.0;
+    private Long decayUpdatedAt = 0L;     // 衰减计数的更新时间（毫秒时间戳）
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -93,4 +100,36 @@ public class ReputationEntity {
     public void setOnTimeTasks(Integer onTimeTasks) {
         this.onTimeTasks = onTimeTasks;
     }
-}
\ No newline at end of file
+    
+    public Double getDecayedTotalTasks() {
+        return decayedTotalTasks;
+    }
+    
+    public void setDecayedTotalTasks(Double decayedTotalTasks) {
+        this.decayedTotalTasks = decayedTotalTasks;
+    }
+    
+    public Double getDecayedCompletedTasks() {
+        return decayedCompletedTasks;
+    }
+    
+    public void setDecayedCompletedTasks(Double decayedCompletedTasks) {
+        this.decayedCompletedTasks = decayedCompletedTasks;
+    }
+    
+    public Double getDecayedOnTimeTasks() {
+        return decayedOnTimeTasks;
+    }
+    
+    public void setDecayedOnTimeTasks(Double decayedOnTimeTasks) {
+        this.decayedOnTimeTasks = decayedOnTimeTasks;
+    }
+    
+    public Long getDecayUpdatedAt() {
+        return decayUpdatedAt;
+    }
+    
+    public void setDecayUpdatedAt(Long decayUpdatedAt) {
+        this.decayUpdatedAt = decayUpdatedAt;
+    }
+}
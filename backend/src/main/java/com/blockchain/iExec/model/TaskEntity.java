@@ -1,30 +1,33 @@
 package com.blockchain.iExec.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-
-import java.time.LocalDateTime;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 @Entity
-public class TaskEntity {
+@Table(indexes = {
+    @Index(name = "idx_task_task_id", columnList = "task_id"),
+    @Index(name = "idx_task_iexec_task_id", columnList = "iexec_task_id"),
+    @Index(name = "idx_task_created", columnList = "created_at, id"),
+    @Index(name = "idx_task_status_created", columnList = "status, created_at, id"),
+    @Index(name = "idx_task_status_updated", columnList = "status, updated_at, id"),
+    @Index(name = "idx_task_user_status", columnList = "user_address, status")
+})
+public class TaskEntity extends TaskRecord {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    
-    private String taskId;          // 本地链任务 ID
-    private String iexecTaskId;     // iExec 任务 ID（如果使用 iExec）
-    private String arbitrumTaskId;  // Arbitrum Sepolia 任务 ID
-    private String serviceId;       // 服务 ID
-    private String userAddress;     // 用户地址
-    private String status;          // 任务状态：Created, Processing, Completed, Failed
-    private String resultHash;      // 计算结果哈希
-    
-    private LocalDateTime createdAt;
-    private LocalDateTime updatedAt;
-    private LocalDateTime completedAt;
-    private String errorMessage;
+
+    // 乐观锁版本号：并发更新同一任务时后提交者失败并重试，不会覆盖先提交的状态转换
+    // 新任务保存时由 Hibernate 置为 0；列带默认值，升级前已有的行和直接用 SQL 写入的行也从 0 开始
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0 not null")
+    private Long version;
 
     // Getters and Setters
     public Long getId() {
@@ -35,91 +38,11 @@ public class TaskEntity {
         this.id = id;
     }
 
-    public String getTaskId() {
-        return taskId;
-    }
-
-    public void setTaskId(String taskId) {
-        this.taskId = taskId;
-    }
-
-    public String getIexecTaskId() {
-        return iexecTaskId;
-    }
-
-    public void setIexecTaskId(String iexecTaskId) {
-        this.iexecTaskId = iexecTaskId;
-    }
-
-    public String getArbitrumTaskId() {
-        return arbitrumTaskId;
-    }
-
-    public void setArbitrumTaskId(String arbitrumTaskId) {
-        this.arbitrumTaskId = arbitrumTaskId;
-    }
-
-    public String getServiceId() {
-        return serviceId;
-    }
-
-    public void setServiceId(String serviceId) {
-        this.serviceId = serviceId;
-    }
-
-    public String getUserAddress() {
-        return userAddress;
-    }
-
-    public void setUserAddress(String userAddress) {
-        this.userAddress = userAddress;
-    }
-
-    public String getStatus() {
-        return status;
-    }
-
-    public void setStatus(String status) {
-        this.status = status;
-    }
-
-    public String getResultHash() {
-        return resultHash;
-    }
-
-    public void setResultHash(String resultHash) {
-        this.resultHash = resultHash;
-    }
-
-    public LocalDateTime getCreatedAt() {
-        return createdAt;
-    }
-
-    public void setCreatedAt(LocalDateTime createdAt) {
-        this.createdAt = createdAt;
-    }
-
-    public LocalDateTime getUpdatedAt() {
-        return updatedAt;
-    }
-
-    public void setUpdatedAt(LocalDateTime updatedAt) {
-        this.updatedAt = updatedAt;
-    }
-
-    public LocalDateTime getCompletedAt() {
-        return completedAt;
-    }
-
-    public void setCompletedAt(LocalDateTime completedAt) {
-        this.completedAt = completedAt;
-    }
-
-    public String getErrorMessage() {
-        return errorMessage;
+    public Long getVersion() {
+        return version;
     }
 
-    public void setErrorMessage(String errorMessage) {
-        this.errorMessage = errorMessage;
+    public void setVersion(Long version) {
+        this.version = version;
     }
-}
\ No newline at end of file
+}
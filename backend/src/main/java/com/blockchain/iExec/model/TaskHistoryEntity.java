@@ -7,7 +7,17 @@ import java.time.LocalDateTime;
  * 任务历史实体 - 用于存储任务执行历史数据，支持动态调度算法
  */
 @Entity
-@Table(name = "task_history")
+@Table(name = "task_history", indexes = {
+    // 按服务取最近完成的任务（预测状态重建、回测）
+    @Index(name = "idx_history_service_status_completed", columnList = "service_id, status, completed_at"),
+    // 按用户统计任务数 / 完成数
+    @Index(name = "idx_history_user_status", columnList = "user_address, status"),
+    @Index(name = "idx_history_status_created", columnList = "status, created_at"),
+    // 启动时重建最近 1 小时的吞吐窗口
+    @Index(name = "idx_history_completed", columnList = "completed_at"),
+    // 查找尚未合并到汇总表的记录
+    @Index(name = "idx_history_rolled_up", columnList = "rolled_up, id")
+})
 public class TaskHistoryEntity {
     
     @Id
@@ -27,7 +37,7 @@ public class TaskHistoryEntity {
     private String userAddress;  // 用户地址
     
     @Column(nullable = false)
-    private String status;  // 最终状态
+    private TaskStatus status;  // 最终状态（Completed / Failed / Timeout）
     
     private Long estimatedTime;  // 预估完成时间（秒）
     
@@ -35,7 +45,7 @@ public class TaskHistoryEntity {
     
     private Integer priority;  // 任务优先级
     
-    private String resourceRequirement;  // 资源需求（JSON格式）
+    private String resourceRequirement;  // 实际资源使用（JSON格式，如 {"cpuCores":2,"memoryMB":1024,"storageGB":2}）
     
     private Double costAmount;  // 成本金额
     
@@ -50,6 +60,9 @@ public class TaskHistoryEntity {
     
     private String resultHash;  // IPFS结果哈希
     
+    @Column(nullable = false)
+    private boolean rolledUp;  // 是否已合并到汇总表（与汇总行在同一事务中置位）
+    
     // Getters and Setters
     
     public Long getId() {
@@ -92,11 +105,11 @@ public class TaskHistoryEntity {
         this.userAddress = userAddress;
     }
     
-    public String getStatus() {
+    public TaskStatus getStatus() {
         return status;
     }
     
-    public void setStatus(String status) {
+    public void setStatus(TaskStatus status) {
         this.status = status;
     }
     
@@ -179,4 +192,12 @@ public class TaskHistoryEntity {
     public void setResultHash(String resultHash) {
         this.resultHash = resultHash;
     }
+    
+    public boolean isRolledUp() {
+        return rolledUp;
+    }
+    
+    public void setRolledUp(boolean rolledUp) {
+        this.rolledUp = rolledUp;
+    }
 }
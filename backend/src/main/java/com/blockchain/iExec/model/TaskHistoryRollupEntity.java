@@ -0,0 +1,137 @@
+package com.blockchain.iExec.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 任务历史汇总实体 - 按服务、时间桶（分钟 / 小时）预聚合的任务数与完成时间分布
+ * 写入任务历史时增量维护，分析查询只需读取少量汇总行
+ */
+@Entity
+@Table(name = "task_history_rollup", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_rollup_bucket", columnNames = {"service_id", "bucket_seconds", "bucket_start"})
+})
+public class TaskHistoryRollupEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String serviceId;  // 服务ID
+    
+    @Column(nullable = false)
+    private Integer bucketSeconds;  // 时间桶长度（秒）：60 或 3600
+    
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;  // 时间桶起点（按任务结束时间归桶）
+    
+    private Long taskCount = 0L;     // 任务总数
+    private Long successCount = 0L;  // 完成数
+    private Long failureCount = 0L;  // 失败数（超时等其他最终状态 = 总数 - 完成 - 失败）
+    
+    private Long latencyCount = 0L;  // 有完成时间的样本数
+    private Double latencySum = 0.0; // 完成时间之和（秒）
+    private Double latencyMin;       // 最短完成时间（秒）
+    private Double latencyMax;       // 最长完成时间（秒）
+    
+    @Lob
+    private byte[] latencySketch;    // 完成时间分位数草图（LatencySketch.toBytes）
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getServiceId() {
+        return serviceId;
+    }
+    
+    public void setServiceId(String serviceId) {
+        this.serviceId = serviceId;
+    }
+    
+    public Integer getBucketSeconds() {
+        return bucketSeconds;
+    }
+    
+    public void setBucketSeconds(Integer bucketSeconds) {
+        this.bucketSeconds = bucketSeconds;
+    }
+    
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+    
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+    
+    public Long getTaskCount() {
+        return taskCount;
+    }
+    
+    public void setTaskCount(Long taskCount) {
+        this.taskCount = taskCount;
+    }
+    
+    public Long getSuccessCount() {
+        return successCount;
+    }
+    
+    public void setSuccessCount(Long successCount) {
+        this.successCount = successCount;
+    }
+    
+    public Long getFailureCount() {
+        return failureCount;
+    }
+    
+    public void setFailureCount(Long failureCount) {
+        this.failureCount = failureCount;
+    }
+    
+    public Long getLatencyCount() {
+        return latencyCount;
+    }
+    
+    public void setLatencyCount(Long latencyCount) {
+        this.latencyCount = latencyCount;
+    }
+    
+    public Double getLatencySum() {
+        return latencySum;
+    }
+    
+    public void setLatencySum(Double latencySum) {
+        this.latencySum = latencySum;
+    }
+    
+    public Double getLatencyMin() {
+        return latencyMin;
+    }
+    
+    public void setLatencyMin(Double latencyMin) {
+        this.latencyMin = latencyMin;
+    }
+    
+    public Double getLatencyMax() {
+        return latencyMax;
+    }
+    
+    public void setLatencyMax(Double latencyMax) {
+        this.latencyMax = latencyMax;
+    }
+    
+    public byte[] getLatencySketch() {
+        return latencySketch;
+    }
+    
+    public void setLatencySketch(byte[] latencySketch) {
+        this.latencySketch = latencySketch;
+    }
+}
@@ -0,0 +1,131 @@
+package com.blockchain.iExec.model;
+
+import jakarta.persistence.MappedSuperclass;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * 任务的公共字段，由热表（TaskEntity）和归档表（ArchivedTaskEntity）共用
+ */
+@MappedSuperclass
+public abstract class TaskRecord {
+    private String taskId;          // 本地链任务 ID
+    private String iexecTaskId;     // iExec 任务 ID（如果使用 iExec）
+    private String arbitrumTaskId;  // Arbitrum Sepolia 任务 ID
+    private String serviceId;       // 服务 ID
+    private String userAddress;     // 用户地址
+    private TaskStatus status;      // 任务状态，数据库中保存为 SMALLINT 编码
+    private String resultHash;      // 计算结果哈希
+    private BigInteger paymentAmount;  // 买家支付金额（wei）
+    private LocalDateTime deadline;    // 截止时间（由服务 SLA 与支付金额决定）
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime completedAt;
+    private String errorMessage;
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(String taskId) {
+        this.taskId = taskId;
+    }
+
+    public String getIexecTaskId() {
+        return iexecTaskId;
+    }
+
+    public void setIexecTaskId(String iexecTaskId) {
+        this.iexecTaskId = iexecTaskId;
+    }
+
+    public String getArbitrumTaskId() {
+        return arbitrumTaskId;
+    }
+
+    public void setArbitrumTaskId(String arbitrumTaskId) {
+        this.arbitrumTaskId = arbitrumTaskId;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public String getUserAddress() {
+        return userAddress;
+    }
+
+    public void setUserAddress(String userAddress) {
+        this.userAddress = userAddress;
+    }
+
+    public TaskStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TaskStatus status) {
+        this.status = status;
+    }
+
+    public String getResultHash() {
+        return resultHash;
+    }
+
+    public void setResultHash(String resultHash) {
+        this.resultHash = resultHash;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public BigInteger getPaymentAmount() {
+        return paymentAmount;
+    }
+
+    public void setPaymentAmount(BigInteger paymentAmount) {
+        this.paymentAmount = paymentAmount;
+    }
+
+    public LocalDateTime getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(LocalDateTime deadline) {
+        this.deadline = deadline;
+    }
+}
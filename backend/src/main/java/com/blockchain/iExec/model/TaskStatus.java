@@ -0,0 +1,113 @@
+package com.blockchain.iExec.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 任务状态
+ * 数据库中保存为固定的小整数编码（见 TaskStatusConverter），API 和导出中使用原来的名称（Created、Completed 等）。
+ * 编码一经使用不可修改，新增状态只能追加新编码。
+ *
+ * 状态转换表：
+ * Created → Processing（分发）/ Running（iExec 任务）/ Failed、Timeout（分发前拒绝）
+ * Processing → Running / Completed / Failed / Timeout
+ * Running → Completed / Failed / Timeout
+ * Completed、Failed、Timeout 为最终状态，不再转换，迟到的结果或超时不会覆盖已结束的任务。
+ * 非最终状态允许转换到自身（如重启恢复时重新分发 Processing 任务）。
+ */
+public enum TaskStatus {
+    CREATED(0, "Created"),
+    PROCESSING(1, "Processing"),
+    RUNNING(2, "Running"),
+    COMPLETED(3, "Completed"),
+    FAILED(4, "Failed"),
+    TIMEOUT(5, "Timeout");
+
+    private static final Map<TaskStatus, Set<TaskStatus>> TRANSITIONS = new EnumMap<>(TaskStatus.class);
+    private static final TaskStatus[] BY_CODE = new TaskStatus[values().length];
+
+    static {
+        TRANSITIONS.put(CREATED, EnumSet.of(CREATED, PROCESSING, RUNNING, FAILED, TIMEOUT));
+        TRANSITIONS.put(PROCESSING, EnumSet.of(PROCESSING, RUNNING, COMPLETED, FAILED, TIMEOUT));
+        TRANSITIONS.put(RUNNING, EnumSet.of(RUNNING, COMPLETED, FAILED, TIMEOUT));
+        TRANSITIONS.put(COMPLETED, Collections.emptySet());
+        TRANSITIONS.put(FAILED, Collections.emptySet());
+        TRANSITIONS.put(TIMEOUT, Collections.emptySet());
+        for (TaskStatus status : values()) {
+            BY_CODE[status.code] = status;
+        }
+    }
+
+    private final short code;
+    private final String label;
+
+    TaskStatus(int code, String label) {
+        this.code = (short) code;
+        this.label = label;
+    }
+
+    /**
+     * 数据库编码
+     */
+    public short getCode() {
+        return code;
+    }
+
+    /**
+     * 对外名称，JSON 序列化使用
+     */
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isTerminal() {
+        return TRANSITIONS.get(this).isEmpty();
+    }
+
+    public boolean canTransitionTo(TaskStatus target) {
+        return target != null && TRANSITIONS.get(this).contains(target);
+    }
+
+    /**
+     * 是否允许从 from 转换到 to；from 为 null 表示新任务，可以进入任意状态
+     */
+    public static boolean canTransition(TaskStatus from, TaskStatus to) {
+        if (to == null) {
+            return false;
+        }
+        return from == null || from.canTransitionTo(to);
+    }
+
+    public static TaskStatus fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown task status code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * 按名称解析，忽略大小写（接受 "Completed" 和 "COMPLETED"）
+     * @throws IllegalArgumentException 未知状态
+     */
+    @JsonCreator
+    public static TaskStatus fromLabel(String label) {
+        for (TaskStatus status : values()) {
+            if (status.label.equalsIgnoreCase(label)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown task status: " + label);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
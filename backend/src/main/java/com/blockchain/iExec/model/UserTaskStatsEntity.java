@@ -0,0 +1,58 @@
+package com.blockchain.iExec.model;
+
+import jakarta.persistence.*;
+
+/**
+ * 用户任务统计实体 - 按用户增量维护的任务计数，供优先级计算直接读取
+ */
+@Entity
+@Table(name = "user_task_stats")
+public class UserTaskStatsEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(unique = true, nullable = false)
+    private String userAddress;  // 用户地址
+    
+    @Column(nullable = false)
+    private Long totalTasks = 0L;  // 已结束任务总数
+    
+    @Column(nullable = false)
+    private Long completedTasks = 0L;  // 成功完成任务数
+    
+    // Getters and Setters
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getUserAddress() {
+        return userAddress;
+    }
+    
+    public void setUserAddress(String userAddress) {
+        this.userAddress = userAddress;
+    }
+    
+    public Long getTotalTasks() {
+        return totalTasks;
+    }
+    
+    public void setTotalTasks(Long totalTasks) {
+        this.totalTasks = totalTasks;
+    }
+    
+    public Long getCompletedTasks() {
+        return completedTasks;
+    }
+    
+    public void setCompletedTasks(Long completedTasks) {
+        this.completedTasks = completedTasks;
+    }
+}
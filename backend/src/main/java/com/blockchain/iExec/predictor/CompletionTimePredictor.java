@@ -0,0 +1,25 @@
+package com.blockchain.iExec.predictor;
+
+/**
+ * 完成时间预测器接口
+ * 每个实例维护单个服务的状态：observe 输入实际完成时间，predict 给出下一个任务的预测值。
+ * 实现类不需要线程安全，由调用方保证同一实例串行访问。
+ */
+public interface CompletionTimePredictor {
+    
+    /**
+     * 预测器名称（用于报告和选择）
+     */
+    String getName();
+    
+    /**
+     * 预测下一个任务的完成时间（秒）
+     * @return 预测值，没有足够数据时返回 NaN
+     */
+    double predict();
+    
+    /**
+     * 输入一个已完成任务的实际完成时间（秒）
+     */
+    void observe(double actualSeconds);
+}
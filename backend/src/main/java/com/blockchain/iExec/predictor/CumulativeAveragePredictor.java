@@ -0,0 +1,26 @@
+package com.blockchain.iExec.predictor;
+
+/**
+ * 累计平均（CMA）：全部历史样本的算术平均，等价于 AVG(actualTime) 基准
+ */
+public class CumulativeAveragePredictor implements CompletionTimePredictor {
+    
+    private long count;
+    private double mean;
+    
+    @Override
+    public String getName() {
+        return "CMA";
+    }
+    
+    @Override
+    public double predict() {
+        return count > 0 ? mean : Double.NaN;
+    }
+    
+    @Override
+    public void observe(double actualSeconds) {
+        count++;
+        mean += (actualSeconds - mean) / count;
+    }
+}
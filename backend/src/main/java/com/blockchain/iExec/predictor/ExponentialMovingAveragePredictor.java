@@ -0,0 +1,33 @@
+package com.blockchain.iExec.predictor;
+
+/**
+ * 指数加权移动平均（EWMA）：对全部历史按 e^(-λ*i) 加权，O(1) 增量更新
+ */
+public class ExponentialMovingAveragePredictor implements CompletionTimePredictor {
+    
+    private final double lambda;
+    private final double decay;
+    private double weightSum;
+    private double mean;
+    
+    public ExponentialMovingAveragePredictor(double lambda) {
+        this.lambda = lambda;
+        this.decay = Math.exp(-lambda);
+    }
+    
+    @Override
+    public String getName() {
+        return "EWMA(" + lambda + ")";
+    }
+    
+    @Override
+    public double predict() {
+        return weightSum > 0 ? mean : Double.NaN;
+    }
+    
+    @Override
+    public void observe(double actualSeconds) {
+        weightSum = weightSum * decay + 1;
+        mean += (actualSeconds - mean) / weightSum;
+    }
+}
@@ -0,0 +1,42 @@
+package com.blockchain.iExec.predictor;
+
+import java.util.Arrays;
+
+/**
+ * 窗口中位数：最近 N 个样本的中位数，对偶发的超长任务不敏感
+ */
+public class MedianWindowPredictor implements CompletionTimePredictor {
+    
+    private final SampleWindow window;
+    private final double[] scratch;
+    
+    public MedianWindowPredictor(int windowSize) {
+        this.window = new SampleWindow(windowSize);
+        this.scratch = new double[windowSize];
+    }
+    
+    @Override
+    public String getName() {
+        return "MEDIAN(" + window.capacity() + ")";
+    }
+    
+    @Override
+    public double predict() {
+        int size = window.size();
+        if (size == 0) {
+            return Double.NaN;
+        }
+        for (int i = 0; i < size; i++) {
+            scratch[i] = window.recent(i);
+        }
+        Arrays.sort(scratch, 0, size);
+        return size % 2 == 1
+            ? scratch[size / 2]
+            : (scratch[size / 2 - 1] + scratch[size / 2]) / 2;
+    }
+    
+    @Override
+    public void observe(double actualSeconds) {
+        window.add(actualSeconds);
+    }
+}
@@ -0,0 +1,174 @@
+package com.blockchain.iExec.predictor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 单个服务的预测器组合（影子模式）
+ * 所有预测器并行接收样本，每个样本到达前先记录各自的预测误差（指数加权的滚动 MAE）；
+ * 对外只使用当前滚动误差最小的预测器。为避免频繁切换，候选者的误差需比当前预测器
+ * 低出一定比例才会替换。
+ * 线程安全：所有方法在实例上同步。
+ */
+public class PredictorEnsemble {
+
+    // 滚动误差的衰减因子：每个新样本使旧误差权重乘以该值（有效窗口约 20 个样本）
+    public static final double DEFAULT_ERROR_DECAY = 0.95;
+
+    // 参与选择前需要的最少评分样本数
+    public static final int DEFAULT_MIN_SCORED_SAMPLES = 10;
+
+    // 切换阈值：候选者误差需低于当前误差的 (1 - 5%)
+    public static final double DEFAULT_SWITCH_MARGIN = 0.05;
+
+    private final CompletionTimePredictor[] predictors;
+    private final double[] errorWeightSum;
+    private final double[] rollingError;
+    private final long[] scoredSamples;
+    private final double errorDecay;
+    private final int minScoredSamples;
+    private final double switchMargin;
+
+    // 当前对外使用的预测器下标，-1 表示尚未选出
+    private int active = -1;
+
+    public PredictorEnsemble(List<Supplier<CompletionTimePredictor>> factories) {
+        this(factories, DEFAULT_ERROR_DECAY, DEFAULT_MIN_SCORED_SAMPLES, DEFAULT_SWITCH_MARGIN);
+    }
+
+    public PredictorEnsemble(List<Supplier<CompletionTimePredictor>> factories,
+                             double errorDecay, int minScoredSamples, double switchMargin) {
+        if (factories.isEmpty()) {
+            throw new IllegalArgumentException("At least one predictor is required");
+        }
+        this.predictors = new CompletionTimePredictor[factories.size()];
+        for (int i = 0; i < predictors.length; i++) {
+            predictors[i] = factories.get(i).get();
+        }
+        this.errorWeightSum = new double[predictors.length];
+        this.rollingError = new double[predictors.length];
+        this.scoredSamples = new long[predictors.length];
+        this.errorDecay = errorDecay;
+        this.minScoredSamples = minScoredSamples;
+        this.switchMargin = switchMargin;
+    }
+
+    /**
+     * 输入一个实际完成时间：先为每个预测器的上一次预测打分，再更新预测器
+     */
+    public synchronized void observe(double actualSeconds) {
+        for (int i = 0; i < predictors.length; i++) {
+            double predicted = predictors[i].predict();
+            if (!Double.isNaN(predicted)) {
+                double error = Math.abs(predicted - actualSeconds);
+                errorWeightSum[i] = errorWeightSum[i] * errorDecay + 1;
+                rollingError[i] += (error - rollingError[i]) / errorWeightSum[i];
+                scoredSamples[i]++;
+            }
+            predictors[i].observe(actualSeconds);
+        }
+        reselect();
+    }
+
+    /**
+     * 使用当前选中的预测器预测
+     * @return 预测值（秒），尚未选出预测器时返回 NaN
+     */
+    public synchronized double predict() {
+        return active >= 0 ? predictors[active].predict() : Double.NaN;
+    }
+
+    /**
+     * 当前选中的预测器名称，尚未选出时返回 null
+     */
+    public synchronized String getActiveName() {
+        return active >= 0 ? predictors[active].getName() : null;
+    }
+
+    /**
+     * 各预测器的状态快照
+     */
+    public synchronized List<PredictorStatus> getStatus() {
+        List<PredictorStatus> status = new ArrayList<>(predictors.length);
+        for (int i = 0; i < predictors.length; i++) {
+            PredictorStatus entry = new PredictorStatus();
+            entry.setName(predictors[i].getName());
+            entry.setPrediction(predictors[i].predict());
+            entry.setRollingError(scoredSamples[i] > 0 ? rollingError[i] : Double.NaN);
+            entry.setScoredSamples(scoredSamples[i]);
+            entry.setActive(i == active);
+            status.add(entry);
+        }
+        return status;
+    }
+
+    private void reselect() {
+        int best = -1;
+        for (int i = 0; i < predictors.length; i++) {
+            if (scoredSamples[i] >= minScoredSamples && (best < 0 || rollingError[i] < rollingError[best])) {
+                best = i;
+            }
+        }
+        if (best < 0 || best == active) {
+            return;
+        }
+        if (active < 0 || rollingError[best] < rollingError[active] * (1 - switchMargin)) {
+            active = best;
+        }
+    }
+
+    /**
+     * 单个预测器的状态
+     */
+    public static class PredictorStatus {
+        private String name;
+        private double prediction;
+        private double rollingError;
+        private long scoredSamples;
+        private boolean active;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public double getPrediction() {
+            return prediction;
+        }
+
+        public void setPrediction(double prediction) {
+            this.prediction = prediction;
+        }
+
+        /**
+         * 滚动平均绝对误差（秒），尚无评分时为 NaN
+         */
+        public double getRollingError() {
+            return rollingError;
+        }
+
+        public void setRollingError(double rollingError) {
+            this.rollingError = rollingError;
+        }
+
+        public long getScoredSamples() {
+            return scoredSamples;
+        }
+
+        public void setScoredSamples(long scoredSamples) {
+            this.scoredSamples = scoredSamples;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.blockchain.iExec.predictor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 内置预测器集合
+ */
+public final class Predictors {
+    
+    // 历史数据窗口大小
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    
+    // 与配置的 λ 并列比较的其他衰减常数
+    private static final double[] ALTERNATIVE_LAMBDAS = {0.05, 0.3};
+    
+    private Predictors() {
+    }
+    
+    /**
+     * 默认参与比较的预测器工厂（每个服务各自创建一组新实例）
+     * 衰减常数取多个值并列运行，由回测或在线选择决定每个服务适合的参数
+     * 
+     * @param lambda 指数衰减常数 λ（task.predictor.lambda）
+     */
+    public static List<Supplier<CompletionTimePredictor>> defaults(double lambda) {
+        List<Supplier<CompletionTimePredictor>> factories = new ArrayList<>();
+        factories.add(() -> new SimpleMovingAveragePredictor(DEFAULT_WINDOW_SIZE));
+        factories.add(CumulativeAveragePredictor::new);
+        factories.add(() -> new WeightedMovingAveragePredictor(DEFAULT_WINDOW_SIZE, lambda));
+        factories.add(() -> new ExponentialMovingAveragePredictor(lambda));
+        for (double alternative : ALTERNATIVE_LAMBDAS) {
+            if (alternative != lambda) {
+                factories.add(() -> new ExponentialMovingAveragePredictor(alternative));
+            }
+        }
+        factories.add(() -> new QuantilePredictor(0.5));
+        factories.add(() -> new MedianWindowPredictor(DEFAULT_WINDOW_SIZE));
+        return factories;
+    }
+}
@@ -0,0 +1,31 @@
+package com.blockchain.iExec.predictor;
+
+import com.blockchain.iExec.service.LatencySketch;
+
+/**
+ * 分位数预测：以全部历史样本的 q 分位作为预测值（基于延迟草图）
+ */
+public class QuantilePredictor implements CompletionTimePredictor {
+    
+    private final double q;
+    private final LatencySketch sketch = new LatencySketch();
+    
+    public QuantilePredictor(double q) {
+        this.q = q;
+    }
+    
+    @Override
+    public String getName() {
+        return "P" + Math.round(q * 100);
+    }
+    
+    @Override
+    public double predict() {
+        return sketch.quantile(q);
+    }
+    
+    @Override
+    public void observe(double actualSeconds) {
+        sketch.add(actualSeconds);
+    }
+}
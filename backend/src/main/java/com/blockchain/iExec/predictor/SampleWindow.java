@@ -0,0 +1,42 @@
+package com.blockchain.iExec.predictor;
+
+/**
+ * 固定容量的样本环形缓冲区，按时间先后保存最近 N 个样本
+ */
+class SampleWindow {
+    
+    private final double[] samples;
+    private int size;
+    private int next;
+    
+    SampleWindow(int capacity) {
+        this.samples = new double[capacity];
+    }
+    
+    void add(double sample) {
+        samples[next] = sample;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    int capacity() {
+        return samples.length;
+    }
+    
+    /**
+     * 第 i 新的样本（0 为最新）
+     */
+    double recent(int i) {
+        int index = next - 1 - i;
+        if (index < 0) {
+            index += samples.length;
+        }
+        return samples[index];
+    }
+}
@@ -0,0 +1,35 @@
+package com.blockchain.iExec.predictor;
+
+/**
+ * 简单移动平均（SMA）：最近 N 个样本的算术平均
+ */
+public class SimpleMovingAveragePredictor implements CompletionTimePredictor {
+    
+    private final SampleWindow window;
+    
+    public SimpleMovingAveragePredictor(int windowSize) {
+        this.window = new SampleWindow(windowSize);
+    }
+    
+    @Override
+    public String getName() {
+        return "SMA(" + window.capacity() + ")";
+    }
+    
+    @Override
+    public double predict() {
+        if (window.size() == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = 0; i < window.size(); i++) {
+            sum += window.recent(i);
+        }
+        return sum / window.size();
+    }
+    
+    @Override
+    public void observe(double actualSeconds) {
+        window.add(actualSeconds);
+    }
+}
@@ -0,0 +1,40 @@
+package com.blockchain.iExec.predictor;
+
+/**
+ * 加权移动平均（WMA）：最近 N 个样本，权重 w(i) = e^(-λ*i)，i = 0 为最新样本
+ */
+public class WeightedMovingAveragePredictor implements CompletionTimePredictor {
+    
+    private final SampleWindow window;
+    private final double lambda;
+    
+    public WeightedMovingAveragePredictor(int windowSize, double lambda) {
+        this.window = new SampleWindow(windowSize);
+        this.lambda = lambda;
+    }
+    
+    @Override
+    public String getName() {
+        return "WMA(" + window.capacity() + "," + lambda + ")";
+    }
+    
+    @Override
+    public double predict() {
+        if (window.size() == 0) {
+            return Double.NaN;
+        }
+        double weightedSum = 0;
+        double weightSum = 0;
+        for (int i = 0; i < window.size(); i++) {
+            double weight = Math.exp(-lambda * i);
+            weightedSum += window.recent(i) * weight;
+            weightSum += weight;
+        }
+        return weightedSum / weightSum;
+    }
+    
+    @Override
+    public void observe(double actualSeconds) {
+        window.add(actualSeconds);
+    }
+}
@@ -2,7 +2,64 @@ package com.blockchain.iExec.repository;
 
 import com.blockchain.iExec.model.ReputationEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface ReputationRepository extends JpaRepository<ReputationEntity, Long> {
     ReputationEntity findByAddress(String address);
-}
\ No newline at end of file
+    List<ReputationEntity> findByAddressIn(Collection<String> addresses);
+    
+    /**
+     * 重建排行榜所需的列：[address, totalTasks, finalScore, decayedTotalTasks, decayUpdatedAt]
+     * 只查投影，不加载实体，避免大量实体进入持久化上下文
+     */
+    @Query("SELECT r.address, r.totalTasks, r.finalScore, r.decayedTotalTasks, r.decayUpdatedAt "
+        + "FROM ReputationEntity r WHERE r.decayUpdatedAt IS NOT NULL")
+    List<Object[]> findLeaderboardEntries();
+    
+    /**
+     * 衰减计数从 decayUpdatedAt 到 :now 的衰减因子 e^(-λΔt)（时钟回拨时不衰减）
+     */
+    String DECAY_FACTOR = "exp(-cast(:decayRate as double) * "
+        + "(CASE WHEN :now > r.decayUpdatedAt THEN :now - r.decayUpdatedAt ELSE 0 END))";
+    
+    /**
+     * 原子地记录一次任务结果：递增终身计数，衰减后递增衰减计数，
+     * 并在同一条语句中基于衰减计数重新计算各项比率和综合分数（SET 右侧引用的均为更新前的值）
+     * @return 更新的行数（0 表示该用户尚无信誉记录）
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReputationEntity r SET r.totalTasks = r.totalTasks + 1, "
+        + "r.completedTasks = r.completedTasks + :completed, "
+        + "r.onTimeTasks = r.onTimeTasks + :onTime, "
+        + "r.decayedTotalTasks = r.decayedTotalTasks * " + DECAY_FACTOR + " + 1, "
+        + "r.decayedCompletedTasks = r.decayedCompletedTasks * " + DECAY_FACTOR + " + :completed, "
+        + "r.decayedOnTimeTasks = r.decayedOnTimeTasks * " + DECAY_FACTOR + " + :onTime, "
+        + "r.decayUpdatedAt = CASE WHEN :now > r.decayUpdatedAt THEN :now ELSE r.decayUpdatedAt END, "
+        + "r.qualityScore = :qualityScore, "
+        + "r.completionRate = (r.decayedCompletedTasks * " + DECAY_FACTOR + " + :completed) "
+        + "/ (r.decayedTotalTasks * " + DECAY_FACTOR + " + 1), "
+        + "r.onTimeRate = (r.decayedOnTimeTasks * " + DECAY_FACTOR + " + :onTime) "
+        + "/ (r.decayedTotalTasks * " + DECAY_FACTOR + " + 1), "
+        + "r.finalScore = (r.decayedCompletedTasks * " + DECAY_FACTOR + " + :completed) * cast(:completionWeight as double) "
+        + "/ (r.decayedTotalTasks * " + DECAY_FACTOR + " + 1) "
+        + "+ (r.decayedOnTimeTasks * " + DECAY_FACTOR + " + :onTime) * cast(:onTimeWeight as double) "
+        + "/ (r.decayedTotalTasks * " + DECAY_FACTOR + " + 1) "
+        + "+ cast(:qualityScore as double) * cast(:qualityWeight as double) "
+        + "WHERE r.address = :address")
+    int applyTaskOutcome(@Param("address") String address,
+                         @Param("completed") int completed,
+                         @Param("onTime") int onTime,
+                         @Param("qualityScore") double qualityScore,
+                         @Param("now") long now,
+                         @Param("decayRate") double decayRate,
+                         @Param("completionWeight") double completionWeight,
+                         @Param("onTimeWeight") double onTimeWeight,
+                         @Param("qualityWeight") double qualityWeight);
+}
@@ -0,0 +1,83 @@
+package com.blockchain.iExec.repository;
+
+import com.blockchain.iExec.model.ArchivedTaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 归档任务数据访问层，同时负责热表到归档表的批量搬移
+ */
+@Repository
+public interface TaskArchiveRepository extends JpaRepository<ArchivedTaskEntity, Long>, JpaSpecificationExecutor<ArchivedTaskEntity> {
+    
+    ArchivedTaskEntity findFirstByTaskId(String taskId);
+    
+    ArchivedTaskEntity findFirstByIexecTaskId(String iexecTaskId);
+    
+    /**
+     * 查询一批可归档的任务 ID：已结束且最后更新早于 cutoff
+     * 按索引 (status, updated_at, id) 对每个终态做范围扫描，不扫描整张热表
+     */
+    @Query("SELECT t.id FROM TaskEntity t WHERE t.status IN :statuses AND t.updatedAt < :cutoff ORDER BY t.id")
+    List<Long> findArchivableIds(@Param("statuses") Collection<TaskStatus> statuses, @Param("cutoff") LocalDateTime cutoff,
+                                 Pageable pageable);
+    
+    /**
+     * 将指定任务复制到归档表（单条 INSERT ... SELECT，不经过实体加载）
+     */
+    @Modifying
+    @Query("INSERT INTO ArchivedTaskEntity (id, taskId, iexecTaskId, arbitrumTaskId, serviceId, userAddress, status, "
+        + "resultHash, paymentAmount, deadline, createdAt, updatedAt, completedAt, errorMessage, archivedAt) "
+        + "SELECT t.id, t.taskId, t.iexecTaskId, t.arbitrumTaskId, t.serviceId, t.userAddress, t.status, "
+        + "t.resultHash, t.paymentAmount, t.deadline, t.createdAt, t.updatedAt, t.completedAt, t.errorMessage, :archivedAt "
+        + "FROM TaskEntity t WHERE t.id IN :ids")
+    int copyToArchive(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+    
+    /**
+     * 从热表删除已归档的任务
+     */
+    @Modifying
+    @Query("DELETE FROM TaskEntity t WHERE t.id IN :ids")
+    int deleteFromHot(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * 按 ID 顺序流式读取创建时间在 [from, to) 内、归档时间早于 archivedBefore 的归档任务，用于导出
+     * 导出先读热表再读归档表：archivedBefore 取导出开始的时间，之后才归档的任务已在热表中读到
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM ArchivedTaskEntity t WHERE t.createdAt >= :from AND t.createdAt < :to "
+        + "AND (:serviceId IS NULL OR t.serviceId = :serviceId) AND t.archivedAt < :archivedBefore ORDER BY t.id")
+    Stream<ArchivedTaskEntity> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                               @Param("serviceId") String serviceId,
+                                               @Param("archivedBefore") LocalDateTime archivedBefore);
+    
+    /**
+     * 查询一批最后更新早于 cutoff 的归档任务 ID（用于保留期清理）
+     */
+    @Query("SELECT t.id FROM ArchivedTaskEntity t WHERE t.updatedAt < :cutoff ORDER BY t.id")
+    List<Long> findIdsUpdatedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+    
+    /**
+     * 按 ID 批量删除归档任务
+     */
+    @Modifying
+    @Query("DELETE FROM ArchivedTaskEntity t WHERE t.id IN :ids")
+    int deleteArchivedByIds(@Param("ids") Collection<Long> ids);
+}
@@ -1,13 +1,21 @@
 package com.blockchain.iExec.repository;
 
 import com.blockchain.iExec.model.TaskHistoryEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * 任务历史数据访问层
@@ -16,19 +24,34 @@ import java.util.List;
 public interface TaskHistoryRepository extends JpaRepository<TaskHistoryEntity, Long> {
     
     /**
-     * 根据服务ID查询历史任务，按创建时间倒序
+     * 根据服务ID查询最近的历史任务，按创建时间倒序（分页限定条数）
      */
-    List<TaskHistoryEntity> findByServiceIdOrderByCreatedAtDesc(String serviceId);
+    List<TaskHistoryEntity> findByServiceIdOrderByCreatedAtDesc(String serviceId, Pageable pageable);
     
     /**
      * 根据用户地址查询历史任务
      */
     List<TaskHistoryEntity> findByUserAddress(String userAddress);
     
+    /**
+     * 统计用户历史任务数
+     */
+    long countByUserAddress(String userAddress);
+    
+    /**
+     * 统计用户指定状态的历史任务数
+     */
+    long countByUserAddressAndStatus(String userAddress, TaskStatus status);
+    
     /**
      * 根据状态查询任务
      */
-    List<TaskHistoryEntity> findByStatus(String status);
+    List<TaskHistoryEntity> findByStatus(TaskStatus status);
+    
+    /**
+     * 统计指定状态的任务数
+     */
+    long countByStatus(TaskStatus status);
     
     /**
      * 查询指定时间段内的任务
@@ -38,18 +61,116 @@ public interface TaskHistoryRepository extends JpaRepository<TaskHistoryEntity,
     /**
      * 查询已完成的任务（用于统计分析）
      */
-    @Query("SELECT t FROM TaskHistoryEntity t WHERE t.status = 'Completed' AND t.completedAt IS NOT NULL")
+    @Query("SELECT t FROM TaskHistoryEntity t WHERE t.status = com.blockchain.iExec.model.TaskStatus.COMPLETED "
+        + "AND t.completedAt IS NOT NULL")
     List<TaskHistoryEntity> findCompletedTasks();
     
     /**
      * 获取指定服务的平均完成时间
      */
-    @Query("SELECT AVG(t.actualTime) FROM TaskHistoryEntity t WHERE t.serviceId = :serviceId AND t.status = 'Completed'")
+    @Query("SELECT AVG(t.actualTime) FROM TaskHistoryEntity t WHERE t.serviceId = :serviceId "
+        + "AND t.status = com.blockchain.iExec.model.TaskStatus.COMPLETED")
     Double getAverageCompletionTime(@Param("serviceId") String serviceId);
     
     /**
-     * 获取指定服务最近N条已完成任务
+     * 获取指定服务最近N条已完成任务（分页限定条数）
+     * ORDER BY 写出索引 (service_id, status, completed_at) 的全部列，H2 才会按索引倒序扫描并在取满 N 条后停止，
+     * 否则会读出该服务的全部已完成任务再排序
+     */
+    @Query("SELECT t FROM TaskHistoryEntity t WHERE t.serviceId = :serviceId "
+        + "AND t.status = com.blockchain.iExec.model.TaskStatus.COMPLETED "
+        + "ORDER BY t.serviceId DESC, t.status DESC, t.completedAt DESC")
+    List<TaskHistoryEntity> findRecentCompletedTasks(@Param("serviceId") String serviceId, Pageable pageable);
+    
+    /**
+     * 按完成时间顺序流式读取已完成任务的 (serviceId, actualTime)，用于离线回测
+     * 只投影两列，调用方需在只读事务中消费并关闭 Stream
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.serviceId, t.actualTime FROM TaskHistoryEntity t "
+        + "WHERE t.status = com.blockchain.iExec.model.TaskStatus.COMPLETED AND t.actualTime > 0 ORDER BY t.completedAt, t.id")
+    Stream<Object[]> streamCompletionTimes();
+    
+    /**
+     * 按完成时间顺序流式读取指定服务已完成任务的 actualTime
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.actualTime FROM TaskHistoryEntity t "
+        + "WHERE t.serviceId = :serviceId AND t.status = com.blockchain.iExec.model.TaskStatus.COMPLETED "
+        + "AND t.actualTime > 0 ORDER BY t.completedAt, t.id")
+    Stream<Long> streamCompletionTimes(@Param("serviceId") String serviceId);
+    
+    /**
+     * 按 ID 顺序流式读取 ID 不大于 maxId、尚未合并到汇总表的历史记录的
+     * (id, serviceId, status, actualTime, completedAt, createdAt)，用于补齐汇总表
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.id, t.serviceId, t.status, t.actualTime, t.completedAt, t.createdAt FROM TaskHistoryEntity t "
+        + "WHERE t.rolledUp = false AND t.id <= :maxId ORDER BY t.id")
+    Stream<Object[]> streamForRollup(@Param("maxId") Long maxId);
+    
+    /**
+     * 按 ID 顺序（即写入顺序）流式读取已完成任务的 (serviceId, userAddress, actualTime, resourceRequirement, rolledUp)，
+     * 用于启动时重建预测状态
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t.serviceId, t.userAddress, t.actualTime, t.resourceRequirement, t.rolledUp FROM TaskHistoryEntity t "
+        + "WHERE t.status = com.blockchain.iExec.model.TaskStatus.COMPLETED ORDER BY t.id")
+    Stream<Object[]> streamCompletedForRebuild();
+    
+    /**
+     * 按完成时间顺序流式读取 since 之后结束的历史记录的 (completedAt, status, actualTime)，用于启动时重建吞吐窗口
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.completedAt, t.status, t.actualTime FROM TaskHistoryEntity t "
+        + "WHERE t.completedAt >= :since ORDER BY t.completedAt")
+    Stream<Object[]> streamFinishedSince(@Param("since") LocalDateTime since);
+    
+    /**
+     * 将一条历史记录标记为已汇总，已被标记时返回 0（行锁保证同一记录只会被汇总一次）
+     */
+    @Modifying
+    @Query("UPDATE TaskHistoryEntity t SET t.rolledUp = true WHERE t.id = :id AND t.rolledUp = false")
+    int markRolledUp(@Param("id") Long id);
+    
+    /**
+     * 将 ID 在 (fromId, toId] 内的历史记录标记为已汇总
+     */
+    @Modifying
+    @Query("UPDATE TaskHistoryEntity t SET t.rolledUp = true "
+        + "WHERE t.id > :fromId AND t.id <= :toId AND t.rolledUp = false")
+    int markRolledUp(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    @Query("SELECT MAX(t.id) FROM TaskHistoryEntity t")
+    Long findMaxId();
+    
+    /**
+     * 按 ID 顺序流式读取创建时间在 [from, to) 内的历史记录，用于导出
+     * @param serviceId 服务 ID，为 null 时不过滤
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM TaskHistoryEntity t WHERE t.createdAt >= :from AND t.createdAt < :to "
+        + "AND (:serviceId IS NULL OR t.serviceId = :serviceId) ORDER BY t.id")
+    Stream<TaskHistoryEntity> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                              @Param("serviceId") String serviceId);
+    
+    /**
+     * 查询一批创建时间早于 cutoff、已合并到汇总表的历史记录 ID（用于保留期清理）
+     * 增量汇总失败、尚未补齐的记录不删除，留到补齐后的下一轮
+     */
+    @Query("SELECT t.id FROM TaskHistoryEntity t WHERE t.createdAt < :cutoff AND t.rolledUp = true ORDER BY t.id")
+    List<Long> findRolledUpIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+    
+    /**
+     * 按 ID 批量删除历史记录
      */
-    @Query("SELECT t FROM TaskHistoryEntity t WHERE t.serviceId = :serviceId AND t.status = 'Completed' ORDER BY t.completedAt DESC")
-    List<TaskHistoryEntity> findRecentCompletedTasks(@Param("serviceId") String serviceId);
+    @Modifying
+    @Query("DELETE FROM TaskHistoryEntity t WHERE t.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,77 @@
+package com.blockchain.iExec.repository;
+
+import com.blockchain.iExec.model.TaskHistoryRollupEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 任务历史汇总数据访问层
+ */
+@Repository
+public interface TaskHistoryRollupRepository extends JpaRepository<TaskHistoryRollupEntity, Long> {
+    
+    /**
+     * 加写锁读取一个时间桶，用于增量合并（同一时间桶的并发写入串行化）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM TaskHistoryRollupEntity r WHERE r.serviceId = :serviceId "
+        + "AND r.bucketSeconds = :bucketSeconds AND r.bucketStart = :bucketStart")
+    TaskHistoryRollupEntity findBucketForUpdate(@Param("serviceId") String serviceId,
+                                                @Param("bucketSeconds") Integer bucketSeconds,
+                                                @Param("bucketStart") LocalDateTime bucketStart);
+    
+    /**
+     * 查询指定服务在 [from, to) 内的时间桶，按时间升序
+     */
+    @Query("SELECT r FROM TaskHistoryRollupEntity r WHERE r.serviceId = :serviceId AND r.bucketSeconds = :bucketSeconds "
+        + "AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart")
+    List<TaskHistoryRollupEntity> findBuckets(@Param("serviceId") String serviceId,
+                                              @Param("bucketSeconds") Integer bucketSeconds,
+                                              @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to);
+    
+    /**
+     * 指定服务的完成时间之和与样本数：[sum, count]
+     */
+    @Query("SELECT SUM(r.latencySum), SUM(r.latencyCount) FROM TaskHistoryRollupEntity r "
+        + "WHERE r.serviceId = :serviceId AND r.bucketSeconds = :bucketSeconds")
+    List<Object[]> sumLatency(@Param("serviceId") String serviceId, @Param("bucketSeconds") Integer bucketSeconds);
+    
+    /**
+     * 全部服务的任务数、完成数、失败数：[total, success, failure]
+     */
+    @Query("SELECT SUM(r.taskCount), SUM(r.successCount), SUM(r.failureCount) FROM TaskHistoryRollupEntity r "
+        + "WHERE r.bucketSeconds = :bucketSeconds")
+    List<Object[]> sumCounts(@Param("bucketSeconds") Integer bucketSeconds);
+    
+    /**
+     * 流式读取指定长度时间桶的 (serviceId, latencySketch)，用于合并每个服务的完成时间草图
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @Query("SELECT r.serviceId, r.latencySketch FROM TaskHistoryRollupEntity r "
+        + "WHERE r.bucketSeconds = :bucketSeconds AND r.latencySketch IS NOT NULL")
+    Stream<Object[]> streamSketches(@Param("bucketSeconds") Integer bucketSeconds);
+    
+    boolean existsByBucketSeconds(Integer bucketSeconds);
+    
+    /**
+     * 删除早于 cutoff 的时间桶
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TaskHistoryRollupEntity r WHERE r.bucketSeconds = :bucketSeconds AND r.bucketStart < :cutoff")
+    int deleteBucketsBefore(@Param("bucketSeconds") Integer bucketSeconds, @Param("cutoff") LocalDateTime cutoff);
+}
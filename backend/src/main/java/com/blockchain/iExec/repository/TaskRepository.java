@@ -1,15 +1,57 @@
 package com.blockchain.iExec.repository;
 
 import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface TaskRepository extends JpaRepository<TaskEntity, Long> {
+public interface TaskRepository extends JpaRepository<TaskEntity, Long>, JpaSpecificationExecutor<TaskEntity> {
     TaskEntity findByTaskId(String taskId);
     TaskEntity findByIexecTaskId(String iexecTaskId);
-    List<TaskEntity> findByStatus(String status);
+    List<TaskEntity> findByStatus(TaskStatus status);
+    
+    // 按创建时间取最早的若干个指定状态的任务；ORDER BY 包含索引 (status, created_at, id) 的全部列，以便按索引顺序扫描
+    @Query("SELECT t FROM TaskEntity t WHERE t.status = :status ORDER BY t.status, t.createdAt, t.id")
+    List<TaskEntity> findOldestByStatus(@Param("status") TaskStatus status, Pageable pageable);
+    
+    // 按 (createdAt, id) 顺序取位置 (createdAt, id) 之后的若干个指定状态的任务
+    @Query("SELECT t FROM TaskEntity t WHERE t.status = :status AND (t.createdAt > :createdAt "
+        + "OR (t.createdAt = :createdAt AND t.id > :id)) ORDER BY t.status, t.createdAt, t.id")
+    List<TaskEntity> findByStatusAfter(@Param("status") TaskStatus status, @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("id") Long id, Pageable pageable);
+    
+    long countByStatus(TaskStatus status);
+    
+    // 已超时的指定状态任务数：创建时间早于 createdBefore（now - 全局超时），且没有截止时间或截止时间已过
+    @Query("SELECT COUNT(t) FROM TaskEntity t WHERE t.status = :status AND t.createdAt < :createdBefore "
+        + "AND (t.deadline IS NULL OR t.deadline < :now)")
+    long countTimedOut(@Param("status") TaskStatus status, @Param("createdBefore") LocalDateTime createdBefore,
+                       @Param("now") LocalDateTime now);
+    
+    // 启动恢复：按创建时间顺序读取指定状态的任务（进行中的任务只占小部分，直接读入列表）
+    List<TaskEntity> findByStatusInOrderByCreatedAt(Collection<TaskStatus> statuses);
     List<TaskEntity> findByUserAddress(String userAddress);
+    
+    // 按 ID 顺序流式读取创建时间在 [from, to) 内的任务，用于导出；serviceId 为 null 时不过滤
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM TaskEntity t WHERE t.createdAt >= :from AND t.createdAt < :to "
+        + "AND (:serviceId IS NULL OR t.serviceId = :serviceId) ORDER BY t.id")
+    Stream<TaskEntity> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                       @Param("serviceId") String serviceId);
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.blockchain.iExec.repository;
+
+import com.blockchain.iExec.model.UserTaskStatsEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 用户任务统计数据访问层
+ */
+@Repository
+public interface UserTaskStatsRepository extends JpaRepository<UserTaskStatsEntity, Long> {
+    
+    UserTaskStatsEntity findByUserAddress(String userAddress);
+    
+    List<UserTaskStatsEntity> findByUserAddressIn(Collection<String> userAddresses);
+    
+    /**
+     * 原子递增计数
+     * @return 更新的行数（0 表示该用户尚无统计行）
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserTaskStatsEntity s SET s.totalTasks = s.totalTasks + 1, " +
+           "s.completedTasks = s.completedTasks + :completed WHERE s.userAddress = :userAddress")
+    int incrementCounts(@Param("userAddress") String userAddress, @Param("completed") long completed);
+}
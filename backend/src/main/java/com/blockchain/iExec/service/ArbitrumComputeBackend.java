@@ -0,0 +1,35 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Arbitrum Sepolia 计算后端
+ */
+@Component
+public class ArbitrumComputeBackend implements ComputeBackend {
+    
+    public static final String NAME = "arbitrum";
+    
+    @Autowired
+    private ArbitrumTaskService arbitrumTaskService;
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return arbitrumTaskService.isArbitrumEnabled();
+    }
+    
+    @Override
+    public CompletableFuture<Void> execute(TaskEntity task, BigInteger serviceId) {
+        return arbitrumTaskService.submitTaskToArbitrum(task.getTaskId(), serviceId, task.getUserAddress());
+    }
+}
@@ -20,15 +20,26 @@ import org.web3j.tx.TransactionManager;
 import org.web3j.tx.gas.ContractGasProvider;
 
 import com.blockchain.iExec.contract.ComputeMarketContract;
-import com.blockchain.iExec.model.TaskEntity;
 
+import jakarta.annotation.PreDestroy;
 import java.math.BigInteger;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Arbitrum Sepolia 任务处理服务
  * 负责将本地链的任务提交到 Arbitrum Sepolia 进行计算
+ * 发送交易、模拟计算和回写本地链在专用的计算线程池中执行，线程数不少于分发器的并发上限，
+ * 分发器的执行中任务数即实际并行执行的任务数；等待交易回执时不占用线程，由定时线程按间隔查询。
  */
 @Service
 public class ArbitrumTaskService {
@@ -64,49 +75,89 @@ public class ArbitrumTaskService {
     @Value("${arbitrum.sepolia.enabled:false}")
     private boolean arbitrumEnabled;
     
+    // 查询交易回执的线程数：每次查询只是一次 RPC 调用，少量线程即可
+    private static final int RECEIPT_POLLER_THREADS = 2;
+    
+    private final ExecutorService computeExecutor;
+    private final ScheduledExecutorService receiptPoller;
+    private final long receiptPollInterval;
+    private final int receiptMaxPolls;
+    
+    public ArbitrumTaskService(@Value("${compute.executor.threads:30}") int computeThreads,
+                               @Value("${arbitrum.receipt.poll-interval:10000}") long receiptPollInterval,
+                               @Value("${arbitrum.receipt.max-polls:60}") int receiptMaxPolls) {
+        this.receiptPollInterval = receiptPollInterval;
+        this.receiptMaxPolls = receiptMaxPolls;
+        AtomicInteger computeThreadCount = new AtomicInteger();
+        this.computeExecutor = new ThreadPoolExecutor(computeThreads, computeThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "compute-" + computeThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        AtomicInteger pollerThreadCount = new AtomicInteger();
+        this.receiptPoller = new ScheduledThreadPoolExecutor(RECEIPT_POLLER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "arbitrum-receipt-" + pollerThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        receiptPoller.shutdownNow();
+        computeExecutor.shutdownNow();
+    }
+    
+    /**
+     * 是否启用 Arbitrum Sepolia 计算
+     */
+    public boolean isArbitrumEnabled() {
+        return arbitrumEnabled;
+    }
+    
     /**
      * 将任务提交到 Arbitrum Sepolia
+     * 提交本身失败时 Future 异常结束，由调用方决定是否换用其他计算后端
      * @param taskId 本地链任务 ID
      * @param serviceId 服务 ID
      * @param userAddress 用户地址
+     * @return 任务到达最终状态（完成或失败）时结束的 Future
      */
-    public void submitTaskToArbitrum(String taskId, BigInteger serviceId, String userAddress) {
-        if (!arbitrumEnabled) {
-            logger.info("Arbitrum integration disabled. Using mock mode.");
-            mockComputeTask(taskId, serviceId);
-            return;
-        }
-        
+    public CompletableFuture<Void> submitTaskToArbitrum(String taskId, BigInteger serviceId, String userAddress) {
         logger.info("Submitting task {} to Arbitrum Sepolia for computation...", taskId);
         
-        CompletableFuture.runAsync(() -> {
+        return CompletableFuture.supplyAsync(() -> {
             try {
-                // 注意：状态已在 TaskCreatedListener 中更新为 Processing
+                // 注意：状态已由调度器更新为 Processing
                 
                 // 在 Arbitrum Sepolia 上创建相同的任务（如果需要）
                 // 这里假设 Arbitrum 上也有相同的合约接口
                 String arbitrumTaskId = createTaskOnArbitrum(taskId, serviceId, userAddress);
                 
-                // 3. 保存 Arbitrum 任务 ID
-                TaskEntity task = taskService.getTaskByTaskId(taskId);
-                if (task != null) {
-                    task.setArbitrumTaskId(arbitrumTaskId);
-                    task.setServiceId(serviceId.toString());
-                    taskService.saveTask(task);
-                }
-                
-                // 4. 监听 Arbitrum 上的任务完成事件
-                monitorArbitrumTask(taskId, arbitrumTaskId);
+                // 3. 保存 Arbitrum 任务 ID（只更新这两个字段，不覆盖并发写入的状态）
+                taskService.updateArbitrumTaskId(taskId, arbitrumTaskId, serviceId.toString());
+                return arbitrumTaskId;
                 
             } catch (Exception e) {
-                logger.error("Error submitting task {} to Arbitrum: {}", taskId, e.getMessage(), e);
-                taskService.updateTaskErrorMessage(taskId, "Arbitrum submission failed: " + e.getMessage());
-                
-                // 如果 Arbitrum 提交失败，回退到模拟模式
-                logger.info("Falling back to mock mode for task {}", taskId);
-                mockComputeTask(taskId, serviceId);
+                throw new CompletionException(e);
             }
-        });
+        }, computeExecutor).thenCompose(arbitrumTaskId ->
+            // 4. 监听 Arbitrum 上的任务完成事件
+            monitorArbitrumTask(taskId, arbitrumTaskId)
+        );
+    }
+    
+    /**
+     * 继续跟踪已提交到 Arbitrum 的任务（如重启前已发出交易、尚未确认）
+     * 只查询交易回执并按结果结束任务，不会再次发送交易
+     * @param taskId 本地链任务 ID
+     * @param arbitrumTaskId 已发送的 Arbitrum 交易哈希
+     * @return 任务到达最终状态时结束的 Future
+     */
+    public CompletableFuture<Void> resumeArbitrumTask(String taskId, String arbitrumTaskId) {
+        logger.info("Resuming Arbitrum task {} (tx {})", taskId, arbitrumTaskId);
+        return monitorArbitrumTask(taskId, arbitrumTaskId);
     }
     
     /**
@@ -203,68 +254,81 @@ public class ArbitrumTaskService {
     
     /**
      * 监听 Arbitrum 交易确认
-     * 等待交易被打包到区块并确认
+     * 每隔 receiptPollInterval 查询一次交易回执，最多 receiptMaxPolls 次；两次查询之间不占用线程
      */
-    private void monitorArbitrumTask(String localTaskId, String txHash) {
+    private CompletableFuture<Void> monitorArbitrumTask(String localTaskId, String txHash) {
         logger.info("⏳ Monitoring Arbitrum transaction: {} for local task: {}", txHash, localTaskId);
         
-        CompletableFuture.runAsync(() -> {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        scheduleReceiptCheck(localTaskId, txHash, 1, done);
+        return done;
+    }
+    
+    private void scheduleReceiptCheck(String localTaskId, String txHash, int attempt, CompletableFuture<Void> done) {
+        try {
+            receiptPoller.schedule(() -> checkReceipt(localTaskId, txHash, attempt, done),
+                receiptPollInterval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 应用正在关闭，任务保持 Processing，重启后按交易哈希继续查询
+            done.completeExceptionally(e);
+        }
+    }
+    
+    private void checkReceipt(String localTaskId, String txHash, int attempt, CompletableFuture<Void> done) {
+        try {
+            Optional<TransactionReceipt> receiptOptional = Optional.empty();
             try {
-                int maxRetries = 60; // 最多等待 10 分钟（每次间隔 10 秒）
-                int retries = 0;
-                TransactionReceipt receipt = null;
+                // 查询交易回执
+                receiptOptional = arbitrumWeb3j.ethGetTransactionReceipt(txHash).send().getTransactionReceipt();
+            } catch (Exception e) {
+                logger.warn("Error checking transaction receipt: {}", e.getMessage());
+            }
+            
+            if (receiptOptional.isPresent()) {
+                TransactionReceipt receipt = receiptOptional.get();
                 
-                while (retries < maxRetries) {
-                    Thread.sleep(10000); // 每 10 秒检查一次
-                    retries++;
+                // 检查交易状态
+                String status = receipt.getStatus();
+                if ("0x1".equals(status)) {
+                    logger.info("✅ Arbitrum transaction confirmed! Block: {}", receipt.getBlockNumber());
+                    logger.info("Gas used: {}, Cumulative gas: {}", 
+                        receipt.getGasUsed(), receipt.getCumulativeGasUsed());
+                    
+                    // 模拟计算结果（"1+1=2"）
+                    String computeResult = "0x" + bytesToHex("Result:1+1=2".getBytes());
                     
-                    try {
-                        // 查询交易回执
-                        Optional<TransactionReceipt> receiptOptional = arbitrumWeb3j
-                            .ethGetTransactionReceipt(txHash)
-                            .send()
-                            .getTransactionReceipt();
-                        
-                        if (receiptOptional.isPresent()) {
-                            receipt = receiptOptional.get();
-                            
-                            // 检查交易状态
-                            String status = receipt.getStatus();
-                            if ("0x1".equals(status)) {
-                                logger.info("✅ Arbitrum transaction confirmed! Block: {}", receipt.getBlockNumber());
-                                logger.info("Gas used: {}, Cumulative gas: {}", 
-                                    receipt.getGasUsed(), receipt.getCumulativeGasUsed());
-                                
-                                // 模拟计算结果（"1+1=2"）
-                                String computeResult = "0x" + bytesToHex("Result:1+1=2".getBytes());
-                                
-                                // 任务完成，更新本地链
-                                handleArbitrumTaskCompleted(localTaskId, computeResult);
-                                break;
+                    // 任务完成，更新本地链（等待本地链交易确认，在计算线程池中执行，不阻塞回执查询）
+                    CompletableFuture
+                        .runAsync(() -> handleArbitrumTaskCompleted(localTaskId, computeResult), computeExecutor)
+                        .whenComplete((result, error) -> {
+                            if (error != null) {
+                                done.completeExceptionally(error);
                             } else {
-                                logger.error("❌ Arbitrum transaction failed! Status: {}", status);
-                                taskService.updateTaskErrorMessage(localTaskId, "Arbitrum transaction failed");
-                                break;
+                                done.complete(null);
                             }
-                        } else {
-                            logger.info("⏳ Waiting for confirmation... ({}/{})", retries, maxRetries);
-                        }
-                        
-                    } catch (Exception e) {
-                        logger.warn("Error checking transaction receipt: {}", e.getMessage());
-                    }
+                        });
+                } else {
+                    logger.error("❌ Arbitrum transaction failed! Status: {}", status);
+                    taskService.updateTaskErrorMessage(localTaskId, "Arbitrum transaction failed");
+                    done.complete(null);
                 }
-                
-                if (receipt == null) {
-                    logger.error("❌ Arbitrum transaction timeout after {} retries", maxRetries);
-                    taskService.updateTaskErrorMessage(localTaskId, "Arbitrum transaction timeout");
-                }
-                
-            } catch (Exception e) {
-                logger.error("Error monitoring Arbitrum task: {}", e.getMessage(), e);
-                taskService.updateTaskErrorMessage(localTaskId, "Monitoring error: " + e.getMessage());
+                return;
             }
-        });
+            
+            if (attempt >= receiptMaxPolls) {
+                logger.error("❌ Arbitrum transaction timeout after {} retries", receiptMaxPolls);
+                taskService.updateTaskErrorMessage(localTaskId, "Arbitrum transaction timeout");
+                done.complete(null);
+                return;
+            }
+            logger.info("⏳ Waiting for confirmation... ({}/{})", attempt, receiptMaxPolls);
+            scheduleReceiptCheck(localTaskId, txHash, attempt + 1, done);
+            
+        } catch (Exception e) {
+            logger.error("Error monitoring Arbitrum task: {}", e.getMessage(), e);
+            taskService.updateTaskErrorMessage(localTaskId, "Monitoring error: " + e.getMessage());
+            done.complete(null);
+        }
     }
     
     /**
@@ -318,11 +382,12 @@ public class ArbitrumTaskService {
     
     /**
      * 模拟计算任务（用于测试或 Arbitrum 不可用时）
+     * 模拟的计算过程占用一个计算线程
      */
-    private void mockComputeTask(String taskId, BigInteger serviceId) {
+    public CompletableFuture<Void> mockComputeTask(String taskId, BigInteger serviceId) {
         logger.info("Mock computing task: {} (status is already Processing)", taskId);
         
-        CompletableFuture.runAsync(() -> {
+        return CompletableFuture.runAsync(() -> {
             try {
                 // 模拟计算延迟（15-20秒，确保前端有足够时间看到 Processing 状态）
                 logger.info("Task {} computing... (will take 15-20 seconds)", taskId);
@@ -344,6 +409,6 @@ public class ArbitrumTaskService {
                 logger.error("Error in mock compute: {}", e.getMessage(), e);
                 taskService.updateTaskErrorMessage(taskId, "Mock compute failed: " + e.getMessage());
             }
-        });
+        }, computeExecutor);
     }
 }
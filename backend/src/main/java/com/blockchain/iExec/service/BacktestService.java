@@ -0,0 +1,320 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.predictor.CompletionTimePredictor;
+import com.blockchain.iExec.predictor.Predictors;
+import com.blockchain.iExec.repository.TaskHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 离线回测服务 - 按完成时间顺序重放任务历史，评估完成时间预测器
+ * 每个服务独立重放（服务之间并行），对每条记录先预测、再输入实际值，
+ * 与线上逐个任务到达时的行为一致；最后汇总各预测器的 MAE、RMSE 和 p95 误差。
+ * 只回测单个服务时，同时给出各预测器重放完全部历史后的预测值，与误差出自同一个模型。
+ */
+@Service
+public class BacktestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BacktestService.class);
+
+    // 预测器尚无数据时使用的默认预测值（秒），与 TaskSchedulerService 一致
+    private static final double DEFAULT_PREDICTION = 300;
+
+    @Autowired
+    private TaskHistoryRepository taskHistoryRepository;
+
+    // 内置预测器的指数衰减常数 λ，与 TaskSchedulerService 使用同一配置
+    private final double lambda;
+
+    public BacktestService(@Value("${task.predictor.lambda:0.1}") double lambda) {
+        this.lambda = lambda;
+    }
+
+    /**
+     * 使用内置预测器回测
+     * @param serviceId 服务 ID，为 null 时回测全部服务
+     */
+    @Transactional(readOnly = true)
+    public BacktestReport backtest(String serviceId) {
+        return backtest(serviceId, Predictors.defaults(lambda));
+    }
+
+    /**
+     * 使用指定预测器回测
+     * @param serviceId 服务 ID，为 null 时回测全部服务
+     * @param factories 预测器工厂，每个服务各自创建一组新实例
+     */
+    @Transactional(readOnly = true)
+    public BacktestReport backtest(String serviceId, List<Supplier<CompletionTimePredictor>> factories) {
+        long start = System.currentTimeMillis();
+
+        Map<String, SampleBuffer> samplesByService = loadSamples(serviceId);
+        long rows = 0;
+        for (SampleBuffer buffer : samplesByService.values()) {
+            rows += buffer.size;
+        }
+
+        // 服务之间互不影响，并行重放后合并误差
+        ErrorAccumulator[] total = samplesByService.values().parallelStream()
+            .map(buffer -> replay(buffer, factories))
+            .reduce(BacktestService::merge)
+            .orElseGet(() -> newAccumulators(factories.size()));
+
+        BacktestReport report = new BacktestReport();
+        report.setRows(rows);
+        report.setServices(samplesByService.size());
+        List<PredictorScore> scores = new ArrayList<>(factories.size());
+        for (int i = 0; i < factories.size(); i++) {
+            scores.add(total[i].toScore(factories.get(i).get().getName()));
+        }
+        report.setScores(scores);
+        report.setElapsedMs(System.currentTimeMillis() - start);
+
+        logger.info("Backtest finished: {} rows, {} services, {} predictors in {} ms",
+            rows, samplesByService.size(), factories.size(), report.getElapsedMs());
+        return report;
+    }
+
+    /**
+     * 流式读取完成时间，按服务分组为原始数组（保持时间顺序）
+     */
+    private Map<String, SampleBuffer> loadSamples(String serviceId) {
+        Map<String, SampleBuffer> samplesByService = new HashMap<>();
+        if (serviceId != null) {
+            SampleBuffer buffer = new SampleBuffer();
+            try (Stream<Long> stream = taskHistoryRepository.streamCompletionTimes(serviceId)) {
+                stream.forEach(actualTime -> buffer.add(actualTime));
+            }
+            if (buffer.size > 0) {
+                samplesByService.put(serviceId, buffer);
+            }
+            return samplesByService;
+        }
+
+        try (Stream<Object[]> stream = taskHistoryRepository.streamCompletionTimes()) {
+            stream.forEach(row -> samplesByService
+                .computeIfAbsent((String) row[0], key -> new SampleBuffer())
+                .add(((Number) row[1]).doubleValue()));
+        }
+        return samplesByService;
+    }
+
+    /**
+     * 重放单个服务：每条记录先预测，再输入实际值
+     */
+    private ErrorAccumulator[] replay(SampleBuffer buffer, List<Supplier<CompletionTimePredictor>> factories) {
+        int predictorCount = factories.size();
+        CompletionTimePredictor[] predictors = new CompletionTimePredictor[predictorCount];
+        for (int i = 0; i < predictorCount; i++) {
+            predictors[i] = factories.get(i).get();
+        }
+        ErrorAccumulator[] accumulators = newAccumulators(predictorCount);
+
+        for (int n = 0; n < buffer.size; n++) {
+            double actual = buffer.samples[n];
+            for (int i = 0; i < predictorCount; i++) {
+                accumulators[i].add(predict(predictors[i]) - actual);
+                predictors[i].observe(actual);
+            }
+        }
+        for (int i = 0; i < predictorCount; i++) {
+            accumulators[i].prediction = predict(predictors[i]);
+        }
+        return accumulators;
+    }
+
+    private static double predict(CompletionTimePredictor predictor) {
+        double predicted = predictor.predict();
+        return Double.isNaN(predicted) ? DEFAULT_PREDICTION : predicted;
+    }
+
+    private static ErrorAccumulator[] merge(ErrorAccumulator[] left, ErrorAccumulator[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i].merge(right[i]);
+        }
+        return left;
+    }
+
+    private static ErrorAccumulator[] newAccumulators(int size) {
+        ErrorAccumulator[] accumulators = new ErrorAccumulator[size];
+        for (int i = 0; i < size; i++) {
+            accumulators[i] = new ErrorAccumulator();
+        }
+        return accumulators;
+    }
+
+    /**
+     * 可增长的 double 数组，避免百万级样本装箱
+     */
+    private static class SampleBuffer {
+        private double[] samples = new double[64];
+        private int size;
+
+        void add(double sample) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = sample;
+        }
+    }
+
+    /**
+     * 单个预测器的误差累计
+     */
+    private static class ErrorAccumulator {
+        private long count;
+        private double absErrorSum;
+        private double squaredErrorSum;
+        private final LatencySketch absErrors = new LatencySketch();
+        // 重放结束后的预测值；合并多个服务后没有意义，为 null
+        private Double prediction;
+
+        void add(double error) {
+            double absError = Math.abs(error);
+            count++;
+            absErrorSum += absError;
+            squaredErrorSum += error * error;
+            absErrors.add(absError);
+        }
+
+        void merge(ErrorAccumulator other) {
+            count += other.count;
+            absErrorSum += other.absErrorSum;
+            squaredErrorSum += other.squaredErrorSum;
+            absErrors.merge(other.absErrors);
+            prediction = null;
+        }
+
+        PredictorScore toScore(String name) {
+            PredictorScore score = new PredictorScore();
+            score.setName(name);
+            score.setCount(count);
+            score.setPrediction(prediction);
+            if (count > 0) {
+                score.setMae(absErrorSum / count);
+                score.setRmse(Math.sqrt(squaredErrorSum / count));
+                score.setP95Error(absErrors.quantile(0.95));
+            }
+            return score;
+        }
+    }
+
+    // ==================== 数据类 ====================
+
+    /**
+     * 回测报告类
+     */
+    public static class BacktestReport {
+        private long rows;
+        private int services;
+        private long elapsedMs;
+        private List<PredictorScore> scores;
+
+        public long getRows() {
+            return rows;
+        }
+
+        public void setRows(long rows) {
+            this.rows = rows;
+        }
+
+        public int getServices() {
+            return services;
+        }
+
+        public void setServices(int services) {
+            this.services = services;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public void setElapsedMs(long elapsedMs) {
+            this.elapsedMs = elapsedMs;
+        }
+
+        public List<PredictorScore> getScores() {
+            return scores;
+        }
+
+        public void setScores(List<PredictorScore> scores) {
+            this.scores = scores;
+        }
+    }
+
+    /**
+     * 单个预测器的回测得分（误差单位：秒）
+     */
+    public static class PredictorScore {
+        private String name;
+        private long count;
+        private Double prediction;
+        private double mae;
+        private double rmse;
+        private double p95Error;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        /**
+         * 重放完全部历史后的预测值（秒），回测多个服务时为 null
+         */
+        public Double getPrediction() {
+            return prediction;
+        }
+
+        public void setPrediction(Double prediction) {
+            this.prediction = prediction;
+        }
+
+        public double getMae() {
+            return mae;
+        }
+
+        public void setMae(double mae) {
+            this.mae = mae;
+        }
+
+        public double getRmse() {
+            return rmse;
+        }
+
+        public void setRmse(double rmse) {
+            this.rmse = rmse;
+        }
+
+        public double getP95Error() {
+            return p95Error;
+        }
+
+        public void setP95Error(double p95Error) {
+            this.p95Error = p95Error;
+        }
+    }
+}
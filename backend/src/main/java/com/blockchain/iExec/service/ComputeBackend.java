@@ -0,0 +1,30 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 计算后端接口
+ * 由 ComputeRouter 按预测完成时间选择后端并在后端异常时自动切换。
+ */
+public interface ComputeBackend {
+    
+    /**
+     * 后端名称（用于配置与统计）
+     */
+    String getName();
+    
+    /**
+     * 后端当前是否可用（已启用且配置完整）
+     */
+    boolean isEnabled();
+    
+    /**
+     * 执行任务
+     * 任务到达最终状态（完成或失败，已写入数据库）时 Future 正常结束；
+     * 后端本身出错、任务未被接受时 Future 异常结束，路由层可以换用其他后端重试
+     */
+    CompletableFuture<Void> execute(TaskEntity task, BigInteger serviceId);
+}
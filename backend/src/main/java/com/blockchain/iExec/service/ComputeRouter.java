@@ -0,0 +1,339 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 计算后端路由 - 按预测完成时间选择后端，后端异常时自动切换
+ * 每个后端维护执行中任务数、观测延迟（指数加权）和错误率；
+ * 预测完成时间 = 观测延迟 × (1 + 执行中任务数 / 并行度) / (1 - 错误率)，
+ * 即考虑排队和失败重试后的期望耗时。连续失败或错误率过高的后端进入冷却期，
+ * 冷却期内不参与路由，之后放行请求试探恢复。
+ */
+@Service
+public class ComputeRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ComputeRouter.class);
+
+    // 延迟与错误率的指数加权系数
+    private static final double LATENCY_ALPHA = 0.2;
+    private static final double ERROR_ALPHA = 0.1;
+
+    // 降级条件：连续失败次数，或样本足够时的错误率
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    private static final int MIN_ERROR_RATE_SAMPLES = 10;
+    private static final double MAX_ERROR_RATE = 0.5;
+
+    // 错误率上限，避免预测值发散
+    private static final double ERROR_RATE_CAP = 0.9;
+
+    @Autowired
+    private List<ComputeBackend> backends;
+
+    @Autowired
+    private TaskSchedulerService taskSchedulerService;
+
+    @Autowired
+    private TaskService taskService;
+
+    private final List<String> primaryBackends;
+    private final String fallbackBackend;
+    private final long cooldownMillis;
+    private final int parallelism;
+
+    private final Map<String, BackendHealth> health = new ConcurrentHashMap<>();
+
+    public ComputeRouter(@Value("${compute.routing.backends:arbitrum}") String primaryBackends,
+                         @Value("${compute.routing.fallback:mock}") String fallbackBackend,
+                         @Value("${compute.routing.cooldown:60000}") long cooldownMillis,
+                         @Value("${compute.routing.parallelism:10}") int parallelism) {
+        this.primaryBackends = Arrays.stream(primaryBackends.split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .collect(Collectors.toList());
+        this.fallbackBackend = fallbackBackend.trim();
+        this.cooldownMillis = cooldownMillis;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 将任务路由到预测完成时间最短的后端执行，失败时按顺序尝试下一个后端
+     * @return 任务到达最终状态时结束的 Future
+     */
+    public CompletableFuture<Void> submit(TaskEntity task, BigInteger serviceId) {
+        List<ComputeBackend> plan = routingPlan(task.getServiceId());
+        logger.info("Routing task {} via {}", task.getTaskId(),
+            plan.stream().map(ComputeBackend::getName).collect(Collectors.toList()));
+        return attempt(task, serviceId, plan, 0);
+    }
+
+    private CompletableFuture<Void> attempt(TaskEntity task, BigInteger serviceId, List<ComputeBackend> plan, int index) {
+        String taskId = task.getTaskId();
+        if (index >= plan.size()) {
+            logger.error("No compute backend could accept task {}", taskId);
+            taskService.updateTaskErrorMessage(taskId, "No compute backend available");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ComputeBackend backend = plan.get(index);
+        BackendHealth backendHealth = healthOf(backend.getName());
+        backendHealth.onStart();
+        long start = System.currentTimeMillis();
+
+        CompletableFuture<Void> execution;
+        try {
+            execution = backend.execute(task, serviceId);
+        } catch (Exception e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+
+        return execution.handle((result, error) -> error).thenCompose(error -> {
+            if (error == null) {
+                boolean completed = isCompleted(taskId);
+                backendHealth.onFinish(backend.getName(), completed,
+                    (System.currentTimeMillis() - start) / 1000.0, cooldownMillis);
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            backendHealth.onFinish(backend.getName(), false, -1, cooldownMillis);
+            logger.warn("Backend {} failed task {}: {}, trying next backend",
+                backend.getName(), taskId, cause.getMessage());
+            return attempt(task, serviceId, plan, index + 1);
+        });
+    }
+
+    /**
+     * 路由顺序：未降级的主后端按预测完成时间升序，最后是兜底后端
+     */
+    private List<ComputeBackend> routingPlan(String serviceId) {
+        long now = System.currentTimeMillis();
+        double prior = taskSchedulerService.predictCompletionTime(serviceId);
+
+        List<ComputeBackend> plan = new ArrayList<>();
+        for (ComputeBackend backend : backends) {
+            if (primaryBackends.contains(backend.getName()) && backend.isEnabled()
+                    && !healthOf(backend.getName()).isDegraded(now)) {
+                plan.add(backend);
+            }
+        }
+        plan.sort(Comparator.comparingDouble(backend -> healthOf(backend.getName()).predict(prior, parallelism)));
+
+        for (ComputeBackend backend : backends) {
+            if (backend.getName().equals(fallbackBackend) && backend.isEnabled() && !plan.contains(backend)) {
+                plan.add(backend);
+            }
+        }
+        return plan;
+    }
+
+    private boolean isCompleted(String taskId) {
+        TaskEntity task = taskService.getTaskByTaskId(taskId);
+        return task != null && task.getStatus() == TaskStatus.COMPLETED;
+    }
+
+    private BackendHealth healthOf(String name) {
+        return health.computeIfAbsent(name, key -> new BackendHealth());
+    }
+
+    /**
+     * 获取各后端状态
+     * @param serviceId 用于计算预测完成时间的服务 ID（可选）
+     */
+    public List<BackendStatus> getBackendStatus(String serviceId) {
+        long now = System.currentTimeMillis();
+        double prior = taskSchedulerService.predictCompletionTime(serviceId);
+        List<BackendStatus> statuses = new ArrayList<>();
+        for (ComputeBackend backend : backends) {
+            BackendStatus status = healthOf(backend.getName()).toStatus(now, prior, parallelism);
+            status.setName(backend.getName());
+            status.setEnabled(backend.isEnabled());
+            status.setFallback(backend.getName().equals(fallbackBackend));
+            statuses.add(status);
+        }
+        return statuses;
+    }
+
+    /**
+     * 单个后端的运行状况（由实例锁保护）
+     */
+    private static class BackendHealth {
+        private int inFlight;
+        private long completed;
+        private long failed;
+        private long latencySamples;
+        private double latencySeconds;
+        private double errorRate;
+        private int consecutiveFailures;
+        private long degradedUntil;
+
+        synchronized void onStart() {
+            inFlight++;
+        }
+
+        synchronized void onFinish(String name, boolean success, double seconds, long cooldownMillis) {
+            inFlight--;
+            if (success) {
+                completed++;
+                consecutiveFailures = 0;
+                errorRate *= 1 - ERROR_ALPHA;
+                latencySeconds = latencySamples == 0 ? seconds
+                    : latencySeconds + LATENCY_ALPHA * (seconds - latencySeconds);
+                latencySamples++;
+                return;
+            }
+            failed++;
+            consecutiveFailures++;
+            errorRate = errorRate * (1 - ERROR_ALPHA) + ERROR_ALPHA;
+            boolean tooManyErrors = completed + failed >= MIN_ERROR_RATE_SAMPLES && errorRate >= MAX_ERROR_RATE;
+            if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES || tooManyErrors) {
+                degradedUntil = System.currentTimeMillis() + cooldownMillis;
+                logger.warn("Backend {} degraded for {} ms (consecutive failures: {}, error rate: {})",
+                    name, cooldownMillis, consecutiveFailures, String.format("%.2f", errorRate));
+            }
+        }
+
+        synchronized boolean isDegraded(long now) {
+            return now < degradedUntil;
+        }
+
+        /**
+         * 预测完成时间（秒），没有观测样本时以服务的预测完成时间为先验
+         */
+        synchronized double predict(double priorSeconds, int parallelism) {
+            double latency = latencySamples > 0 ? latencySeconds : priorSeconds;
+            double queueFactor = 1 + (double) inFlight / parallelism;
+            return latency * queueFactor / (1 - Math.min(errorRate, ERROR_RATE_CAP));
+        }
+
+        synchronized BackendStatus toStatus(long now, double priorSeconds, int parallelism) {
+            BackendStatus status = new BackendStatus();
+            status.setDegraded(isDegraded(now));
+            status.setInFlightTasks(inFlight);
+            status.setCompletedTasks(completed);
+            status.setFailedTasks(failed);
+            status.setLatencySeconds(latencySamples > 0 ? latencySeconds : Double.NaN);
+            status.setErrorRate(errorRate);
+            status.setPredictedSeconds(predict(priorSeconds, parallelism));
+            return status;
+        }
+    }
+
+    /**
+     * 后端状态类
+     */
+    public static class BackendStatus {
+        private String name;
+        private boolean enabled;
+        private boolean fallback;
+        private boolean degraded;
+        private int inFlightTasks;
+        private long completedTasks;
+        private long failedTasks;
+        private double latencySeconds;
+        private double errorRate;
+        private double predictedSeconds;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isFallback() {
+            return fallback;
+        }
+
+        public void setFallback(boolean fallback) {
+            this.fallback = fallback;
+        }
+
+        public boolean isDegraded() {
+            return degraded;
+        }
+
+        public void setDegraded(boolean degraded) {
+            this.degraded = degraded;
+        }
+
+        public int getInFlightTasks() {
+            return inFlightTasks;
+        }
+
+        public void setInFlightTasks(int inFlightTasks) {
+            this.inFlightTasks = inFlightTasks;
+        }
+
+        public long getCompletedTasks() {
+            return completedTasks;
+        }
+
+        public void setCompletedTasks(long completedTasks) {
+            this.completedTasks = completedTasks;
+        }
+
+        public long getFailedTasks() {
+            return failedTasks;
+        }
+
+        public void setFailedTasks(long failedTasks) {
+            this.failedTasks = failedTasks;
+        }
+
+        /**
+         * 观测延迟（秒，指数加权），尚无成功样本时为 NaN
+         */
+        public double getLatencySeconds() {
+            return latencySeconds;
+        }
+
+        public void setLatencySeconds(double latencySeconds) {
+            this.latencySeconds = latencySeconds;
+        }
+
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        public void setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+        }
+
+        /**
+         * 考虑排队与失败重试的预测完成时间（秒）
+         */
+        public double getPredictedSeconds() {
+            return predictedSeconds;
+        }
+
+        public void setPredictedSeconds(double predictedSeconds) {
+            this.predictedSeconds = predictedSeconds;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 截止时间服务 - 为任务分配截止时间、做准入判断并统计截止时间达成率
+ * 截止时间 = 创建时间 + 服务 SLA；支付金额达到高级档位的任务 SLA 按比例缩短。
+ */
+@Service
+public class DeadlineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineService.class);
+
+    @Autowired
+    private TaskSchedulerService taskSchedulerService;
+
+    private final long defaultSlaMillis;
+    private final Map<String, Long> serviceSlaMillis;
+    private final BigInteger premiumAmount;
+    private final double premiumFactor;
+
+    private final AtomicLong metCount = new AtomicLong();
+    private final AtomicLong missedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public DeadlineService(@Value("${task.deadline.default-sla:3600000}") long defaultSlaMillis,
+                           @Value("${task.deadline.service-sla:}") String serviceSla,
+                           @Value("${task.deadline.premium-amount:0}") BigInteger premiumAmount,
+                           @Value("${task.deadline.premium-factor:0.5}") double premiumFactor) {
+        this.defaultSlaMillis = defaultSlaMillis;
+        this.serviceSlaMillis = parseServiceSla(serviceSla);
+        this.premiumAmount = premiumAmount;
+        this.premiumFactor = premiumFactor;
+    }
+
+    /**
+     * 计算任务截止时间
+     * @param serviceId 服务 ID
+     * @param paymentAmount 支付金额（wei），未知时为 null
+     * @param createdAt 任务创建时间
+     */
+    public LocalDateTime computeDeadline(String serviceId, BigInteger paymentAmount, LocalDateTime createdAt) {
+        long slaMillis = serviceSlaMillis.getOrDefault(serviceId, defaultSlaMillis);
+        if (isPremium(paymentAmount)) {
+            slaMillis = (long) (slaMillis * premiumFactor);
+        }
+        return createdAt.plus(Duration.ofMillis(slaMillis));
+    }
+
+    /**
+     * 按预测完成时间判断任务能否在截止时间前完成，没有截止时间的任务总是可以
+     */
+    public boolean canMeetDeadline(TaskEntity task) {
+        if (task.getDeadline() == null) {
+            return true;
+        }
+        long predictedSeconds = taskSchedulerService.predictCompletionTime(task.getServiceId());
+        LocalDateTime predictedFinish = LocalDateTime.now().plusSeconds(predictedSeconds);
+        boolean feasible = !predictedFinish.isAfter(task.getDeadline());
+        if (!feasible) {
+            logger.info("Task {} cannot meet deadline {} (predicted finish {})",
+                task.getTaskId(), task.getDeadline(), predictedFinish);
+        }
+        return feasible;
+    }
+
+    /**
+     * 记录任务结束：按时完成计为达成，迟到、失败或超时计为错过
+     */
+    public void recordOutcome(TaskEntity task, LocalDateTime finishedAt) {
+        if (task.getDeadline() == null) {
+            return;
+        }
+        if (task.getStatus() == TaskStatus.COMPLETED && !finishedAt.isAfter(task.getDeadline())) {
+            metCount.incrementAndGet();
+        } else {
+            missedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 记录一次准入拒绝（拒绝的任务同时计入错过）
+     */
+    public void recordRejected() {
+        rejectedCount.incrementAndGet();
+    }
+
+    /**
+     * 获取截止时间统计
+     */
+    public DeadlineStats getStats() {
+        DeadlineStats stats = new DeadlineStats();
+        stats.setMetTasks(metCount.get());
+        stats.setMissedTasks(missedCount.get());
+        stats.setRejectedTasks(rejectedCount.get());
+        long total = stats.getMetTasks() + stats.getMissedTasks();
+        stats.setMissRate(total > 0 ? (double) stats.getMissedTasks() / total : 0);
+        return stats;
+    }
+
+    private boolean isPremium(BigInteger paymentAmount) {
+        return paymentAmount != null && premiumAmount.signum() > 0 && paymentAmount.compareTo(premiumAmount) >= 0;
+    }
+
+    /**
+     * 解析服务 SLA 配置，格式 serviceId:毫秒,serviceId:毫秒
+     */
+    private static Map<String, Long> parseServiceSla(String config) {
+        Map<String, Long> sla = new HashMap<>();
+        if (config == null || config.isBlank()) {
+            return sla;
+        }
+        for (String entry : config.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid task.deadline.service-sla entry: " + entry);
+            }
+            sla.put(parts[0].trim(), Long.parseLong(parts[1].trim()));
+        }
+        return sla;
+    }
+
+    /**
+     * 截止时间统计类
+     */
+    public static class DeadlineStats {
+        private long metTasks;
+        private long missedTasks;
+        private long rejectedTasks;
+        private double missRate;
+
+        public long getMetTasks() {
+            return metTasks;
+        }
+
+        public void setMetTasks(long metTasks) {
+            this.metTasks = metTasks;
+        }
+
+        public long getMissedTasks() {
+            return missedTasks;
+        }
+
+        public void setMissedTasks(long missedTasks) {
+            this.missedTasks = missedTasks;
+        }
+
+        /**
+         * 准入时因预测无法按时完成而拒绝的任务数（已包含在 missedTasks 中）
+         */
+        public long getRejectedTasks() {
+            return rejectedTasks;
+        }
+
+        public void setRejectedTasks(long rejectedTasks) {
+            this.rejectedTasks = rejectedTasks;
+        }
+
+        public double getMissRate() {
+            return missRate;
+        }
+
+        public void setMissRate(double missRate) {
+            this.missRate = missRate;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.repository.TaskArchiveRepository;
+import com.blockchain.iExec.repository.TaskHistoryRepository;
+import com.blockchain.iExec.repository.TaskRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 数据导出服务 - 以 NDJSON（每行一个 JSON 对象）流式导出任务和任务历史
+ * 查询结果以 Stream 逐行读取，每行序列化后立即从持久化上下文中移除，
+ * 堆内存占用与导出行数无关。任务导出包含已归档的任务（先热表、后归档表）。
+ */
+@Service
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    // 输出缓冲区大小
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // 未指定时间范围时的边界
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskArchiveRepository taskArchiveRepository;
+
+    @Autowired
+    private TaskHistoryRepository taskHistoryRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 导出创建时间在 [from, to) 内的任务，包括已归档的任务（归档任务带 archivedAt 字段）
+     * 导出期间被归档的任务只会从热表读到一次，不会遗漏
+     * @param from 起始时间（含），为 null 时不限
+     * @param to 结束时间（不含），为 null 时不限
+     * @param serviceId 服务 ID，为 null 时导出全部服务
+     * @return 导出行数
+     */
+    @Transactional(readOnly = true)
+    public long exportTasks(LocalDateTime from, LocalDateTime to, String serviceId, OutputStream out) throws IOException {
+        LocalDateTime startedAt = LocalDateTime.now();
+        try (Stream<?> hot = taskRepository.streamForExport(orMin(from), orMax(to), serviceId);
+             Stream<?> archived = taskArchiveRepository.streamForExport(orMin(from), orMax(to), serviceId, startedAt)) {
+            return write("tasks", Stream.concat(hot, archived), out);
+        }
+    }
+
+    /**
+     * 导出创建时间在 [from, to) 内的任务历史
+     * @param from 起始时间（含），为 null 时不限
+     * @param to 结束时间（不含），为 null 时不限
+     * @param serviceId 服务 ID，为 null 时导出全部服务
+     * @return 导出行数
+     */
+    @Transactional(readOnly = true)
+    public long exportTaskHistory(LocalDateTime from, LocalDateTime to, String serviceId, OutputStream out) throws IOException {
+        try (Stream<?> rows = taskHistoryRepository.streamForExport(orMin(from), orMax(to), serviceId)) {
+            return write("task_history", rows, out);
+        }
+    }
+
+    private long write(String name, Stream<?> rows, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        // 逐行写出时不要每行 flush，由缓冲区批量写入响应
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        OutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffered)) {
+            // 关闭生成器时不关闭响应流
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            Iterator<?> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object row = iterator.next();
+                writer.writeValue(generator, row);
+                generator.writeRaw('\n');
+                // 已写出的实体不再需要，避免持久化上下文随导出行数增长
+                entityManager.detach(row);
+                count++;
+            }
+        }
+        buffered.flush();
+        logger.info("Exported {} {} rows in {} ms", count, name, System.currentTimeMillis() - start);
+        return count;
+    }
+
+    private static LocalDateTime orMin(LocalDateTime time) {
+        return time != null ? time : MIN_TIME;
+    }
+
+    private static LocalDateTime orMax(LocalDateTime time) {
+        return time != null ? time : MAX_TIME;
+    }
+}
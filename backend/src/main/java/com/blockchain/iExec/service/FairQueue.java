@@ -0,0 +1,135 @@
+package com.blockchain.iExec.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 加权公平队列（Start-time Fair Queuing，每个任务成本为 1）
+ * 每个流（如一个用户）有独立子队列，子队列内部按给定顺序出队；流之间按虚拟完成时间
+ * 轮转，权重为 w 的流每出队一个任务，虚拟时间前进 1/w。因此积压大量任务的流
+ * 只能拿到与权重成比例的份额，不会阻塞其他流。
+ * 非线程安全，由调用方加锁。
+ */
+class FairQueue<T> {
+
+    private final Comparator<T> order;
+    private final Map<String, Flow<T>> flows = new HashMap<>();
+    private final PriorityQueue<Flow<T>> activeFlows = new PriorityQueue<>(
+        Comparator.<Flow<T>>comparingDouble(flow -> flow.finishTag)
+            .thenComparingLong(flow -> flow.activation));
+
+    private double virtualTime;
+    private long activations;
+    private int size;
+
+    FairQueue(Comparator<T> order) {
+        this.order = order;
+    }
+
+    /**
+     * 入队
+     * @param key 流标识
+     * @param weight 流权重（大于 0），在下一次计算虚拟时间时生效
+     */
+    void add(String key, double weight, T item) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        Flow<T> flow = flows.computeIfAbsent(key, k -> new Flow<>(order));
+        flow.weight = weight;
+        flow.items.add(item);
+        size++;
+        if (flow.items.size() == 1) {
+            // 空闲流重新激活：从当前虚拟时间开始，但不能抵消之前已经超前的份额
+            flow.finishTag = Math.max(virtualTime, flow.lastFinish) + 1 / weight;
+            flow.activation = activations++;
+            activeFlows.add(flow);
+        }
+    }
+
+    /**
+     * 取出虚拟完成时间最小的流的队首任务，队列为空时返回 null
+     */
+    T poll() {
+        Flow<T> flow = activeFlows.poll();
+        if (flow == null) {
+            return null;
+        }
+        T item = flow.items.poll();
+        size--;
+        virtualTime = Math.max(virtualTime, flow.finishTag - 1 / flow.weight);
+        flow.lastFinish = flow.finishTag;
+        if (!flow.items.isEmpty()) {
+            flow.finishTag += 1 / flow.weight;
+            activeFlows.add(flow);
+        }
+        return item;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 当前有积压任务的流数量
+     */
+    int activeFlowCount() {
+        return activeFlows.size();
+    }
+
+    /**
+     * 所有排队任务的快照（无序）
+     */
+    List<T> items() {
+        List<T> items = new ArrayList<>(size);
+        for (Flow<T> flow : activeFlows) {
+            items.addAll(flow.items);
+        }
+        return items;
+    }
+
+    /**
+     * 任务的排序字段变化后重建各子队列，流之间的虚拟时间不变
+     */
+    void reorder() {
+        for (Flow<T> flow : activeFlows) {
+            List<T> items = new ArrayList<>(flow.items);
+            flow.items.clear();
+            flow.items.addAll(items);
+        }
+    }
+
+    /**
+     * 清理已空闲且没有超前份额需要记住的流，防止流表无限增长
+     */
+    void compact() {
+        Iterator<Flow<T>> iterator = flows.values().iterator();
+        while (iterator.hasNext()) {
+            Flow<T> flow = iterator.next();
+            if (flow.items.isEmpty() && flow.lastFinish <= virtualTime) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Flow<T> {
+        private final PriorityQueue<T> items;
+        private double weight = 1;
+        private double finishTag;
+        private double lastFinish;
+        private long activation;
+
+        Flow(Comparator<T> order) {
+            this.items = new PriorityQueue<>(order);
+        }
+    }
+}
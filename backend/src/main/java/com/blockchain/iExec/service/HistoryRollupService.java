@@ -0,0 +1,567 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskHistoryEntity;
+import com.blockchain.iExec.model.TaskHistoryRollupEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskHistoryRepository;
+import com.blockchain.iExec.repository.TaskHistoryRollupRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * 任务历史汇总服务 - 按服务维护分钟级和小时级汇总（任务数、完成 / 失败数、完成时间的和 / 最小 / 最大与分位数草图）
+ * 每写入一条任务历史，在对应的分钟桶和小时桶上增量合并；同一时间桶的并发合并由行锁串行化。
+ * 每条历史记录上的 rolledUp 标记与汇总行在同一事务中更新，未能增量汇总的记录由 reconcile 补齐
+ * （启动时补齐上一个进程留下的记录，运行中定时补齐增量汇总失败的记录）。
+ * 分钟桶只保留最近一段时间，小时桶长期保留，分析查询读取汇总行而不扫描原始历史。
+ */
+@Service
+public class HistoryRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryRollupService.class);
+
+    public static final int MINUTE = 60;
+    public static final int HOUR = 3600;
+
+    // 重建时内存中最多累积的时间桶数，超过后先写入数据库
+    private static final int REBUILD_FLUSH_SIZE = 10_000;
+
+    @Autowired
+    private TaskHistoryRollupRepository rollupRepository;
+
+    @Autowired
+    private TaskHistoryRepository taskHistoryRepository;
+
+    @Autowired
+    private ResponseCacheService responseCacheService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final long minuteRetentionMillis;
+
+    // 上一次定时补齐时观察到的历史表最大 ID，本次补齐以它为上限
+    private volatile Long lastObservedMaxId;
+
+    public HistoryRollupService(PlatformTransactionManager transactionManager,
+                                @Value("${task.rollup.minute-retention:604800000}") long minuteRetentionMillis) {
+        // 每批时间桶单独提交（补齐时不加入外层的只读流式事务）
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.minuteRetentionMillis = minuteRetentionMillis;
+    }
+
+    /**
+     * 当前历史表的最大 ID，没有记录时返回 null
+     * RecoveryService 在定时任务启动前读取，作为启动补齐的范围上限：不超过它的记录都由上一个进程写入
+     */
+    public Long getHistoryHighWaterMark() {
+        return taskHistoryRepository.findMaxId();
+    }
+
+    /**
+     * 合并每个服务全部小时级时间桶的完成时间草图
+     * 小时级汇总长期保留，合并结果覆盖全部已汇总的历史（包括已按保留期清理的记录），
+     * 用于启动时重建服务的分位数草图；尚未汇总的记录不在其中
+     * @return 服务 ID -> 合并后的草图
+     */
+    public Map<String, LatencySketch> mergeServiceSketches() {
+        return readOnlyTransactionTemplate.execute(status -> {
+            Map<String, LatencySketch> sketches = new HashMap<>();
+            try (Stream<Object[]> stream = rollupRepository.streamSketches(HOUR)) {
+                Iterator<Object[]> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    Object[] row = iterator.next();
+                    sketches.computeIfAbsent((String) row[0], id -> new LatencySketch())
+                        .merge(LatencySketch.fromBytes((byte[]) row[1]));
+                }
+            }
+            return sketches;
+        });
+    }
+
+    /**
+     * 将 ID 不超过 maxId、尚未汇总的历史记录合并到汇总表（如汇总表上线前的历史、进程退出时未完成的增量汇总）
+     * 是否已汇总记录在每条历史上，与汇总行在同一事务中更新，因此与 record 交错执行也不会重复或遗漏。
+     * 调用方需保证范围内的记录没有正在进行的 record（如只处理上一个进程写入的记录）：
+     * 批量补齐按 ID 区间标记，不逐条加锁。100 万行历史约需 1-2 分钟。
+     * @return 合并的记录数
+     */
+    public long reconcile(long maxId) {
+        try {
+            long start = System.currentTimeMillis();
+            LocalDateTime minuteCutoff = minuteCutoff();
+            long rows = readOnlyTransactionTemplate.execute(status -> {
+                Map<BucketKey, Delta> pending = new HashMap<>();
+                long count = 0;
+                // 已写入汇总表并标记的 ID 区间为 (flushedId, lastId]
+                long flushedId = 0;
+                long lastId = 0;
+                try (Stream<Object[]> stream = taskHistoryRepository.streamForRollup(maxId)) {
+                    Iterator<Object[]> iterator = stream.iterator();
+                    while (iterator.hasNext()) {
+                        Object[] row = iterator.next();
+                        lastId = (Long) row[0];
+                        String serviceId = (String) row[1];
+                        LocalDateTime time = bucketTime((LocalDateTime) row[4], (LocalDateTime) row[5]);
+                        Delta delta = Delta.of((TaskStatus) row[2], (Long) row[3]);
+                        pending.computeIfAbsent(new BucketKey(serviceId, HOUR, truncate(time, HOUR)), key -> new Delta())
+                            .merge(delta);
+                        if (!time.isBefore(minuteCutoff)) {
+                            pending.computeIfAbsent(new BucketKey(serviceId, MINUTE, truncate(time, MINUTE)), key -> new Delta())
+                                .merge(delta);
+                        }
+                        count++;
+                        if (pending.size() >= REBUILD_FLUSH_SIZE) {
+                            flush(pending, flushedId, lastId);
+                            flushedId = lastId;
+                        }
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    flush(pending, flushedId, lastId);
+                }
+                return count;
+            });
+            if (rows > 0) {
+                logger.info("Reconciled {} task history rows into rollups in {} ms", rows, System.currentTimeMillis() - start);
+            }
+            return rows;
+        } catch (Exception e) {
+            logger.error("Error reconciling task history rollups", e);
+            return 0;
+        }
+    }
+
+    /**
+     * 记录一条新写入的任务历史，增量更新其所在的分钟桶和小时桶
+     * 已保存的记录同时标记为已汇总；已被补齐过的记录不再重复合并
+     */
+    public void record(TaskHistoryEntity history) {
+        try {
+            LocalDateTime time = bucketTime(history.getCompletedAt(), history.getCreatedAt());
+            Delta delta = Delta.of(history.getStatus(), history.getActualTime());
+            Map<BucketKey, Delta> buckets = new HashMap<>();
+            buckets.put(new BucketKey(history.getServiceId(), MINUTE, truncate(time, MINUTE)), delta);
+            buckets.put(new BucketKey(history.getServiceId(), HOUR, truncate(time, HOUR)), delta);
+            write(buckets, () -> history.getId() == null || taskHistoryRepository.markRolledUp(history.getId()) > 0);
+        } catch (Exception e) {
+            logger.error("Error updating rollups for task: {}", history.getTaskId(), e);
+        }
+    }
+
+    /**
+     * 定时补齐增量汇总失败（record 出错、进程在写入历史后崩溃前）的历史记录
+     * 以上一轮观察到的最大 ID 为上限：范围内的记录至少在一个间隔之前写入，其增量汇总早已结束，
+     * 批量补齐不会与进行中的 record 交错；新写入的记录留到下一轮。
+     */
+    @Scheduled(fixedDelayString = "${task.rollup.reconcile-interval:300000}",
+               initialDelayString = "${task.rollup.reconcile-interval:300000}")
+    public void reconcilePending() {
+        try {
+            Long bound = lastObservedMaxId;
+            lastObservedMaxId = taskHistoryRepository.findMaxId();
+            if (bound != null) {
+                reconcile(bound);
+            }
+        } catch (Exception e) {
+            logger.error("Error reconciling pending task history rollups", e);
+        }
+    }
+
+    /**
+     * 定时删除超过保留期的分钟桶
+     */
+    @Scheduled(fixedDelayString = "${task.rollup.purge-interval:3600000}")
+    public void purgeMinuteBuckets() {
+        try {
+            int deleted = rollupRepository.deleteBucketsBefore(MINUTE, minuteCutoff());
+            if (deleted > 0) {
+                logger.info("Purged {} minute rollup buckets", deleted);
+            }
+        } catch (Exception e) {
+            logger.error("Error purging minute rollup buckets", e);
+        }
+    }
+
+    /**
+     * 指定服务的平均完成时间（秒），没有样本时返回 null
+     */
+    public Double getAverageCompletionTime(String serviceId) {
+        List<Object[]> result = rollupRepository.sumLatency(serviceId, HOUR);
+        if (result.isEmpty() || result.get(0)[1] == null || ((Number) result.get(0)[1]).longValue() == 0) {
+            return null;
+        }
+        return ((Number) result.get(0)[0]).doubleValue() / ((Number) result.get(0)[1]).longValue();
+    }
+
+    /**
+     * 全部服务的任务总数、完成数、失败数
+     */
+    public RollupTotals getTotals() {
+        List<Object[]> result = rollupRepository.sumCounts(HOUR);
+        RollupTotals totals = new RollupTotals();
+        if (!result.isEmpty()) {
+            Object[] row = result.get(0);
+            totals.setTaskCount(longValue(row[0]));
+            totals.setSuccessCount(longValue(row[1]));
+            totals.setFailureCount(longValue(row[2]));
+        }
+        return totals;
+    }
+
+    private static long longValue(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+
+    /**
+     * 查询指定服务在 [from, to) 内的汇总序列
+     * @param bucketSeconds MINUTE 或 HOUR
+     */
+    public List<RollupPoint> getRollups(String serviceId, int bucketSeconds, LocalDateTime from, LocalDateTime to) {
+        List<RollupPoint> points = new ArrayList<>();
+        for (TaskHistoryRollupEntity bucket : rollupRepository.findBuckets(serviceId, bucketSeconds, from, to)) {
+            points.add(RollupPoint.of(bucket));
+        }
+        return points;
+    }
+
+    // 合并一批时间桶，并在同一事务中把 (fromId, toId] 内的历史记录标记为已汇总
+    private void flush(Map<BucketKey, Delta> pending, long fromId, long toId) {
+        write(pending, () -> {
+            taskHistoryRepository.markRolledUp(fromId, toId);
+            return true;
+        });
+        pending.clear();
+    }
+
+    /**
+     * 在一个事务中先执行 claim（标记历史记录），成功后合并各时间桶；claim 返回 false 时不做任何修改
+     */
+    private void write(Map<BucketKey, Delta> deltas, BooleanSupplier claim) {
+        TransactionCallbackWithoutResult callback = new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                if (!claim.getAsBoolean()) {
+                    return;
+                }
+                for (Map.Entry<BucketKey, Delta> entry : deltas.entrySet()) {
+                    apply(entry.getKey(), entry.getValue());
+                }
+            }
+        };
+        try {
+            transactionTemplate.execute(callback);
+        } catch (DataIntegrityViolationException e) {
+            // 其他线程 / 节点同时创建了某个时间桶，整个事务已回滚，重试时在已有行上合并
+            transactionTemplate.execute(callback);
+        }
+        // 提交后再使响应缓存失效：失效与提交之间的查询不会把旧的汇总结果重新缓存下来
+        responseCacheService.invalidate();
+    }
+
+    private void apply(BucketKey key, Delta delta) {
+        TaskHistoryRollupEntity bucket = rollupRepository.findBucketForUpdate(key.serviceId, key.bucketSeconds, key.bucketStart);
+        boolean created = bucket == null;
+        if (created) {
+            bucket = new TaskHistoryRollupEntity();
+            bucket.setServiceId(key.serviceId);
+            bucket.setBucketSeconds(key.bucketSeconds);
+            bucket.setBucketStart(key.bucketStart);
+        }
+        delta.applyTo(bucket);
+        if (created) {
+            rollupRepository.save(bucket);
+        }
+        // 一个事务中可能合并上万个时间桶：写入后立即分离，避免持久化上下文越来越大、每次查询前的脏检查越来越慢
+        entityManager.flush();
+        entityManager.detach(bucket);
+    }
+
+    private LocalDateTime minuteCutoff() {
+        return LocalDateTime.now().minus(Duration.ofMillis(minuteRetentionMillis));
+    }
+
+    // 按任务结束时间归桶，缺失时使用创建时间
+    private static LocalDateTime bucketTime(LocalDateTime completedAt, LocalDateTime createdAt) {
+        if (completedAt != null) {
+            return completedAt;
+        }
+        return createdAt != null ? createdAt : LocalDateTime.now();
+    }
+
+    private static LocalDateTime truncate(LocalDateTime time, int bucketSeconds) {
+        return time.truncatedTo(bucketSeconds == HOUR ? ChronoUnit.HOURS : ChronoUnit.MINUTES);
+    }
+
+    private static final class BucketKey {
+        private final String serviceId;
+        private final int bucketSeconds;
+        private final LocalDateTime bucketStart;
+
+        BucketKey(String serviceId, int bucketSeconds, LocalDateTime bucketStart) {
+            this.serviceId = serviceId;
+            this.bucketSeconds = bucketSeconds;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return bucketSeconds == other.bucketSeconds && serviceId.equals(other.serviceId)
+                && bucketStart.equals(other.bucketStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serviceId, bucketSeconds, bucketStart);
+        }
+    }
+
+    /**
+     * 待合并到时间桶的增量
+     */
+    private static final class Delta {
+        private long taskCount;
+        private long successCount;
+        private long failureCount;
+        private LatencySketch sketch;
+
+        static Delta of(TaskStatus status, Long actualTime) {
+            Delta delta = new Delta();
+            delta.taskCount = 1;
+            if (status == TaskStatus.COMPLETED) {
+                delta.successCount = 1;
+                // 与预测器一致，只统计有效的完成时间
+                if (actualTime != null && actualTime > 0) {
+                    delta.sketch = new LatencySketch();
+                    delta.sketch.add(actualTime);
+                }
+            } else if (status == TaskStatus.FAILED) {
+                delta.failureCount = 1;
+            }
+            return delta;
+        }
+
+        void merge(Delta other) {
+            taskCount += other.taskCount;
+            successCount += other.successCount;
+            failureCount += other.failureCount;
+            if (other.sketch != null) {
+                if (sketch == null) {
+                    sketch = new LatencySketch();
+                }
+                sketch.merge(other.sketch);
+            }
+        }
+
+        void applyTo(TaskHistoryRollupEntity bucket) {
+            bucket.setTaskCount(bucket.getTaskCount() + taskCount);
+            bucket.setSuccessCount(bucket.getSuccessCount() + successCount);
+            bucket.setFailureCount(bucket.getFailureCount() + failureCount);
+            if (sketch == null || sketch.getCount() == 0) {
+                return;
+            }
+            bucket.setLatencyCount(bucket.getLatencyCount() + sketch.getCount());
+            bucket.setLatencySum(bucket.getLatencySum() + sketch.getSum());
+            bucket.setLatencyMin(bucket.getLatencyMin() != null ? Math.min(bucket.getLatencyMin(), sketch.getMin()) : sketch.getMin());
+            bucket.setLatencyMax(bucket.getLatencyMax() != null ? Math.max(bucket.getLatencyMax(), sketch.getMax()) : sketch.getMax());
+            LatencySketch merged = bucket.getLatencySketch() != null
+                ? LatencySketch.fromBytes(bucket.getLatencySketch()) : new LatencySketch();
+            merged.merge(sketch);
+            bucket.setLatencySketch(merged.toBytes());
+        }
+    }
+
+    /**
+     * 全部服务、全部时间桶的计数合计
+     */
+    public static class RollupTotals {
+        private long taskCount;
+        private long successCount;
+        private long failureCount;
+
+        public long getTaskCount() {
+            return taskCount;
+        }
+
+        public void setTaskCount(long taskCount) {
+            this.taskCount = taskCount;
+        }
+
+        public long getSuccessCount() {
+            return successCount;
+        }
+
+        public void setSuccessCount(long successCount) {
+            this.successCount = successCount;
+        }
+
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        public void setFailureCount(long failureCount) {
+            this.failureCount = failureCount;
+        }
+    }
+
+    /**
+     * 单个时间桶的汇总结果
+     */
+    public static class RollupPoint {
+        private LocalDateTime bucketStart;
+        private long taskCount;
+        private long successCount;
+        private long failureCount;
+        private long latencyCount;
+        private double meanLatency;
+        private double minLatency;
+        private double maxLatency;
+        private double p50Latency;
+        private double p95Latency;
+        private double p99Latency;
+
+        static RollupPoint of(TaskHistoryRollupEntity bucket) {
+            RollupPoint point = new RollupPoint();
+            point.setBucketStart(bucket.getBucketStart());
+            point.setTaskCount(bucket.getTaskCount());
+            point.setSuccessCount(bucket.getSuccessCount());
+            point.setFailureCount(bucket.getFailureCount());
+            point.setLatencyCount(bucket.getLatencyCount());
+            // 均值、最小、最大值取精确存储的列，只有分位数来自草图
+            long count = bucket.getLatencyCount() != null ? bucket.getLatencyCount() : 0;
+            point.setMeanLatency(count > 0 && bucket.getLatencySum() != null ? bucket.getLatencySum() / count : Double.NaN);
+            point.setMinLatency(count > 0 && bucket.getLatencyMin() != null ? bucket.getLatencyMin() : Double.NaN);
+            point.setMaxLatency(count > 0 && bucket.getLatencyMax() != null ? bucket.getLatencyMax() : Double.NaN);
+            LatencySketch sketch = bucket.getLatencySketch() != null
+                ? LatencySketch.fromBytes(bucket.getLatencySketch()) : new LatencySketch();
+            point.setP50Latency(sketch.quantile(0.5));
+            point.setP95Latency(sketch.quantile(0.95));
+            point.setP99Latency(sketch.quantile(0.99));
+            return point;
+        }
+
+        public LocalDateTime getBucketStart() {
+            return bucketStart;
+        }
+
+        public void setBucketStart(LocalDateTime bucketStart) {
+            this.bucketStart = bucketStart;
+        }
+
+        public long getTaskCount() {
+            return taskCount;
+        }
+
+        public void setTaskCount(long taskCount) {
+            this.taskCount = taskCount;
+        }
+
+        public long getSuccessCount() {
+            return successCount;
+        }
+
+        public void setSuccessCount(long successCount) {
+            this.successCount = successCount;
+        }
+
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        public void setFailureCount(long failureCount) {
+            this.failureCount = failureCount;
+        }
+
+        public long getLatencyCount() {
+            return latencyCount;
+        }
+
+        public void setLatencyCount(long latencyCount) {
+            this.latencyCount = latencyCount;
+        }
+
+        /**
+         * 以下完成时间统计单位为秒，没有样本时为 NaN
+         */
+        public double getMeanLatency() {
+            return meanLatency;
+        }
+
+        public void setMeanLatency(double meanLatency) {
+            this.meanLatency = meanLatency;
+        }
+
+        public double getMinLatency() {
+            return minLatency;
+        }
+
+        public void setMinLatency(double minLatency) {
+            this.minLatency = minLatency;
+        }
+
+        public double getMaxLatency() {
+            return maxLatency;
+        }
+
+        public void setMaxLatency(double maxLatency) {
+            this.maxLatency = maxLatency;
+        }
+
+        public double getP50Latency() {
+            return p50Latency;
+        }
+
+        public void setP50Latency(double p50Latency) {
+            this.p50Latency = p50Latency;
+        }
+
+        public double getP95Latency() {
+            return p95Latency;
+        }
+
+        public void setP95Latency(double p95Latency) {
+            this.p95Latency = p95Latency;
+        }
+
+        public double getP99Latency() {
+            return p99Latency;
+        }
+
+        public void setP99Latency(double p99Latency) {
+            this.p99Latency = p99Latency;
+        }
+    }
+}
@@ -370,6 +370,7 @@ public class IexecCliService {
         private String dealId;
         private String resultStorage;  // ipfs
         private String resultLocation;  // IPFS Hash
+        private String resourceUsage;  // 实际资源使用（JSON 格式，可能为空）
         
         // Getters and Setters
         public String getTaskId() {
@@ -412,6 +413,14 @@ public class IexecCliService {
             this.resultLocation = resultLocation;
         }
         
+        public String getResourceUsage() {
+            return resourceUsage;
+        }
+        
+        public void setResourceUsage(String resourceUsage) {
+            this.resourceUsage = resourceUsage;
+        }
+        
         public boolean isCompleted() {
             return "COMPLETED".equalsIgnoreCase(status);
         }
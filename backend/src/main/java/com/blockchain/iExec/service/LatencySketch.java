@@ -0,0 +1,358 @@
+package com.blockchain.iExec.service;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * 延迟分位数草图（DDSketch 风格的对数分桶直方图）
+ * 每个桶覆盖 [γ^(i-1), γ^i)，分位数相对误差不超过 relativeAccuracy；
+ * 桶数超过上限时合并最低的桶，内存有界。相同精度的草图可直接按桶相加合并，
+ * 因此可以跨节点、跨时间窗口汇总。
+ * JSON 导出（GET /monitor/sketch/{serviceId}）可通过 fromJson 还原后合并；mean、bucketCount 为派生值，还原时忽略。
+ */
+@JsonIgnoreProperties(value = {"mean", "bucketCount"}, allowGetters = true)
+public class LatencySketch {
+
+    // 默认相对误差 1%
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    // 默认最大桶数（1% 精度下可覆盖 1 秒到数年）
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBuckets;
+
+    // counts[k] 对应桶号 offset + k
+    private long[] counts = new long[0];
+    private int offset;
+
+    // 小于等于 0 的样本
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public LatencySketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    public LatencySketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * 记录一个样本
+     */
+    public synchronized void add(double value) {
+        add(value, 1);
+    }
+
+    private void add(double value, long weight) {
+        if (value > 0) {
+            int slot = slotFor((int) Math.ceil(Math.log(value) / logGamma));
+            counts[slot] += weight;
+        } else {
+            zeroCount += weight;
+        }
+        count += weight;
+        sum += value * weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * 查询分位数，无样本时返回 NaN
+     * @param q 分位点 [0, 1]
+     */
+    public synchronized double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        // 端点直接返回精确的最小/最大值
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+
+        double rank = q * (count - 1);
+        long cumulative = zeroCount;
+        if (cumulative > rank) {
+            return Math.max(min, 0);
+        }
+        for (int k = 0; k < counts.length; k++) {
+            cumulative += counts[k];
+            if (cumulative > rank) {
+                double value = 2 * Math.pow(gamma, offset + k) / (gamma + 1);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 将另一个草图合并进来（要求相同精度）
+     */
+    public void merge(LatencySketch other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge a sketch into itself");
+        }
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracy: "
+                + relativeAccuracy + " vs " + other.relativeAccuracy);
+        }
+        LatencySketch snapshot = other.copy();
+        synchronized (this) {
+            for (int k = 0; k < snapshot.counts.length; k++) {
+                if (snapshot.counts[k] > 0) {
+                    int slot = slotFor(snapshot.offset + k);
+                    counts[slot] += snapshot.counts[k];
+                }
+            }
+            zeroCount += snapshot.zeroCount;
+            count += snapshot.count;
+            sum += snapshot.sum;
+            min = Math.min(min, snapshot.min);
+            max = Math.max(max, snapshot.max);
+        }
+    }
+
+    /**
+     * 复制一份独立的草图
+     */
+    public synchronized LatencySketch copy() {
+        LatencySketch copy = new LatencySketch(relativeAccuracy, maxBuckets);
+        copy.counts = counts.clone();
+        copy.offset = offset;
+        copy.zeroCount = zeroCount;
+        copy.count = count;
+        copy.sum = sum;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    /**
+     * 序列化为紧凑的二进制格式（用于持久化），只保存非零桶区间
+     */
+    public synchronized byte[] toBytes() {
+        int first = 0;
+        int last = counts.length - 1;
+        while (first <= last && counts[first] == 0) {
+            first++;
+        }
+        while (last >= first && counts[last] == 0) {
+            last--;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeDouble(relativeAccuracy);
+            out.writeInt(maxBuckets);
+            out.writeLong(zeroCount);
+            out.writeLong(count);
+            out.writeDouble(sum);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            out.writeInt(offset + first);
+            out.writeInt(last - first + 1);
+            for (int k = first; k <= last; k++) {
+                out.writeLong(counts[k]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从 toBytes 的结果恢复草图
+     */
+    public static LatencySketch fromBytes(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            LatencySketch sketch = new LatencySketch(in.readDouble(), in.readInt());
+            sketch.zeroCount = in.readLong();
+            sketch.count = in.readLong();
+            sketch.sum = in.readDouble();
+            sketch.min = in.readDouble();
+            sketch.max = in.readDouble();
+            sketch.offset = in.readInt();
+            long[] counts = new long[in.readInt()];
+            for (int k = 0; k < counts.length; k++) {
+                counts[k] = in.readLong();
+            }
+            sketch.counts = counts;
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid latency sketch data", e);
+        }
+    }
+
+    /**
+     * 从 JSON 导出还原草图（Jackson 反序列化入口）
+     * 缺少 maxBuckets 时使用默认值；空草图的 min / max 导出为 NaN，还原为初始值
+     */
+    @JsonCreator
+    public static LatencySketch fromJson(@JsonProperty("relativeAccuracy") double relativeAccuracy,
+                                         @JsonProperty("maxBuckets") Integer maxBuckets,
+                                         @JsonProperty("zeroCount") long zeroCount,
+                                         @JsonProperty("count") long count,
+                                         @JsonProperty("sum") double sum,
+                                         @JsonProperty("min") double min,
+                                         @JsonProperty("max") double max,
+                                         @JsonProperty("offset") int offset,
+                                         @JsonProperty("counts") long[] counts) {
+        LatencySketch sketch = new LatencySketch(relativeAccuracy, maxBuckets != null ? maxBuckets : DEFAULT_MAX_BUCKETS);
+        long[] buckets = counts != null ? counts : new long[0];
+        if (buckets.length > sketch.maxBuckets) {
+            throw new IllegalArgumentException("Latency sketch has " + buckets.length
+                + " buckets, more than maxBuckets " + sketch.maxBuckets);
+        }
+        long total = zeroCount;
+        for (long bucket : buckets) {
+            if (bucket < 0) {
+                throw new IllegalArgumentException("Latency sketch bucket count must not be negative: " + bucket);
+            }
+            total += bucket;
+        }
+        if (total != count) {
+            throw new IllegalArgumentException("Latency sketch count " + count + " does not match bucket total " + total);
+        }
+        sketch.counts = buckets.clone();
+        sketch.offset = offset;
+        sketch.zeroCount = zeroCount;
+        sketch.count = count;
+        sketch.sum = sum;
+        if (count > 0) {
+            sketch.min = min;
+            sketch.max = max;
+        }
+        return sketch;
+    }
+
+    /**
+     * 返回桶号对应的数组下标，必要时扩展或折叠数组
+     */
+    private int slotFor(int index) {
+        if (counts.length == 0) {
+            counts = new long[8];
+            offset = index;
+            return 0;
+        }
+        if (index < offset) {
+            int newOffset = index;
+            int span = offset + counts.length - newOffset;
+            if (span > maxBuckets) {
+                // 超出上限时低端样本折叠到允许的最低桶
+                newOffset = offset + counts.length - maxBuckets;
+                if (index < newOffset) {
+                    index = newOffset;
+                }
+            }
+            if (newOffset < offset) {
+                long[] grown = new long[offset + counts.length - newOffset];
+                System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+                counts = grown;
+                offset = newOffset;
+            }
+        } else if (index >= offset + counts.length) {
+            int needed = index - offset + 1;
+            if (needed > maxBuckets) {
+                collapseLowest(index - maxBuckets + 1);
+                needed = index - offset + 1;
+            }
+            if (needed > counts.length) {
+                counts = Arrays.copyOf(counts, Math.min(maxBuckets, Math.max(needed, counts.length * 2)));
+            }
+        }
+        return index - offset;
+    }
+
+    /**
+     * 把桶号小于 newOffset 的样本全部折叠到 newOffset 桶
+     */
+    private void collapseLowest(int newOffset) {
+        int shift = newOffset - offset;
+        long folded = 0;
+        for (int k = 0; k < Math.min(shift, counts.length); k++) {
+            folded += counts[k];
+        }
+        long[] shifted = new long[counts.length];
+        if (shift < counts.length) {
+            System.arraycopy(counts, shift, shifted, 0, counts.length - shift);
+        }
+        shifted[0] += folded;
+        counts = shifted;
+        offset = newOffset;
+    }
+
+    // Getters（用于导出，便于其他节点合并）
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public int getMaxBuckets() {
+        return maxBuckets;
+    }
+
+    public synchronized double getSum() {
+        return sum;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMean() {
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    public synchronized double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public synchronized double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    public synchronized int getOffset() {
+        return offset;
+    }
+
+    public synchronized long getZeroCount() {
+        return zeroCount;
+    }
+
+    public synchronized long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * 当前占用的桶数
+     */
+    public synchronized int getBucketCount() {
+        return counts.length;
+    }
+}
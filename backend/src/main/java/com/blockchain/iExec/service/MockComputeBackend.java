@@ -0,0 +1,35 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 模拟计算后端（本地模拟计算并回写本地链，总是可用）
+ */
+@Component
+public class MockComputeBackend implements ComputeBackend {
+    
+    public static final String NAME = "mock";
+    
+    @Autowired
+    private ArbitrumTaskService arbitrumTaskService;
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+    
+    @Override
+    public CompletableFuture<Void> execute(TaskEntity task, BigInteger serviceId) {
+        return arbitrumTaskService.mockComputeTask(task.getTaskId(), serviceId);
+    }
+}
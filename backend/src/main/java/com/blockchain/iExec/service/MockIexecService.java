@@ -3,12 +3,13 @@ package com.blockchain.iExec.service;
 import com.blockchain.iExec.service.IexecCliService.IexecTaskStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
-import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 模拟 iExec 服务 - 用于测试网开发
@@ -19,9 +20,14 @@ public class MockIexecService {
     
     private static final Logger logger = LoggerFactory.getLogger(MockIexecService.class);
     
-    // 模拟任务状态存储
-    private final Map<String, MockTask> mockTasks = new ConcurrentHashMap<>();
-    private final Random random = new Random();
+    // 模拟任务状态存储（紧凑列式存储，按过期时间分桶回收）
+    private final MockTaskStore mockTasks;
+    
+    public MockIexecService(
+            @Value("${iexec.mock.retention:3600000}") long retentionMillis,
+            @Value("${iexec.mock.expiry-bucket:60000}") long bucketMillis) {
+        this.mockTasks = new MockTaskStore(retentionMillis, bucketMillis);
+    }
     
     /**
      * 创建模拟任务
@@ -30,21 +36,12 @@ public class MockIexecService {
      * @return 模拟的 iExec 任务 ID
      */
     public String createMockTask(String userAddress, String params) {
-        String mockTaskId = "0x" + UUID.randomUUID().toString().replace("-", "") + 
-                           String.format("%032d", random.nextInt(1000));
-        
-        MockTask task = new MockTask();
-        task.setTaskId(mockTaskId);
-        task.setUserAddress(userAddress);
-        task.setParams(params);
-        task.setStatus("ACTIVE");
-        task.setCreatedTime(System.currentTimeMillis());
+        long createdTime = System.currentTimeMillis();
         
         // 模拟任务执行时间：30-120秒
-        long executionTime = 30000 + random.nextInt(90000);
-        task.setCompletionTime(task.getCreatedTime() + executionTime);
+        long executionTime = 30000 + ThreadLocalRandom.current().nextInt(90000);
         
-        mockTasks.put(mockTaskId, task);
+        String mockTaskId = mockTasks.create(userAddress, params, createdTime, createdTime + executionTime);
         
         logger.info("✅ [MOCK] Created mock iExec task: {} for user: {}", mockTaskId, userAddress);
         logger.info("    📝 Params: {}", params);
@@ -74,7 +71,15 @@ public class MockIexecService {
         long elapsedTime = currentTime - mockTask.getCreatedTime();
         
         // 模拟任务生命周期
-        if (currentTime < mockTask.getCompletionTime()) {
+        if (mockTask.isCompleted()) {
+            // 已结束的任务保持最终状态
+            status.setStatus(mockTask.getStatus());
+            if (!"FAILED".equals(mockTask.getStatus())) {
+                status.setResultStorage("ipfs");
+                status.setResultLocation(mockTask.getResultHash());
+            }
+            return status;
+        } else if (currentTime < mockTask.getCompletionTime()) {
             // 任务运行中
             if (elapsedTime < 10000) {
                 status.setStatus("ACTIVE");
@@ -96,7 +101,7 @@ public class MockIexecService {
         } else {
             // 任务完成
             // 90% 成功率，10% 失败率（更真实的模拟）
-            boolean success = random.nextInt(100) < 90 || mockTask.isCompleted();
+            boolean success = ThreadLocalRandom.current().nextInt(100) < 90;
             
             if (success) {
                 status.setStatus("COMPLETED");
@@ -104,9 +109,10 @@ public class MockIexecService {
                 mockTask.setCompleted(true);
                 
                 // 模拟结果
-                String resultHash = "Qm" + UUID.randomUUID().toString().replace("-", "").substring(0, 44);
+                String resultHash = newResultHash();
                 status.setResultStorage("ipfs");
                 status.setResultLocation(resultHash);
+                status.setResourceUsage(simulateResourceUsage());
                 mockTask.setResultHash(resultHash);
                 
                 logger.info("✅ [MOCK] Task {} COMPLETED", taskId.substring(0, 10) + "...");
@@ -121,6 +127,11 @@ public class MockIexecService {
             }
         }
         
+        if (!mockTasks.update(mockTask)) {
+            // 并发的查询已先结束了该任务：以先写入的结果为准，不会把已完成的任务改判为失败
+            MockTask stored = mockTasks.get(taskId);
+            return stored != null && stored.isCompleted() ? getMockTaskStatus(taskId) : status;
+        }
         return status;
     }
     
@@ -136,35 +147,74 @@ public class MockIexecService {
             return;
         }
         
+        if (mockTask.isCompleted()) {
+            logger.info("Mock task {} already finished as {}", taskId, mockTask.getStatus());
+            return;
+        }
+        
         mockTask.setCompletionTime(System.currentTimeMillis());
         mockTask.setCompleted(true);
         
         if (success) {
             mockTask.setStatus("COMPLETED");
-            String resultHash = "Qm" + UUID.randomUUID().toString().replace("-", "").substring(0, 44);
+            String resultHash = newResultHash();
             mockTask.setResultHash(resultHash);
             logger.info("✅ [MOCK] Manually completed task: {}", taskId);
         } else {
             mockTask.setStatus("FAILED");
             logger.info("❌ [MOCK] Manually failed task: {}", taskId);
         }
+        
+        mockTasks.update(mockTask);
+    }
+    
+    /**
+     * 模拟任务是否仍在内存中（进程重启或过期回收后不存在）
+     */
+    public boolean hasMockTask(String taskId) {
+        return taskId != null && mockTasks.get(taskId) != null;
     }
     
     /**
      * 获取所有模拟任务
      */
     public Map<String, MockTask> getAllMockTasks() {
-        return mockTasks;
+        return mockTasks.snapshot();
     }
     
     /**
-     * 清理已完成的模拟任务（避免内存泄漏）
+     * 当前保存的模拟任务数
      */
+    public int getMockTaskCount() {
+        return mockTasks.size();
+    }
+    
+    /**
+     * 清理过期的模拟任务（避免内存泄漏）
+     * 任务在预计完成时间之后保留 iexec.mock.retention 毫秒，到期按桶整体回收
+     */
+    @Scheduled(fixedDelayString = "${iexec.mock.expiry-bucket:60000}")
     public void cleanupOldTasks() {
-        long cutoffTime = System.currentTimeMillis() - 3600000; // 1小时前
-        mockTasks.entrySet().removeIf(entry -> 
-            entry.getValue().isCompleted() && entry.getValue().getCompletionTime() < cutoffTime
-        );
+        int removed = mockTasks.expire(System.currentTimeMillis());
+        if (removed > 0) {
+            logger.debug("🧹 [MOCK] Expired {} mock tasks, {} remaining", removed, mockTasks.size());
+        }
+    }
+    
+    /**
+     * 模拟任务的实际资源使用（1-4 核，256-2048 MB 内存，1-4 GB 存储）
+     */
+    private String simulateResourceUsage() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format("{\"cpuCores\":%d,\"memoryMB\":%d,\"storageGB\":%d}",
+            1 + random.nextInt(4), 256 + random.nextInt(1793), 1 + random.nextInt(4));
+    }
+    
+    /**
+     * 生成模拟的 IPFS 结果哈希
+     */
+    private String newResultHash() {
+        return "Qm" + UUID.randomUUID().toString().replace("-", "");
     }
     
     /**
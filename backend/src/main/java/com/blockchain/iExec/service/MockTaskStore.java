@@ -0,0 +1,542 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.service.MockIexecService.MockTask;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 模拟任务紧凑存储 - 列式（struct-of-arrays）布局
+ * 任务 ID 拆成两个 long + 一个 int 保存，时间和状态使用基本类型数组，
+ * 用户地址做字符串驻留（带引用计数，最后一个任务回收后释放），避免每个任务一个 POJO + 一个 66 字符的 key。
+ * 按过期时间分桶，到期后整桶回收槽位；完成时间变化时任务移到新的过期桶。
+ * 已完成 / 失败的任务状态是最终的，之后的更新不再生效。
+ */
+public class MockTaskStore {
+
+    // 分段数量（必须是 2 的幂），降低并发写入时的锁竞争
+    private static final int SEGMENT_COUNT = 16;
+
+    private static final int ID_HEX_LENGTH = 32;
+    private static final int ID_SUFFIX_LENGTH = 32;
+    private static final int ID_LENGTH = 2 + ID_HEX_LENGTH + ID_SUFFIX_LENGTH;
+
+    // 状态编码
+    static final byte STATUS_ACTIVE = 0;
+    static final byte STATUS_RUNNING = 1;
+    static final byte STATUS_REVEALING = 2;
+    static final byte STATUS_COMPLETED = 3;
+    static final byte STATUS_FAILED = 4;
+    private static final String[] STATUS_NAMES = {"ACTIVE", "RUNNING", "REVEALING", "COMPLETED", "FAILED"};
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final StringPool userPool = new StringPool();
+
+    // 任务完成后保留时长（毫秒）
+    private final long retentionMillis;
+
+    // 过期桶宽度（毫秒）
+    private final long bucketMillis;
+
+    public MockTaskStore(long retentionMillis, long bucketMillis) {
+        this.retentionMillis = retentionMillis;
+        this.bucketMillis = Math.max(1, bucketMillis);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(this.retentionMillis, this.bucketMillis, userPool);
+        }
+    }
+
+    /**
+     * 创建任务并返回生成的任务 ID
+     */
+    public String create(String userAddress, String params, long createdTime, long completionTime) {
+        UUID uuid = UUID.randomUUID();
+        long hi = uuid.getMostSignificantBits();
+        long lo = uuid.getLeastSignificantBits();
+        int suffix = ThreadLocalRandom.current().nextInt(1000);
+
+        int user = userPool.acquire(userAddress);
+
+        segmentFor(hi, lo).insert(hi, lo, suffix, user, params, createdTime, completionTime);
+        return formatId(hi, lo, suffix);
+    }
+
+    /**
+     * 查询任务快照，不存在时返回 null
+     */
+    public MockTask get(String taskId) {
+        long[] key = parseId(taskId);
+        if (key == null) {
+            return null;
+        }
+        return segmentFor(key[0], key[1]).get(key[0], key[1], (int) key[2], taskId);
+    }
+
+    /**
+     * 将快照中的可变字段（状态、完成时间、结果）写回存储
+     * @return 是否写入；任务不存在或已经结束（完成 / 失败）时返回 false，此时应以存储中的状态为准
+     */
+    public boolean update(MockTask task) {
+        long[] key = parseId(task.getTaskId());
+        if (key == null) {
+            return false;
+        }
+        return segmentFor(key[0], key[1]).update(key[0], key[1], (int) key[2], task);
+    }
+
+    /**
+     * 回收所有过期桶中的任务
+     * @return 回收的任务数
+     */
+    public int expire(long now) {
+        long currentBucket = Math.floorDiv(now, bucketMillis);
+        int removed = 0;
+        for (Segment segment : segments) {
+            removed += segment.expire(currentBucket);
+        }
+        return removed;
+    }
+
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    /**
+     * 用户地址池中保存的地址数
+     */
+    int pooledUserCount() {
+        return userPool.size();
+    }
+
+    /**
+     * 导出所有任务快照（仅用于调试接口）
+     */
+    public Map<String, MockTask> snapshot() {
+        Map<String, MockTask> result = new LinkedHashMap<>();
+        for (Segment segment : segments) {
+            segment.snapshotInto(result);
+        }
+        return result;
+    }
+
+    private Segment segmentFor(long hi, long lo) {
+        return segments[mix(hi, lo) & (SEGMENT_COUNT - 1)];
+    }
+
+    private static int mix(long hi, long lo) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h ^= h >>> 32;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    // 分段已用掉低位，索引使用剩余高位，避免段内聚簇
+    private static int indexHash(long hi, long lo) {
+        return mix(hi, lo) >>> 4;
+    }
+
+    static String statusName(byte status) {
+        return STATUS_NAMES[status];
+    }
+
+    static byte statusCode(String status) {
+        for (int i = 0; i < STATUS_NAMES.length; i++) {
+            if (STATUS_NAMES[i].equals(status)) {
+                return (byte) i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown mock task status: " + status);
+    }
+
+    // ==================== 任务 ID 编解码 ====================
+
+    /**
+     * 格式与原实现一致："0x" + 32 位十六进制 UUID + 32 位十进制随机后缀
+     */
+    static String formatId(long hi, long lo, int suffix) {
+        char[] chars = new char[ID_LENGTH];
+        chars[0] = '0';
+        chars[1] = 'x';
+        writeHex(chars, 2, hi);
+        writeHex(chars, 18, lo);
+        Arrays.fill(chars, 2 + ID_HEX_LENGTH, ID_LENGTH, '0');
+        int pos = ID_LENGTH - 1;
+        int value = suffix;
+        do {
+            chars[pos--] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        return new String(chars);
+    }
+
+    /**
+     * 解析任务 ID，格式不符时返回 null
+     * @return [hi, lo, suffix]
+     */
+    static long[] parseId(String taskId) {
+        if (taskId == null || taskId.length() != ID_LENGTH
+                || taskId.charAt(0) != '0' || taskId.charAt(1) != 'x') {
+            return null;
+        }
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < ID_HEX_LENGTH; i++) {
+            int digit = Character.digit(taskId.charAt(2 + i), 16);
+            if (digit < 0) {
+                return null;
+            }
+            if (i < 16) {
+                hi = (hi << 4) | digit;
+            } else {
+                lo = (lo << 4) | digit;
+            }
+        }
+        long suffix = 0;
+        for (int i = 2 + ID_HEX_LENGTH; i < ID_LENGTH; i++) {
+            char c = taskId.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            suffix = suffix * 10 + (c - '0');
+            if (suffix > Integer.MAX_VALUE) {
+                return null;
+            }
+        }
+        return new long[]{hi, lo, suffix};
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = Character.forDigit((int) (value & 0xF), 16);
+            value >>>= 4;
+        }
+    }
+
+    // ==================== 分段存储 ====================
+
+    /**
+     * 单个分段：列式数组 + 开放寻址索引 + 空闲槽位栈 + 过期桶
+     */
+    private static final class Segment {
+        private static final int INITIAL_CAPACITY = 64;
+        private static final int EMPTY = 0;
+        private static final int DELETED = -1;
+
+        // 列式数据
+        private long[] idHi = new long[INITIAL_CAPACITY];
+        private long[] idLo = new long[INITIAL_CAPACITY];
+        private int[] idSuffix = new int[INITIAL_CAPACITY];
+        private int[] user = new int[INITIAL_CAPACITY];
+        private String[] params = new String[INITIAL_CAPACITY];
+        private String[] resultHash = new String[INITIAL_CAPACITY];
+        private byte[] status = new byte[INITIAL_CAPACITY];
+        private boolean[] live = new boolean[INITIAL_CAPACITY];
+        private long[] createdTime = new long[INITIAL_CAPACITY];
+        private long[] completionTime = new long[INITIAL_CAPACITY];
+        private int[] generation = new int[INITIAL_CAPACITY];
+
+        // 已使用的最高槽位（不含）
+        private int highWater;
+        private int size;
+
+        // 空闲槽位栈
+        private int[] freeSlots = new int[16];
+        private int freeCount;
+
+        // 开放寻址索引：存放 slot + 1，0 表示空，-1 表示已删除
+        private int[] table = new int[INITIAL_CAPACITY * 2];
+        private int tombstones;
+
+        // 过期桶：桶号 -> 打包的 (generation << 32 | slot)
+        // 完成时间变化后任务加入新桶，旧桶中的记录按当前完成时间识别为过时并跳过
+        private final TreeMap<Long, LongList> expiryBuckets = new TreeMap<>();
+
+        private final long retentionMillis;
+        private final long bucketMillis;
+        private final StringPool users;
+
+        Segment(long retentionMillis, long bucketMillis, StringPool users) {
+            this.retentionMillis = retentionMillis;
+            this.bucketMillis = bucketMillis;
+            this.users = users;
+        }
+
+        synchronized void insert(long hi, long lo, int suffix, int userId, String taskParams,
+                                 long created, long completion) {
+            int slot = allocateSlot();
+            idHi[slot] = hi;
+            idLo[slot] = lo;
+            idSuffix[slot] = suffix;
+            user[slot] = userId;
+            params[slot] = taskParams;
+            resultHash[slot] = null;
+            status[slot] = STATUS_ACTIVE;
+            live[slot] = true;
+            createdTime[slot] = created;
+            completionTime[slot] = completion;
+            size++;
+
+            indexPut(hi, lo, slot);
+            addToExpiryBucket(slot);
+        }
+
+        synchronized MockTask get(long hi, long lo, int suffix, String taskId) {
+            int slot = indexFind(hi, lo, suffix);
+            if (slot < 0) {
+                return null;
+            }
+            return toMockTask(slot, taskId);
+        }
+
+        synchronized boolean update(long hi, long lo, int suffix, MockTask task) {
+            int slot = indexFind(hi, lo, suffix);
+            if (slot < 0) {
+                return false;
+            }
+            byte code = statusCode(task.getStatus());
+            // 已完成 / 失败是最终状态：并发查询各自模拟出的结果只有先写入的生效
+            if (status[slot] >= STATUS_COMPLETED) {
+                return false;
+            }
+            status[slot] = code;
+            resultHash[slot] = task.getResultHash();
+            if (completionTime[slot] != task.getCompletionTime()) {
+                long previousBucket = expiryBucketOf(slot);
+                completionTime[slot] = task.getCompletionTime();
+                if (expiryBucketOf(slot) != previousBucket) {
+                    addToExpiryBucket(slot);
+                }
+            }
+            return true;
+        }
+
+        synchronized int expire(long currentBucket) {
+            int removed = 0;
+            while (!expiryBuckets.isEmpty() && expiryBuckets.firstKey() <= currentBucket) {
+                Map.Entry<Long, LongList> bucket = expiryBuckets.pollFirstEntry();
+                LongList entries = bucket.getValue();
+                for (int i = 0; i < entries.size; i++) {
+                    long entry = entries.values[i];
+                    int slot = (int) entry;
+                    int gen = (int) (entry >>> 32);
+                    // 槽位已被复用，或任务的完成时间已变化、移到了其他桶时跳过
+                    if (live[slot] && generation[slot] == gen && expiryBucketOf(slot) == bucket.getKey()) {
+                        removeSlot(slot);
+                        removed++;
+                    }
+                }
+            }
+            return removed;
+        }
+
+        private long expiryBucketOf(int slot) {
+            return Math.floorDiv(completionTime[slot] + retentionMillis, bucketMillis);
+        }
+
+        private void addToExpiryBucket(int slot) {
+            expiryBuckets.computeIfAbsent(expiryBucketOf(slot), k -> new LongList())
+                .add(((long) generation[slot] << 32) | slot);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void snapshotInto(Map<String, MockTask> result) {
+            for (int slot = 0; slot < highWater; slot++) {
+                if (live[slot]) {
+                    String taskId = formatId(idHi[slot], idLo[slot], idSuffix[slot]);
+                    result.put(taskId, toMockTask(slot, taskId));
+                }
+            }
+        }
+
+        private MockTask toMockTask(int slot, String taskId) {
+            MockTask task = new MockTask();
+            task.setTaskId(taskId);
+            task.setUserAddress(users.lookup(user[slot]));
+            task.setParams(params[slot]);
+            task.setStatus(statusName(status[slot]));
+            task.setCreatedTime(createdTime[slot]);
+            task.setCompletionTime(completionTime[slot]);
+            task.setCompleted(status[slot] >= STATUS_COMPLETED);
+            task.setResultHash(resultHash[slot]);
+            return task;
+        }
+
+        private int allocateSlot() {
+            if (freeCount > 0) {
+                return freeSlots[--freeCount];
+            }
+            if (highWater == idHi.length) {
+                growColumns(idHi.length * 2);
+            }
+            return highWater++;
+        }
+
+        private void removeSlot(int slot) {
+            indexRemove(idHi[slot], idLo[slot], idSuffix[slot]);
+            users.release(user[slot]);
+            live[slot] = false;
+            params[slot] = null;
+            resultHash[slot] = null;
+            generation[slot]++;
+            size--;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        }
+
+        private void growColumns(int capacity) {
+            idHi = Arrays.copyOf(idHi, capacity);
+            idLo = Arrays.copyOf(idLo, capacity);
+            idSuffix = Arrays.copyOf(idSuffix, capacity);
+            user = Arrays.copyOf(user, capacity);
+            params = Arrays.copyOf(params, capacity);
+            resultHash = Arrays.copyOf(resultHash, capacity);
+            status = Arrays.copyOf(status, capacity);
+            live = Arrays.copyOf(live, capacity);
+            createdTime = Arrays.copyOf(createdTime, capacity);
+            completionTime = Arrays.copyOf(completionTime, capacity);
+            generation = Arrays.copyOf(generation, capacity);
+        }
+
+        // ---------- 开放寻址索引 ----------
+
+        private void indexPut(long hi, long lo, int slot) {
+            if ((size + tombstones) * 2 > table.length) {
+                rehash(Math.max(table.length, Integer.highestOneBit(size * 4 - 1) << 1));
+            }
+            int mask = table.length - 1;
+            int pos = indexHash(hi, lo) & mask;
+            while (table[pos] > EMPTY) {
+                pos = (pos + 1) & mask;
+            }
+            if (table[pos] == DELETED) {
+                tombstones--;
+            }
+            table[pos] = slot + 1;
+        }
+
+        private int indexFind(long hi, long lo, int suffix) {
+            int mask = table.length - 1;
+            int pos = indexHash(hi, lo) & mask;
+            while (table[pos] != EMPTY) {
+                int slot = table[pos] - 1;
+                if (slot >= 0 && idHi[slot] == hi && idLo[slot] == lo && idSuffix[slot] == suffix) {
+                    return slot;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void indexRemove(long hi, long lo, int suffix) {
+            int mask = table.length - 1;
+            int pos = indexHash(hi, lo) & mask;
+            while (table[pos] != EMPTY) {
+                int slot = table[pos] - 1;
+                if (slot >= 0 && idHi[slot] == hi && idLo[slot] == lo && idSuffix[slot] == suffix) {
+                    table[pos] = DELETED;
+                    tombstones++;
+                    return;
+                }
+                pos = (pos + 1) & mask;
+            }
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            tombstones = 0;
+            int mask = capacity - 1;
+            for (int slot = 0; slot < highWater; slot++) {
+                if (live[slot]) {
+                    int pos = indexHash(idHi[slot], idLo[slot]) & mask;
+                    while (table[pos] != EMPTY) {
+                        pos = (pos + 1) & mask;
+                    }
+                    table[pos] = slot + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * 可增长的 long 数组
+     */
+    private static final class LongList {
+        private long[] values = new long[8];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * 字符串驻留池：相同的用户地址只保存一份，按引用计数，最后一个引用释放后回收编号
+     * 持有编号的任务存在期间编号不会被回收，lookup 不加锁：任务的写入与读取都经过所属分段的锁
+     */
+    private static final class StringPool {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private volatile String[] values = new String[16];
+        private int[] refs = new int[16];
+        private int count;
+
+        // 已释放可复用的编号
+        private int[] freeIds = new int[16];
+        private int freeCount;
+
+        synchronized int acquire(String value) {
+            String key = value == null ? "" : value;
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = freeCount > 0 ? freeIds[--freeCount] : count++;
+                String[] current = values;
+                if (id == current.length) {
+                    current = Arrays.copyOf(current, id * 2);
+                    refs = Arrays.copyOf(refs, id * 2);
+                }
+                current[id] = key;
+                values = current;
+                ids.put(key, id);
+            }
+            refs[id]++;
+            return id;
+        }
+
+        synchronized void release(int id) {
+            if (--refs[id] > 0) {
+                return;
+            }
+            ids.remove(values[id]);
+            values[id] = null;
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            }
+            freeIds[freeCount++] = id;
+        }
+
+        String lookup(int id) {
+            String value = values[id];
+            return value.isEmpty() ? null : value;
+        }
+
+        synchronized int size() {
+            return ids.size();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 启动恢复服务
+ * 1. 容器初始化阶段（对外提供服务之前）重建内存状态：完成时间预测器、信誉排行榜和最近 1 小时的吞吐窗口；
+ * 2. 应用就绪后重新排队上次进程未完成的任务：
+ *    Created 任务尚未分发，Processing 任务的计算在内存中执行、随进程一起丢失，两者都重新提交到分发器；
+ *    已经向 Arbitrum 发出交易的 Processing 任务不再重新提交（否则会重复发送交易、重复扣费），只继续查询交易回执；
+ *    Running 任务（iExec 模拟 / 真实任务）由 TaskMonitorService 从数据库轮询；但模拟任务只保存在内存中，
+ *    重启后无法再查询到结果，模拟模式下这些任务直接标记为失败，不再占用监控批次直到超时；
+ * 3. 最后把上一个进程写入、尚未合并到汇总表的历史记录补齐（首次启用汇总表时耗时较长，不计入恢复时间）。
+ *    补齐范围的上限在定时任务启动前读取，之后写入的记录由 record 增量汇总，与补齐互不重叠。
+ * 使用内存数据库时启动时没有数据，各步骤都是空操作；persistent 配置下数据库在重启后保留，由这里恢复。
+ */
+@Service
+public class RecoveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecoveryService.class);
+
+    // 重启后需要重新分发的任务状态
+    private static final List<TaskStatus> REQUEUE_STATUSES = List.of(TaskStatus.CREATED, TaskStatus.PROCESSING);
+
+    static final String LOST_MOCK_TASK_MESSAGE = "Mock task lost on restart";
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskDispatchService taskDispatchService;
+
+    @Autowired
+    private ArbitrumTaskService arbitrumTaskService;
+
+    @Autowired
+    private MockIexecService mockIexecService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskSchedulerService taskSchedulerService;
+
+    @Autowired
+    private ReputationService reputationService;
+
+    @Autowired
+    private HistoryRollupService historyRollupService;
+
+    private final boolean requeueEnabled;
+    private final long targetMillis;
+    private final boolean mockEnabled;
+
+    private final RecoveryReport report = new RecoveryReport();
+
+    // 启动时历史表的最大 ID，不超过它的记录由上一个进程写入
+    private Long historyHighWaterMark;
+
+    public RecoveryService(@Value("${task.recovery.requeue:true}") boolean requeueEnabled,
+                           @Value("${task.recovery.target-time:30000}") long targetMillis,
+                           @Value("${iexec.mock.enabled:true}") boolean mockEnabled) {
+        this.requeueEnabled = requeueEnabled;
+        this.targetMillis = targetMillis;
+        this.mockEnabled = mockEnabled;
+    }
+
+    /**
+     * 重建内存状态，在依赖的服务初始化完成后、应用接收请求前执行
+     */
+    @PostConstruct
+    public void rebuildCaches() {
+        report.setStartedAt(LocalDateTime.now());
+        historyHighWaterMark = historyRollupService.getHistoryHighWaterMark();
+        long start = System.currentTimeMillis();
+        taskSchedulerService.rebuildPredictorState();
+        long predictorDone = System.currentTimeMillis();
+        reputationService.rebuildLeaderboard();
+        long leaderboardDone = System.currentTimeMillis();
+        taskSchedulerService.seedThroughputWindow();
+        report.setPredictorRebuildMs(predictorDone - start);
+        report.setLeaderboardRebuildMs(leaderboardDone - predictorDone);
+        report.setThroughputRebuildMs(System.currentTimeMillis() - leaderboardDone);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (requeueEnabled) {
+            requeueUnfinishedTasks();
+        }
+        if (mockEnabled) {
+            failLostMockTasks();
+        }
+        long total = report.getPredictorRebuildMs() + report.getLeaderboardRebuildMs()
+            + report.getThroughputRebuildMs() + report.getRequeueMs();
+        report.setTotalMs(total);
+        if (total > targetMillis) {
+            logger.warn("Startup recovery took {} ms, exceeding target {} ms (predictor {} ms, leaderboard {} ms, "
+                + "throughput {} ms, requeue {} ms)", total, targetMillis, report.getPredictorRebuildMs(),
+                report.getLeaderboardRebuildMs(), report.getThroughputRebuildMs(), report.getRequeueMs());
+        } else {
+            logger.info("Startup recovery finished in {} ms, {} tasks requeued, {} Arbitrum tasks resumed",
+                total, report.getRequeuedTasks(), report.getResumedTasks());
+        }
+
+        long start = System.currentTimeMillis();
+        if (historyHighWaterMark != null) {
+            historyRollupService.reconcile(historyHighWaterMark);
+        }
+        report.setRollupRebuildMs(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 将 Created / Processing 状态的任务按创建时间顺序重新提交到分发器
+     * 已有 Arbitrum 交易的任务按链上回执结束，不重新提交
+     * @return 重新排队的任务数（不含按链上回执恢复的任务）
+     */
+    public int requeueUnfinishedTasks() {
+        long start = System.currentTimeMillis();
+        int requeued = 0;
+        int resumed = 0;
+        try {
+            List<TaskEntity> tasks = taskRepository.findByStatusInOrderByCreatedAt(REQUEUE_STATUSES);
+            for (TaskEntity task : tasks) {
+                if (task.getArbitrumTaskId() != null) {
+                    arbitrumTaskService.resumeArbitrumTask(task.getTaskId(), task.getArbitrumTaskId());
+                    resumed++;
+                    continue;
+                }
+                BigInteger serviceId;
+                try {
+                    serviceId = new BigInteger(task.getServiceId());
+                } catch (RuntimeException e) {
+                    logger.warn("Cannot requeue task {}: invalid service id {}", task.getTaskId(), task.getServiceId());
+                    continue;
+                }
+                taskDispatchService.submit(task, serviceId);
+                requeued++;
+            }
+        } catch (Exception e) {
+            logger.error("Error requeueing unfinished tasks", e);
+        }
+        report.setRequeuedTasks(report.getRequeuedTasks() + requeued);
+        report.setResumedTasks(report.getResumedTasks() + resumed);
+        report.setRequeueMs(report.getRequeueMs() + System.currentTimeMillis() - start);
+        return requeued;
+    }
+
+    /**
+     * 将内存中已不存在的模拟 iExec 任务（Running）标记为失败
+     * 失败原因是进程重启而不是用户或任务本身，因此不写入历史、不影响信誉
+     * @return 标记为失败的任务数
+     */
+    public int failLostMockTasks() {
+        int failed = 0;
+        try {
+            for (TaskEntity task : taskRepository.findByStatus(TaskStatus.RUNNING)) {
+                if (!mockIexecService.hasMockTask(task.getIexecTaskId())
+                        && taskService.updateTaskErrorMessage(task.getTaskId(), LOST_MOCK_TASK_MESSAGE)) {
+                    failed++;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error failing lost mock tasks", e);
+        }
+        if (failed > 0) {
+            logger.info("Marked {} mock tasks lost on restart as failed", failed);
+        }
+        report.setFailedMockTasks(report.getFailedMockTasks() + failed);
+        return failed;
+    }
+
+    public RecoveryReport getReport() {
+        return report;
+    }
+
+    /**
+     * 启动恢复各步骤的耗时
+     */
+    public static class RecoveryReport {
+        private LocalDateTime startedAt;
+        private long rollupRebuildMs;
+        private long predictorRebuildMs;
+        private long leaderboardRebuildMs;
+        private long throughputRebuildMs;
+        private long requeueMs;
+        private int requeuedTasks;
+        private int resumedTasks;
+        private int failedMockTasks;
+        private long totalMs;
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public void setStartedAt(LocalDateTime startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * 汇总表补齐耗时（应用就绪后执行，不计入总耗时）
+         */
+        public long getRollupRebuildMs() {
+            return rollupRebuildMs;
+        }
+
+        public void setRollupRebuildMs(long rollupRebuildMs) {
+            this.rollupRebuildMs = rollupRebuildMs;
+        }
+
+        public long getPredictorRebuildMs() {
+            return predictorRebuildMs;
+        }
+
+        public void setPredictorRebuildMs(long predictorRebuildMs) {
+            this.predictorRebuildMs = predictorRebuildMs;
+        }
+
+        public long getLeaderboardRebuildMs() {
+            return leaderboardRebuildMs;
+        }
+
+        public void setLeaderboardRebuildMs(long leaderboardRebuildMs) {
+            this.leaderboardRebuildMs = leaderboardRebuildMs;
+        }
+
+        public long getThroughputRebuildMs() {
+            return throughputRebuildMs;
+        }
+
+        public void setThroughputRebuildMs(long throughputRebuildMs) {
+            this.throughputRebuildMs = throughputRebuildMs;
+        }
+
+        public long getRequeueMs() {
+            return requeueMs;
+        }
+
+        public void setRequeueMs(long requeueMs) {
+            this.requeueMs = requeueMs;
+        }
+
+        public int getRequeuedTasks() {
+            return requeuedTasks;
+        }
+
+        public void setRequeuedTasks(int requeuedTasks) {
+            this.requeuedTasks = requeuedTasks;
+        }
+
+        /**
+         * 重启前已提交到 Arbitrum、按链上交易回执继续跟踪的任务数
+         */
+        public int getResumedTasks() {
+            return resumedTasks;
+        }
+
+        public void setResumedTasks(int resumedTasks) {
+            this.resumedTasks = resumedTasks;
+        }
+
+        /**
+         * 重启后内存中已不存在、被标记为失败的模拟任务数
+         */
+        public int getFailedMockTasks() {
+            return failedMockTasks;
+        }
+
+        public void setFailedMockTasks(int failedMockTasks) {
+            this.failedMockTasks = failedMockTasks;
+        }
+
+        /**
+         * 恢复总耗时：预测器与排行榜重建、任务重新排队（不含 Spring 容器本身的启动时间），应用就绪前为 0
+         */
+        public long getTotalMs() {
+            return totalMs;
+        }
+
+        public void setTotalMs(long totalMs) {
+            this.totalMs = totalMs;
+        }
+    }
+}
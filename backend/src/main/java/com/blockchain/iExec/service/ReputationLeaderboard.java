@@ -0,0 +1,90 @@
+package com.blockchain.iExec.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 信誉排行榜 - 按衰减分数（综合分数 × 衰减任务数）排序的内存索引堆
+ * 所有用户的衰减速率相同，因此以 ln(score) + λ·t（t 为分数对应的时刻）作为排序键，
+ * 用户之间的先后顺序不随时间改变，只有用户本身更新时才需要调整位置：
+ * 更新 O(log N)，取前 K 名 O(K)。
+ * 线程安全：所有方法在实例上同步。
+ */
+public class ReputationLeaderboard {
+
+    private final double decayRate;
+
+    // 按排序键降序、地址升序
+    private final TreeSet<Entry> ranking = new TreeSet<>(
+        Comparator.comparingDouble(Entry::getKey).reversed().thenComparing(Entry::getAddress));
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * @param decayRate 衰减速率 λ（每毫秒）
+     */
+    public ReputationLeaderboard(double decayRate) {
+        this.decayRate = decayRate;
+    }
+
+    /**
+     * 更新用户的分数
+     * @param version 单调递增的版本号（如终身任务数），旧版本的更新会被忽略
+     * @param score updatedAt 时刻的衰减分数
+     * @param updatedAt 分数对应的时刻（毫秒时间戳）
+     */
+    public synchronized void update(String address, long version, double score, long updatedAt) {
+        Entry previous = entries.get(address);
+        if (previous != null) {
+            if (previous.version > version) {
+                return;
+            }
+            ranking.remove(previous);
+        }
+        double key = score > 0 ? Math.log(score) + decayRate * updatedAt : Double.NEGATIVE_INFINITY;
+        Entry entry = new Entry(address, version, key);
+        entries.put(address, entry);
+        ranking.add(entry);
+    }
+
+    /**
+     * 前 K 名用户及其在 now 时刻的衰减分数
+     */
+    public synchronized List<Map.Entry<String, Double>> top(int k, long now) {
+        List<Map.Entry<String, Double>> top = new ArrayList<>(Math.min(k, ranking.size()));
+        Iterator<Entry> iterator = ranking.iterator();
+        while (top.size() < k && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            top.add(Map.entry(entry.getAddress(), Math.exp(entry.getKey() - decayRate * now)));
+        }
+        return top;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class Entry {
+        private final String address;
+        private final long version;
+        private final double key;
+
+        Entry(String address, long version, double key) {
+            this.address = address;
+            this.version = version;
+            this.key = key;
+        }
+
+        String getAddress() {
+            return address;
+        }
+
+        double getKey() {
+            return key;
+        }
+    }
+}
@@ -2,62 +2,135 @@ package com.blockchain.iExec.service;
 
 import com.blockchain.iExec.model.ReputationEntity;
 import com.blockchain.iExec.repository.ReputationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class ReputationService {
     
+    private static final Logger logger = LoggerFactory.getLogger(ReputationService.class);
+    
     @Autowired
     private ReputationRepository reputationRepository;
     
+    @Autowired
+    private UserStatsService userStatsService;
+    
+    // 综合信誉分数中各维度的权重，可以根据实际需求调整
+    private static final double COMPLETION_WEIGHT = 0.4;
+    private static final double ON_TIME_WEIGHT = 0.3;
+    private static final double QUALITY_WEIGHT = 0.3;
+    
+    // 衰减速率 λ（每毫秒）：经过一个半衰期，历史任务的权重减半
+    private final double decayRate;
+    
+    // 按衰减分数排序的排行榜
+    private final ReputationLeaderboard leaderboard;
+    
+    public ReputationService(@Value("${reputation.decay.half-life:2592000000}") long decayHalfLifeMillis) {
+        this.decayRate = Math.log(2) / decayHalfLifeMillis;
+        this.leaderboard = new ReputationLeaderboard(decayRate);
+    }
+    
+    // 从信誉表重建排行榜，由 RecoveryService 在启动时调用
+    public void rebuildLeaderboard() {
+        try {
+            for (Object[] row : reputationRepository.findLeaderboardEntries()) {
+                updateLeaderboard((String) row[0], (Integer) row[1], (Double) row[2], (Double) row[3], (Long) row[4]);
+            }
+            logger.info("Rebuilt reputation leaderboard with {} users", leaderboard.size());
+        } catch (Exception e) {
+            logger.error("Error rebuilding reputation leaderboard", e);
+        }
+    }
+    
     // 更新用户信誉
+    // 计数递增、衰减与评分重算在一条 UPDATE 语句中完成，多个节点同时更新同一用户也不会丢失更新；
+    // 首次出现的用户插入新行，并发插入触发唯一约束时改为走更新路径
     public ReputationEntity updateReputation(String userAddress, boolean taskCompleted, boolean completedOnTime, double qualityScore) {
-        ReputationEntity reputation = reputationRepository.findByAddress(userAddress);
+        int completed = taskCompleted ? 1 : 0;
+        int onTime = completedOnTime ? 1 : 0;
+        long now = System.currentTimeMillis();
         
-        if (reputation == null) {
-            reputation = new ReputationEntity();
+        if (applyTaskOutcome(userAddress, completed, onTime, qualityScore, now) == 0) {
+            ReputationEntity reputation = new ReputationEntity();
             reputation.setAddress(userAddress);
+            reputation.setTotalTasks(1);
+            reputation.setCompletedTasks(completed);
+            reputation.setOnTimeTasks(onTime);
+            reputation.setDecayedTotalTasks(1.0);
+            reputation.setDecayedCompletedTasks((double) completed);
+            reputation.setDecayedOnTimeTasks((double) onTime);
+            reputation.setDecayUpdatedAt(now);
+            reputation.setCompletionRate((double) completed);
+            reputation.setOnTimeRate((double) onTime);
+            reputation.setQualityScore(qualityScore);
+            calculateFinalScore(reputation);
+            try {
+                reputationRepository.saveAndFlush(reputation);
+            } catch (DataIntegrityViolationException e) {
+                // 其他线程 / 节点已插入该用户
+                applyTaskOutcome(userAddress, completed, onTime, qualityScore, now);
+            }
         }
         
-        // 更新任务统计
-        reputation.setTotalTasks(reputation.getTotalTasks() + 1);
-        
-        if (taskCompleted) {
-            reputation.setCompletedTasks(reputation.getCompletedTasks() + 1);
-        }
-        
-        if (completedOnTime) {
-            reputation.setOnTimeTasks(reputation.getOnTimeTasks() + 1);
-        }
-        
-        // 计算各维度评分
-        reputation.setCompletionRate((double) reputation.getCompletedTasks() / reputation.getTotalTasks());
-        reputation.setOnTimeRate((double) reputation.getOnTimeTasks() / reputation.getTotalTasks());
-        reputation.setQualityScore(qualityScore);
-        
-        // 使用自定义算法计算综合信誉分数
-        calculateFinalScore(reputation);
-        
-        return reputationRepository.save(reputation);
+        ReputationEntity saved = reputationRepository.findByAddress(userAddress);
+        userStatsService.onReputationUpdated(saved);
+        updateLeaderboard(saved);
+        return saved;
+    }
+    
+    private int applyTaskOutcome(String userAddress, int completed, int onTime, double qualityScore, long now) {
+        return reputationRepository.applyTaskOutcome(userAddress, completed, onTime, qualityScore, now, decayRate,
+            COMPLETION_WEIGHT, ON_TIME_WEIGHT, QUALITY_WEIGHT);
     }
     
-    // 计算综合信誉分数的核心算法
+    // 计算综合信誉分数的核心算法（与 ReputationRepository.applyTaskOutcome 中的公式一致）
     private void calculateFinalScore(ReputationEntity reputation) {
-        // 使用加权平均算法，各维度权重可以根据实际需求调整
-        double completionWeight = 0.4;
-        double onTimeWeight = 0.3;
-        double qualityWeight = 0.3;
-        
-        double finalScore = (reputation.getCompletionRate() * completionWeight) +
-                           (reputation.getOnTimeRate() * onTimeWeight) +
-                           (reputation.getQualityScore() * qualityWeight);
+        // 使用加权平均算法
+        double finalScore = (reputation.getCompletionRate() * COMPLETION_WEIGHT) +
+                           (reputation.getOnTimeRate() * ON_TIME_WEIGHT) +
+                           (reputation.getQualityScore() * QUALITY_WEIGHT);
         
         reputation.setFinalScore(finalScore);
     }
     
+    // 衰减分数 = 综合分数 × 衰减任务数：近期任务多且质量高的用户排在前面，长期不活跃的用户逐渐下降
+    private void updateLeaderboard(ReputationEntity reputation) {
+        if (reputation == null || reputation.getDecayUpdatedAt() == null) {
+            return;
+        }
+        updateLeaderboard(reputation.getAddress(), reputation.getTotalTasks(), reputation.getFinalScore(),
+            reputation.getDecayedTotalTasks(), reputation.getDecayUpdatedAt());
+    }
+    
+    private void updateLeaderboard(String address, Integer totalTasks, Double finalScore, Double decayedTotalTasks,
+                                   long decayUpdatedAt) {
+        double score = valueOrZero(finalScore) * valueOrZero(decayedTotalTasks);
+        leaderboard.update(address, totalTasks != null ? totalTasks : 0, score, decayUpdatedAt);
+    }
+    
+    // 将 updatedAt 时刻的衰减计数衰减到 now（读取时惰性衰减）
+    private double decayTo(Double value, Long updatedAt, long now) {
+        if (value == null || updatedAt == null) {
+            return 0;
+        }
+        return value * Math.exp(-decayRate * Math.max(0, now - updatedAt));
+    }
+    
+    private static double valueOrZero(Double value) {
+        return value != null ? value : 0;
+    }
+    
     // 获取所有用户的信誉
     public List<ReputationEntity> getAllReputations() {
         return reputationRepository.findAll();
@@ -67,4 +140,139 @@ public class ReputationService {
     public ReputationEntity getReputationByAddress(String address) {
         return reputationRepository.findByAddress(address);
     }
-}
\ No newline at end of file
+    
+    // 获取用户当前时刻的衰减信誉，没有记录时返回 null
+    public DecayedReputation getDecayedReputation(String address) {
+        ReputationEntity reputation = reputationRepository.findByAddress(address);
+        return reputation != null ? toDecayedReputation(reputation, System.currentTimeMillis()) : null;
+    }
+    
+    // 按衰减分数取前 K 名用户
+    public List<DecayedReputation> getTopReputations(int k) {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Double>> top = leaderboard.top(k, now);
+        
+        List<String> addresses = new ArrayList<>(top.size());
+        for (Map.Entry<String, Double> entry : top) {
+            addresses.add(entry.getKey());
+        }
+        Map<String, ReputationEntity> byAddress = new HashMap<>();
+        for (ReputationEntity reputation : reputationRepository.findByAddressIn(addresses)) {
+            byAddress.put(reputation.getAddress(), reputation);
+        }
+        
+        List<DecayedReputation> result = new ArrayList<>(top.size());
+        for (Map.Entry<String, Double> entry : top) {
+            ReputationEntity reputation = byAddress.get(entry.getKey());
+            if (reputation != null) {
+                result.add(toDecayedReputation(reputation, now));
+            }
+        }
+        return result;
+    }
+    
+    private DecayedReputation toDecayedReputation(ReputationEntity reputation, long now) {
+        DecayedReputation decayed = new DecayedReputation();
+        decayed.setAddress(reputation.getAddress());
+        decayed.setFinalScore(valueOrZero(reputation.getFinalScore()));
+        decayed.setCompletionRate(valueOrZero(reputation.getCompletionRate()));
+        decayed.setOnTimeRate(valueOrZero(reputation.getOnTimeRate()));
+        decayed.setTotalTasks(reputation.getTotalTasks());
+        decayed.setDecayedTotalTasks(decayTo(reputation.getDecayedTotalTasks(), reputation.getDecayUpdatedAt(), now));
+        decayed.setDecayedCompletedTasks(decayTo(reputation.getDecayedCompletedTasks(), reputation.getDecayUpdatedAt(), now));
+        decayed.setDecayedOnTimeTasks(decayTo(reputation.getDecayedOnTimeTasks(), reputation.getDecayUpdatedAt(), now));
+        decayed.setDecayedScore(decayed.getFinalScore() * decayed.getDecayedTotalTasks());
+        return decayed;
+    }
+    
+    /**
+     * 衰减到当前时刻的信誉快照
+     * 比率与综合分数按衰减计数计算，不随时间变化（所有计数以相同速率衰减）
+     */
+    public static class DecayedReputation {
+        private String address;
+        private double finalScore;
+        private double completionRate;
+        private double onTimeRate;
+        private Integer totalTasks;
+        private double decayedTotalTasks;
+        private double decayedCompletedTasks;
+        private double decayedOnTimeTasks;
+        private double decayedScore;
+        
+        public String getAddress() {
+            return address;
+        }
+        
+        public void setAddress(String address) {
+            this.address = address;
+        }
+        
+        public double getFinalScore() {
+            return finalScore;
+        }
+        
+        public void setFinalScore(double finalScore) {
+            this.finalScore = finalScore;
+        }
+        
+        public double getCompletionRate() {
+            return completionRate;
+        }
+        
+        public void setCompletionRate(double completionRate) {
+            this.completionRate = completionRate;
+        }
+        
+        public double getOnTimeRate() {
+            return onTimeRate;
+        }
+        
+        public void setOnTimeRate(double onTimeRate) {
+            this.onTimeRate = onTimeRate;
+        }
+        
+        public Integer getTotalTasks() {
+            return totalTasks;
+        }
+        
+        public void setTotalTasks(Integer totalTasks) {
+            this.totalTasks = totalTasks;
+        }
+        
+        public double getDecayedTotalTasks() {
+            return decayedTotalTasks;
+        }
+        
+        public void setDecayedTotalTasks(double decayedTotalTasks) {
+            this.decayedTotalTasks = decayedTotalTasks;
+        }
+        
+        public double getDecayedCompletedTasks() {
+            return decayedCompletedTasks;
+        }
+        
+        public void setDecayedCompletedTasks(double decayedCompletedTasks) {
+            this.decayedCompletedTasks = decayedCompletedTasks;
+        }
+        
+        public double getDecayedOnTimeTasks() {
+            return decayedOnTimeTasks;
+        }
+        
+        public void setDecayedOnTimeTasks(double decayedOnTimeTasks) {
+            this.decayedOnTimeTasks = decayedOnTimeTasks;
+        }
+        
+        /**
+         * 排行榜使用的衰减分数：综合分数 × 衰减任务数
+         */
+        public double getDecayedScore() {
+            return decayedScore;
+        }
+        
+        public void setDecayedScore(double decayedScore) {
+            this.decayedScore = decayedScore;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.blockchain.iExec.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 单个服务的资源使用聚合 - 对 CPU、内存、存储分别维护均值、最大值和分位数草图
+ * 数据来自 TaskHistoryEntity.resourceRequirement（JSON），使用流式解析，不构建对象树。
+ */
+public class ResourceUsageStats {
+
+    // JSON 字段名与 ResourceRequirement 保持一致
+    static final String CPU_FIELD = "cpuCores";
+    static final String MEMORY_FIELD = "memoryMB";
+    static final String STORAGE_FIELD = "storageGB";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final DimensionStats cpuCores = new DimensionStats();
+    private final DimensionStats memoryMB = new DimensionStats();
+    private final DimensionStats storageGB = new DimensionStats();
+
+    /**
+     * 记录一次资源使用（JSON 格式），无法解析时忽略
+     * @return 是否成功记录
+     */
+    public boolean record(String resourceJson) {
+        double[] usage = parse(resourceJson);
+        if (usage == null) {
+            return false;
+        }
+        if (!Double.isNaN(usage[0])) {
+            cpuCores.add(usage[0]);
+        }
+        if (!Double.isNaN(usage[1])) {
+            memoryMB.add(usage[1]);
+        }
+        if (!Double.isNaN(usage[2])) {
+            storageGB.add(usage[2]);
+        }
+        return true;
+    }
+
+    public DimensionStats getCpuCores() {
+        return cpuCores;
+    }
+
+    public DimensionStats getMemoryMB() {
+        return memoryMB;
+    }
+
+    public DimensionStats getStorageGB() {
+        return storageGB;
+    }
+
+    /**
+     * 流式解析资源 JSON，例如 {"cpuCores":2,"memoryMB":1024,"storageGB":2}
+     * @return [cpuCores, memoryMB, storageGB]，缺失字段为 NaN；不是合法对象时返回 null
+     */
+    static double[] parse(String resourceJson) {
+        if (resourceJson == null || resourceJson.isBlank()) {
+            return null;
+        }
+        double[] usage = {Double.NaN, Double.NaN, Double.NaN};
+        try (JsonParser parser = JSON_FACTORY.createParser(resourceJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                int index = CPU_FIELD.equals(field) ? 0
+                    : MEMORY_FIELD.equals(field) ? 1
+                    : STORAGE_FIELD.equals(field) ? 2 : -1;
+                if (index >= 0 && value.isNumeric()) {
+                    usage[index] = parser.getDoubleValue();
+                } else {
+                    // 跳过未知字段（包括嵌套对象 / 数组）
+                    parser.skipChildren();
+                }
+            }
+            return usage;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 单个资源维度的聚合：均值、最大值、分位数
+     * 资源取值通常只有少数几种（如 1 / 2 / 4 核），不同取值不超过上限时按精确计数求分位数；
+     * 超过上限后改用分位数草图，内存仍然有界
+     */
+    public static class DimensionStats {
+        // 精确计数允许的最多不同取值数
+        static final int MAX_EXACT_VALUES = 256;
+
+        private final LatencySketch sketch = new LatencySketch();
+        private TreeMap<Double, Long> exactCounts = new TreeMap<>();
+
+        synchronized void add(double value) {
+            sketch.add(value);
+            if (exactCounts != null) {
+                exactCounts.merge(value, 1L, Long::sum);
+                if (exactCounts.size() > MAX_EXACT_VALUES) {
+                    exactCounts = null;
+                }
+            }
+        }
+
+        public long getCount() {
+            return sketch.getCount();
+        }
+
+        public double getMean() {
+            return sketch.getMean();
+        }
+
+        public double getMax() {
+            return sketch.getMax();
+        }
+
+        public double getP50() {
+            return quantile(0.5);
+        }
+
+        public double getP95() {
+            return quantile(0.95);
+        }
+
+        public double getP99() {
+            return quantile(0.99);
+        }
+
+        /**
+         * 按分位数取值，无样本时返回 NaN；排名定义与 LatencySketch 相同
+         */
+        public synchronized double quantile(double q) {
+            long count = sketch.getCount();
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (exactCounts == null) {
+                return sketch.quantile(q);
+            }
+            double rank = q * (count - 1);
+            long cumulative = 0;
+            for (Map.Entry<Double, Long> entry : exactCounts.entrySet()) {
+                cumulative += entry.getValue();
+                if (cumulative > rank) {
+                    return entry.getKey();
+                }
+            }
+            return exactCounts.lastKey();
+        }
+
+        /**
+         * 按分位数向上取整后的资源需求，无样本时返回默认值
+         * 只有在不同取值过多、改用草图时才有近似：草图返回桶的代表值，可能比真实的整数样本高出不到 1%，
+         * 在误差范围内接近整数时取该整数，避免每个任务都多分配一个单位
+         */
+        public synchronized int requirement(double q, int defaultValue) {
+            double value = quantile(q);
+            if (Double.isNaN(value)) {
+                return defaultValue;
+            }
+            if (exactCounts == null) {
+                double nearest = Math.round(value);
+                if (Math.abs(value - nearest) <= value * sketch.getRelativeAccuracy()) {
+                    return (int) nearest;
+                }
+            }
+            return (int) Math.ceil(value);
+        }
+    }
+}
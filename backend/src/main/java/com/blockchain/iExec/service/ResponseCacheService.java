@@ -0,0 +1,194 @@
+package com.blockchain.iExec.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 计算型查询接口（监控统计、调度策略、完成时间预测）的进程内响应缓存
+ * 任务保存、状态变化或写入历史时递增全局变更序号，缓存项在序号变化后失效；
+ * 部分结果还与时间有关（超时任务数、吞吐窗口），因此缓存项另有较短的存活时间。
+ * 每次重新计算时按序列化后的内容生成 ETag，内容未变时 ETag 与 Last-Modified 保持不变，客户端可以得到 304。
+ * 同一个键同时只有一个线程重新计算，其余并发请求等待并共用这次的结果，失效时不会有大量请求同时重算。
+ */
+@Service
+public class ResponseCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCacheService.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final long ttl;
+    private final int maxEntries;
+
+    private final AtomicLong changeSequence = new AtomicLong();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 正在进行的计算，按键区分
+    private final Map<String, Load> loads = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+
+    public ResponseCacheService(@Value("${task.response-cache.ttl:1000}") long ttl,
+                                @Value("${task.response-cache.max-entries:1024}") int maxEntries) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 记录一次数据变更，之后的查询重新计算
+     */
+    public void invalidate() {
+        changeSequence.incrementAndGet();
+    }
+
+    /**
+     * 返回缓存的结果；没有缓存、已有数据变更或缓存已过期时调用 loader 重新计算
+     * 同一个键已有计算在进行、且开始于最近一次变更之后时，等待并返回它的结果；
+     * 开始于变更之前的计算结果已过时，此时另起一次计算
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CachedResponse<T> get(String key, Supplier<T> loader) {
+        // 先读序号再计算：计算期间发生的变更会使这次的结果在下次查询时失效
+        long sequence = changeSequence.get();
+        Entry entry = entries.get(key);
+        if (isFresh(entry, sequence)) {
+            hits.incrementAndGet();
+            return (CachedResponse<T>) entry.response;
+        }
+
+        Load created = new Load(sequence);
+        Load load = loads.compute(key, (k, current) -> current != null && current.sequence >= sequence ? current : created);
+        if (load != created) {
+            waits.incrementAndGet();
+            try {
+                return (CachedResponse<T>) load.future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            // 等待计算权期间其他线程可能刚写入了结果
+            entry = entries.get(key);
+            CachedResponse<T> response = isFresh(entry, sequence)
+                ? (CachedResponse<T>) entry.response : load(key, loader, sequence, entry);
+            load.future.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            load.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    private <T> CachedResponse<T> load(String key, Supplier<T> loader, long sequence, Entry previous) {
+        misses.incrementAndGet();
+        long now = System.currentTimeMillis();
+        T value = loader.get();
+        String eTag = eTag(value);
+        // 内容未变化时沿用原来的修改时间；Last-Modified 只有秒级精度，截断到秒
+        long lastModified = previous != null && eTag.equals(previous.response.getETag())
+            ? previous.response.getLastModified() : now / 1000 * 1000;
+        CachedResponse<T> response = new CachedResponse<>(value, eTag, lastModified);
+
+        // 键中包含服务 ID 等请求参数，达到上限时整体清空，避免无限增长
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            entries.clear();
+        }
+        entries.put(key, new Entry(sequence, now, response));
+        return response;
+    }
+
+    private boolean isFresh(Entry entry, long sequence) {
+        return entry != null && entry.sequence == sequence && System.currentTimeMillis() - entry.loadedAt < ttl;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 等待其他线程计算结果的次数
+     */
+    public long getWaits() {
+        return waits.get();
+    }
+
+    private String eTag(Object value) {
+        try {
+            return "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(value)) + "\"";
+        } catch (JsonProcessingException e) {
+            // 无法序列化时用计算时间作为版本，只是无法得到 304
+            logger.warn("Failed to serialize cached response for ETag", e);
+            return "\"" + Long.toHexString(System.nanoTime()) + "\"";
+        }
+    }
+
+    private static class Load {
+        private final long sequence;
+        private final CompletableFuture<CachedResponse<?>> future = new CompletableFuture<>();
+
+        private Load(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    private static class Entry {
+        private final long sequence;
+        private final long loadedAt;
+        private final CachedResponse<?> response;
+
+        private Entry(long sequence, long loadedAt, CachedResponse<?> response) {
+            this.sequence = sequence;
+            this.loadedAt = loadedAt;
+            this.response = response;
+        }
+    }
+
+    /**
+     * 缓存的计算结果及其 ETag、最后修改时间（毫秒时间戳）
+     */
+    public static class CachedResponse<T> {
+        private final T value;
+        private final String eTag;
+        private final long lastModified;
+
+        public CachedResponse(T value, String eTag, long lastModified) {
+            this.value = value;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
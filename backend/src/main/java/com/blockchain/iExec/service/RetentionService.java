@@ -0,0 +1,212 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.repository.TaskArchiveRepository;
+import com.blockchain.iExec.repository.TaskHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 数据保留服务 - 定时删除超过保留期的任务历史和归档任务
+ * 每批删除固定条数并在批次之间暂停，单次运行有时间上限，未删完的留到下一轮，
+ * 避免长事务和大批量删除影响前台请求的延迟。任务历史只删除已汇总到小时级汇总表的记录。
+ * 模拟任务由 MockIexecService 按过期时间分桶回收，不在此处理。
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionService.class);
+
+    @Autowired
+    private TaskHistoryRepository taskHistoryRepository;
+
+    @Autowired
+    private TaskArchiveRepository taskArchiveRepository;
+
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long historyRetentionMillis;
+    private final long archiveRetentionMillis;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final long maxRunMillis;
+
+    private volatile RetentionReport lastReport;
+
+    public RetentionService(PlatformTransactionManager transactionManager,
+                            @Value("${task.retention.enabled:true}") boolean enabled,
+                            @Value("${task.retention.history:2592000000}") long historyRetentionMillis,
+                            @Value("${task.retention.archive:7776000000}") long archiveRetentionMillis,
+                            @Value("${task.retention.batch-size:500}") int batchSize,
+                            @Value("${task.retention.batch-pause:50}") long batchPauseMillis,
+                            @Value("${task.retention.max-run-time:60000}") long maxRunMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.historyRetentionMillis = historyRetentionMillis;
+        this.archiveRetentionMillis = archiveRetentionMillis;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchPauseMillis = Math.max(0, batchPauseMillis);
+        this.maxRunMillis = maxRunMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${task.retention.interval:3600000}", initialDelayString = "${task.retention.interval:3600000}")
+    public void scheduledPurge() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            purge();
+        } catch (Exception e) {
+            logger.error("Error purging expired data", e);
+        }
+    }
+
+    /**
+     * 按配置的保留期清理一轮，保留期不大于 0 的表不清理
+     */
+    public RetentionReport purge() {
+        LocalDateTime now = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+        long deadline = start + maxRunMillis;
+
+        RetentionReport report = new RetentionReport();
+        report.setStartedAt(now);
+        if (historyRetentionMillis > 0) {
+            PurgeResult history = purgeBatches(now.minus(Duration.ofMillis(historyRetentionMillis)), deadline,
+                taskHistoryRepository::findRolledUpIdsCreatedBefore, taskHistoryRepository::deleteByIds);
+            report.setHistoryDeleted(history.deleted);
+            report.setCompleted(history.completed);
+        }
+        if (archiveRetentionMillis > 0) {
+            PurgeResult archive = purgeBatches(now.minus(Duration.ofMillis(archiveRetentionMillis)), deadline,
+                taskArchiveRepository::findIdsUpdatedBefore, taskArchiveRepository::deleteArchivedByIds);
+            report.setArchiveDeleted(archive.deleted);
+            report.setCompleted(report.isCompleted() && archive.completed);
+        }
+        report.setElapsedMs(System.currentTimeMillis() - start);
+        lastReport = report;
+
+        if (report.getHistoryDeleted() > 0 || report.getArchiveDeleted() > 0 || !report.isCompleted()) {
+            logger.info("Retention purge: {} history rows, {} archived tasks deleted in {} ms{}",
+                report.getHistoryDeleted(), report.getArchiveDeleted(), report.getElapsedMs(),
+                report.isCompleted() ? "" : " (time budget reached, continuing next run)");
+        }
+        return report;
+    }
+
+    /**
+     * 分批删除，直到没有过期数据或超过 deadline
+     */
+    private PurgeResult purgeBatches(LocalDateTime cutoff, long deadline,
+                                     BiFunction<LocalDateTime, Pageable, List<Long>> findIds,
+                                     Function<Collection<Long>, Integer> delete) {
+        PurgeResult result = new PurgeResult();
+        while (true) {
+            if (System.currentTimeMillis() >= deadline) {
+                result.completed = false;
+                return result;
+            }
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<Long> ids = findIds.apply(cutoff, PageRequest.of(0, batchSize));
+                return ids.isEmpty() ? 0 : delete.apply(ids);
+            });
+            if (deleted == null || deleted == 0) {
+                return result;
+            }
+            result.deleted += deleted;
+            if (deleted < batchSize) {
+                return result;
+            }
+            // 批次之间让出数据库
+            if (batchPauseMillis > 0) {
+                try {
+                    Thread.sleep(batchPauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    result.completed = false;
+                    return result;
+                }
+            }
+        }
+    }
+
+    /**
+     * 最近一次清理的结果，尚未运行时为 null
+     */
+    public RetentionReport getLastReport() {
+        return lastReport;
+    }
+
+    private static class PurgeResult {
+        private long deleted;
+        private boolean completed = true;
+    }
+
+    /**
+     * 清理结果类
+     */
+    public static class RetentionReport {
+        private LocalDateTime startedAt;
+        private long historyDeleted;
+        private long archiveDeleted;
+        private long elapsedMs;
+        private boolean completed = true;
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public void setStartedAt(LocalDateTime startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        public long getHistoryDeleted() {
+            return historyDeleted;
+        }
+
+        public void setHistoryDeleted(long historyDeleted) {
+            this.historyDeleted = historyDeleted;
+        }
+
+        public long getArchiveDeleted() {
+            return archiveDeleted;
+        }
+
+        public void setArchiveDeleted(long archiveDeleted) {
+            this.archiveDeleted = archiveDeleted;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public void setElapsedMs(long elapsedMs) {
+            this.elapsedMs = elapsedMs;
+        }
+
+        /**
+         * 是否已删完全部过期数据（false 表示达到单次运行时间上限，剩余部分下一轮继续）
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        public void setCompleted(boolean completed) {
+            this.completed = completed;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskArchiveRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 任务归档服务 - 定时将已结束且超过保留期的任务从热表批量移到归档表
+ * 每批在一个事务内完成 INSERT ... SELECT 与 DELETE，热表只保留进行中和近期结束的任务，
+ * 按状态 / 任务 ID 的查询始终在一张小表上进行。
+ * 批次之间暂停，单次运行有时间上限，积压较多（如首次启用归档）时未搬完的留到下一轮。
+ */
+@Service
+public class TaskArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskArchiveService.class);
+
+    // 与 TaskService 中的最终状态一致
+    private static final List<TaskStatus> TERMINAL_STATUSES =
+        List.of(TaskStatus.COMPLETED, TaskStatus.FAILED, TaskStatus.TIMEOUT);
+
+    @Autowired
+    private TaskArchiveRepository taskArchiveRepository;
+
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long retentionMillis;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final long maxRunMillis;
+
+    public TaskArchiveService(PlatformTransactionManager transactionManager,
+                              @Value("${task.archive.enabled:true}") boolean enabled,
+                              @Value("${task.archive.retention:604800000}") long retentionMillis,
+                              @Value("${task.archive.batch-size:1000}") int batchSize,
+                              @Value("${task.archive.batch-pause:50}") long batchPauseMillis,
+                              @Value("${task.archive.max-run-time:60000}") long maxRunMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.retentionMillis = retentionMillis;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchPauseMillis = Math.max(0, batchPauseMillis);
+        this.maxRunMillis = maxRunMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${task.archive.interval:3600000}", initialDelayString = "${task.archive.interval:3600000}")
+    public void scheduledArchive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archive(LocalDateTime.now().minus(Duration.ofMillis(retentionMillis)));
+        } catch (Exception e) {
+            logger.error("Error archiving tasks", e);
+        }
+    }
+
+    /**
+     * 归档最后更新早于 cutoff 的已结束任务，直到没有可归档的任务或超过单次运行的时间上限
+     * @return 本次归档的任务数
+     */
+    public long archive(LocalDateTime cutoff) {
+        long start = System.currentTimeMillis();
+        long deadline = start + maxRunMillis;
+        long total = 0;
+        boolean completed = true;
+        while (true) {
+            if (System.currentTimeMillis() >= deadline) {
+                completed = false;
+                break;
+            }
+            Integer moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            if (moved == null || moved == 0) {
+                break;
+            }
+            total += moved;
+            if (moved < batchSize) {
+                break;
+            }
+            // 批次之间让出数据库
+            if (batchPauseMillis > 0) {
+                try {
+                    Thread.sleep(batchPauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    completed = false;
+                    break;
+                }
+            }
+        }
+        if (total > 0 || !completed) {
+            logger.info("Archived {} tasks older than {} in {} ms{}", total, cutoff, System.currentTimeMillis() - start,
+                completed ? "" : " (time budget reached, continuing next run)");
+        }
+        return total;
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Long> ids = taskArchiveRepository.findArchivableIds(TERMINAL_STATUSES, cutoff, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int copied = taskArchiveRepository.copyToArchive(ids, LocalDateTime.now());
+        int deleted = taskArchiveRepository.deleteFromHot(ids);
+        if (copied != deleted) {
+            // 批次内的任务被并发删除，回滚整批，下一轮重试
+            throw new IllegalStateException("Archive batch mismatch: copied " + copied + ", deleted " + deleted);
+        }
+        return deleted;
+    }
+}
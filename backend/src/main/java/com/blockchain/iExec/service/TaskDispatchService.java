@@ -0,0 +1,430 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 任务分发服务 - 基于优先级队列的准入控制
+ * 新任务先按 calculatePriority 入队，并发执行数不超过自适应调度策略建议的上限；
+ * 定时重新打分，使等待久的任务优先级随时间上升（老化）。
+ * EDF 模式下按截止时间最早优先出队；两种模式在提交计算前都会按预测完成时间
+ * 检查截止时间，预计无法按时完成的任务直接拒绝，不再消耗 gas。
+ * 开启公平队列时，每个用户各自排队，用户之间按信誉加权轮转（WFQ），
+ * 单个用户大量提交任务只会占用自己的份额，不会拉高其他用户的等待时间。
+ * EDF 模式不使用公平队列：用户间轮转会让截止时间更早的任务排在其他用户较晚的任务之后，
+ * 破坏全局截止时间顺序，因此 EDF 模式下所有任务共用一个队列，严格按截止时间出队。
+ */
+@Service
+public class TaskDispatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskDispatchService.class);
+
+    // 调度策略不可用时的默认并发上限
+    private static final int DEFAULT_MAX_CONCURRENT_TASKS = 10;
+
+    // 分发模式：priority（优先级）或 edf（截止时间最早优先）
+    public static final String MODE_PRIORITY = "priority";
+    public static final String MODE_EDF = "edf";
+
+    // 关闭公平队列时所有任务共用的流标识
+    private static final String SHARED_FLOW = "";
+
+    @Autowired
+    private TaskSchedulerService taskSchedulerService;
+
+    @Autowired
+    private ComputeRouter computeRouter;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private DeadlineService deadlineService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    private final String mode;
+    private final boolean fairQueuing;
+
+    // 等待队列：按用户分流，用户内部 priority 模式优先级高者先出、edf 模式截止时间早者先出，相同时先到先出
+    private final FairQueue<QueuedTask> queue;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    // 以下字段均由 this 保护
+    private int inFlight;
+    private int maxConcurrentTasks = DEFAULT_MAX_CONCURRENT_TASKS;
+    private long dispatchedCount;
+    private long rejectedCount;
+    // 是否已有线程在分发：任务同步失败或同步完成时 onTaskFinished 会在分发过程中再次调用 drain，
+    // 这时只需由外层循环继续分发，不递归
+    private boolean draining;
+
+    public TaskDispatchService(@Value("${task.dispatch.mode:priority}") String mode,
+                               @Value("${task.dispatch.fair-queuing:true}") boolean fairQueuing) {
+        Comparator<QueuedTask> byPriority = Comparator.comparingInt(QueuedTask::getPriority).reversed();
+        Comparator<QueuedTask> order;
+        if (MODE_EDF.equalsIgnoreCase(mode)) {
+            order = Comparator.comparingLong(QueuedTask::getDeadlineMillis).thenComparing(byPriority);
+        } else if (MODE_PRIORITY.equalsIgnoreCase(mode)) {
+            order = byPriority;
+        } else {
+            throw new IllegalArgumentException("Unknown task.dispatch.mode: " + mode);
+        }
+        this.mode = mode.toLowerCase();
+        this.fairQueuing = fairQueuing && MODE_PRIORITY.equals(this.mode);
+        if (fairQueuing && !this.fairQueuing) {
+            logger.info("Fair queuing disabled in {} mode: tasks are dispatched in global deadline order", this.mode);
+        }
+        this.queue = new FairQueue<>(order.thenComparingLong(QueuedTask::getSequence));
+    }
+
+    /**
+     * 提交任务到等待队列
+     * @param task 已保存的任务实体
+     * @param serviceId 服务 ID
+     */
+    public void submit(TaskEntity task, BigInteger serviceId) {
+        QueuedTask queued = new QueuedTask(task, serviceId, sequence.incrementAndGet());
+        queued.setPriority(taskSchedulerService.calculatePriority(task));
+        String flow = fairQueuing && task.getUserAddress() != null ? task.getUserAddress() : SHARED_FLOW;
+        double weight = fairQueuing ? userWeight(task.getUserAddress()) : 1;
+
+        synchronized (this) {
+            queue.add(flow, weight, queued);
+            logger.info("Task {} queued with priority {} (queue size: {}, in flight: {}/{})",
+                task.getTaskId(), queued.getPriority(), queue.size(), inFlight, maxConcurrentTasks);
+        }
+
+        drain();
+    }
+
+    /**
+     * 定时重新计算队列中任务的优先级
+     * 等待时间加成按分钟计，默认每分钟重算一次即可保持排序准确
+     */
+    @Scheduled(fixedDelayString = "${task.dispatch.rescore-interval:60000}")
+    public void rescore() {
+        List<QueuedTask> snapshot;
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                queue.compact();
+                return;
+            }
+            snapshot = queue.items();
+        }
+
+        // 在锁外批量计算优先级，避免阻塞入队
+        List<TaskEntity> tasks = new ArrayList<>(snapshot.size());
+        for (QueuedTask queued : snapshot) {
+            tasks.add(queued.getTask());
+        }
+        List<Integer> priorities = taskSchedulerService.calculatePriorities(tasks);
+        for (int i = 0; i < snapshot.size(); i++) {
+            snapshot.get(i).setPendingPriority(priorities.get(i));
+        }
+
+        synchronized (this) {
+            // 重新堆化：只调整仍在队列中的任务
+            List<QueuedTask> remaining = queue.items();
+            for (QueuedTask queued : remaining) {
+                queued.applyPendingPriority();
+            }
+            queue.reorder();
+            queue.compact();
+            logger.debug("Rescored {} queued tasks", remaining.size());
+        }
+
+        drain();
+    }
+
+    /**
+     * 用户的公平队列权重：1 + 信誉分（0-1），没有信誉记录的用户为 1
+     * 信誉最高的用户最多获得两倍份额，低信誉用户不会被饿死
+     */
+    private double userWeight(String userAddress) {
+        try {
+            Double finalScore = userStatsService.getUserStats(userAddress).getFinalScore();
+            return finalScore != null ? 1 + Math.max(0, Math.min(1, finalScore)) : 1;
+        } catch (Exception e) {
+            logger.warn("Error loading user weight for {}: {}", userAddress, e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * 按自适应调度策略更新并发上限
+     * 策略读取内存中的吞吐窗口，开销很小，每次分发决策前都会刷新
+     */
+    private void refreshConcurrencyLimit() {
+        int recommended = taskSchedulerService.getAdaptiveSchedulingStrategy().getMaxConcurrentTasks();
+        if (recommended <= 0) {
+            return;
+        }
+        synchronized (this) {
+            if (recommended != maxConcurrentTasks) {
+                logger.info("Dispatcher concurrency limit changed: {} -> {}", maxConcurrentTasks, recommended);
+                maxConcurrentTasks = recommended;
+            }
+        }
+    }
+
+    /**
+     * 在并发上限内尽可能多地分发任务
+     * 同一时间只有一个线程在循环分发；其他线程（包括分发过程中同步回调的 onTaskFinished）
+     * 修改队列或并发数后发现已有线程在分发时直接返回，由该线程在退出前重新检查。
+     * 退出判断与 draining 标志在同一把锁下更新，不会漏掉退出前的最后一次变化。
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        try {
+            refreshConcurrencyLimit();
+            while (true) {
+                QueuedTask next;
+                synchronized (this) {
+                    if (inFlight >= maxConcurrentTasks || queue.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                    next = queue.poll();
+                    inFlight++;
+                }
+                if (!canMeetDeadline(next)) {
+                    reject(next);
+                    synchronized (this) {
+                        inFlight--;
+                        rejectedCount++;
+                    }
+                    continue;
+                }
+                dispatch(next);
+            }
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                draining = false;
+            }
+            throw e;
+        }
+    }
+
+    // 预测失败时照常分发，并保证已占用的并发槽位不会因异常泄漏
+    private boolean canMeetDeadline(QueuedTask queued) {
+        try {
+            return deadlineService.canMeetDeadline(queued.getTask());
+        } catch (Exception e) {
+            logger.warn("Error checking deadline of task {}: {}", queued.getTask().getTaskId(), e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * 拒绝无法按时完成的任务：标记为失败，不提交计算
+     */
+    private void reject(QueuedTask queued) {
+        String taskId = queued.getTask().getTaskId();
+        try {
+            long predicted = taskSchedulerService.predictCompletionTime(queued.getTask().getServiceId());
+            taskService.updateTaskErrorMessage(taskId, "Rejected: predicted completion time " + predicted
+                + "s exceeds deadline " + queued.getTask().getDeadline());
+            deadlineService.recordRejected();
+            logger.info("Task {} rejected before dispatch (deadline {})", taskId, queued.getTask().getDeadline());
+        } catch (Exception e) {
+            logger.error("Error rejecting task {}: {}", taskId, e.getMessage(), e);
+        }
+    }
+
+    private void dispatch(QueuedTask queued) {
+        String taskId = queued.getTask().getTaskId();
+        try {
+            // 排队期间任务可能已被删除、已失败或已由其他途径开始执行，这时不能再提交计算
+            if (!taskService.updateTaskStatus(taskId, TaskStatus.PROCESSING)) {
+                logger.info("Task {} skipped: no longer dispatchable", taskId);
+                onTaskFinished(taskId, null);
+                return;
+            }
+            synchronized (this) {
+                dispatchedCount++;
+            }
+            logger.info("Dispatching task {} (priority {})", taskId, queued.getPriority());
+
+            computeRouter.submit(queued.getTask(), queued.getServiceId())
+                .whenComplete((result, error) -> onTaskFinished(taskId, error));
+        } catch (Exception e) {
+            logger.error("Error dispatching task {}: {}", taskId, e.getMessage(), e);
+            onTaskFinished(taskId, e);
+        }
+    }
+
+    private void onTaskFinished(String taskId, Throwable error) {
+        if (error != null) {
+            logger.warn("Task {} finished with error: {}", taskId, error.getMessage());
+        }
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    /**
+     * 获取分发器状态
+     */
+    public synchronized DispatcherStats getStats() {
+        DispatcherStats stats = new DispatcherStats();
+        stats.setQueuedTasks(queue.size());
+        stats.setQueuedUsers(queue.activeFlowCount());
+        stats.setInFlightTasks(inFlight);
+        stats.setMaxConcurrentTasks(maxConcurrentTasks);
+        stats.setDispatchedTasks(dispatchedCount);
+        stats.setRejectedTasks(rejectedCount);
+        stats.setMode(mode);
+        return stats;
+    }
+
+    /**
+     * 队列中的任务
+     */
+    private static class QueuedTask {
+        private final TaskEntity task;
+        private final BigInteger serviceId;
+        private final long sequence;
+        private final long deadlineMillis;
+        private int priority;
+        private volatile int pendingPriority;
+
+        QueuedTask(TaskEntity task, BigInteger serviceId, long sequence) {
+            this.task = task;
+            this.serviceId = serviceId;
+            this.sequence = sequence;
+            this.deadlineMillis = task.getDeadline() != null
+                ? task.getDeadline().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : Long.MAX_VALUE;
+        }
+
+        TaskEntity getTask() {
+            return task;
+        }
+
+        BigInteger getServiceId() {
+            return serviceId;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * 截止时间（毫秒时间戳），没有截止时间的任务排在最后
+         */
+        long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        int getPriority() {
+            return priority;
+        }
+
+        void setPriority(int priority) {
+            this.priority = priority;
+            this.pendingPriority = priority;
+        }
+
+        void setPendingPriority(int pendingPriority) {
+            this.pendingPriority = pendingPriority;
+        }
+
+        void applyPendingPriority() {
+            this.priority = pendingPriority;
+        }
+    }
+
+    /**
+     * 分发器状态类
+     */
+    public static class DispatcherStats {
+        private int queuedTasks;
+        private int queuedUsers;
+        private int inFlightTasks;
+        private int maxConcurrentTasks;
+        private long dispatchedTasks;
+        private long rejectedTasks;
+        private String mode;
+
+        public int getQueuedTasks() {
+            return queuedTasks;
+        }
+
+        public void setQueuedTasks(int queuedTasks) {
+            this.queuedTasks = queuedTasks;
+        }
+
+        /**
+         * 有排队任务的用户数（未开启公平队列或 EDF 模式下为 0 或 1）
+         */
+        public int getQueuedUsers() {
+            return queuedUsers;
+        }
+
+        public void setQueuedUsers(int queuedUsers) {
+            this.queuedUsers = queuedUsers;
+        }
+
+        public int getInFlightTasks() {
+            return inFlightTasks;
+        }
+
+        public void setInFlightTasks(int inFlightTasks) {
+            this.inFlightTasks = inFlightTasks;
+        }
+
+        public int getMaxConcurrentTasks() {
+            return maxConcurrentTasks;
+        }
+
+        public void setMaxConcurrentTasks(int maxConcurrentTasks) {
+            this.maxConcurrentTasks = maxConcurrentTasks;
+        }
+
+        public long getDispatchedTasks() {
+            return dispatchedTasks;
+        }
+
+        public void setDispatchedTasks(long dispatchedTasks) {
+            this.dispatchedTasks = dispatchedTasks;
+        }
+
+        public long getRejectedTasks() {
+            return rejectedTasks;
+        }
+
+        public void setRejectedTasks(long rejectedTasks) {
+            this.rejectedTasks = rejectedTasks;
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public void setMode(String mode) {
+            this.mode = mode;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.blockchain.iExec.service;
 
 import com.blockchain.iExec.model.TaskEntity;
 import com.blockchain.iExec.model.TaskHistoryEntity;
+import com.blockchain.iExec.model.TaskStatus;
 import com.blockchain.iExec.repository.TaskHistoryRepository;
 import com.blockchain.iExec.service.IexecCliService.IexecTaskStatus;
 import org.slf4j.Logger;
@@ -13,7 +14,10 @@ import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 任务监控服务 - 定时轮询 iExec 网络获取任务状态
@@ -24,6 +28,9 @@ public class TaskMonitorService {
     
     private static final Logger logger = LoggerFactory.getLogger(TaskMonitorService.class);
     
+    // 未关联服务的任务（如模拟任务）在历史表中使用的服务ID
+    private static final String DEFAULT_SERVICE_ID = "default";
+    
     @Autowired
     private IexecCliService iexecCliService;
     
@@ -39,15 +46,28 @@ public class TaskMonitorService {
     @Autowired
     private ReputationService reputationService;
     
+    @Autowired
+    private TaskSchedulerService taskSchedulerService;
+    
+    @Autowired
+    private HistoryRollupService historyRollupService;
+    
     @Value("${task.monitor.interval:30000}")
     private long monitorInterval;
     
     @Value("${task.monitor.timeout:3600000}")
     private long taskTimeout;
     
+    @Value("${task.monitor.batch-size:500}")
+    private int monitorBatchSize;
+    
     @Value("${iexec.mock.enabled:true}")
     private boolean mockEnabled;
     
+    // 上一轮检查到的最后一个任务的位置 (createdAt, id)，下一轮从它之后继续；为 null 时从最早的任务开始
+    private LocalDateTime cursorCreatedAt;
+    private Long cursorId;
+    
     /**
      * 定时监控运行中的任务
      * 默认每30秒执行一次
@@ -57,8 +77,8 @@ public class TaskMonitorService {
         logger.debug("Starting task monitoring cycle");
         
         try {
-            // 获取所有运行中的任务
-            List<TaskEntity> runningTasks = taskService.getTasksByStatus("Running");
+            // 每轮最多检查 monitorBatchSize 个运行中的任务，按创建时间顺序轮转
+            List<TaskEntity> runningTasks = nextMonitorBatch();
             
             if (runningTasks.isEmpty()) {
                 logger.debug("No running tasks to monitor");
@@ -80,6 +100,39 @@ public class TaskMonitorService {
         }
     }
     
+    /**
+     * 取本轮要检查的运行中任务：从上一轮的位置之后按 (createdAt, id) 顺序继续，到末尾后回到最早的任务
+     * 运行中任务超过批大小时，每个任务至多 ceil(任务数 / 批大小) 轮被检查一次，不会一直只检查最早的一批
+     */
+    private List<TaskEntity> nextMonitorBatch() {
+        List<TaskEntity> batch = new ArrayList<>(cursorId == null
+            ? taskService.getOldestTasksByStatus(TaskStatus.RUNNING, monitorBatchSize)
+            : taskService.getTasksByStatusAfter(TaskStatus.RUNNING, cursorCreatedAt, cursorId, monitorBatchSize));
+        
+        if (cursorId != null && batch.size() < monitorBatchSize) {
+            // 到达末尾，从最早的任务补满本轮，遇到本轮已有的任务说明已覆盖全部运行中任务
+            Set<Long> ids = new HashSet<>();
+            batch.forEach(task -> ids.add(task.getId()));
+            for (TaskEntity task : taskService.getOldestTasksByStatus(TaskStatus.RUNNING, monitorBatchSize - batch.size())) {
+                if (!ids.add(task.getId())) {
+                    break;
+                }
+                batch.add(task);
+            }
+        }
+        
+        if (batch.size() < monitorBatchSize) {
+            // 本轮已覆盖全部运行中任务，下一轮从头开始
+            cursorCreatedAt = null;
+            cursorId = null;
+        } else {
+            TaskEntity last = batch.get(batch.size() - 1);
+            cursorCreatedAt = last.getCreatedAt();
+            cursorId = last.getId();
+        }
+        return batch;
+    }
+    
     /**
      * 监控单个任务
      */
@@ -130,11 +183,14 @@ public class TaskMonitorService {
         logger.info("Task {} completed successfully, result: {}", taskId, resultHash);
         
         try {
-            // 1. 更新任务状态和结果
-            taskService.updateTaskResult(taskId, resultHash);
+            // 1. 更新任务状态和结果（任务已被其他路径结束时不再重复记录）
+            if (!taskService.updateTaskResult(taskId, resultHash)) {
+                logger.info("Task {} already finished, skipping completion", taskId);
+                return;
+            }
             
             // 2. 保存任务历史记录
-            saveTaskHistory(task, "Completed", resultHash, null);
+            saveTaskHistory(task, TaskStatus.COMPLETED, resultHash, null, status.getResourceUsage());
             
             // 3. 更新用户信誉
             updateUserReputation(task, true, true);
@@ -160,11 +216,14 @@ public class TaskMonitorService {
         logger.error("Task {} failed: {}", taskId, errorMessage);
         
         try {
-            // 1. 更新任务状态
-            taskService.updateTaskErrorMessage(taskId, errorMessage);
+            // 1. 更新任务状态（任务已被其他路径结束时不再重复记录）
+            if (!taskService.updateTaskErrorMessage(taskId, errorMessage)) {
+                logger.info("Task {} already finished, skipping failure", taskId);
+                return;
+            }
             
             // 2. 保存任务历史记录
-            saveTaskHistory(task, "Failed", null, errorMessage);
+            saveTaskHistory(task, TaskStatus.FAILED, null, errorMessage, status.getResourceUsage());
             
             // 3. 更新用户信誉（失败记录）
             updateUserReputation(task, false, false);
@@ -188,11 +247,16 @@ public class TaskMonitorService {
         logger.warn("Task {} has timed out", taskId);
         
         try {
-            String errorMessage = "Task execution timeout after " + (taskTimeout / 60000) + " minutes";
-            taskService.updateTaskErrorMessage(taskId, errorMessage);
+            long elapsedMinutes = Duration.between(task.getCreatedAt(), LocalDateTime.now()).toMinutes();
+            String errorMessage = "Task execution timeout after " + elapsedMinutes + " minutes";
+            // 任务在超时判断之后已完成时，迟到的超时不会覆盖结果
+            if (!taskService.updateTaskTimeout(taskId, errorMessage)) {
+                logger.info("Task {} already finished, skipping timeout", taskId);
+                return;
+            }
             
             // 保存任务历史记录
-            saveTaskHistory(task, "Timeout", null, errorMessage);
+            saveTaskHistory(task, TaskStatus.TIMEOUT, null, errorMessage, null);
             
             // 更新用户信誉
             updateUserReputation(task, false, false);
@@ -207,6 +271,7 @@ public class TaskMonitorService {
     
     /**
      * 检查任务是否超时
+     * 超时时间取全局超时与任务截止时间中较晚者，SLA 较长的服务不会被全局超时提前终止
      */
     private boolean isTaskTimeout(TaskEntity task) {
         LocalDateTime createdAt = task.getCreatedAt();
@@ -214,22 +279,28 @@ public class TaskMonitorService {
             return false;
         }
         
-        Duration duration = Duration.between(createdAt, LocalDateTime.now());
-        return duration.toMillis() > taskTimeout;
+        LocalDateTime timeoutAt = createdAt.plus(Duration.ofMillis(taskTimeout));
+        if (task.getDeadline() != null && task.getDeadline().isAfter(timeoutAt)) {
+            timeoutAt = task.getDeadline();
+        }
+        return LocalDateTime.now().isAfter(timeoutAt);
     }
     
     /**
      * 保存任务历史记录
      */
-    private void saveTaskHistory(TaskEntity task, String finalStatus, String resultHash, String errorMessage) {
+    private void saveTaskHistory(TaskEntity task, TaskStatus finalStatus, String resultHash, String errorMessage,
+                                 String resourceUsage) {
         try {
             TaskHistoryEntity history = new TaskHistoryEntity();
             history.setTaskId(task.getTaskId());
             history.setIexecTaskId(task.getIexecTaskId());
+            history.setServiceId(task.getServiceId() != null ? task.getServiceId() : DEFAULT_SERVICE_ID);
             history.setUserAddress(task.getUserAddress());
             history.setStatus(finalStatus);
             history.setResultHash(resultHash);
             history.setErrorMessage(errorMessage);
+            history.setResourceRequirement(resourceUsage);
             history.setCreatedAt(task.getCreatedAt());
             history.setCompletedAt(LocalDateTime.now());
             
@@ -239,9 +310,13 @@ public class TaskMonitorService {
                 history.setActualTime(actualTime);
             }
             
-            taskHistoryRepository.save(history);
+            TaskHistoryEntity saved = taskHistoryRepository.save(history);
             logger.debug("Task history saved for task: {}", task.getTaskId());
             
+            // 增量更新汇总表和调度预测状态；两者都在写入后使响应缓存失效，监控统计不会缓存写入前的汇总
+            historyRollupService.record(saved);
+            taskSchedulerService.recordTaskHistory(saved);
+            
         } catch (Exception e) {
             logger.error("Error saving task history: {}", e.getMessage(), e);
         }
@@ -287,22 +362,14 @@ public class TaskMonitorService {
         MonitoringStats stats = new MonitoringStats();
         
         try {
-            List<TaskEntity> runningTasks = taskService.getTasksByStatus("Running");
-            stats.setRunningTasksCount(runningTasks.size());
-            
-            // 计算超时任务数
-            long timeoutCount = runningTasks.stream()
-                .filter(this::isTaskTimeout)
-                .count();
-            stats.setTimeoutTasksCount((int) timeoutCount);
-            
-            // 统计完成任务数
-            List<TaskHistoryEntity> completedTasks = taskHistoryRepository.findByStatus("Completed");
-            stats.setCompletedTasksCount(completedTasks.size());
+            // 运行中 / 超时任务数按索引 (status, created_at) 计数，不读取任务本身；超时条件与 isTaskTimeout 一致
+            stats.setRunningTasksCount(taskService.countTasksByStatus(TaskStatus.RUNNING));
+            stats.setTimeoutTasksCount(taskService.countTimedOutTasks(TaskStatus.RUNNING, taskTimeout));
             
-            // 统计失败任务数
-            List<TaskHistoryEntity> failedTasks = taskHistoryRepository.findByStatus("Failed");
-            stats.setFailedTasksCount(failedTasks.size());
+            // 完成 / 失败任务数来自汇总表
+            HistoryRollupService.RollupTotals totals = historyRollupService.getTotals();
+            stats.setCompletedTasksCount(totals.getSuccessCount());
+            stats.setFailedTasksCount(totals.getFailureCount());
             
         } catch (Exception e) {
             logger.error("Error getting monitoring stats", e);
@@ -315,41 +382,41 @@ public class TaskMonitorService {
      * 监控统计信息类
      */
     public static class MonitoringStats {
-        private int runningTasksCount;
-        private int timeoutTasksCount;
-        private int completedTasksCount;
-        private int failedTasksCount;
+        private long runningTasksCount;
+        private long timeoutTasksCount;
+        private long completedTasksCount;
+        private long failedTasksCount;
         
         // Getters and Setters
-        public int getRunningTasksCount() {
+        public long getRunningTasksCount() {
             return runningTasksCount;
         }
         
-        public void setRunningTasksCount(int runningTasksCount) {
+        public void setRunningTasksCount(long runningTasksCount) {
             this.runningTasksCount = runningTasksCount;
         }
         
-        public int getTimeoutTasksCount() {
+        public long getTimeoutTasksCount() {
             return timeoutTasksCount;
         }
         
-        public void setTimeoutTasksCount(int timeoutTasksCount) {
+        public void setTimeoutTasksCount(long timeoutTasksCount) {
             this.timeoutTasksCount = timeoutTasksCount;
         }
         
-        public int getCompletedTasksCount() {
+        public long getCompletedTasksCount() {
             return completedTasksCount;
         }
         
-        public void setCompletedTasksCount(int completedTasksCount) {
+        public void setCompletedTasksCount(long completedTasksCount) {
             this.completedTasksCount = completedTasksCount;
         }
         
-        public int getFailedTasksCount() {
+        public long getFailedTasksCount() {
             return failedTasksCount;
         }
         
-        public void setFailedTasksCount(int failedTasksCount) {
+        public void setFailedTasksCount(long failedTasksCount) {
             this.failedTasksCount = failedTasksCount;
         }
     }
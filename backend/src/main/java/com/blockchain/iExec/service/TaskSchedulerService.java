@@ -1,18 +1,35 @@
 package com.blockchain.iExec.service;
 
-import com.blockchain.iExec.model.ReputationEntity;
 import com.blockchain.iExec.model.TaskEntity;
 import com.blockchain.iExec.model.TaskHistoryEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.predictor.CompletionTimePredictor;
+import com.blockchain.iExec.predictor.CumulativeAveragePredictor;
+import com.blockchain.iExec.predictor.PredictorEnsemble;
+import com.blockchain.iExec.predictor.Predictors;
+import com.blockchain.iExec.predictor.WeightedMovingAveragePredictor;
 import com.blockchain.iExec.repository.TaskHistoryRepository;
+import com.blockchain.iExec.service.UserStatsService.UserStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 动态任务调度服务 - 核心创新点
@@ -27,68 +44,296 @@ public class TaskSchedulerService {
     private TaskHistoryRepository taskHistoryRepository;
     
     @Autowired
-    private ReputationService reputationService;
+    private UserStatsService userStatsService;
+    
+    @Autowired
+    private BacktestService backtestService;
+    
+    @Autowired
+    private ResponseCacheService responseCacheService;
+    
+    @Autowired
+    private HistoryRollupService historyRollupService;
     
     // 默认完成时间（秒）
     private static final long DEFAULT_COMPLETION_TIME = 300;  // 5分钟
     
-    // 历史数据窗口大小
-    private static final int HISTORY_WINDOW_SIZE = 20;
+    // 指数衰减常数 λ（task.predictor.lambda），衰减因子为相邻样本权重比 e^(-λ)
+    private final double lambda;
+    private final double completionTimeDecay;
+    
+    // 每个服务的完成时间统计（不可变快照，读取无锁）
+    private final Map<String, CompletionTimeStats> completionTimeStats = new ConcurrentHashMap<>();
+    
+    // 每个服务的影子预测器组合：多个预测器并行评分，对外使用滚动误差最小者
+    private final Map<String, PredictorEnsemble> predictorEnsembles = new ConcurrentHashMap<>();
+    
+    // 吞吐窗口：1 秒一个桶，覆盖最近 1 小时
+    private static final long THROUGHPUT_BUCKET_MILLIS = 1000;
+    private static final int THROUGHPUT_BUCKET_COUNT = 3600;
+    private static final long ONE_MINUTE_MILLIS = 60_000;
+    
+    private final ThroughputWindow throughputWindow =
+        new ThroughputWindow(THROUGHPUT_BUCKET_MILLIS, THROUGHPUT_BUCKET_COUNT);
+    
+    // 每个服务 / 每个用户的完成时间分位数草图
+    // 用户数没有上限，用户草图按最近使用保留 userSketchCacheSize 个（访问顺序的 LinkedHashMap，读写都需持有其锁）
+    private final Map<String, LatencySketch> serviceLatencySketches = new ConcurrentHashMap<>();
+    private final Map<String, LatencySketch> userLatencySketches;
+    
+    // 每个服务的实际资源使用聚合
+    private final Map<String, ResourceUsageStats> resourceUsageStats = new ConcurrentHashMap<>();
+    
+    // 资源预测使用的分位点：覆盖 95% 的历史任务，避免按最大值过度分配
+    private static final double RESOURCE_QUANTILE = 0.95;
+    
+    // 基准对比结果缓存（按服务），达到上限时整体清空
+    private static final int COMPARISON_CACHE_MAX_ENTRIES = 1024;
+    private final Map<String, PerformanceComparison> comparisonCache = new ConcurrentHashMap<>();
+    // 正在进行的回放，按服务区分
+    private final Map<String, CompletableFuture<PerformanceComparison>> comparisonLoads = new ConcurrentHashMap<>();
+    private final long compareCacheTtl;
+    
+    public TaskSchedulerService(@Value("${user.latency.cache-size:10000}") int userSketchCacheSize,
+                                @Value("${task.compare.cache-ttl:300000}") long compareCacheTtl,
+                                @Value("${task.predictor.lambda:0.1}") double lambda) {
+        this.compareCacheTtl = compareCacheTtl;
+        this.lambda = lambda;
+        this.completionTimeDecay = Math.exp(-lambda);
+        this.userLatencySketches = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LatencySketch> eldest) {
+                return size() > userSketchCacheSize;
+            }
+        };
+    }
+    
+    /**
+     * 重建预测状态，由 RecoveryService 在启动时调用，重建结果与进程一直运行时累积的状态一致：
+     * 服务的分位数草图由小时级汇总表中持久化的草图合并得到；完成时间统计、影子预测器、
+     * 用户草图和资源使用聚合按写入顺序流式回放一遍历史表，尚未汇总的记录同时补入服务草图。
+     * 100 万行历史约需 10 秒（启动恢复的耗时目标为 task.recovery.target-time）。
+     */
+    @Transactional(readOnly = true)
+    public void rebuildPredictorState() {
+        try {
+            long start = System.currentTimeMillis();
+            serviceLatencySketches.putAll(historyRollupService.mergeServiceSketches());
+            long rows = 0;
+            try (Stream<Object[]> stream = taskHistoryRepository.streamCompletedForRebuild()) {
+                for (Object[] row : (Iterable<Object[]>) stream::iterator) {
+                    observeCompleted((String) row[0], (String) row[1], (Long) row[2], (String) row[3],
+                        !(Boolean) row[4]);
+                    rows++;
+                }
+            }
+            responseCacheService.invalidate();
+            logger.info("Rebuilt completion time predictor for {} services from {} tasks in {} ms",
+                completionTimeStats.size(), rows, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Error rebuilding completion time predictor state", e);
+        }
+    }
+    
+    /**
+     * 记录一条新写入的任务历史，增量更新预测状态
+     * 由写入历史记录的一方在保存后调用
+     */
+    public void recordTaskHistory(TaskHistoryEntity history) {
+        try {
+            updatePredictorState(history);
+            responseCacheService.invalidate();
+            userStatsService.recordTaskOutcome(history.getUserAddress(), history.getStatus() == TaskStatus.COMPLETED);
+        } catch (Exception e) {
+            logger.error("Error recording task history for task: {}", history.getTaskId(), e);
+        }
+    }
+    
+    private void updatePredictorState(TaskHistoryEntity history) {
+        if (history.getStatus() != TaskStatus.COMPLETED) {
+            return;
+        }
+        observeCompleted(history.getServiceId(), history.getUserAddress(), history.getActualTime(),
+            history.getResourceRequirement(), true);
+    }
+    
+    /**
+     * 用一个已完成任务更新预测状态
+     * @param updateServiceSketch 是否写入服务草图（启动重建时已汇总的记录包含在汇总表的草图中，不重复写入）
+     */
+    private void observeCompleted(String serviceId, String userAddress, Long actualTime, String resourceRequirement,
+                                  boolean updateServiceSketch) {
+        if (resourceRequirement != null) {
+            resourceUsageStats.computeIfAbsent(serviceId, id -> new ResourceUsageStats()).record(resourceRequirement);
+        }
+        if (actualTime == null || actualTime <= 0) {
+            return;
+        }
+        double sample = actualTime;
+        completionTimeStats.compute(serviceId, (id, stats) ->
+            (stats == null ? CompletionTimeStats.EMPTY : stats).update(sample, completionTimeDecay));
+        predictorEnsembles.computeIfAbsent(serviceId, id -> new PredictorEnsemble(Predictors.defaults(lambda)))
+            .observe(sample);
+        
+        if (updateServiceSketch) {
+            serviceLatencySketches.computeIfAbsent(serviceId, id -> new LatencySketch()).add(sample);
+        }
+        if (userAddress != null) {
+            LatencySketch sketch;
+            synchronized (userLatencySketches) {
+                sketch = userLatencySketches.computeIfAbsent(userAddress, id -> new LatencySketch());
+            }
+            sketch.add(sample);
+        }
+    }
+    
+    /**
+     * 记录任务到达最终状态（完成 / 失败），更新吞吐窗口
+     * 
+     * @param success 是否成功完成
+     * @param latencySeconds 任务耗时（秒），未知时传负数
+     */
+    public void recordTaskFinished(boolean success, long latencySeconds) {
+        throughputWindow.record(System.currentTimeMillis(), success, latencySeconds);
+    }
+    
+    /**
+     * 用最近 1 小时写入历史表的结束任务重建吞吐窗口，由 RecoveryService 在启动时调用
+     * 吞吐窗口只保存在内存中，不重建时重启后 1 小时内的吞吐、失败率统计偏低
+     * 
+     * @return 写入窗口的任务数
+     */
+    @Transactional(readOnly = true)
+    public long seedThroughputWindow() {
+        long seeded = 0;
+        LocalDateTime since = LocalDateTime.now().minus(Duration.ofMillis(THROUGHPUT_BUCKET_MILLIS * THROUGHPUT_BUCKET_COUNT));
+        try (Stream<Object[]> stream = taskHistoryRepository.streamFinishedSince(since)) {
+            for (Object[] row : (Iterable<Object[]>) stream::iterator) {
+                long completedAt = ((LocalDateTime) row[0]).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                Long actualTime = (Long) row[2];
+                throughputWindow.record(completedAt, row[1] == TaskStatus.COMPLETED, actualTime != null ? actualTime : -1);
+                seeded++;
+            }
+            responseCacheService.invalidate();
+            logger.info("Seeded throughput window with {} tasks finished since {}", seeded, since);
+        } catch (Exception e) {
+            logger.error("Error seeding throughput window from task history", e);
+        }
+        return seeded;
+    }
     
     /**
-     * 预测任务完成时间（核心算法1：加权移动平均）
-     * 使用指数衰减权重，越近的历史数据权重越高
+     * 按分位数预测服务的完成时间（如 q=0.95 即 p95）
+     * 
+     * @param serviceId 服务ID
+     * @param q 分位点 [0, 1]
+     * @return 预测的完成时间（秒）
+     */
+    public long predictCompletionTimeQuantile(String serviceId, double q) {
+        return quantileOrDefault(serviceLatencySketches.get(serviceId), q);
+    }
+    
+    /**
+     * 按分位数预测某个用户任务的完成时间
+     */
+    public long predictUserCompletionTimeQuantile(String userAddress, double q) {
+        LatencySketch sketch;
+        synchronized (userLatencySketches) {
+            sketch = userLatencySketches.get(userAddress);
+        }
+        return quantileOrDefault(sketch, q);
+    }
+    
+    /**
+     * 当前保留草图的用户数
+     */
+    public int getUserLatencySketchCount() {
+        synchronized (userLatencySketches) {
+            return userLatencySketches.size();
+        }
+    }
+    
+    /**
+     * 预测区间：以 level 为置信水平的双侧分位数区间
+     * 
+     * @param serviceId 服务ID
+     * @param level 置信水平，如 0.9 对应 [p5, p95]
+     */
+    public PredictionInterval predictCompletionInterval(String serviceId, double level) {
+        if (level <= 0 || level >= 1) {
+            throw new IllegalArgumentException("Confidence level must be in (0, 1): " + level);
+        }
+        LatencySketch sketch = serviceLatencySketches.get(serviceId);
+        
+        PredictionInterval interval = new PredictionInterval();
+        interval.setLevel(level);
+        interval.setPointEstimate(predictCompletionTime(serviceId));
+        interval.setLower(quantileOrDefault(sketch, (1 - level) / 2));
+        interval.setUpper(quantileOrDefault(sketch, (1 + level) / 2));
+        interval.setSampleCount(sketch != null ? sketch.getCount() : 0);
+        return interval;
+    }
+    
+    /**
+     * 导出服务的延迟草图副本（可与其他节点 / 时间窗口的草图合并）
+     */
+    public LatencySketch getServiceLatencySketch(String serviceId) {
+        LatencySketch sketch = serviceLatencySketches.get(serviceId);
+        return sketch != null ? sketch.copy() : null;
+    }
+    
+    private long quantileOrDefault(LatencySketch sketch, double q) {
+        if (sketch == null || sketch.getCount() == 0) {
+            return DEFAULT_COMPLETION_TIME;
+        }
+        return Math.round(sketch.quantile(q));
+    }
+    
+    /**
+     * 获取服务的完成时间统计（指数加权均值与方差），无数据时返回 null
+     */
+    public CompletionTimeStats getCompletionTimeStats(String serviceId) {
+        return completionTimeStats.get(serviceId);
+    }
+    
+    /**
+     * 预测任务完成时间（核心算法1：加权移动平均 + 在线模型选择）
+     * 默认使用指数衰减权重，越近的历史数据权重越高：w(i) = e^(-λ*i)，O(1) 增量维护；
+     * 样本足够后改用该服务影子预测器中滚动误差最小的一个
      * 
      * @param serviceId 服务ID
      * @return 预测的完成时间（秒）
      */
     public long predictCompletionTime(String serviceId) {
-        logger.debug("Predicting completion time for service: {}", serviceId);
+        CompletionTimeStats stats = serviceId != null ? completionTimeStats.get(serviceId) : null;
         
-        try {
-            // 1. 获取该服务的历史任务数据
-            List<TaskHistoryEntity> history = taskHistoryRepository
-                .findByServiceIdOrderByCreatedAtDesc(serviceId)
-                .stream()
-                .filter(h -> "Completed".equals(h.getStatus()))
-                .filter(h -> h.getActualTime() != null && h.getActualTime() > 0)
-                .limit(HISTORY_WINDOW_SIZE)
-                .collect(Collectors.toList());
-            
-            if (history.isEmpty()) {
-                logger.debug("No historical data for service {}, using default time", serviceId);
-                return DEFAULT_COMPLETION_TIME;
-            }
-            
-            // 2. 计算加权移动平均（WMA - Weighted Moving Average）
-            double weightedSum = 0;
-            double weightSum = 0;
-            
-            for (int i = 0; i < history.size(); i++) {
-                // 使用指数衰减权重：w(i) = e^(-λ*i)，其中 λ = 0.1
-                double weight = Math.exp(-0.1 * i);
-                long completionTime = history.get(i).getActualTime();
-                
-                weightedSum += completionTime * weight;
-                weightSum += weight;
-            }
-            
-            long predictedTime = (long) (weightedSum / weightSum);
-            
-            logger.info("Predicted completion time for service {}: {} seconds (based on {} samples)",
-                serviceId, predictedTime, history.size());
-            
-            return predictedTime;
-            
-        } catch (Exception e) {
-            logger.error("Error predicting completion time for service: {}", serviceId, e);
+        if (stats == null) {
+            logger.debug("No historical data for service {}, using default time", serviceId);
             return DEFAULT_COMPLETION_TIME;
         }
+        
+        PredictorEnsemble ensemble = predictorEnsembles.get(serviceId);
+        double selected = ensemble != null ? ensemble.predict() : Double.NaN;
+        long predictedTime = Double.isNaN(selected) ? (long) stats.getMean() : Math.round(selected);
+        
+        logger.debug("Predicted completion time for service {}: {} seconds (based on {} samples, predictor {})",
+            serviceId, predictedTime, stats.getCount(), ensemble != null ? ensemble.getActiveName() : null);
+        
+        return predictedTime;
+    }
+    
+    /**
+     * 获取服务各影子预测器的滚动误差与选择状态，无数据时返回空列表
+     */
+    public List<PredictorEnsemble.PredictorStatus> getPredictorStatus(String serviceId) {
+        PredictorEnsemble ensemble = predictorEnsembles.get(serviceId);
+        return ensemble != null ? ensemble.getStatus() : Collections.emptyList();
     }
     
     /**
      * 计算任务优先级（核心算法2：多因素优先级计算）
      * 考虑因素：用户信誉、等待时间、支付金额、历史成功率
+     * 信誉分与成功率来自增量维护的用户统计缓存，为常数时间查询
      * 
      * @param task 任务实体
      * @return 优先级分数（越高越优先）
@@ -97,25 +342,7 @@ public class TaskSchedulerService {
         logger.debug("Calculating priority for task: {}", task.getTaskId());
         
         try {
-            int basePriority = 100;
-            
-            // 1. 用户信誉加成（0-50分）
-            int reputationBonus = calculateReputationBonus(task.getUserAddress());
-            
-            // 2. 等待时间惩罚（每分钟+0.5分，鼓励处理等待久的任务）
-            int waitingBonus = calculateWaitingBonus(task.getCreatedAt());
-            
-            // 3. 支付金额加成（支付越多优先级越高，0-30分）
-            int paymentBonus = calculatePaymentBonus(task);
-            
-            // 4. 历史成功率加成（用户历史任务成功率，0-20分）
-            int successRateBonus = calculateSuccessRateBonus(task.getUserAddress());
-            
-            int finalPriority = basePriority + reputationBonus + waitingBonus + paymentBonus + successRateBonus;
-            
-            logger.info("Task {} priority: {} (reputation: {}, waiting: {}, payment: {}, successRate: {})",
-                task.getTaskId(), finalPriority, reputationBonus, waitingBonus, paymentBonus, successRateBonus);
-            
+            int finalPriority = calculatePriority(task, userStatsService.getUserStats(task.getUserAddress()), true);
             return finalPriority;
             
         } catch (Exception e) {
@@ -125,22 +352,65 @@ public class TaskSchedulerService {
     }
     
     /**
-     * 计算信誉加成
+     * 批量计算任务优先级：所有用户统计一次取齐，再逐个打分
+     * 
+     * @param tasks 任务列表
+     * @return 与输入顺序一致的优先级列表
      */
-    private int calculateReputationBonus(String userAddress) {
+    public List<Integer> calculatePriorities(List<TaskEntity> tasks) {
+        List<Integer> priorities = new ArrayList<>(tasks.size());
+        
+        Map<String, UserStats> statsByUser;
         try {
-            ReputationEntity reputation = reputationService.getReputationByAddress(userAddress);
-            if (reputation == null) {
-                return 0;
-            }
-            
-            // 信誉分数 0-1 映射到 0-50 分
-            return (int) (reputation.getFinalScore() * 50);
-            
+            statsByUser = userStatsService.getUserStats(
+                tasks.stream().map(TaskEntity::getUserAddress).collect(Collectors.toSet()));
         } catch (Exception e) {
-            logger.error("Error calculating reputation bonus", e);
+            logger.error("Error loading user stats for batch priority calculation", e);
+            statsByUser = Collections.emptyMap();
+        }
+        
+        for (TaskEntity task : tasks) {
+            UserStats stats = statsByUser.getOrDefault(task.getUserAddress(), UserStats.EMPTY);
+            priorities.add(calculatePriority(task, stats, false));
+        }
+        return priorities;
+    }
+    
+    private int calculatePriority(TaskEntity task, UserStats stats, boolean verbose) {
+        int basePriority = 100;
+        
+        // 1. 用户信誉加成（0-50分）
+        int reputationBonus = calculateReputationBonus(stats);
+        
+        // 2. 等待时间惩罚（每分钟+0.5分，鼓励处理等待久的任务）
+        int waitingBonus = calculateWaitingBonus(task.getCreatedAt());
+        
+        // 3. 支付金额加成（支付越多优先级越高，0-30分）
+        int paymentBonus = calculatePaymentBonus(task);
+        
+        // 4. 历史成功率加成（用户历史任务成功率，0-20分）
+        int successRateBonus = calculateSuccessRateBonus(stats);
+        
+        int finalPriority = basePriority + reputationBonus + waitingBonus + paymentBonus + successRateBonus;
+        
+        if (verbose) {
+            logger.info("Task {} priority: {} (reputation: {}, waiting: {}, payment: {}, successRate: {})",
+                task.getTaskId(), finalPriority, reputationBonus, waitingBonus, paymentBonus, successRateBonus);
+        }
+        
+        return finalPriority;
+    }
+    
+    /**
+     * 计算信誉加成
+     */
+    private int calculateReputationBonus(UserStats stats) {
+        if (stats.getFinalScore() == null) {
             return 0;
         }
+        
+        // 信誉分数 0-1 映射到 0-50 分
+        return (int) (stats.getFinalScore() * 50);
     }
     
     /**
@@ -172,32 +442,21 @@ public class TaskSchedulerService {
     /**
      * 计算历史成功率加成
      */
-    private int calculateSuccessRateBonus(String userAddress) {
-        try {
-            List<TaskHistoryEntity> userHistory = taskHistoryRepository.findByUserAddress(userAddress);
-            
-            if (userHistory.isEmpty()) {
-                return 10;  // 新用户给予基础加成
-            }
-            
-            long completedCount = userHistory.stream()
-                .filter(h -> "Completed".equals(h.getStatus()))
-                .count();
-            
-            double successRate = (double) completedCount / userHistory.size();
-            
-            // 成功率 0-1 映射到 0-20 分
-            return (int) (successRate * 20);
-            
-        } catch (Exception e) {
-            logger.error("Error calculating success rate bonus", e);
-            return 0;
+    private int calculateSuccessRateBonus(UserStats stats) {
+        if (stats.getTotalTasks() == 0) {
+            return 10;  // 新用户给予基础加成
         }
+        
+        double successRate = (double) stats.getCompletedTasks() / stats.getTotalTasks();
+        
+        // 成功率 0-1 映射到 0-20 分
+        return (int) (successRate * 20);
     }
     
     /**
      * 预测资源需求（核心算法3：资源需求预测）
-     * 基于历史数据预测任务所需资源
+     * 基于历史任务记录的实际资源使用（resourceRequirement JSON），
+     * 每个维度取 p95 并取整（草图误差范围内的整数不再向上进位）；无历史数据时使用默认配置
      * 
      * @param serviceId 服务ID
      * @return 资源需求描述
@@ -205,28 +464,17 @@ public class TaskSchedulerService {
     public ResourceRequirement predictResourceRequirement(String serviceId) {
         logger.debug("Predicting resource requirement for service: {}", serviceId);
         
+        ResourceRequirement requirement = new ResourceRequirement();
         try {
-            List<TaskHistoryEntity> history = taskHistoryRepository
-                .findByServiceIdOrderByCreatedAtDesc(serviceId)
-                .stream()
-                .limit(HISTORY_WINDOW_SIZE)
-                .collect(Collectors.toList());
-            
-            ResourceRequirement requirement = new ResourceRequirement();
-            
-            if (history.isEmpty()) {
-                // 默认资源配置
-                requirement.setCpuCores(1);
-                requirement.setMemoryMB(512);
-                requirement.setStorageGB(1);
-                return requirement;
+            ResourceUsageStats stats = resourceUsageStats.get(serviceId);
+            if (stats == null) {
+                return requirement;  // 默认资源配置
             }
             
-            // 基于历史数据计算平均资源需求
-            // 这里简化处理，实际应该解析 resourceRequirement JSON 字段
-            requirement.setCpuCores(2);
-            requirement.setMemoryMB(1024);
-            requirement.setStorageGB(2);
+            requirement.setCpuCores(stats.getCpuCores().requirement(RESOURCE_QUANTILE, requirement.getCpuCores()));
+            requirement.setMemoryMB(stats.getMemoryMB().requirement(RESOURCE_QUANTILE, requirement.getMemoryMB()));
+            requirement.setStorageGB(stats.getStorageGB().requirement(RESOURCE_QUANTILE, requirement.getStorageGB()));
+            requirement.setSampleCount(stats.getCpuCores().getCount());
             
             logger.info("Predicted resource requirement for service {}: {} cores, {} MB RAM, {} GB storage",
                 serviceId, requirement.getCpuCores(), requirement.getMemoryMB(), requirement.getStorageGB());
@@ -239,42 +487,45 @@ public class TaskSchedulerService {
         }
     }
     
+    /**
+     * 获取服务的资源使用聚合（均值、最大值、分位数），无数据时返回 null
+     */
+    public ResourceUsageStats getResourceUsageStats(String serviceId) {
+        return resourceUsageStats.get(serviceId);
+    }
+    
     /**
      * 动态调整任务调度策略（核心算法4：自适应调度）
      * 根据系统负载和历史性能动态调整
+     * 数据来自内存中的吞吐窗口（按任务结束时间统计），读取为 O(桶数)，不访问数据库
      * 
      * @return 调度策略建议
      */
     public SchedulingStrategy getAdaptiveSchedulingStrategy() {
-        logger.debug("Calculating adaptive scheduling strategy");
-        
         try {
-            // 1. 分析当前系统负载
-            List<TaskHistoryEntity> recentTasks = taskHistoryRepository
-                .findByCreatedAtBetween(
-                    LocalDateTime.now().minusHours(1),
-                    LocalDateTime.now()
-                );
+            long now = System.currentTimeMillis();
+            ThroughputWindow.WindowStats lastMinute = throughputWindow.read(now, ONE_MINUTE_MILLIS);
+            ThroughputWindow.WindowStats last5Minutes = throughputWindow.read(now, 5 * ONE_MINUTE_MILLIS);
+            ThroughputWindow.WindowStats lastHour = throughputWindow.read(now, 60 * ONE_MINUTE_MILLIS);
             
             SchedulingStrategy strategy = new SchedulingStrategy();
             
-            // 2. 计算系统吞吐量
-            long completedInLastHour = recentTasks.stream()
-                .filter(h -> "Completed".equals(h.getStatus()))
-                .count();
-            
+            // 1. 计算系统吞吐量（最近一小时完成数）
+            long completedInLastHour = lastHour.getCompleted();
             strategy.setThroughput(completedInLastHour);
-            
-            // 3. 计算平均响应时间
-            double avgResponseTime = recentTasks.stream()
-                .filter(h -> h.getActualTime() != null)
-                .mapToLong(TaskHistoryEntity::getActualTime)
-                .average()
-                .orElse(DEFAULT_COMPLETION_TIME);
-            
+            strategy.setCompletedLastMinute(lastMinute.getCompleted());
+            strategy.setCompletedLast5Minutes(last5Minutes.getCompleted());
+            strategy.setFailedLastHour(lastHour.getFailed());
+            strategy.setFailureRate(lastHour.getFailureRate());
+            
+            // 2. 计算平均响应时间
+            double avgResponseTime = lastHour.getAverageLatency();
+            if (avgResponseTime < 0) {
+                avgResponseTime = DEFAULT_COMPLETION_TIME;
+            }
             strategy.setAverageResponseTime((long) avgResponseTime);
             
-            // 4. 根据负载调整策略
+            // 3. 根据负载调整策略
             if (completedInLastHour < 10) {
                 strategy.setRecommendation("LOW_LOAD");
                 strategy.setMaxConcurrentTasks(10);
@@ -286,7 +537,7 @@ public class TaskSchedulerService {
                 strategy.setMaxConcurrentTasks(30);
             }
             
-            logger.info("Adaptive scheduling strategy: {} tasks/hour, avg response: {}s, recommendation: {}",
+            logger.debug("Adaptive scheduling strategy: {} tasks/hour, avg response: {}s, recommendation: {}",
                 completedInLastHour, avgResponseTime, strategy.getRecommendation());
             
             return strategy;
@@ -299,33 +550,80 @@ public class TaskSchedulerService {
     
     /**
      * 对比基准算法性能（用于学术论文）
+     * 基准为累计平均（CMA，对应历史表上的 AVG 查询），对比对象为加权移动平均 WMA(20, λ)；
+     * 两者的预测值和 MAE 都来自同一次按时间顺序的历史回放，预测值是回放完全部历史后各自的输出。
+     * 回放需要读取服务的全部历史，结果按服务缓存 compareCacheTtl 毫秒；
+     * 同一服务同一时间只进行一次回放，并发请求等待并共用这次的结果，不影响其他服务的请求。
      * 
      * @param serviceId 服务ID
      * @return 性能对比结果
      */
     public PerformanceComparison compareWithBaseline(String serviceId) {
+        PerformanceComparison cached = freshComparison(serviceId);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<PerformanceComparison> created = new CompletableFuture<>();
+        CompletableFuture<PerformanceComparison> load = comparisonLoads.putIfAbsent(serviceId, created);
+        if (load != null) {
+            return load.join();
+        }
+        try {
+            // 取得回放权之前其他请求可能刚完成同一服务的回放
+            PerformanceComparison comparison = freshComparison(serviceId);
+            if (comparison == null) {
+                comparison = computeComparison(serviceId);
+                // 没有历史的服务（包括不存在的服务 ID）同样缓存，避免重复回放；服务 ID 来自请求参数，达到上限时整体清空
+                if (comparisonCache.size() >= COMPARISON_CACHE_MAX_ENTRIES && !comparisonCache.containsKey(serviceId)) {
+                    comparisonCache.clear();
+                }
+                comparisonCache.put(serviceId, comparison);
+            }
+            created.complete(comparison);
+            return comparison;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            comparisonLoads.remove(serviceId, created);
+        }
+    }
+    
+    private PerformanceComparison freshComparison(String serviceId) {
+        PerformanceComparison cached = comparisonCache.get(serviceId);
+        return cached != null && System.currentTimeMillis() - cached.getComputedAt() < compareCacheTtl ? cached : null;
+    }
+    
+    private PerformanceComparison computeComparison(String serviceId) {
         logger.info("Comparing scheduling performance for service: {}", serviceId);
         
         PerformanceComparison comparison = new PerformanceComparison();
+        comparison.setComputedAt(System.currentTimeMillis());
         
         try {
-            // 1. 获取使用我们算法的结果
-            long ourPrediction = predictCompletionTime(serviceId);
-            comparison.setWeightedMovingAverage(ourPrediction);
-            
-            // 2. 简单移动平均（SMA - Simple Moving Average）作为基准
-            Double simpleAvg = taskHistoryRepository.getAverageCompletionTime(serviceId);
-            comparison.setSimpleMovingAverage(simpleAvg != null ? simpleAvg.longValue() : DEFAULT_COMPLETION_TIME);
-            
-            // 3. 计算改进百分比
-            if (simpleAvg != null && simpleAvg > 0) {
-                double improvement = ((simpleAvg - ourPrediction) / simpleAvg) * 100;
-                comparison.setImprovementPercentage(improvement);
+            // 按时间顺序回放历史，基准在前
+            List<Supplier<CompletionTimePredictor>> predictors = List.of(
+                CumulativeAveragePredictor::new,
+                () -> new WeightedMovingAveragePredictor(Predictors.DEFAULT_WINDOW_SIZE, lambda));
+            List<BacktestService.PredictorScore> scores = backtestService.backtest(serviceId, predictors).getScores();
+            BacktestService.PredictorScore baseline = scores.get(0);
+            BacktestService.PredictorScore ours = scores.get(1);
+            comparison.setBaselineName(baseline.getName());
+            comparison.setBaselinePrediction(predictionOrDefault(baseline));
+            comparison.setBaselineMae(baseline.getMae());
+            comparison.setAlgorithmName(ours.getName());
+            comparison.setAlgorithmPrediction(predictionOrDefault(ours));
+            comparison.setAlgorithmMae(ours.getMae());
+            comparison.setSampleCount(ours.getCount());
+            
+            // 改进百分比：误差降低的比例
+            if (baseline.getMae() > 0) {
+                comparison.setImprovementPercentage((baseline.getMae() - ours.getMae()) / baseline.getMae() * 100);
             }
             
-            logger.info("Performance comparison - WMA: {}s, SMA: {}s, Improvement: {}%",
-                comparison.getWeightedMovingAverage(),
-                comparison.getSimpleMovingAverage(),
+            logger.info("Performance comparison - {}: {}s (MAE {}), {}: {}s (MAE {}), Improvement: {}%",
+                ours.getName(), comparison.getAlgorithmPrediction(), ours.getMae(),
+                baseline.getName(), comparison.getBaselinePrediction(), baseline.getMae(),
                 comparison.getImprovementPercentage());
             
         } catch (Exception e) {
@@ -335,8 +633,60 @@ public class TaskSchedulerService {
         return comparison;
     }
     
+    private static long predictionOrDefault(BacktestService.PredictorScore score) {
+        return score.getCount() > 0 && score.getPrediction() != null
+            ? Math.round(score.getPrediction()) : DEFAULT_COMPLETION_TIME;
+    }
+    
     // ==================== 数据类 ====================
     
+    /**
+     * 完成时间统计类（不可变）
+     * 指数加权的均值和方差，等价于对全部历史按 e^(-λ*i) 加权
+     */
+    public static class CompletionTimeStats {
+        static final CompletionTimeStats EMPTY = new CompletionTimeStats(0, 0, 0, 0);
+        
+        private final long count;
+        private final double weightSum;
+        private final double mean;
+        private final double m2;
+        
+        CompletionTimeStats(long count, double weightSum, double mean, double m2) {
+            this.count = count;
+            this.weightSum = weightSum;
+            this.mean = mean;
+            this.m2 = m2;
+        }
+        
+        /**
+         * 旧样本权重乘以 decay，新样本权重为 1（加权 Welford 更新）
+         */
+        CompletionTimeStats update(double sample, double decay) {
+            double newWeightSum = weightSum * decay + 1;
+            double delta = sample - mean;
+            double newMean = mean + delta / newWeightSum;
+            double newM2 = m2 * decay + delta * (sample - newMean);
+            return new CompletionTimeStats(count + 1, newWeightSum, newMean, newM2);
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public double getMean() {
+            return mean;
+        }
+        
+        public double getVariance() {
+            return weightSum > 0 ? Math.max(0, m2 / weightSum) : 0;
+        }
+        
+        public double getStdDev() {
+            return Math.sqrt(getVariance());
+        }
+    }
+    
     /**
      * 资源需求类
      */
@@ -344,6 +694,7 @@ public class TaskSchedulerService {
         private int cpuCores = 1;
         private int memoryMB = 512;
         private int storageGB = 1;
+        private long sampleCount;
         
         public int getCpuCores() {
             return cpuCores;
@@ -368,6 +719,65 @@ public class TaskSchedulerService {
         public void setStorageGB(int storageGB) {
             this.storageGB = storageGB;
         }
+        
+        public long getSampleCount() {
+            return sampleCount;
+        }
+        
+        public void setSampleCount(long sampleCount) {
+            this.sampleCount = sampleCount;
+        }
+    }
+    
+    /**
+     * 完成时间预测区间类
+     */
+    public static class PredictionInterval {
+        private double level;
+        private long pointEstimate;
+        private long lower;
+        private long upper;
+        private long sampleCount;
+        
+        public double getLevel() {
+            return level;
+        }
+        
+        public void setLevel(double level) {
+            this.level = level;
+        }
+        
+        public long getPointEstimate() {
+            return pointEstimate;
+        }
+        
+        public void setPointEstimate(long pointEstimate) {
+            this.pointEstimate = pointEstimate;
+        }
+        
+        public long getLower() {
+            return lower;
+        }
+        
+        public void setLower(long lower) {
+            this.lower = lower;
+        }
+        
+        public long getUpper() {
+            return upper;
+        }
+        
+        public void setUpper(long upper) {
+            this.upper = upper;
+        }
+        
+        public long getSampleCount() {
+            return sampleCount;
+        }
+        
+        public void setSampleCount(long sampleCount) {
+            this.sampleCount = sampleCount;
+        }
     }
     
     /**
@@ -378,6 +788,10 @@ public class TaskSchedulerService {
         private long averageResponseTime;
         private String recommendation;
         private int maxConcurrentTasks;
+        private long completedLastMinute;
+        private long completedLast5Minutes;
+        private long failedLastHour;
+        private double failureRate;
         
         public long getThroughput() {
             return throughput;
@@ -410,32 +824,119 @@ public class TaskSchedulerService {
         public void setMaxConcurrentTasks(int maxConcurrentTasks) {
             this.maxConcurrentTasks = maxConcurrentTasks;
         }
+        
+        public long getCompletedLastMinute() {
+            return completedLastMinute;
+        }
+        
+        public void setCompletedLastMinute(long completedLastMinute) {
+            this.completedLastMinute = completedLastMinute;
+        }
+        
+        public long getCompletedLast5Minutes() {
+            return completedLast5Minutes;
+        }
+        
+        public void setCompletedLast5Minutes(long completedLast5Minutes) {
+            this.completedLast5Minutes = completedLast5Minutes;
+        }
+        
+        public long getFailedLastHour() {
+            return failedLastHour;
+        }
+        
+        public void setFailedLastHour(long failedLastHour) {
+            this.failedLastHour = failedLastHour;
+        }
+        
+        public double getFailureRate() {
+            return failureRate;
+        }
+        
+        public void setFailureRate(double failureRate) {
+            this.failureRate = failureRate;
+        }
     }
     
     /**
-     * 性能对比类
+     * 性能对比类：每个预测器的名称、预测值（秒）与回放历史时的平均绝对误差（秒）出自同一个模型
      */
     public static class PerformanceComparison {
-        private long weightedMovingAverage;
-        private long simpleMovingAverage;
+        private String algorithmName;
+        private long algorithmPrediction;
+        private double algorithmMae;
+        private String baselineName;
+        private long baselinePrediction;
+        private double baselineMae;
+        private long sampleCount;
         private double improvementPercentage;
+        private long computedAt;
+        
+        /**
+         * 本算法（加权移动平均）的名称及参数
+         */
+        public String getAlgorithmName() {
+            return algorithmName;
+        }
+        
+        public void setAlgorithmName(String algorithmName) {
+            this.algorithmName = algorithmName;
+        }
+        
+        public long getAlgorithmPrediction() {
+            return algorithmPrediction;
+        }
+        
+        public void setAlgorithmPrediction(long algorithmPrediction) {
+            this.algorithmPrediction = algorithmPrediction;
+        }
         
-        public long getWeightedMovingAverage() {
-            return weightedMovingAverage;
+        public double getAlgorithmMae() {
+            return algorithmMae;
         }
         
-        public void setWeightedMovingAverage(long weightedMovingAverage) {
-            this.weightedMovingAverage = weightedMovingAverage;
+        public void setAlgorithmMae(double algorithmMae) {
+            this.algorithmMae = algorithmMae;
         }
         
-        public long getSimpleMovingAverage() {
-            return simpleMovingAverage;
+        /**
+         * 基准算法（累计平均）的名称
+         */
+        public String getBaselineName() {
+            return baselineName;
         }
         
-        public void setSimpleMovingAverage(long simpleMovingAverage) {
-            this.simpleMovingAverage = simpleMovingAverage;
+        public void setBaselineName(String baselineName) {
+            this.baselineName = baselineName;
         }
         
+        public long getBaselinePrediction() {
+            return baselinePrediction;
+        }
+        
+        public void setBaselinePrediction(long baselinePrediction) {
+            this.baselinePrediction = baselinePrediction;
+        }
+        
+        public double getBaselineMae() {
+            return baselineMae;
+        }
+        
+        public void setBaselineMae(double baselineMae) {
+            this.baselineMae = baselineMae;
+        }
+        
+        public long getSampleCount() {
+            return sampleCount;
+        }
+        
+        public void setSampleCount(long sampleCount) {
+            this.sampleCount = sampleCount;
+        }
+        
+        /**
+         * 相对基准的误差降低百分比
+         */
         public double getImprovementPercentage() {
             return improvementPercentage;
         }
@@ -443,5 +944,16 @@ public class TaskSchedulerService {
         public void setImprovementPercentage(double improvementPercentage) {
             this.improvementPercentage = improvementPercentage;
         }
+        
+        /**
+         * 回放时间（毫秒时间戳），结果在缓存期内复用
+         */
+        public long getComputedAt() {
+            return computedAt;
+        }
+        
+        public void setComputedAt(long computedAt) {
+            this.computedAt = computedAt;
+        }
     }
 }
@@ -1,34 +1,87 @@
 package com.blockchain.iExec.service;
 
+import com.blockchain.iExec.model.ArchivedTaskEntity;
 import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskArchiveRepository;
 import com.blockchain.iExec.repository.TaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 @Service
 public class TaskService {
     
+    private static final Logger logger = LoggerFactory.getLogger(TaskService.class);
+    
+    // 分页查询单页最大条数
+    public static final int MAX_PAGE_SIZE = 200;
+    
+    // 乐观锁冲突时的最大尝试次数
+    private static final int MAX_UPDATE_ATTEMPTS = 10;
+    
     @Autowired
     private TaskRepository taskRepository;
     
-    public List<TaskEntity> getAllTasks() {
-        return taskRepository.findAll();
-    }
+    @Autowired
+    private TaskArchiveRepository taskArchiveRepository;
+    
+    @Autowired
+    private TaskSchedulerService taskSchedulerService;
+    
+    @Autowired
+    private DeadlineService deadlineService;
+    
+    @Autowired
+    private TaskStreamService taskStreamService;
     
+    @Autowired
+    private ResponseCacheService responseCacheService;
+    
+    // 以下查询先查热表，找不到再查归档表；归档任务以分离的 TaskEntity 返回，对调用方透明
     public Optional<TaskEntity> getTaskById(Long id) {
-        return taskRepository.findById(id);
+        Optional<TaskEntity> task = taskRepository.findById(id);
+        return task.isPresent() ? task : taskArchiveRepository.findById(id).map(TaskService::fromArchive);
     }
     
     public TaskEntity getTaskByTaskId(String taskId) {
-        return taskRepository.findByTaskId(taskId);
+        TaskEntity task = taskRepository.findByTaskId(taskId);
+        return task != null ? task : fromArchive(taskArchiveRepository.findFirstByTaskId(taskId));
     }
     
     public TaskEntity getTaskByIexecTaskId(String iexecTaskId) {
-        return taskRepository.findByIexecTaskId(iexecTaskId);
+        TaskEntity task = taskRepository.findByIexecTaskId(iexecTaskId);
+        return task != null ? task : fromArchive(taskArchiveRepository.findFirstByIexecTaskId(iexecTaskId));
+    }
+    
+    private static TaskEntity fromArchive(ArchivedTaskEntity archived) {
+        if (archived == null) {
+            return null;
+        }
+        TaskEntity task = new TaskEntity();
+        BeanUtils.copyProperties(archived, task);
+        return task;
     }
     
     public TaskEntity saveTask(TaskEntity task) {
@@ -36,47 +89,332 @@ public class TaskService {
             task.setCreatedAt(LocalDateTime.now());
         }
         task.setUpdatedAt(LocalDateTime.now());
-        return taskRepository.save(task);
+        TaskEntity saved = taskRepository.save(task);
+        responseCacheService.invalidate();
+        taskStreamService.publish(saved);
+        return saved;
     }
     
-    public void updateTaskStatus(String taskId, String status) {
-        TaskEntity task = getTaskByTaskId(taskId);
-        if (task != null) {
-            task.setStatus(status);
-            task.setUpdatedAt(LocalDateTime.now());
-            if ("Completed".equals(status)) {
+    /**
+     * 更新任务状态
+     * @return 是否已更新；任务不存在或状态机不允许该转换（如任务已结束）时返回 false
+     */
+    public boolean updateTaskStatus(String taskId, TaskStatus status) {
+        return updateTask(taskId, status, task -> {
+            if (status == TaskStatus.COMPLETED) {
                 task.setCompletedAt(LocalDateTime.now());
             }
-            taskRepository.save(task);
-        }
+        });
     }
     
-    public void updateTaskResult(String taskId, String resultHash) {
-        TaskEntity task = getTaskByTaskId(taskId);
-        if (task != null) {
+    /**
+     * 记录计算结果并将任务标记为 Completed
+     * @return 是否已更新；任务已结束时返回 false，调用方不应再重复记录历史和信誉
+     */
+    public boolean updateTaskResult(String taskId, String resultHash) {
+        return updateTask(taskId, TaskStatus.COMPLETED, task -> {
             task.setResultHash(resultHash);
-            task.setStatus("Completed");
             task.setCompletedAt(LocalDateTime.now());
-            task.setUpdatedAt(LocalDateTime.now());
-            taskRepository.save(task);
+        });
+    }
+    
+    /**
+     * 记录错误信息并将任务标记为 Failed
+     * @return 是否已更新；任务已结束时返回 false（迟到的超时或错误不会覆盖已完成的任务）
+     */
+    public boolean updateTaskErrorMessage(String taskId, String errorMessage) {
+        return updateTask(taskId, TaskStatus.FAILED, task -> task.setErrorMessage(errorMessage));
+    }
+    
+    /**
+     * 记录超时原因并将任务标记为 Timeout
+     * @return 是否已更新；任务已结束时返回 false
+     */
+    public boolean updateTaskTimeout(String taskId, String errorMessage) {
+        return updateTask(taskId, TaskStatus.TIMEOUT, task -> task.setErrorMessage(errorMessage));
+    }
+    
+    /**
+     * 记录任务在 Arbitrum 上对应的交易，不改变状态
+     */
+    public boolean updateArbitrumTaskId(String taskId, String arbitrumTaskId, String serviceId) {
+        return updateTask(taskId, null, task -> {
+            task.setArbitrumTaskId(arbitrumTaskId);
+            task.setServiceId(serviceId);
+        });
+    }
+    
+    /**
+     * 按客户端提交的完整内容更新任务（PUT /tasks/{id}），与其他更新一样检查状态机并记录任务结束
+     * @param details 客户端提交的任务；version 不为空时必须与当前版本一致，否则说明客户端读取后任务已被修改
+     * @return 更新后的任务；任务不存在时为空
+     * @throws ObjectOptimisticLockingFailureException 版本号不一致或保存时被并发修改
+     * @throws IllegalStateException 状态机不允许该转换，或任务已归档
+     */
+    public Optional<TaskEntity> updateTaskDetails(Long id, TaskEntity details) {
+        TaskEntity task = taskRepository.findById(id).orElse(null);
+        if (task == null) {
+            if (isArchived(id)) {
+                throw new IllegalStateException(archivedMessage(id));
+            }
+            return Optional.empty();
+        }
+        if (details.getVersion() != null && !details.getVersion().equals(task.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(TaskEntity.class, id);
+        }
+        TaskStatus previousStatus = task.getStatus();
+        if (previousStatus != details.getStatus() && !TaskStatus.canTransition(previousStatus, details.getStatus())) {
+            throw new IllegalStateException("Illegal status transition: " + previousStatus + " -> " + details.getStatus());
+        }
+        task.setTaskId(details.getTaskId());
+        task.setIexecTaskId(details.getIexecTaskId());
+        task.setUserAddress(details.getUserAddress());
+        task.setStatus(details.getStatus());
+        task.setResultHash(details.getResultHash());
+        if (task.getStatus() == TaskStatus.COMPLETED && task.getCompletedAt() == null) {
+            task.setCompletedAt(LocalDateTime.now());
         }
+        task.setUpdatedAt(LocalDateTime.now());
+        // 客户端的修改基于它读取的版本，并发冲突时不自动重试，由客户端重新读取后决定
+        TaskEntity saved = taskRepository.saveAndFlush(task);
+        recordIfFinished(previousStatus, saved);
+        responseCacheService.invalidate();
+        taskStreamService.publish(saved);
+        return Optional.of(saved);
     }
     
-    public void updateTaskErrorMessage(String taskId, String errorMessage) {
-        TaskEntity task = getTaskByTaskId(taskId);
-        if (task != null) {
-            task.setErrorMessage(errorMessage);
-            task.setStatus("Failed");
+    /**
+     * 读取最新的任务、检查状态转换、应用修改并按版本号保存；
+     * 保存时发现任务已被其他线程修改（版本号不一致）则重新读取后重试，不需要全局锁
+     * @param status 目标状态，为 null 时不改变状态
+     */
+    private boolean updateTask(String taskId, TaskStatus status, Consumer<TaskEntity> changes) {
+        if (taskId == null) {
+            return false;
+        }
+        for (int attempt = 1; ; attempt++) {
+            // 归档任务已结束，不再更新，只查热表
+            TaskEntity task = taskRepository.findByTaskId(taskId);
+            if (task == null) {
+                return false;
+            }
+            TaskStatus previousStatus = task.getStatus();
+            if (status != null && !TaskStatus.canTransition(previousStatus, status)) {
+                logger.info("Rejected status transition for task {}: {} -> {}", taskId, previousStatus, status);
+                return false;
+            }
+            changes.accept(task);
+            if (status != null) {
+                task.setStatus(status);
+            }
             task.setUpdatedAt(LocalDateTime.now());
-            taskRepository.save(task);
+            TaskEntity saved;
+            try {
+                saved = taskRepository.saveAndFlush(task);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                logger.debug("Concurrent update on task {}, retrying (attempt {})", taskId, attempt);
+                backoff(attempt);
+                continue;
+            }
+            recordIfFinished(previousStatus, task);
+            responseCacheService.invalidate();
+            // 合并后的实体带有递增后的版本号
+            taskStreamService.publish(saved);
+            return true;
         }
     }
     
-    public void deleteTask(Long id) {
-        taskRepository.deleteById(id);
+    // 随机退避，避免多个冲突方同时重试再次冲突
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 2L << Math.min(attempt, 6)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
     
-    public List<TaskEntity> getTasksByStatus(String status) {
+    /**
+     * 删除任务，任务已归档时从归档表删除
+     * 先删热表再删归档表：删除时任务正在被归档也能在归档表中删掉
+     * @return 是否删除了任务；任务不存在时返回 false
+     */
+    @Transactional
+    public boolean deleteTask(Long id) {
+        int deleted = taskArchiveRepository.deleteFromHot(List.of(id));
+        if (deleted == 0) {
+            deleted = taskArchiveRepository.deleteArchivedByIds(List.of(id));
+        }
+        if (deleted == 0) {
+            return false;
+        }
+        responseCacheService.invalidate();
+        return true;
+    }
+    
+    /**
+     * 任务是否已移到归档表（已归档的任务只读）
+     */
+    public boolean isArchived(Long id) {
+        return !taskRepository.existsById(id) && taskArchiveRepository.existsById(id);
+    }
+    
+    public static String archivedMessage(Long id) {
+        return "Task " + id + " is archived and can no longer be modified";
+    }
+    
+    public List<TaskEntity> getTasksByStatus(TaskStatus status) {
         return taskRepository.findByStatus(status);
     }
-}
\ No newline at end of file
+    
+    // 按创建时间取最早的 limit 个指定状态的任务
+    public List<TaskEntity> getOldestTasksByStatus(TaskStatus status, int limit) {
+        return taskRepository.findOldestByStatus(status, PageRequest.of(0, limit));
+    }
+    
+    // 按 (createdAt, id) 顺序取位置 (createdAt, id) 之后的 limit 个指定状态的任务
+    public List<TaskEntity> getTasksByStatusAfter(TaskStatus status, LocalDateTime createdAt, Long id, int limit) {
+        return taskRepository.findByStatusAfter(status, createdAt, id, PageRequest.of(0, limit));
+    }
+    
+    public long countTasksByStatus(TaskStatus status) {
+        return taskRepository.countByStatus(status);
+    }
+    
+    // 已超过超时时间（创建时间 + timeoutMillis 与截止时间中较晚者）的指定状态任务数
+    public long countTimedOutTasks(TaskStatus status, long timeoutMillis) {
+        LocalDateTime now = LocalDateTime.now();
+        return taskRepository.countTimedOut(status, now.minus(Duration.ofMillis(timeoutMillis)), now);
+    }
+    
+    /**
+     * 按 (createdAt, id) 倒序的游标分页查询，过滤条件均可为空，结果包含已归档的任务
+     * 游标是上一页最后一条任务的位置，下一页只查比它更早的任务，查询耗时与翻页深度和表大小无关；
+     * 热表和归档表各按同样的条件取一页后按位置合并
+     * @param cursor 上一页返回的 nextCursor，首页为 null
+     * @param size 单页条数，不超过 MAX_PAGE_SIZE
+     * @throws IllegalArgumentException 游标格式无效或 size 越界
+     */
+    public TaskPage getTaskPage(TaskStatus status, String userAddress, String serviceId, String cursor, int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        
+        Object[] position = cursor != null ? decodeCursor(cursor) : null;
+        
+        // 按状态过滤时排序带上 status，与索引 (status, created_at, id) 的列一致，H2 才能按索引顺序扫描并提前结束
+        Sort sort = status != null
+            ? Sort.by(Sort.Direction.DESC, "status", "createdAt", "id")
+            : Sort.by(Sort.Direction.DESC, "createdAt", "id");
+        
+        // 两张表各多取一条判断是否还有下一页；先查热表再查归档表，期间被归档的任务最多读到两次，合并时去重
+        List<TaskEntity> hot = taskRepository.findBy(pageSpec(status, userAddress, serviceId, position),
+            q -> q.sortBy(sort).limit(size + 1).all());
+        List<ArchivedTaskEntity> archived = taskArchiveRepository.findBy(pageSpec(status, userAddress, serviceId, position),
+            q -> q.sortBy(sort).limit(size + 1).all());
+        List<TaskEntity> tasks = new ArrayList<>(hot);
+        Set<Long> ids = new HashSet<>();
+        hot.forEach(task -> ids.add(task.getId()));
+        for (ArchivedTaskEntity task : archived) {
+            if (ids.add(task.getId())) {
+                tasks.add(fromArchive(task));
+            }
+        }
+        tasks.sort(Comparator.comparing(TaskEntity::getCreatedAt).thenComparing(TaskEntity::getId).reversed());
+        
+        TaskPage page = new TaskPage();
+        if (tasks.size() > size) {
+            tasks = tasks.subList(0, size);
+            TaskEntity last = tasks.get(size - 1);
+            page.setNextCursor(encodeCursor(last.getCreatedAt(), last.getId()));
+        }
+        page.setItems(tasks);
+        return page;
+    }
+    
+    // 热表和归档表共用的过滤条件，position 为游标位置 {createdAt, id}，首页为 null
+    private static <E> Specification<E> pageSpec(TaskStatus status, String userAddress, String serviceId, Object[] position) {
+        Specification<E> spec = (root, query, cb) -> cb.isNotNull(root.get("createdAt"));
+        if (status != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("status"), status));
+        }
+        if (userAddress != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("userAddress"), userAddress));
+        }
+        if (serviceId != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("serviceId"), serviceId));
+        }
+        if (position != null) {
+            LocalDateTime createdAt = (LocalDateTime) position[0];
+            Long id = (Long) position[1];
+            spec = spec.and((root, query, cb) -> cb.or(
+                cb.lessThan(root.<LocalDateTime>get("createdAt"), createdAt),
+                cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.<Long>get("id"), id))));
+        }
+        return spec;
+    }
+    
+    // 游标格式：Base64URL("createdAt,id")
+    private static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String position = createdAt + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static Object[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf(',');
+            return new Object[] {
+                LocalDateTime.parse(position.substring(0, separator)),
+                Long.parseLong(position.substring(separator + 1))
+            };
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+    
+    /**
+     * 任务首次进入最终状态时，记录到调度器的吞吐窗口和截止时间统计
+     */
+    private void recordIfFinished(TaskStatus previousStatus, TaskEntity task) {
+        if ((previousStatus != null && previousStatus.isTerminal())
+                || task.getStatus() == null || !task.getStatus().isTerminal()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long latencySeconds = task.getCreatedAt() != null
+            ? Duration.between(task.getCreatedAt(), now).getSeconds()
+            : -1;
+        taskSchedulerService.recordTaskFinished(task.getStatus() == TaskStatus.COMPLETED, latencySeconds);
+        deadlineService.recordOutcome(task, now);
+    }
+    
+    /**
+     * 任务分页结果类
+     */
+    public static class TaskPage {
+        private List<TaskEntity> items;
+        private String nextCursor;
+        
+        public List<TaskEntity> getItems() {
+            return items;
+        }
+        
+        public void setItems(List<TaskEntity> items) {
+            this.items = items;
+        }
+        
+        /**
+         * 下一页游标，没有更多数据时为 null
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+        
+        public void setNextCursor(String nextCursor) {
+            this.nextCursor = nextCursor;
+        }
+    }
+}
@@ -0,0 +1,699 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 任务变更推送服务（Server-Sent Events）
+ * 每次任务状态或结果变化时，事件只序列化一次，按任务 ID / 用户地址索引找到订阅者，放入各连接的有界缓冲区；
+ * 由少量发送线程把缓冲区写到连接上，一个事件的分发成本只与匹配的订阅者数有关，与连接总数无关。
+ * 慢连接会被移出：缓冲区满，或单次写入超过 write-timeout 仍未完成时，不再向其分发事件，
+ * 丢弃缓冲内容，写完当前事件后补发一个 resync 事件并结束连接，客户端重新查询一次、自动重连即可。
+ * 写入本身是阻塞的（上限为 server.tomcat.connection-timeout），因此每有一个写入卡住的连接就临时增加一个发送线程，
+ * 卡住的连接不会占满发送线程、拖慢其他连接。
+ * 最近的事件保存在环形缓冲区中，客户端断线重连（Last-Event-ID）时补发错过的事件。
+ */
+@Service
+public class TaskStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskStreamService.class);
+
+    public static final String EVENT_TASK = "task";
+    public static final String EVENT_RESYNC = "resync";
+
+    // 为写入卡住的连接临时增加的发送线程最多为配置线程数的倍数，避免大量慢连接耗尽线程
+    private static final int MAX_SENDER_FACTOR = 4;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final int bufferSize;
+    private final int maxConnections;
+    private final long connectionTimeout;
+    private final long writeTimeout;
+
+    // 发布和订阅在同一把锁下进行：每个订阅者按序号顺序收到事件，补发与实时事件之间不重不漏
+    private final Object lock = new Object();
+    private long sequence;
+    private final ArrayDeque<Envelope> recent;
+    private final int replaySize;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> unfiltered = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<Subscriber>> byTaskId = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscriber>> byUserAddress = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor senders;
+    private final int senderThreads;
+    private int stalledWrites;
+
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong deliveredEvents = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TaskStreamService(@Value("${task.stream.buffer-size:256}") int bufferSize,
+                             @Value("${task.stream.max-connections:10000}") int maxConnections,
+                             @Value("${task.stream.timeout:1800000}") long connectionTimeout,
+                             @Value("${task.stream.replay-size:1024}") int replaySize,
+                             @Value("${task.stream.sender-threads:4}") int senderThreads,
+                             @Value("${task.stream.write-timeout:5000}") long writeTimeout) {
+        this.bufferSize = bufferSize;
+        this.maxConnections = maxConnections;
+        this.connectionTimeout = connectionTimeout;
+        this.writeTimeout = writeTimeout;
+        this.replaySize = replaySize;
+        this.recent = new ArrayDeque<>(replaySize);
+        this.senderThreads = senderThreads;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "task-stream-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * 建立订阅，过滤条件均可为空（为空时接收全部任务的事件）
+     * @param lastEventId 客户端最后收到的事件序号（重连时由浏览器在 Last-Event-ID 中带上），首次连接为 null
+     * @return 新连接；已达到连接数上限时返回 null
+     */
+    public SseEmitter subscribe(String userAddress, String taskId, Long lastEventId) {
+        if (subscribers.size() >= maxConnections) {
+            logger.warn("Rejected task stream subscription: {} connections open", subscribers.size());
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(connectionTimeout);
+        Subscriber subscriber = new Subscriber(emitter, normalize(userAddress), taskId);
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        emitter.onError(e -> unregister(subscriber));
+
+        synchronized (lock) {
+            if (lastEventId != null) {
+                replay(subscriber, lastEventId);
+            }
+            register(subscriber);
+        }
+        // 立即发送一次心跳，提交响应头，客户端（EventSource.onopen）可以马上确认连接已建立
+        subscriber.heartbeatDue = true;
+        subscriber.schedule();
+        return emitter;
+    }
+
+    /**
+     * 发布任务的当前状态，在任务保存成功后调用
+     */
+    public void publish(TaskEntity task) {
+        if (task == null || task.getTaskId() == null) {
+            return;
+        }
+        TaskEvent event = new TaskEvent();
+        event.setId(task.getId());
+        event.setVersion(task.getVersion());
+        event.setTaskId(task.getTaskId());
+        event.setIexecTaskId(task.getIexecTaskId());
+        event.setUserAddress(task.getUserAddress());
+        event.setServiceId(task.getServiceId());
+        event.setStatus(task.getStatus());
+        event.setResultHash(task.getResultHash());
+        event.setErrorMessage(task.getErrorMessage());
+        event.setCreatedAt(task.getCreatedAt());
+        event.setUpdatedAt(task.getUpdatedAt());
+        event.setCompletedAt(task.getCompletedAt());
+
+        synchronized (lock) {
+            event.setSequence(++sequence);
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(event);
+            } catch (JsonProcessingException e) {
+                logger.error("Error serializing task event for task {}", task.getTaskId(), e);
+                return;
+            }
+            Envelope envelope = new Envelope(event.getSequence(), task.getTaskId(), normalize(task.getUserAddress()), json);
+            if (recent.size() >= replaySize) {
+                recent.removeFirst();
+            }
+            recent.addLast(envelope);
+            publishedEvents.incrementAndGet();
+
+            deliver(unfiltered, envelope);
+            deliver(byTaskId.get(envelope.taskId), envelope);
+            if (envelope.userAddress != null) {
+                deliver(byUserAddress.get(envelope.userAddress), envelope);
+            }
+        }
+    }
+
+    /**
+     * 定时向所有连接发送心跳注释，及时发现已断开的连接，并防止代理因空闲关闭连接
+     */
+    @Scheduled(fixedDelayString = "${task.stream.heartbeat-interval:15000}")
+    public void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            subscriber.schedule();
+        }
+    }
+
+    /**
+     * 定时检查正在进行的写入，超过 write-timeout 的连接不再接收事件，并为其临时增加一个发送线程
+     */
+    @Scheduled(fixedDelayString = "${task.stream.write-check-interval:1000}")
+    public void evictStalledSubscribers() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            long startedAt = subscriber.writeStartedAt;
+            if (startedAt != 0 && now - startedAt > writeTimeout && subscriber.markStalled(startedAt)) {
+                logger.warn("Task stream write stalled for {} ms, evicting subscriber", now - startedAt);
+                subscriber.evict();
+            }
+        }
+    }
+
+    /**
+     * 应用关闭时先结束所有推送连接，否则 Web 服务器的优雅停机会一直等待这些长连接
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void closeConnections() {
+        for (Subscriber subscriber : subscribers) {
+            unregister(subscriber);
+            subscriber.emitter.complete();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    public StreamStats getStats() {
+        StreamStats stats = new StreamStats();
+        stats.setConnections(subscribers.size());
+        stats.setMaxConnections(maxConnections);
+        stats.setPublishedEvents(publishedEvents.get());
+        stats.setDeliveredEvents(deliveredEvents.get());
+        stats.setOverflows(overflows.get());
+        stats.setEvictions(evictions.get());
+        synchronized (lock) {
+            stats.setLastSequence(sequence);
+        }
+        return stats;
+    }
+
+    // 补发序号大于 lastEventId 的事件；所需事件已不在环形缓冲区（或服务重启后序号重新开始）时让客户端重新同步
+    private void replay(Subscriber subscriber, long lastEventId) {
+        if (lastEventId >= sequence) {
+            if (lastEventId > sequence) {
+                subscriber.overflowed = true;
+            }
+            return;
+        }
+        Envelope oldest = recent.peekFirst();
+        if (oldest == null || oldest.sequence > lastEventId + 1) {
+            subscriber.overflowed = true;
+            return;
+        }
+        for (Envelope envelope : recent) {
+            if (envelope.sequence > lastEventId && subscriber.matches(envelope)) {
+                subscriber.offer(envelope, false);
+            }
+        }
+    }
+
+    private void deliver(Set<Subscriber> targets, Envelope envelope) {
+        if (targets == null) {
+            return;
+        }
+        for (Subscriber subscriber : targets) {
+            if (subscriber.matches(envelope)) {
+                subscriber.offer(envelope, true);
+                subscriber.schedule();
+            }
+        }
+    }
+
+    // 每个订阅者只登记在一个索引中：有任务 ID 时按任务 ID，否则按用户地址，都没有时为全量订阅
+    private void register(Subscriber subscriber) {
+        subscribers.add(subscriber);
+        if (subscriber.taskId != null) {
+            byTaskId.computeIfAbsent(subscriber.taskId, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        } else if (subscriber.userAddress != null) {
+            byUserAddress.computeIfAbsent(subscriber.userAddress, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        } else {
+            unfiltered.add(subscriber);
+        }
+    }
+
+    private void unregister(Subscriber subscriber) {
+        subscriber.closed = true;
+        if (subscribers.remove(subscriber)) {
+            removeFromIndexes(subscriber);
+        }
+    }
+
+    // 只从索引中移除：不再分发新事件，但连接仍计入连接数，直到发送线程写完 resync 并结束连接
+    private void removeFromIndexes(Subscriber subscriber) {
+        if (subscriber.taskId != null) {
+            removeFromIndex(byTaskId, subscriber.taskId, subscriber);
+        } else if (subscriber.userAddress != null) {
+            removeFromIndex(byUserAddress, subscriber.userAddress, subscriber);
+        } else {
+            unfiltered.remove(subscriber);
+        }
+    }
+
+    // 写入卡住的连接数变化时调整发送线程数；扩大时先调最大值，缩小时先调核心线程数
+    private void resizeSenders(int delta) {
+        synchronized (senders) {
+            stalledWrites += delta;
+            int size = senderThreads + Math.min(stalledWrites, senderThreads * (MAX_SENDER_FACTOR - 1));
+            if (size > senders.getMaximumPoolSize()) {
+                senders.setMaximumPoolSize(size);
+                senders.setCorePoolSize(size);
+            } else {
+                senders.setCorePoolSize(size);
+                senders.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    private static void removeFromIndex(Map<String, Set<Subscriber>> index, String key, Subscriber subscriber) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    // 以太坊地址不区分大小写
+    private static String normalize(String userAddress) {
+        return userAddress != null ? userAddress.toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * 已序列化的事件，所有订阅者共用同一份 JSON
+     */
+    private static final class Envelope {
+        private final long sequence;
+        private final String taskId;
+        private final String userAddress;
+        private final String json;
+
+        Envelope(long sequence, String taskId, String userAddress, String json) {
+            this.sequence = sequence;
+            this.taskId = taskId;
+            this.userAddress = userAddress;
+            this.json = json;
+        }
+    }
+
+    /**
+     * 一个 SSE 连接：有界缓冲区 + 最多一个排队中的发送任务
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final String userAddress;
+        private final String taskId;
+        private final ArrayDeque<Envelope> buffer = new ArrayDeque<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean overflowed;
+        private volatile boolean heartbeatDue;
+        private volatile boolean closed;
+        private volatile boolean evicted;
+        // 当前写入的开始时间，没有写入时为 0
+        private volatile long writeStartedAt;
+        private boolean stalled;
+
+        Subscriber(SseEmitter emitter, String userAddress, String taskId) {
+            this.emitter = emitter;
+            this.userAddress = userAddress;
+            this.taskId = taskId;
+        }
+
+        boolean matches(Envelope envelope) {
+            return (taskId == null || taskId.equals(envelope.taskId))
+                && (userAddress == null || userAddress.equals(envelope.userAddress));
+        }
+
+        // 缓冲区满时丢弃积压的事件，改为发送一次 resync；实时事件溢出说明连接消费过慢，同时移出该连接
+        // 重连补发（live = false）溢出时只要求重新同步，保留连接
+        void offer(Envelope envelope, boolean live) {
+            synchronized (buffer) {
+                if (overflowed) {
+                    return;
+                }
+                if (buffer.size() < bufferSize) {
+                    buffer.addLast(envelope);
+                    return;
+                }
+                overflows.incrementAndGet();
+                if (!live) {
+                    buffer.clear();
+                    overflowed = true;
+                    return;
+                }
+            }
+            evict();
+        }
+
+        // 不再分发新事件，发送线程写完当前事件后发送 resync 并结束连接
+        void evict() {
+            synchronized (buffer) {
+                if (evicted) {
+                    return;
+                }
+                evicted = true;
+                buffer.clear();
+                overflowed = true;
+            }
+            evictions.incrementAndGet();
+            removeFromIndexes(this);
+            schedule();
+        }
+
+        // 写入仍是 startedAt 开始的那一次时标记为卡住，并临时增加一个发送线程
+        synchronized boolean markStalled(long startedAt) {
+            if (stalled || writeStartedAt != startedAt) {
+                return false;
+            }
+            stalled = true;
+            resizeSenders(1);
+            return true;
+        }
+
+        void schedule() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // 关闭过程中线程池已停止
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private boolean hasPending() {
+            synchronized (buffer) {
+                return overflowed || heartbeatDue || !buffer.isEmpty();
+            }
+        }
+
+        private void drain() {
+            try {
+                do {
+                    sendPending();
+                    scheduled.set(false);
+                } while (!closed && hasPending() && scheduled.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开或连接已结束
+                scheduled.set(false);
+                unregister(this);
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void sendPending() throws IOException {
+            while (!closed) {
+                Envelope next;
+                boolean resync;
+                synchronized (buffer) {
+                    resync = overflowed;
+                    next = resync ? null : buffer.pollFirst();
+                    overflowed = false;
+                }
+                if (resync) {
+                    long current;
+                    synchronized (lock) {
+                        current = sequence;
+                    }
+                    write(SseEmitter.event().id(Long.toString(current)).name(EVENT_RESYNC)
+                        .data("{\"sequence\":" + current + "}", MediaType.APPLICATION_JSON));
+                    if (evicted) {
+                        unregister(this);
+                        emitter.complete();
+                        return;
+                    }
+                    continue;
+                }
+                if (next == null) {
+                    break;
+                }
+                write(SseEmitter.event().id(Long.toString(next.sequence)).name(EVENT_TASK)
+                    .data(next.json, MediaType.APPLICATION_JSON));
+                deliveredEvents.incrementAndGet();
+            }
+            if (heartbeatDue && !closed) {
+                heartbeatDue = false;
+                write(SseEmitter.event().comment("heartbeat"));
+            }
+        }
+
+        private void write(SseEmitter.SseEventBuilder event) throws IOException {
+            writeStartedAt = System.currentTimeMillis();
+            try {
+                emitter.send(event);
+            } finally {
+                synchronized (this) {
+                    writeStartedAt = 0;
+                    if (stalled) {
+                        stalled = false;
+                        resizeSenders(-1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 推送给客户端的任务事件：任务变更后的当前状态，字段足以让客户端直接插入本地没有的任务
+     */
+    public static class TaskEvent {
+        private long sequence;
+        private Long id;
+        private Long version;
+        private String taskId;
+        private String iexecTaskId;
+        private String userAddress;
+        private String serviceId;
+        private TaskStatus status;
+        private String resultHash;
+        private String errorMessage;
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+        private LocalDateTime completedAt;
+
+        /**
+         * 全局递增的事件序号，同时作为 SSE 事件 ID
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        public void setSequence(long sequence) {
+            this.sequence = sequence;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public void setTaskId(String taskId) {
+            this.taskId = taskId;
+        }
+
+        public String getIexecTaskId() {
+            return iexecTaskId;
+        }
+
+        public void setIexecTaskId(String iexecTaskId) {
+            this.iexecTaskId = iexecTaskId;
+        }
+
+        public String getUserAddress() {
+            return userAddress;
+        }
+
+        public void setUserAddress(String userAddress) {
+            this.userAddress = userAddress;
+        }
+
+        public String getServiceId() {
+            return serviceId;
+        }
+
+        public void setServiceId(String serviceId) {
+            this.serviceId = serviceId;
+        }
+
+        public TaskStatus getStatus() {
+            return status;
+        }
+
+        public void setStatus(TaskStatus status) {
+            this.status = status;
+        }
+
+        public String getResultHash() {
+            return resultHash;
+        }
+
+        public void setResultHash(String resultHash) {
+            this.resultHash = resultHash;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        public void setErrorMessage(String errorMessage) {
+            this.errorMessage = errorMessage;
+        }
+
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+
+        public void setCreatedAt(LocalDateTime createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        public LocalDateTime getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public void setUpdatedAt(LocalDateTime updatedAt) {
+            this.updatedAt = updatedAt;
+        }
+
+        public LocalDateTime getCompletedAt() {
+            return completedAt;
+        }
+
+        public void setCompletedAt(LocalDateTime completedAt) {
+            this.completedAt = completedAt;
+        }
+    }
+
+    /**
+     * 推送连接统计
+     */
+    public static class StreamStats {
+        private int connections;
+        private int maxConnections;
+        private long publishedEvents;
+        private long deliveredEvents;
+        private long overflows;
+        private long evictions;
+        private long lastSequence;
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public void setConnections(int connections) {
+            this.connections = connections;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public long getPublishedEvents() {
+            return publishedEvents;
+        }
+
+        public void setPublishedEvents(long publishedEvents) {
+            this.publishedEvents = publishedEvents;
+        }
+
+        /**
+         * 实际写到连接上的任务事件数（一个事件发给多个连接时分别计数）
+         */
+        public long getDeliveredEvents() {
+            return deliveredEvents;
+        }
+
+        public void setDeliveredEvents(long deliveredEvents) {
+            this.deliveredEvents = deliveredEvents;
+        }
+
+        /**
+         * 缓冲区溢出（改发 resync）的次数
+         */
+        public long getOverflows() {
+            return overflows;
+        }
+
+        public void setOverflows(long overflows) {
+            this.overflows = overflows;
+        }
+
+        /**
+         * 因缓冲区溢出或写入超时被移出的连接数
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public void setEvictions(long evictions) {
+            this.evictions = evictions;
+        }
+
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        public void setLastSequence(long lastSequence) {
+            this.lastSequence = lastSequence;
+        }
+    }
+}
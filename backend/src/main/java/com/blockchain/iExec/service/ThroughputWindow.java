@@ -0,0 +1,116 @@
+package com.blockchain.iExec.service;
+
+import java.util.Arrays;
+
+/**
+ * 滑动窗口吞吐计数器 - 环形缓冲区，每个桶记录完成数、失败数与延迟总和
+ * 任务到达最终状态时写入当前桶；读取窗口时只遍历覆盖该窗口的桶，无需访问数据库。
+ */
+public class ThroughputWindow {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    // 每个槽位当前对应的桶号（时间 / bucketMillis），不一致表示槽位已过期
+    private final long[] bucketIds;
+    private final long[] completed;
+    private final long[] failed;
+    private final long[] latencySum;
+    private final long[] latencyCount;
+
+    public ThroughputWindow(long bucketMillis, int bucketCount) {
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.bucketIds = new long[bucketCount];
+        this.completed = new long[bucketCount];
+        this.failed = new long[bucketCount];
+        this.latencySum = new long[bucketCount];
+        this.latencyCount = new long[bucketCount];
+        Arrays.fill(bucketIds, -1);
+    }
+
+    /**
+     * 记录一个结束的任务
+     * @param nowMillis 结束时间
+     * @param success 是否成功完成
+     * @param latencySeconds 耗时（秒），未知时传负数
+     */
+    public synchronized void record(long nowMillis, boolean success, long latencySeconds) {
+        long bucketId = nowMillis / bucketMillis;
+        int slot = (int) (bucketId % bucketCount);
+        if (bucketIds[slot] != bucketId) {
+            bucketIds[slot] = bucketId;
+            completed[slot] = 0;
+            failed[slot] = 0;
+            latencySum[slot] = 0;
+            latencyCount[slot] = 0;
+        }
+        if (success) {
+            completed[slot]++;
+        } else {
+            failed[slot]++;
+        }
+        if (latencySeconds >= 0) {
+            latencySum[slot] += latencySeconds;
+            latencyCount[slot]++;
+        }
+    }
+
+    /**
+     * 读取最近 windowMillis 内的汇总（窗口不超过缓冲区覆盖的时长）
+     */
+    public synchronized WindowStats read(long nowMillis, long windowMillis) {
+        long currentBucket = nowMillis / bucketMillis;
+        int buckets = (int) Math.min(bucketCount, Math.max(1, windowMillis / bucketMillis));
+
+        WindowStats stats = new WindowStats();
+        for (int i = 0; i < buckets; i++) {
+            long bucketId = currentBucket - i;
+            if (bucketId < 0) {
+                break;
+            }
+            int slot = (int) (bucketId % bucketCount);
+            if (bucketIds[slot] == bucketId) {
+                stats.completed += completed[slot];
+                stats.failed += failed[slot];
+                stats.latencySum += latencySum[slot];
+                stats.latencyCount += latencyCount[slot];
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 窗口汇总结果
+     */
+    public static class WindowStats {
+        private long completed;
+        private long failed;
+        private long latencySum;
+        private long latencyCount;
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getTotal() {
+            return completed + failed;
+        }
+
+        /**
+         * 平均耗时（秒），窗口内无样本时返回 -1
+         */
+        public double getAverageLatency() {
+            return latencyCount > 0 ? (double) latencySum / latencyCount : -1;
+        }
+
+        public double getFailureRate() {
+            long total = getTotal();
+            return total > 0 ? (double) failed / total : 0;
+        }
+    }
+}
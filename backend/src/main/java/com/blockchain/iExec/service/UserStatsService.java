@@ -0,0 +1,223 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.ReputationEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.model.UserTaskStatsEntity;
+import com.blockchain.iExec.repository.ReputationRepository;
+import com.blockchain.iExec.repository.TaskHistoryRepository;
+import com.blockchain.iExec.repository.UserTaskStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用户统计服务 - 为优先级计算提供 O(1) 的信誉分与成功率查询
+ * 计数持久化在 user_task_stats 表中，写入任务历史时原子递增；
+ * 内存中保留最近使用用户的快照（LRU 淘汰），命中时无需访问数据库。
+ */
+@Service
+public class UserStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStatsService.class);
+
+    @Autowired
+    private UserTaskStatsRepository userTaskStatsRepository;
+
+    @Autowired
+    private ReputationRepository reputationRepository;
+
+    @Autowired
+    private TaskHistoryRepository taskHistoryRepository;
+
+    private final Map<String, UserStats> cache;
+
+    public UserStatsService(@Value("${user.stats.cache-size:10000}") int cacheSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserStats> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * 获取用户统计快照
+     */
+    public UserStats getUserStats(String userAddress) {
+        if (userAddress == null) {
+            return UserStats.EMPTY;
+        }
+        UserStats stats = getCached(userAddress);
+        if (stats != null) {
+            return stats;
+        }
+
+        ReputationEntity reputation = reputationRepository.findByAddress(userAddress);
+        UserTaskStatsEntity counts = userTaskStatsRepository.findByUserAddress(userAddress);
+        stats = toUserStats(reputation, counts);
+        putCached(userAddress, stats);
+        return stats;
+    }
+
+    /**
+     * 批量获取用户统计快照，未命中缓存的用户合并为两次 IN 查询
+     */
+    public Map<String, UserStats> getUserStats(Collection<String> userAddresses) {
+        Map<String, UserStats> result = new HashMap<>();
+        Set<String> misses = new LinkedHashSet<>();
+        for (String address : userAddresses) {
+            if (address == null || result.containsKey(address)) {
+                continue;
+            }
+            UserStats stats = getCached(address);
+            if (stats != null) {
+                result.put(address, stats);
+            } else {
+                misses.add(address);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            Map<String, ReputationEntity> reputations = new HashMap<>();
+            for (ReputationEntity reputation : reputationRepository.findByAddressIn(misses)) {
+                reputations.put(reputation.getAddress(), reputation);
+            }
+            Map<String, UserTaskStatsEntity> counts = new HashMap<>();
+            for (UserTaskStatsEntity entity : userTaskStatsRepository.findByUserAddressIn(misses)) {
+                counts.put(entity.getUserAddress(), entity);
+            }
+            for (String address : misses) {
+                UserStats stats = toUserStats(reputations.get(address), counts.get(address));
+                putCached(address, stats);
+                result.put(address, stats);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 记录一次任务结束，递增用户计数
+     * 应在任务历史保存之后调用；首次出现的用户插入新行，并发插入触发唯一约束时改为走递增路径
+     */
+    public void recordTaskOutcome(String userAddress, boolean completed) {
+        if (userAddress == null) {
+            return;
+        }
+        try {
+            long completedDelta = completed ? 1 : 0;
+            if (userTaskStatsRepository.incrementCounts(userAddress, completedDelta) == 0) {
+                // 首次出现的用户：从历史表回填（已包含刚保存的这条记录）
+                UserTaskStatsEntity created = new UserTaskStatsEntity();
+                created.setUserAddress(userAddress);
+                created.setTotalTasks(taskHistoryRepository.countByUserAddress(userAddress));
+                created.setCompletedTasks(taskHistoryRepository.countByUserAddressAndStatus(userAddress, TaskStatus.COMPLETED));
+                try {
+                    userTaskStatsRepository.saveAndFlush(created);
+                } catch (DataIntegrityViolationException e) {
+                    // 其他线程 / 节点已插入该用户
+                    userTaskStatsRepository.incrementCounts(userAddress, completedDelta);
+                }
+            }
+            UserTaskStatsEntity counts = userTaskStatsRepository.findByUserAddress(userAddress);
+
+            UserStats previous = getCached(userAddress);
+            Double finalScore = previous != null ? previous.getFinalScore() : null;
+            if (previous == null) {
+                ReputationEntity reputation = reputationRepository.findByAddress(userAddress);
+                finalScore = reputation != null ? reputation.getFinalScore() : null;
+            }
+            UserStats updated = new UserStats(finalScore, counts.getTotalTasks(), counts.getCompletedTasks());
+            synchronized (cache) {
+                // 并发记录时先读到的计数可能较旧，不覆盖更新的快照
+                UserStats current = cache.get(userAddress);
+                if (current == null || current.getTotalTasks() <= updated.getTotalTasks()) {
+                    cache.put(userAddress, updated);
+                }
+            }
+
+        } catch (Exception e) {
+            logger.error("Error recording task outcome for user {}: {}", userAddress, e.getMessage(), e);
+            evict(userAddress);
+        }
+    }
+
+    /**
+     * 信誉更新后刷新缓存中的综合分数
+     */
+    public void onReputationUpdated(ReputationEntity reputation) {
+        synchronized (cache) {
+            UserStats previous = cache.get(reputation.getAddress());
+            if (previous != null) {
+                cache.put(reputation.getAddress(),
+                    new UserStats(reputation.getFinalScore(), previous.getTotalTasks(), previous.getCompletedTasks()));
+            }
+        }
+    }
+
+    public void evict(String userAddress) {
+        synchronized (cache) {
+            cache.remove(userAddress);
+        }
+    }
+
+    private UserStats getCached(String userAddress) {
+        synchronized (cache) {
+            return cache.get(userAddress);
+        }
+    }
+
+    private void putCached(String userAddress, UserStats stats) {
+        synchronized (cache) {
+            cache.put(userAddress, stats);
+        }
+    }
+
+    private UserStats toUserStats(ReputationEntity reputation, UserTaskStatsEntity counts) {
+        return new UserStats(
+            reputation != null ? reputation.getFinalScore() : null,
+            counts != null ? counts.getTotalTasks() : 0,
+            counts != null ? counts.getCompletedTasks() : 0);
+    }
+
+    /**
+     * 用户统计快照（不可变）
+     */
+    public static class UserStats {
+        static final UserStats EMPTY = new UserStats(null, 0, 0);
+
+        private final Double finalScore;
+        private final long totalTasks;
+        private final long completedTasks;
+
+        public UserStats(Double finalScore, long totalTasks, long completedTasks) {
+            this.finalScore = finalScore;
+            this.totalTasks = totalTasks;
+            this.completedTasks = completedTasks;
+        }
+
+        /**
+         * 综合信誉分数，没有信誉记录时为 null
+         */
+        public Double getFinalScore() {
+            return finalScore;
+        }
+
+        public long getTotalTasks() {
+            return totalTasks;
+        }
+
+        public long getCompletedTasks() {
+            return completedTasks;
+        }
+    }
+}
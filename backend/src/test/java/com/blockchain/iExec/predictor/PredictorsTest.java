@@ -0,0 +1,59 @@
+package com.blockchain.iExec.predictor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredictorsTest {
+
+	@Test
+	void predictorsReturnNaNWithoutData() {
+		for (var factory : Predictors.defaults(0.1)) {
+			assertTrue(Double.isNaN(factory.get().predict()), factory.get().getName());
+		}
+	}
+
+	@Test
+	void windowPredictorsOnlySeeRecentSamples() {
+		SimpleMovingAveragePredictor sma = new SimpleMovingAveragePredictor(3);
+		MedianWindowPredictor median = new MedianWindowPredictor(3);
+		for (double sample : new double[] {1000, 10, 30, 20}) {
+			sma.observe(sample);
+			median.observe(sample);
+		}
+
+		assertEquals(20, sma.predict(), 1e-9);
+		assertEquals(20, median.predict(), 1e-9);
+	}
+
+	@Test
+	void weightedAverageFavoursNewestSample() {
+		WeightedMovingAveragePredictor wma = new WeightedMovingAveragePredictor(20, 0.1);
+		wma.observe(100);
+		wma.observe(200);
+
+		double w = Math.exp(-0.1);
+		assertEquals((200 + 100 * w) / (1 + w), wma.predict(), 1e-9);
+	}
+
+	@Test
+	void ensembleSwitchesToPredictorWithLowerRollingError() {
+		PredictorEnsemble ensemble = new PredictorEnsemble(List.of(
+			CumulativeAveragePredictor::new,
+			() -> new SimpleMovingAveragePredictor(3)));
+		assertTrue(Double.isNaN(ensemble.predict()));
+
+		// 完成时间发生阶跃后，短窗口的预测器误差更小
+		for (int i = 0; i < 50; i++) {
+			ensemble.observe(100);
+		}
+		for (int i = 0; i < 50; i++) {
+			ensemble.observe(500);
+		}
+
+		assertEquals("SMA(3)", ensemble.getActiveName());
+		assertEquals(500, ensemble.predict(), 1e-9);
+	}
+}
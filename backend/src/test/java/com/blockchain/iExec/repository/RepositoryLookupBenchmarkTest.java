@@ -0,0 +1,117 @@
+package com.blockchain.iExec.repository;
+
+import com.blockchain.iExec.model.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 热点查询在大表上的延迟基准
+ * 运行：mvn test -Dtest=RepositoryLookupBenchmarkTest -Dbenchmark=true [-Dbenchmark.rows=1000000,10000000]
+ * 内存数据库 1000 万行约需 8 GB 堆（-DargLine=-Xmx8g）。
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RepositoryLookupBenchmarkTest {
+
+	private static final int SERVICES = 50;
+	private static final int USERS = 100_000;
+	private static final int LOOKUPS = 500;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TaskRepository taskRepository;
+
+	@Autowired
+	private TaskHistoryRepository taskHistoryRepository;
+
+	@Test
+	void lookupLatencyStaysFlat() {
+		int[] sizes = Arrays.stream(System.getProperty("benchmark.rows", "1000000,10000000").split(","))
+			.mapToInt(size -> Integer.parseInt(size.trim()))
+			.toArray();
+
+		List<double[]> results = new ArrayList<>();
+		try {
+			for (int rows : sizes) {
+				populate(rows);
+				Random random = new Random(42);
+				double[] micros = {
+					measure(i -> taskRepository.findByTaskId("task-" + random.nextInt(rows))),
+					measure(i -> taskRepository.findByIexecTaskId("iexec-" + random.nextInt(rows))),
+					measure(i -> taskRepository.findOldestByStatus(TaskStatus.RUNNING, PageRequest.of(0, 500))),
+					measure(i -> taskHistoryRepository.findRecentCompletedTasks(
+						"service-" + random.nextInt(SERVICES), PageRequest.of(0, 20))),
+					measure(i -> taskHistoryRepository.countByUserAddressAndStatus(
+						"0xuser" + random.nextInt(USERS), TaskStatus.COMPLETED))
+				};
+				System.out.printf("rows=%,d  findByTaskId=%.0fus findByIexecTaskId=%.0fus oldestRunning(500)=%.0fus "
+					+ "recentCompleted(20)=%.0fus countByUserAndStatus=%.0fus%n",
+					rows, micros[0], micros[1], micros[2], micros[3], micros[4]);
+				results.add(micros);
+			}
+		} finally {
+			jdbcTemplate.execute("TRUNCATE TABLE task_entity");
+			jdbcTemplate.execute("TRUNCATE TABLE task_history");
+		}
+
+		// 走索引的查询与表大小基本无关：数据量增加 10 倍，中位延迟不应按比例增长
+		double[] smallest = results.get(0);
+		double[] largest = results.get(results.size() - 1);
+		for (int i = 0; i < smallest.length; i++) {
+			assertTrue(largest[i] < Math.max(smallest[i] * 3, smallest[i] + 500),
+				"query " + i + " grew from " + smallest[i] + "us to " + largest[i] + "us");
+		}
+	}
+
+	/**
+	 * 用 SYSTEM_RANGE 批量生成 rows 行任务与任务历史：1% 运行中，其余 80% 完成 / 20% 失败
+	 */
+	private void populate(int rows) {
+		jdbcTemplate.execute("TRUNCATE TABLE task_entity");
+		jdbcTemplate.execute("TRUNCATE TABLE task_history");
+		jdbcTemplate.update("INSERT INTO task_entity (task_id, iexec_task_id, service_id, user_address, status, created_at) "
+			+ "SELECT 'task-' || (x - 1), 'iexec-' || (x - 1), 'service-' || MOD(x, ?), '0xuser' || MOD(x, ?), "
+			+ "CASE WHEN MOD(x, 100) = 0 THEN ? ELSE ? END, "
+			+ "DATEADD('SECOND', x, TIMESTAMP '2025-01-01 00:00:00') FROM SYSTEM_RANGE(1, ?)",
+			SERVICES, USERS, TaskStatus.RUNNING.getCode(), TaskStatus.COMPLETED.getCode(), rows);
+		jdbcTemplate.update("INSERT INTO task_history (task_id, iexec_task_id, service_id, user_address, status, "
+			+ "actual_time, created_at, completed_at) "
+			+ "SELECT 'task-' || (x - 1), 'iexec-' || (x - 1), 'service-' || MOD(x, ?), '0xuser' || MOD(x, ?), "
+			+ "CASE WHEN MOD(x, 5) = 0 THEN ? ELSE ? END, 60 + MOD(x, 600), "
+			+ "DATEADD('SECOND', x, TIMESTAMP '2025-01-01 00:00:00'), "
+			+ "DATEADD('SECOND', x + 60, TIMESTAMP '2025-01-01 00:00:00') FROM SYSTEM_RANGE(1, ?)",
+			SERVICES, USERS, TaskStatus.FAILED.getCode(), TaskStatus.COMPLETED.getCode(), rows);
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	/**
+	 * 预热后执行 LOOKUPS 次查询，返回中位延迟（微秒）
+	 */
+	private static double measure(IntConsumer query) {
+		for (int i = 0; i < LOOKUPS / 5; i++) {
+			query.accept(i);
+		}
+		long[] nanos = new long[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			long start = System.nanoTime();
+			query.accept(i);
+			nanos[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(nanos);
+		return nanos[LOOKUPS / 2] / 1000.0;
+	}
+}
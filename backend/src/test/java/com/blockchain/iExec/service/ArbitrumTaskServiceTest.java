@@ -0,0 +1,91 @@
+package com.blockchain.iExec.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ArbitrumTaskServiceTest {
+
+	private final Web3j arbitrumWeb3j = mock(Web3j.class);
+	private final TaskService taskService = mock(TaskService.class);
+
+	// 计算线程只有 1 个，回执每 20 毫秒查询一次，最多 5 次
+	private final ArbitrumTaskService service = new ArbitrumTaskService(1, 20, 5);
+
+	@AfterEach
+	void shutdown() {
+		service.shutdown();
+	}
+
+	@Test
+	void confirmedReceiptCompletesTask() throws Exception {
+		setUp();
+		stubReceipts("0xtx", Optional.empty(), Optional.empty(), Optional.of(receipt("0x1")));
+
+		service.resumeArbitrumTask("1", "0xtx").get(5, TimeUnit.SECONDS);
+
+		verify(taskService).updateTaskResult(eq("1"), anyString());
+		verify(arbitrumWeb3j, times(3)).ethGetTransactionReceipt("0xtx");
+	}
+
+	@Test
+	void waitingForReceiptsDoesNotHoldComputeThreads() throws Exception {
+		setUp();
+		// 模拟计算占用唯一的计算线程 15 秒以上
+		service.mockComputeTask("busy", BigInteger.ONE);
+		List<CompletableFuture<Void>> pending = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			stubReceipts("0xtx" + i, Optional.empty());
+			pending.add(service.resumeArbitrumTask("task-" + i, "0xtx" + i));
+		}
+
+		// 等待回执不需要计算线程：10 个交易都按查询次数上限结束
+		CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+		for (int i = 0; i < 10; i++) {
+			verify(taskService).updateTaskErrorMessage("task-" + i, "Arbitrum transaction timeout");
+			verify(arbitrumWeb3j, times(5)).ethGetTransactionReceipt("0xtx" + i);
+		}
+	}
+
+	private void setUp() {
+		ReflectionTestUtils.setField(service, "arbitrumWeb3j", arbitrumWeb3j);
+		ReflectionTestUtils.setField(service, "taskService", taskService);
+		// 未配置管理员私钥时跳过本地链回写
+		ReflectionTestUtils.setField(service, "adminPrivateKey", "");
+	}
+
+	@SafeVarargs
+	@SuppressWarnings("unchecked")
+	private void stubReceipts(String txHash, Optional<TransactionReceipt> first, Optional<TransactionReceipt>... rest)
+			throws Exception {
+		EthGetTransactionReceipt response = mock(EthGetTransactionReceipt.class);
+		when(response.getTransactionReceipt()).thenReturn(first, rest);
+		Request<?, EthGetTransactionReceipt> request = mock(Request.class);
+		when(request.send()).thenReturn(response);
+		doReturn(request).when(arbitrumWeb3j).ethGetTransactionReceipt(txHash);
+	}
+
+	private static TransactionReceipt receipt(String status) {
+		TransactionReceipt receipt = new TransactionReceipt();
+		receipt.setStatus(status);
+		receipt.setBlockNumber("0x1");
+		receipt.setGasUsed("0x5208");
+		receipt.setCumulativeGasUsed("0x5208");
+		return receipt;
+	}
+}
@@ -0,0 +1,54 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.predictor.CompletionTimePredictor;
+import com.blockchain.iExec.predictor.CumulativeAveragePredictor;
+import com.blockchain.iExec.predictor.WeightedMovingAveragePredictor;
+import com.blockchain.iExec.repository.TaskHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BacktestServiceTest {
+
+	private final TaskHistoryRepository taskHistoryRepository = mock(TaskHistoryRepository.class);
+
+	@Test
+	void singleServiceReportsPredictionOfReplayedModel() {
+		List<Long> samples = List.of(100L, 200L, 300L, 400L);
+		when(taskHistoryRepository.streamCompletionTimes("1")).thenAnswer(invocation -> samples.stream());
+		List<Supplier<CompletionTimePredictor>> factories = List.of(
+			CumulativeAveragePredictor::new, () -> new WeightedMovingAveragePredictor(2, 1.0));
+
+		List<BacktestService.PredictorScore> scores = backtest().backtest("1", factories).getScores();
+
+		// 预测值是回放完全部样本后同一个模型的输出
+		assertEquals(250, scores.get(0).getPrediction(), 1e-9);
+		double w = Math.exp(-1);
+		assertEquals((400 + 300 * w) / (1 + w), scores.get(1).getPrediction(), 1e-9);
+		// 首个样本按默认值 300 预测，之后按累计平均：|300-100| + |100-200| + |150-300| + |200-400|
+		assertEquals((200 + 100 + 150 + 200) / 4.0, scores.get(0).getMae(), 1e-9);
+	}
+
+	@Test
+	void multiServiceBacktestHasNoPrediction() {
+		when(taskHistoryRepository.streamCompletionTimes()).thenAnswer(invocation -> Stream.of(
+			new Object[]{"1", 100L}, new Object[]{"2", 200L}));
+
+		List<BacktestService.PredictorScore> scores = backtest().backtest(null).getScores();
+
+		assertFalse(scores.isEmpty());
+		scores.forEach(score -> assertNull(score.getPrediction(), score.getName()));
+	}
+
+	private BacktestService backtest() {
+		BacktestService service = new BacktestService(0.1);
+		ReflectionTestUtils.setField(service, "taskHistoryRepository", taskHistoryRepository);
+		return service;
+	}
+}
@@ -0,0 +1,55 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ExportServiceTest {
+
+	@Autowired
+	private ExportService exportService;
+
+	@Autowired
+	private TaskService taskService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	void writesOneJsonObjectPerLineWithinRange() throws Exception {
+		String serviceId = "export-" + UUID.randomUUID();
+		LocalDateTime base = LocalDateTime.of(2025, 3, 1, 0, 0);
+		for (int i = 0; i < 10; i++) {
+			TaskEntity task = new TaskEntity();
+			task.setTaskId(serviceId + "-" + i);
+			task.setServiceId(serviceId);
+			task.setStatus(TaskStatus.COMPLETED);
+			task.setCreatedAt(base.plusHours(i));
+			taskService.saveTask(task);
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long count = exportService.exportTasks(base.plusHours(2), base.plusHours(7), serviceId, out);
+
+		assertEquals(5, count);
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(5, lines.length);
+		for (int i = 0; i < lines.length; i++) {
+			JsonNode row = objectMapper.readTree(lines[i]);
+			assertEquals(serviceId + "-" + (i + 2), row.get("taskId").asText());
+			assertEquals(serviceId, row.get("serviceId").asText());
+		}
+	}
+}
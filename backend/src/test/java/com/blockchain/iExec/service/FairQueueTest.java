@@ -0,0 +1,112 @@
+package com.blockchain.iExec.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairQueueTest {
+
+	@Test
+	void backlogOfOneFlowDoesNotBlockOthers() {
+		FairQueue<String> queue = new FairQueue<>(Comparator.<String>naturalOrder());
+		for (int i = 0; i < 1_000; i++) {
+			queue.add("heavy", 1, String.format("heavy-%04d", i));
+		}
+		queue.add("light", 1, "light-0");
+
+		// 新流在重载流的下一个任务之后立即得到服务
+		assertEquals("heavy-0000", queue.poll());
+		assertEquals("light-0", queue.poll());
+		assertEquals(999, queue.size());
+	}
+
+	@Test
+	void sharesFollowWeights() {
+		FairQueue<String> queue = new FairQueue<>(Comparator.<String>naturalOrder());
+		for (int i = 0; i < 1_000; i++) {
+			queue.add("a", 2, String.format("a-%04d", i));
+			queue.add("b", 1, String.format("b-%04d", i));
+		}
+
+		int fromA = 0;
+		for (int i = 0; i < 300; i++) {
+			if (queue.poll().startsWith("a")) {
+				fromA++;
+			}
+		}
+		assertEquals(200, fromA, 1);
+	}
+
+	/**
+	 * 模拟 mock 计算后端：1 个大户一次提交 10000 个任务，随后 50 个普通用户陆续各提交 10 个；
+	 * 10 个并发槽位，执行时间 30-120 秒（与 MockIexecService 一致）。
+	 * 比较先来先服务与公平队列下普通用户任务的排队等待 p50 / p99。
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void lightUserTailLatencyUnderFlood() {
+		long[] fifo = simulate(false);
+		long[] fair = simulate(true);
+		System.out.printf("Light-user wait (s)  FIFO p50=%d p99=%d | fair p50=%d p99=%d%n",
+			percentile(fifo, 0.5), percentile(fifo, 0.99), percentile(fair, 0.5), percentile(fair, 0.99));
+		assertTrue(percentile(fair, 0.99) < percentile(fifo, 0.99));
+	}
+
+	private static long[] simulate(boolean fair) {
+		final int slots = 10;
+		Random random = new Random(42);
+		FairQueue<long[]> queue = new FairQueue<>(Comparator.comparingLong(task -> task[1]));
+
+		// 到达事件：{到达时间, 序号, 是否普通用户, 用户号}
+		List<long[]> arrivals = new ArrayList<>();
+		long sequence = 0;
+		for (int i = 0; i < 10_000; i++) {
+			arrivals.add(new long[] {0, sequence++, 0, 0});
+		}
+		for (int user = 1; user <= 50; user++) {
+			for (int i = 0; i < 10; i++) {
+				arrivals.add(new long[] {random.nextInt(3_600), sequence++, 1, user});
+			}
+		}
+		arrivals.sort(Comparator.<long[]>comparingLong(a -> a[0]).thenComparingLong(a -> a[1]));
+
+		PriorityQueue<Long> running = new PriorityQueue<>();
+		List<Long> lightWaits = new ArrayList<>();
+		int next = 0;
+		long now = 0;
+		while (next < arrivals.size() || !queue.isEmpty()) {
+			// 推进到下一个事件：新任务到达或槽位释放
+			long nextArrival = next < arrivals.size() ? arrivals.get(next)[0] : Long.MAX_VALUE;
+			if (running.size() >= slots || queue.isEmpty()) {
+				long nextFree = running.size() >= slots ? running.peek() : Long.MAX_VALUE;
+				now = Math.min(nextArrival, nextFree);
+			}
+			while (!running.isEmpty() && running.peek() <= now) {
+				running.poll();
+			}
+			while (next < arrivals.size() && arrivals.get(next)[0] <= now) {
+				long[] task = arrivals.get(next++);
+				queue.add(fair ? String.valueOf(task[3]) : "", 1, task);
+			}
+			while (running.size() < slots && !queue.isEmpty()) {
+				long[] task = queue.poll();
+				if (task[2] == 1) {
+					lightWaits.add(now - task[0]);
+				}
+				running.add(now + 30 + random.nextInt(90));
+			}
+		}
+		return lightWaits.stream().mapToLong(Long::longValue).sorted().toArray();
+	}
+
+	private static long percentile(long[] sorted, double q) {
+		return sorted[(int) Math.min(sorted.length - 1, Math.floor(q * sorted.length))];
+	}
+}
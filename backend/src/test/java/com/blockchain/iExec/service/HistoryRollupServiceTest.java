@@ -0,0 +1,152 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskHistoryEntity;
+import com.blockchain.iExec.model.TaskHistoryRollupEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskHistoryRepository;
+import com.blockchain.iExec.repository.TaskHistoryRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class HistoryRollupServiceTest {
+
+	@Autowired
+	private HistoryRollupService historyRollupService;
+
+	@Autowired
+	private TaskHistoryRepository taskHistoryRepository;
+
+	@Autowired
+	private TaskHistoryRollupRepository rollupRepository;
+
+	@Test
+	void recordsMergeIntoMinuteAndHourBuckets() {
+		String serviceId = "rollup-" + UUID.randomUUID();
+		LocalDateTime hour = LocalDateTime.now().withMinute(0).withSecond(0).withNano(0).minusHours(1);
+		HistoryRollupService.RollupTotals before = historyRollupService.getTotals();
+		for (int i = 1; i <= 100; i++) {
+			// 前 10 分钟每分钟 10 条，每 10 条中 1 条失败
+			LocalDateTime completedAt = hour.plusMinutes((i - 1) / 10).plusSeconds(i % 60);
+			historyRollupService.record(history(serviceId, i % 10 == 0 ? TaskStatus.FAILED : TaskStatus.COMPLETED, i, completedAt));
+		}
+
+		List<HistoryRollupService.RollupPoint> hours = historyRollupService.getRollups(
+			serviceId, HistoryRollupService.HOUR, hour, hour.plusHours(1));
+		assertEquals(1, hours.size());
+		HistoryRollupService.RollupPoint total = hours.get(0);
+		assertEquals(100, total.getTaskCount());
+		assertEquals(90, total.getSuccessCount());
+		assertEquals(10, total.getFailureCount());
+		assertEquals(90, total.getLatencyCount());
+		assertEquals(1, total.getMinLatency(), 1e-9);
+		assertEquals(99, total.getMaxLatency(), 1e-9);
+		assertEquals(50, total.getP50Latency(), 50 * 0.03);
+
+		List<HistoryRollupService.RollupPoint> minutes = historyRollupService.getRollups(
+			serviceId, HistoryRollupService.MINUTE, hour, hour.plusHours(1));
+		assertEquals(10, minutes.size());
+		assertEquals(10, minutes.get(0).getTaskCount());
+
+		// 1..99 中除去 10 的倍数，平均值 = (4950 - 450) / 90
+		assertEquals(50.0, historyRollupService.getAverageCompletionTime(serviceId), 1e-9);
+		// 启动重建服务草图时合并全部小时桶
+		assertEquals(90, historyRollupService.mergeServiceSketches().get(serviceId).getCount());
+
+		HistoryRollupService.RollupTotals after = historyRollupService.getTotals();
+		assertEquals(before.getTaskCount() + 100, after.getTaskCount());
+		assertEquals(before.getSuccessCount() + 90, after.getSuccessCount());
+		assertEquals(before.getFailureCount() + 10, after.getFailureCount());
+	}
+
+	@Test
+	void reconcileBackfillsOnlyRowsMissingFromRollups() {
+		String serviceId = "rollup-" + UUID.randomUUID();
+		LocalDateTime completedAt = LocalDateTime.now().withMinute(30).minusHours(2);
+		// 上一个进程写入历史后未能汇总（如进程退出或汇总失败）
+		TaskHistoryEntity missed = taskHistoryRepository.save(history(serviceId, TaskStatus.COMPLETED, 10, completedAt));
+		// 新进程先增量汇总了一条（时间桶已存在），补齐不能因此跳过之前的记录
+		TaskHistoryEntity recorded = taskHistoryRepository.save(history(serviceId, TaskStatus.FAILED, 20, completedAt));
+		historyRollupService.record(recorded);
+
+		assertTrue(historyRollupService.reconcile(historyRollupService.getHistoryHighWaterMark()) >= 1);
+		// 重复补齐不会重复计数
+		historyRollupService.reconcile(historyRollupService.getHistoryHighWaterMark());
+		historyRollupService.record(missed);
+
+		LocalDateTime hour = completedAt.withMinute(0).withSecond(0).withNano(0);
+		List<HistoryRollupService.RollupPoint> hours = historyRollupService.getRollups(
+			serviceId, HistoryRollupService.HOUR, hour, hour.plusHours(1));
+		assertEquals(1, hours.size());
+		assertEquals(2, hours.get(0).getTaskCount());
+		assertEquals(1, hours.get(0).getSuccessCount());
+		assertEquals(1, hours.get(0).getFailureCount());
+		assertTrue(taskHistoryRepository.findById(missed.getId()).orElseThrow().isRolledUp());
+	}
+
+	@Test
+	void periodicReconcileBackfillsRowsFromThePreviousRound() {
+		String serviceId = "rollup-" + UUID.randomUUID();
+		LocalDateTime completedAt = LocalDateTime.now().withMinute(30).minusHours(3);
+		// 增量汇总失败的记录（record 出错被吞掉）
+		TaskHistoryEntity missed = taskHistoryRepository.save(history(serviceId, TaskStatus.COMPLETED, 30, completedAt));
+
+		// 第一轮只记下最大 ID：刚写入的记录可能还在增量汇总，留到下一轮
+		historyRollupService.reconcilePending();
+		assertFalse(taskHistoryRepository.findById(missed.getId()).orElseThrow().isRolledUp());
+
+		historyRollupService.reconcilePending();
+		assertTrue(taskHistoryRepository.findById(missed.getId()).orElseThrow().isRolledUp());
+		LocalDateTime hour = completedAt.withMinute(0).withSecond(0).withNano(0);
+		List<HistoryRollupService.RollupPoint> hours = historyRollupService.getRollups(
+			serviceId, HistoryRollupService.HOUR, hour, hour.plusHours(1));
+		assertEquals(1, hours.size());
+		assertEquals(1, hours.get(0).getSuccessCount());
+		assertEquals(30, hours.get(0).getMeanLatency(), 1e-9);
+	}
+
+	@Test
+	void pointsReadExactStoredColumns() {
+		// 没有草图的汇总行（如草图列上线前写入）：均值、最小、最大值仍来自精确列
+		String serviceId = "rollup-" + UUID.randomUUID();
+		LocalDateTime hour = LocalDateTime.now().withMinute(0).withSecond(0).withNano(0).minusHours(5);
+		TaskHistoryRollupEntity bucket = new TaskHistoryRollupEntity();
+		bucket.setServiceId(serviceId);
+		bucket.setBucketSeconds(HistoryRollupService.HOUR);
+		bucket.setBucketStart(hour);
+		bucket.setTaskCount(3L);
+		bucket.setSuccessCount(3L);
+		bucket.setLatencyCount(3L);
+		bucket.setLatencySum(10.0);
+		bucket.setLatencyMin(1.0);
+		bucket.setLatencyMax(7.0);
+		rollupRepository.save(bucket);
+
+		HistoryRollupService.RollupPoint point = historyRollupService.getRollups(
+			serviceId, HistoryRollupService.HOUR, hour, hour.plusHours(1)).get(0);
+		assertEquals(10.0 / 3, point.getMeanLatency(), 1e-12);
+		assertEquals(1.0, point.getMinLatency(), 1e-12);
+		assertEquals(7.0, point.getMaxLatency(), 1e-12);
+		assertTrue(Double.isNaN(point.getP50Latency()));
+	}
+
+	private static TaskHistoryEntity history(String serviceId, TaskStatus status, long actualTime, LocalDateTime completedAt) {
+		TaskHistoryEntity history = new TaskHistoryEntity();
+		history.setTaskId("rollup-task-" + UUID.randomUUID());
+		history.setIexecTaskId("rollup-iexec");
+		history.setUserAddress("0xrollup");
+		history.setServiceId(serviceId);
+		history.setStatus(status);
+		history.setActualTime(actualTime);
+		history.setCreatedAt(completedAt.minusSeconds(actualTime));
+		history.setCompletedAt(completedAt);
+		return history;
+	}
+}
@@ -0,0 +1,106 @@
+package com.blockchain.iExec.service;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencySketchTest {
+
+	@Test
+	void quantilesStayWithinRelativeAccuracy() {
+		LatencySketch sketch = new LatencySketch();
+		for (int i = 1; i <= 10_000; i++) {
+			sketch.add(i);
+		}
+
+		assertEquals(10_000, sketch.getCount());
+		assertEquals(5_000, sketch.quantile(0.5), 5_000 * 0.02);
+		assertEquals(9_500, sketch.quantile(0.95), 9_500 * 0.02);
+		assertEquals(9_900, sketch.quantile(0.99), 9_900 * 0.02);
+		assertEquals(10_000, sketch.quantile(1.0), 1e-9);
+	}
+
+	@Test
+	void mergeEqualsSingleSketch() {
+		LatencySketch all = new LatencySketch();
+		LatencySketch left = new LatencySketch();
+		LatencySketch right = new LatencySketch();
+		for (int i = 1; i <= 1_000; i++) {
+			all.add(i);
+			(i % 2 == 0 ? left : right).add(i);
+		}
+
+		left.merge(right);
+		assertEquals(all.getCount(), left.getCount());
+		assertEquals(all.quantile(0.95), left.quantile(0.95), 1e-9);
+	}
+
+	@Test
+	void bytesRoundTrip() {
+		LatencySketch sketch = new LatencySketch();
+		for (int i = 0; i <= 500; i++) {
+			sketch.add(i * 3);
+		}
+
+		LatencySketch restored = LatencySketch.fromBytes(sketch.toBytes());
+		assertEquals(sketch.getCount(), restored.getCount());
+		assertEquals(sketch.getMean(), restored.getMean(), 1e-9);
+		assertEquals(sketch.quantile(0.5), restored.quantile(0.5), 1e-9);
+		assertEquals(sketch.quantile(0.99), restored.quantile(0.99), 1e-9);
+
+		// 恢复后的草图可以继续写入与合并
+		restored.add(10_000);
+		restored.merge(sketch);
+		assertEquals(2 * sketch.getCount() + 1, restored.getCount());
+		assertEquals(0, LatencySketch.fromBytes(new LatencySketch().toBytes()).getCount());
+	}
+
+	@Test
+	void jsonExportRoundTripsAndMerges() throws Exception {
+		ObjectMapper objectMapper = new ObjectMapper();
+		LatencySketch local = new LatencySketch();
+		LatencySketch remote = new LatencySketch();
+		LatencySketch all = new LatencySketch();
+		for (int i = 0; i <= 1_000; i++) {
+			(i % 3 == 0 ? remote : local).add(i * 7);
+			all.add(i * 7);
+		}
+
+		// 其他节点导出的 JSON 还原后与本地草图合并，结果与单个草图一致
+		LatencySketch restored = objectMapper.readValue(objectMapper.writeValueAsString(remote), LatencySketch.class);
+		assertEquals(remote.getCount(), restored.getCount());
+		assertEquals(remote.getSum(), restored.getSum(), 1e-9);
+		assertEquals(remote.quantile(0.9), restored.quantile(0.9), 1e-9);
+		local.merge(restored);
+		assertEquals(all.getCount(), local.getCount());
+		assertEquals(all.getMin(), local.getMin(), 1e-9);
+		assertEquals(all.getMax(), local.getMax(), 1e-9);
+		assertEquals(all.quantile(0.5), local.quantile(0.5), 1e-9);
+		assertEquals(all.quantile(0.99), local.quantile(0.99), 1e-9);
+
+		// 空草图的 min / max 导出为 NaN，还原后仍可正常合并
+		LatencySketch empty = objectMapper.readValue(objectMapper.writeValueAsString(new LatencySketch()), LatencySketch.class);
+		assertEquals(0, empty.getCount());
+		empty.merge(remote);
+		assertEquals(remote.getMin(), empty.getMin(), 1e-9);
+
+		// 计数与桶不一致的数据被拒绝
+		String tampered = objectMapper.writeValueAsString(remote).replace("\"count\":" + remote.getCount(), "\"count\":1");
+		assertThrows(JsonMappingException.class, () -> objectMapper.readValue(tampered, LatencySketch.class));
+	}
+
+	@Test
+	void bucketCountIsBounded() {
+		LatencySketch sketch = new LatencySketch(0.01, 64);
+		for (double v = 1; v < 1e9; v *= 1.5) {
+			sketch.add(v);
+		}
+
+		assertTrue(sketch.getBucketCount() <= 64);
+		// 高分位不受低端折叠影响
+		assertEquals(sketch.getMax(), sketch.quantile(1.0), 1e-9);
+	}
+
+}
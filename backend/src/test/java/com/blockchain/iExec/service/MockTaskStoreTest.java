@@ -0,0 +1,152 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.service.MockIexecService.MockTask;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MockTaskStoreTest {
+
+	@Test
+	void createGetUpdateRoundTrip() {
+		MockTaskStore store = new MockTaskStore(60_000, 1_000);
+		String taskId = store.create("0xabc", "echo 1", 1_000, 31_000);
+
+		assertEquals(66, taskId.length());
+		MockTask task = store.get(taskId);
+		assertNotNull(task);
+		assertEquals("0xabc", task.getUserAddress());
+		assertEquals("echo 1", task.getParams());
+		assertEquals("ACTIVE", task.getStatus());
+		assertFalse(task.isCompleted());
+
+		task.setStatus("COMPLETED");
+		task.setResultHash("QmResult");
+		assertTrue(store.update(task));
+
+		MockTask reloaded = store.get(taskId);
+		assertTrue(reloaded.isCompleted());
+		assertEquals("QmResult", reloaded.getResultHash());
+
+		// 终态不会被回退
+		reloaded.setStatus("RUNNING");
+		store.update(reloaded);
+		assertEquals("COMPLETED", store.get(taskId).getStatus());
+
+		assertNull(store.get("0xnot-a-mock-id"));
+	}
+
+	@Test
+	void expiresWholeBucketsAndReusesSlots() {
+		MockTaskStore store = new MockTaskStore(10_000, 1_000);
+		String early = store.create("0xa", "p", 0, 5_000);
+		String late = store.create("0xa", "p", 0, 50_000);
+
+		assertEquals(0, store.expire(14_000));
+		assertEquals(1, store.expire(15_000));
+		assertNull(store.get(early));
+		assertNotNull(store.get(late));
+
+		for (int i = 0; i < 1_000; i++) {
+			store.create("0xb", "p", 0, 100_000);
+		}
+		assertEquals(1_001, store.size());
+		assertEquals(1_001, store.expire(200_000));
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	void completionTimeChangeMovesExpiryBucket() {
+		MockTaskStore store = new MockTaskStore(10_000, 1_000);
+		String delayed = store.create("0xa", "p", 0, 5_000);
+		String finishedEarly = store.create("0xa", "p", 0, 50_000);
+
+		MockTask task = store.get(delayed);
+		task.setCompletionTime(50_000);
+		assertTrue(store.update(task));
+		task = store.get(finishedEarly);
+		task.setCompletionTime(1_000);
+		task.setStatus("FAILED");
+		assertTrue(store.update(task));
+
+		// 按新的完成时间过期，旧桶中的记录不再生效
+		assertEquals(1, store.expire(15_000));
+		assertNull(store.get(finishedEarly));
+		assertNotNull(store.get(delayed));
+		assertEquals(1, store.expire(60_000));
+		assertNull(store.get(delayed));
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	void firstFinalStatusWins() {
+		MockTaskStore store = new MockTaskStore(60_000, 1_000);
+		String taskId = store.create("0xa", "p", 0, 1_000);
+
+		// 两个并发查询读到同一个未结束的快照，各自模拟出不同的结果
+		MockTask completed = store.get(taskId);
+		MockTask failed = store.get(taskId);
+		completed.setStatus("COMPLETED");
+		completed.setResultHash("QmResult");
+		failed.setStatus("FAILED");
+
+		assertTrue(store.update(completed));
+		assertFalse(store.update(failed));
+		assertEquals("COMPLETED", store.get(taskId).getStatus());
+		assertEquals("QmResult", store.get(taskId).getResultHash());
+	}
+
+	@Test
+	void userAddressesAreReleasedWithTheirTasks() {
+		MockTaskStore store = new MockTaskStore(10_000, 1_000);
+		for (int i = 0; i < 1_000; i++) {
+			store.create("0xuser" + i, "p", 0, 1_000);
+		}
+		String kept = store.create("0xkept", "p", 0, 100_000);
+		assertTrue(store.pooledUserCount() >= 1_001);
+
+		assertEquals(1_000, store.expire(20_000));
+		assertEquals(1, store.pooledUserCount());
+		assertEquals("0xkept", store.get(kept).getUserAddress());
+
+		// 回收的编号复用后仍能查到正确的地址
+		String reused = store.create("0xnew", "p", 0, 1_000);
+		assertEquals("0xnew", store.get(reused).getUserAddress());
+		assertEquals("0xkept", store.get(kept).getUserAddress());
+	}
+
+	/**
+	 * 堆占用基准：mvn test -Dbenchmark=true -Dtest=MockTaskStoreTest
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void heapFootprintAtOneMillionTasks() {
+		int count = 1_000_000;
+		long before = usedHeap();
+
+		MockTaskStore store = new MockTaskStore(3_600_000, 60_000);
+		long start = System.nanoTime();
+		// 10 万个不同用户、每个任务不同的参数；参数字符串本身也计入占用
+		for (int i = 0; i < count; i++) {
+			store.create(String.format("0x%040x", i % 100_000), "echo 'task " + i + "'", i, i + 60_000L);
+		}
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		long after = usedHeap();
+
+		long bytesPerTask = (after - before) / count;
+		System.out.printf("MockTaskStore: %d tasks, %d ms, %.1f MB heap, %d bytes/task%n",
+			store.size(), elapsedMs, (after - before) / 1048576.0, bytesPerTask);
+		assertEquals(count, store.size());
+		assertTrue(bytesPerTask < 200, "bytes per task: " + bytesPerTask);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
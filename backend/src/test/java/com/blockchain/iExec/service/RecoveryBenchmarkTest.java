@@ -0,0 +1,105 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * persistent 配置（H2 文件数据库）下启动恢复的耗时基准
+ * 运行：mvn test -Dtest=RecoveryBenchmarkTest -Dbenchmark=true [-Dbenchmark.rows=1000000]
+ * 数据库文件写在 target/recovery-benchmark 下，每次运行前清空相关表。
+ */
+@SpringBootTest(properties = {
+	"iexec.data-dir=./target/recovery-benchmark",
+	"task.recovery.requeue=false"
+})
+@ActiveProfiles("persistent")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RecoveryBenchmarkTest {
+
+	private static final int SERVICES = 50;
+	private static final int USERS = 100_000;
+
+	// 100 万行历史时的恢复耗时目标（毫秒），与 task.recovery.target-time 默认值一致
+	private static final long TARGET_MILLIS = 30_000;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private RecoveryService recoveryService;
+
+	@MockitoBean
+	private TaskDispatchService taskDispatchService;
+
+	@Autowired
+	private HistoryRollupService historyRollupService;
+
+	@Test
+	void recoveryFinishesWithinTarget() {
+		int rows = Integer.parseInt(System.getProperty("benchmark.rows", "1000000"));
+		populate(rows);
+
+		clearInvocations(taskDispatchService);
+		int requeuedBefore = recoveryService.getReport().getRequeuedTasks();
+		long requeueBefore = recoveryService.getReport().getRequeueMs();
+		recoveryService.rebuildCaches();
+		recoveryService.requeueUnfinishedTasks();
+		RecoveryService.RecoveryReport report = recoveryService.getReport();
+		long requeueMs = report.getRequeueMs() - requeueBefore;
+		int requeued = report.getRequeuedTasks() - requeuedBefore;
+		long total = report.getPredictorRebuildMs() + report.getLeaderboardRebuildMs() + report.getThroughputRebuildMs()
+			+ requeueMs;
+
+		// 汇总表补齐是一次性迁移，在应用就绪后执行，单独计时
+		long start = System.currentTimeMillis();
+		historyRollupService.reconcile(historyRollupService.getHistoryHighWaterMark());
+		long rollupMs = System.currentTimeMillis() - start;
+
+		System.out.printf("rows=%,d  predictor=%dms leaderboard=%dms throughput=%dms requeue=%dms (%d tasks) total=%dms; "
+			+ "one-off rollup backfill=%dms%n", rows, report.getPredictorRebuildMs(), report.getLeaderboardRebuildMs(),
+			report.getThroughputRebuildMs(), requeueMs, requeued, total, rollupMs);
+
+		verify(taskDispatchService, times(requeued)).submit(any(), any());
+		assertEquals(rows / 100, requeued);
+		assertTrue(total < TARGET_MILLIS, "recovery took " + total + " ms");
+	}
+
+	/**
+	 * 用 SYSTEM_RANGE 批量生成 rows 行任务历史与任务（1% 未完成）、USERS 个用户的信誉
+	 */
+	private void populate(int rows) {
+		jdbcTemplate.execute("TRUNCATE TABLE task_entity");
+		jdbcTemplate.execute("TRUNCATE TABLE task_history");
+		jdbcTemplate.execute("TRUNCATE TABLE task_history_rollup");
+		jdbcTemplate.execute("TRUNCATE TABLE reputation");
+		jdbcTemplate.update("INSERT INTO task_history (task_id, iexec_task_id, service_id, user_address, status, "
+			+ "actual_time, created_at, completed_at, rolled_up) "
+			+ "SELECT 'task-' || x, 'iexec-' || x, MOD(x, ?), '0xuser' || MOD(x, ?), "
+			+ "CASE WHEN MOD(x, 5) = 0 THEN ? ELSE ? END, 60 + MOD(x, 600), "
+			+ "DATEADD('SECOND', x * 10, TIMESTAMP '2025-01-01 00:00:00'), "
+			+ "DATEADD('SECOND', x * 10 + 60, TIMESTAMP '2025-01-01 00:00:00'), FALSE FROM SYSTEM_RANGE(1, ?)",
+			SERVICES, USERS, TaskStatus.FAILED.getCode(), TaskStatus.COMPLETED.getCode(), rows);
+		jdbcTemplate.update("INSERT INTO task_entity (task_id, service_id, user_address, status, created_at) "
+			+ "SELECT 'task-' || x, MOD(x, ?), '0xuser' || MOD(x, ?), "
+			+ "CASE WHEN MOD(x, 100) = 0 THEN ? WHEN MOD(x, 100) = 50 THEN ? ELSE ? END, "
+			+ "DATEADD('SECOND', x * 10, TIMESTAMP '2025-01-01 00:00:00') FROM SYSTEM_RANGE(1, ?)",
+			SERVICES, USERS, TaskStatus.CREATED.getCode(), TaskStatus.PROCESSING.getCode(),
+			TaskStatus.COMPLETED.getCode(), rows / 2);
+		jdbcTemplate.update("INSERT INTO reputation (address, completion_rate, on_time_rate, quality_score, final_score, "
+			+ "total_tasks, completed_tasks, on_time_tasks, decayed_total_tasks, decayed_completed_tasks, "
+			+ "decayed_on_time_tasks, decay_updated_at) "
+			+ "SELECT '0xuser' || x, 0.8, 0.7, 0.9, 0.8, 10, 8, 7, 5.0, 4.0, 3.5, 1735689600000 + x "
+			+ "FROM SYSTEM_RANGE(0, ?)", USERS - 1);
+		jdbcTemplate.execute("ANALYZE");
+	}
+}
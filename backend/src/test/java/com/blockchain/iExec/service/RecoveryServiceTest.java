@@ -0,0 +1,110 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = "task.recovery.requeue=false")
+class RecoveryServiceTest {
+
+	@Autowired
+	private RecoveryService recoveryService;
+
+	@Autowired
+	private TaskRepository taskRepository;
+
+	@Autowired
+	private MockIexecService mockIexecService;
+
+	@MockitoBean
+	private TaskDispatchService taskDispatchService;
+
+	@MockitoBean
+	private ArbitrumTaskService arbitrumTaskService;
+
+	@Test
+	void requeuesCreatedAndProcessingTasksInCreationOrder() {
+		String prefix = "recovery-" + UUID.randomUUID() + "-";
+		LocalDateTime base = LocalDateTime.now().minusHours(1);
+		List<TaskEntity> tasks = taskRepository.saveAll(List.of(
+			task(prefix + "processing", "7", TaskStatus.PROCESSING, base.plusMinutes(1)),
+			task(prefix + "created", "8", TaskStatus.CREATED, base),
+			task(prefix + "completed", "9", TaskStatus.COMPLETED, base),
+			task(prefix + "invalid", "not-a-number", TaskStatus.CREATED, base),
+			submitted(task(prefix + "submitted", "7", TaskStatus.PROCESSING, base))));
+		try {
+			int before = recoveryService.getReport().getRequeuedTasks();
+			int requeued = recoveryService.requeueUnfinishedTasks();
+
+			ArgumentCaptor<TaskEntity> taskCaptor = ArgumentCaptor.forClass(TaskEntity.class);
+			ArgumentCaptor<BigInteger> serviceCaptor = ArgumentCaptor.forClass(BigInteger.class);
+			verify(taskDispatchService, times(requeued)).submit(taskCaptor.capture(), serviceCaptor.capture());
+
+			List<String> submitted = new ArrayList<>();
+			List<BigInteger> serviceIds = new ArrayList<>();
+			for (int i = 0; i < requeued; i++) {
+				if (taskCaptor.getAllValues().get(i).getTaskId().startsWith(prefix)) {
+					submitted.add(taskCaptor.getAllValues().get(i).getTaskId());
+					serviceIds.add(serviceCaptor.getAllValues().get(i));
+				}
+			}
+			assertEquals(List.of(prefix + "created", prefix + "processing"), submitted);
+			assertEquals(List.of(BigInteger.valueOf(8), BigInteger.valueOf(7)), serviceIds);
+			assertEquals(before + requeued, recoveryService.getReport().getRequeuedTasks());
+
+			// 已发出 Arbitrum 交易的任务只继续跟踪回执，不重新提交
+			verify(arbitrumTaskService).resumeArbitrumTask(prefix + "submitted", "0xsubmitted");
+		} finally {
+			taskRepository.deleteAll(tasks);
+		}
+	}
+
+	@Test
+	void failsMockTasksLostOnRestart() {
+		String prefix = "recovery-" + UUID.randomUUID() + "-";
+		TaskEntity lost = task(prefix + "lost", "1", TaskStatus.RUNNING, LocalDateTime.now());
+		lost.setIexecTaskId("0x" + UUID.randomUUID().toString().replace("-", ""));
+		TaskEntity alive = task(prefix + "alive", "1", TaskStatus.RUNNING, LocalDateTime.now());
+		alive.setIexecTaskId(mockIexecService.createMockTask("0xrecovery", "echo"));
+		List<TaskEntity> tasks = taskRepository.saveAll(List.of(lost, alive));
+		try {
+			assertTrue(recoveryService.failLostMockTasks() >= 1);
+
+			TaskEntity failed = taskRepository.findByTaskId(prefix + "lost");
+			assertEquals(TaskStatus.FAILED, failed.getStatus());
+			assertEquals(RecoveryService.LOST_MOCK_TASK_MESSAGE, failed.getErrorMessage());
+			assertEquals(TaskStatus.RUNNING, taskRepository.findByTaskId(prefix + "alive").getStatus());
+		} finally {
+			taskRepository.deleteAllById(tasks.stream().map(TaskEntity::getId).toList());
+		}
+	}
+
+	private static TaskEntity submitted(TaskEntity task) {
+		task.setArbitrumTaskId("0xsubmitted");
+		return task;
+	}
+
+	private static TaskEntity task(String taskId, String serviceId, TaskStatus status, LocalDateTime createdAt) {
+		TaskEntity task = new TaskEntity();
+		task.setTaskId(taskId);
+		task.setServiceId(serviceId);
+		task.setUserAddress("0xrecovery");
+		task.setStatus(status);
+		task.setCreatedAt(createdAt);
+		return task;
+	}
+}
@@ -0,0 +1,39 @@
+package com.blockchain.iExec.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReputationLeaderboardTest {
+
+	private static final long DAY = 24L * 3600 * 1000;
+
+	@Test
+	void olderScoresDecayBehindRecentOnes() {
+		// 半衰期 1 天
+		ReputationLeaderboard leaderboard = new ReputationLeaderboard(Math.log(2) / DAY);
+		leaderboard.update("old", 1, 100, 0);
+		leaderboard.update("recent", 1, 30, 2 * DAY);
+		leaderboard.update("fresh", 1, 10, 3 * DAY);
+
+		// 第 3 天：old = 12.5, recent = 15, fresh = 10
+		List<Map.Entry<String, Double>> top = leaderboard.top(2, 3 * DAY);
+		assertEquals("recent", top.get(0).getKey());
+		assertEquals(15, top.get(0).getValue(), 1e-6);
+		assertEquals("old", top.get(1).getKey());
+		assertEquals(12.5, top.get(1).getValue(), 1e-6);
+	}
+
+	@Test
+	void staleUpdatesAreIgnored() {
+		ReputationLeaderboard leaderboard = new ReputationLeaderboard(Math.log(2) / DAY);
+		leaderboard.update("user", 5, 50, DAY);
+		leaderboard.update("user", 4, 40, DAY);
+
+		assertEquals(1, leaderboard.size());
+		assertEquals(50, leaderboard.top(1, DAY).get(0).getValue(), 1e-6);
+	}
+}
@@ -0,0 +1,64 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.ReputationEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ReputationServiceConcurrencyTest {
+
+	@Autowired
+	private ReputationService reputationService;
+
+	@Test
+	void concurrentCompletionsAreNotLost() throws Exception {
+		final int users = 5;
+		final int updatesPerUser = 800;
+		String prefix = "0x" + UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+
+		ExecutorService executor = Executors.newFixedThreadPool(32);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		try {
+			for (int i = 0; i < users * updatesPerUser; i++) {
+				final String address = prefix + (i % users);
+				final int n = i / users;
+				futures.add(executor.submit(() -> {
+					start.await();
+					reputationService.updateReputation(address, n % 4 != 0, n % 2 == 0, 0.8);
+					return null;
+				}));
+			}
+			// 所有线程同时开始，首次插入也会发生竞争
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		for (int u = 0; u < users; u++) {
+			ReputationEntity reputation = reputationService.getReputationByAddress(prefix + u);
+			assertEquals(updatesPerUser, reputation.getTotalTasks());
+			assertEquals(600, reputation.getCompletedTasks());
+			assertEquals(400, reputation.getOnTimeTasks());
+			// 比率基于衰减计数，测试持续时间内的衰减可以忽略
+			assertEquals(0.75, reputation.getCompletionRate(), 1e-4);
+			assertEquals(0.5, reputation.getOnTimeRate(), 1e-4);
+			assertEquals(0.4 * 0.75 + 0.3 * 0.5 + 0.3 * 0.8, reputation.getFinalScore(), 1e-4);
+			assertEquals(updatesPerUser, reputation.getDecayedTotalTasks(), 1e-2);
+		}
+	}
+}
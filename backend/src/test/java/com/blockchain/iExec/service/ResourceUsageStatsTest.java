@@ -0,0 +1,59 @@
+package com.blockchain.iExec.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceUsageStatsTest {
+
+	@Test
+	void constantDemandIsNotOverProvisioned() {
+		ResourceUsageStats stats = new ResourceUsageStats();
+		for (int i = 0; i < 100; i++) {
+			stats.record("{\"cpuCores\":2,\"memoryMB\":1024,\"storageGB\":3}");
+		}
+
+		assertEquals(2, stats.getCpuCores().requirement(0.95, 1));
+		assertEquals(1024, stats.getMemoryMB().requirement(0.95, 512));
+		assertEquals(3, stats.getStorageGB().requirement(0.95, 1));
+	}
+
+	@Test
+	void quantileBelowMaxKeepsIntegerDemand() {
+		// p95 落在 2 核所在的桶内，不受最大值钳制，桶代表值略高于 2
+		ResourceUsageStats stats = new ResourceUsageStats();
+		for (int i = 0; i < 100; i++) {
+			stats.record("{\"cpuCores\":" + (i < 97 ? 2 : 8) + ",\"memoryMB\":" + (i < 97 ? 3000 : 8000) + "}");
+		}
+
+		assertEquals(2, stats.getCpuCores().requirement(0.95, 1));
+		assertEquals(3000, stats.getMemoryMB().requirement(0.95, 512));
+		// 缺失的维度使用默认值
+		assertEquals(1, stats.getStorageGB().requirement(0.95, 1));
+	}
+
+	@Test
+	void sketchFallbackKeepsIntegerDemand() {
+		// 不同取值超过精确计数上限后改用草图，桶代表值略高于 4 时仍取 4
+		ResourceUsageStats stats = new ResourceUsageStats();
+		for (int i = 0; i < 10_000; i++) {
+			stats.record("{\"cpuCores\":4}");
+		}
+		for (int i = 0; i <= ResourceUsageStats.DimensionStats.MAX_EXACT_VALUES; i++) {
+			stats.record("{\"cpuCores\":" + (100 + i) + "}");
+		}
+
+		assertTrue(stats.getCpuCores().quantile(0.95) > 4);
+		assertEquals(4, stats.getCpuCores().requirement(0.95, 1));
+	}
+
+	@Test
+	void fractionalDemandIsRoundedUp() {
+		ResourceUsageStats stats = new ResourceUsageStats();
+		for (int i = 0; i < 100; i++) {
+			stats.record("{\"cpuCores\":1.5}");
+		}
+
+		assertEquals(2, stats.getCpuCores().requirement(0.95, 1));
+	}
+}
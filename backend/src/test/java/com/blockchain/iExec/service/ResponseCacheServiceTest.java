@@ -0,0 +1,173 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ResponseCacheServiceTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TaskService taskService;
+
+	@Autowired
+	private ResponseCacheService responseCacheService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@Test
+	void taskReturnsNotModifiedUntilItChanges() throws Exception {
+		String taskId = "etag-" + UUID.randomUUID();
+		save(taskId, TaskStatus.PROCESSING);
+
+		HttpResponse<String> first = get("/tasks/" + taskId, null);
+		assertEquals(200, first.statusCode());
+		String eTag = first.headers().firstValue("ETag").orElseThrow();
+		assertTrue(first.headers().firstValue("Last-Modified").isPresent());
+		assertEquals("no-cache", first.headers().firstValue("Cache-Control").orElseThrow());
+
+		HttpResponse<String> unchanged = get("/tasks/" + taskId, eTag);
+		assertEquals(304, unchanged.statusCode());
+		assertTrue(unchanged.body().isEmpty());
+		assertEquals(304, get("/tasks/task-id/" + taskId, eTag).statusCode());
+
+		assertTrue(taskService.updateTaskResult(taskId, "0xresult"));
+		HttpResponse<String> changed = get("/tasks/" + taskId, eTag);
+		assertEquals(200, changed.statusCode());
+		assertNotEquals(eTag, changed.headers().firstValue("ETag").orElseThrow());
+		assertEquals("Completed", objectMapper.readTree(changed.body()).get("status").asText());
+	}
+
+	@Test
+	void monitorStatsInvalidatedByTaskChanges() throws Exception {
+		HttpResponse<String> first = get("/monitor/stats", null);
+		assertEquals(200, first.statusCode());
+		String eTag = first.headers().firstValue("ETag").orElseThrow();
+		int running = objectMapper.readTree(first.body()).get("runningTasksCount").asInt();
+
+		assertEquals(304, get("/monitor/stats", eTag).statusCode());
+
+		// 缓存未过期，但任务变化后立即重新计算
+		save("etag-" + UUID.randomUUID(), TaskStatus.RUNNING);
+		HttpResponse<String> changed = get("/monitor/stats", eTag);
+		assertEquals(200, changed.statusCode());
+		assertEquals(running + 1, objectMapper.readTree(changed.body()).get("runningTasksCount").asInt());
+	}
+
+	@Test
+	void repeatedReadsAreServedFromCache() {
+		AtomicInteger loads = new AtomicInteger();
+		String key = "test:" + UUID.randomUUID();
+		String eTag = null;
+		for (int i = 0; i < 100; i++) {
+			ResponseCacheService.CachedResponse<Integer> response = responseCacheService.get(key, () -> {
+				loads.incrementAndGet();
+				return 42;
+			});
+			assertEquals(42, response.getValue());
+			// 重新计算得到相同内容时 ETag 不变
+			if (eTag != null) {
+				assertEquals(eTag, response.getETag());
+			}
+			eTag = response.getETag();
+		}
+		// 其他测试的后台任务可能触发少量失效，但绝大多数读取应命中缓存
+		assertTrue(loads.get() <= 5, "loaded " + loads.get() + " times");
+	}
+
+	@Test
+	void concurrentMissesShareOneLoad() throws Exception {
+		String key = "test:" + UUID.randomUUID();
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Supplier<Integer> loader = () -> {
+			loads.incrementAndGet();
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return 42;
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			long waits = responseCacheService.getWaits();
+			List<Future<ResponseCacheService.CachedResponse<Integer>>> responses = new ArrayList<>();
+			responses.add(executor.submit(() -> responseCacheService.get(key, loader)));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			for (int i = 0; i < 15; i++) {
+				responses.add(executor.submit(() -> responseCacheService.get(key, loader)));
+			}
+			// 其余请求都在等待第一次计算
+			long deadline = System.currentTimeMillis() + 5_000;
+			while (responseCacheService.getWaits() < waits + 15 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+			for (Future<ResponseCacheService.CachedResponse<Integer>> response : responses) {
+				assertEquals(42, response.get(5, TimeUnit.SECONDS).getValue());
+			}
+			// 计算期间其他测试的后台任务可能触发失效，失效后的请求另起计算
+			assertTrue(loads.get() <= 3, "loaded " + loads.get() + " times");
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void failedLoadIsNotCached() {
+		String key = "test:" + UUID.randomUUID();
+		assertThrows(IllegalStateException.class, () -> responseCacheService.get(key, () -> {
+			throw new IllegalStateException("failed");
+		}));
+		assertEquals(42, responseCacheService.get(key, () -> 42).getValue());
+	}
+
+	private void save(String taskId, TaskStatus status) {
+		TaskEntity task = new TaskEntity();
+		task.setTaskId(taskId);
+		task.setServiceId("1");
+		task.setUserAddress("0xetag");
+		task.setStatus(status);
+		taskService.saveTask(task);
+	}
+
+	private HttpResponse<String> get(String path, String ifNoneMatch) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api" + path));
+		if (ifNoneMatch != null) {
+			request.header("If-None-Match", ifNoneMatch);
+		}
+		return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+}
@@ -0,0 +1,98 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.ArchivedTaskEntity;
+import com.blockchain.iExec.model.TaskHistoryEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskArchiveRepository;
+import com.blockchain.iExec.repository.TaskHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskHolder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class RetentionServiceTest {
+
+	@Autowired
+	private RetentionService retentionService;
+
+	@Autowired
+	private TaskHistoryRepository taskHistoryRepository;
+
+	@Autowired
+	private TaskArchiveRepository taskArchiveRepository;
+
+	@Autowired
+	private ThreadPoolTaskScheduler taskScheduler;
+
+	@Autowired
+	private ScheduledTaskHolder scheduledTaskHolder;
+
+	@Test
+	void purgeDoesNotShareSchedulerThreadWithOtherJobs() {
+		// 每个定时任务都能分到一个线程，长时间运行的清理不会推迟其他定时任务
+		assertTrue(taskScheduler.getPoolSize() >= scheduledTaskHolder.getScheduledTasks().size(),
+			"scheduler threads: " + taskScheduler.getPoolSize() + ", jobs: " + scheduledTaskHolder.getScheduledTasks().size());
+	}
+
+	@Test
+	void purgesOnlyExpiredRowsInBatches() {
+		LocalDateTime now = LocalDateTime.now();
+		List<TaskHistoryEntity> histories = new ArrayList<>();
+		for (int i = 0; i < 1_200; i++) {
+			// 前 1100 条超过 30 天保留期，跨越多个批次
+			histories.add(history("retention-" + i, i < 1_100 ? now.minusDays(40) : now.minusDays(1), true));
+		}
+		// 超过保留期但尚未合并到汇总表的记录保留到补齐之后
+		for (int i = 0; i < 10; i++) {
+			histories.add(history("retention-pending-" + i, now.minusDays(40), false));
+		}
+		taskHistoryRepository.saveAll(histories);
+
+		ArchivedTaskEntity expired = archived(-1L, now.minusDays(120));
+		ArchivedTaskEntity kept = archived(-2L, now.minusDays(10));
+		taskArchiveRepository.saveAll(List.of(expired, kept));
+
+		RetentionService.RetentionReport report = retentionService.purge();
+
+		assertTrue(report.isCompleted());
+		assertTrue(report.getHistoryDeleted() >= 1_100);
+		assertTrue(report.getArchiveDeleted() >= 1);
+		assertSame(report, retentionService.getLastReport());
+		assertTrue(taskHistoryRepository.findRolledUpIdsCreatedBefore(now.minusDays(30), PageRequest.of(0, 1)).isEmpty());
+		assertEquals(110, taskHistoryRepository.findAllById(
+			histories.stream().map(TaskHistoryEntity::getId).toList()).size());
+		assertFalse(taskArchiveRepository.existsById(-1L));
+		assertTrue(taskArchiveRepository.existsById(-2L));
+	}
+
+	private static TaskHistoryEntity history(String taskId, LocalDateTime createdAt, boolean rolledUp) {
+		TaskHistoryEntity history = new TaskHistoryEntity();
+		history.setTaskId(taskId);
+		history.setIexecTaskId(taskId);
+		history.setServiceId("retention");
+		history.setUserAddress("0xretention");
+		history.setStatus(TaskStatus.COMPLETED);
+		history.setCreatedAt(createdAt);
+		history.setRolledUp(rolledUp);
+		return history;
+	}
+
+	private static ArchivedTaskEntity archived(Long id, LocalDateTime updatedAt) {
+		ArchivedTaskEntity task = new ArchivedTaskEntity();
+		task.setId(id);
+		task.setTaskId("retention-archived" + id);
+		task.setStatus(TaskStatus.COMPLETED);
+		task.setUpdatedAt(updatedAt);
+		task.setArchivedAt(updatedAt);
+		return task;
+	}
+}
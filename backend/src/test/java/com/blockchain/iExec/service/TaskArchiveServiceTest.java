@@ -0,0 +1,140 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskArchiveRepository;
+import com.blockchain.iExec.repository.TaskRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class TaskArchiveServiceTest {
+
+	@Autowired
+	private TaskArchiveService taskArchiveService;
+
+	@Autowired
+	private TaskService taskService;
+
+	@Autowired
+	private TaskRepository taskRepository;
+
+	@Autowired
+	private TaskArchiveRepository taskArchiveRepository;
+
+	@Autowired
+	private ExportService exportService;
+
+	@Test
+	void terminalTasksMoveToArchiveAndStayVisible() {
+		String prefix = "archive-" + UUID.randomUUID();
+		TaskEntity finished = save(prefix + "-done", TaskStatus.COMPLETED);
+		TaskEntity running = save(prefix + "-running", TaskStatus.RUNNING);
+
+		// cutoff 在两个任务的更新时间之后：只有已结束的任务被归档
+		taskArchiveService.archive(LocalDateTime.now().plusSeconds(1));
+
+		assertNull(taskRepository.findByTaskId(prefix + "-done"));
+		assertTrue(taskArchiveRepository.existsById(finished.getId()));
+		assertNotNull(taskRepository.findByTaskId(prefix + "-running"));
+
+		TaskEntity archived = taskService.getTaskByTaskId(prefix + "-done");
+		assertNotNull(archived);
+		assertEquals(finished.getId(), archived.getId());
+		assertEquals(TaskStatus.COMPLETED, archived.getStatus());
+		assertEquals(prefix + "-done", taskService.getTaskByIexecTaskId(prefix + "-done-iexec").getTaskId());
+		assertTrue(taskService.getTaskById(finished.getId()).isPresent());
+		assertEquals(running.getId(), taskService.getTaskByTaskId(prefix + "-running").getId());
+	}
+
+	@Test
+	void archiveStopsAtTimeBudget() {
+		// 每批都是满批（积压很多）时，单次运行在时间上限后结束
+		TaskArchiveRepository repository = mock(TaskArchiveRepository.class);
+		when(repository.findArchivableIds(any(), any(), any())).thenReturn(List.of(1L, 2L));
+		when(repository.copyToArchive(any(), any())).thenReturn(2);
+		when(repository.deleteFromHot(any())).thenReturn(2);
+		TaskArchiveService service = new TaskArchiveService(mock(PlatformTransactionManager.class), true, 0, 2, 10, 200);
+		ReflectionTestUtils.setField(service, "taskArchiveRepository", repository);
+
+		long start = System.currentTimeMillis();
+		long archived = service.archive(LocalDateTime.now());
+		long elapsed = System.currentTimeMillis() - start;
+
+		assertTrue(archived > 0);
+		assertTrue(elapsed < 2_000, "ran for " + elapsed + " ms");
+	}
+
+	@Test
+	void archivedTasksAreListedAndExported() throws Exception {
+		String serviceId = "archive-" + UUID.randomUUID();
+		TaskEntity older = save(serviceId + "-older", TaskStatus.FAILED, serviceId);
+		save(serviceId + "-running", TaskStatus.RUNNING, serviceId);
+		TaskEntity newer = save(serviceId + "-newer", TaskStatus.COMPLETED, serviceId);
+		taskArchiveService.archive(LocalDateTime.now().plusSeconds(1));
+		assertTrue(taskArchiveRepository.existsById(older.getId()));
+
+		// 热表和归档表合并后按创建时间倒序分页
+		TaskService.TaskPage first = taskService.getTaskPage(null, null, serviceId, null, 2);
+		assertEquals(List.of(serviceId + "-newer", serviceId + "-running"),
+			first.getItems().stream().map(TaskEntity::getTaskId).toList());
+		assertNotNull(first.getNextCursor());
+		TaskService.TaskPage second = taskService.getTaskPage(null, null, serviceId, first.getNextCursor(), 2);
+		assertEquals(List.of(serviceId + "-older"), second.getItems().stream().map(TaskEntity::getTaskId).toList());
+		assertNull(second.getNextCursor());
+		assertEquals(List.of(serviceId + "-newer"),
+			taskService.getTaskPage(TaskStatus.COMPLETED, null, serviceId, null, 10).getItems().stream()
+				.map(TaskEntity::getTaskId).toList());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(3, exportService.exportTasks(null, null, serviceId, out));
+		assertTrue(out.toString(StandardCharsets.UTF_8).contains(serviceId + "-newer"));
+
+		assertEquals(newer.getId(), taskService.getTaskById(newer.getId()).orElseThrow().getId());
+	}
+
+	@Test
+	void archivedTasksAreReadOnlyButCanBeDeleted() {
+		String prefix = "archive-" + UUID.randomUUID();
+		TaskEntity task = save(prefix + "-done", TaskStatus.COMPLETED);
+		taskArchiveService.archive(LocalDateTime.now().plusSeconds(1));
+		assertTrue(taskService.isArchived(task.getId()));
+
+		TaskEntity details = taskService.getTaskById(task.getId()).orElseThrow();
+		details.setResultHash("0xchanged");
+		IllegalStateException e = assertThrows(IllegalStateException.class,
+			() -> taskService.updateTaskDetails(task.getId(), details));
+		assertEquals(TaskService.archivedMessage(task.getId()), e.getMessage());
+
+		assertTrue(taskService.deleteTask(task.getId()));
+		assertFalse(taskArchiveRepository.existsById(task.getId()));
+		assertTrue(taskService.getTaskById(task.getId()).isEmpty());
+		assertFalse(taskService.deleteTask(task.getId()));
+	}
+
+	private TaskEntity save(String taskId, TaskStatus status) {
+		return save(taskId, status, "archive");
+	}
+
+	private TaskEntity save(String taskId, TaskStatus status, String serviceId) {
+		TaskEntity task = new TaskEntity();
+		task.setTaskId(taskId);
+		task.setIexecTaskId(taskId + "-iexec");
+		task.setServiceId(serviceId);
+		task.setStatus(status);
+		return taskService.saveTask(task);
+	}
+}
@@ -0,0 +1,185 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TaskDispatchServiceTest {
+
+	private final TaskSchedulerService taskSchedulerService = mock(TaskSchedulerService.class);
+	private final ComputeRouter computeRouter = mock(ComputeRouter.class);
+	private final TaskService taskService = mock(TaskService.class);
+	private final DeadlineService deadlineService = mock(DeadlineService.class);
+	private final UserStatsService userStatsService = mock(UserStatsService.class);
+
+	// 按提交顺序记录的任务及其未完成的执行结果
+	private final List<String> submitted = Collections.synchronizedList(new ArrayList<>());
+	private final Map<String, CompletableFuture<Void>> running = new ConcurrentHashMap<>();
+	// 同时运行的任务数峰值（测试先从 running 移除再完成任务，running 的大小不小于实际运行数）
+	private final AtomicInteger maxRunning = new AtomicInteger();
+
+	@Test
+	void edfDispatchesInGlobalDeadlineOrderDespiteFairQueuing() {
+		TaskDispatchService dispatcher = dispatcher(TaskDispatchService.MODE_EDF, true, 1);
+		LocalDateTime now = LocalDateTime.now();
+		dispatcher.submit(task("blocker", "0xa", now.plusHours(2)), BigInteger.ONE);
+		// 用户 a 的任务截止时间都晚于用户 b、c 的任务
+		dispatcher.submit(task("a-50", "0xa", now.plusMinutes(50)), BigInteger.ONE);
+		dispatcher.submit(task("a-40", "0xa", now.plusMinutes(40)), BigInteger.ONE);
+		dispatcher.submit(task("b-10", "0xb", now.plusMinutes(10)), BigInteger.ONE);
+		dispatcher.submit(task("b-20", "0xb", now.plusMinutes(20)), BigInteger.ONE);
+		dispatcher.submit(task("c-30", "0xc", now.plusMinutes(30)), BigInteger.ONE);
+
+		completeAll(6);
+		assertEquals(List.of("blocker", "b-10", "b-20", "c-30", "a-40", "a-50"), submitted);
+	}
+
+	@Test
+	void priorityModeInterleavesUsers() {
+		TaskDispatchService dispatcher = dispatcher(TaskDispatchService.MODE_PRIORITY, true, 1);
+		dispatcher.submit(task("blocker", "0xa", null), BigInteger.ONE);
+		for (int i = 1; i <= 3; i++) {
+			dispatcher.submit(task("a-" + i, "0xa", null), BigInteger.ONE);
+		}
+		dispatcher.submit(task("b-1", "0xb", null), BigInteger.ONE);
+
+		completeAll(5);
+		// 用户 b 不必等用户 a 的积压全部完成
+		assertTrue(submitted.indexOf("b-1") < submitted.indexOf("a-3"), submitted.toString());
+	}
+
+	@Test
+	void concurrencyLimitIsNeverExceeded() throws Exception {
+		TaskDispatchService dispatcher = dispatcher(TaskDispatchService.MODE_PRIORITY, true, 2);
+		for (int i = 0; i < 5; i++) {
+			dispatcher.submit(task("t-" + i, "0x" + i, null), BigInteger.ONE);
+		}
+		assertEquals(2, submitted.size());
+		assertEquals(2, dispatcher.getStats().getInFlightTasks());
+		assertEquals(3, dispatcher.getStats().getQueuedTasks());
+
+		// 多个线程同时完成任务，同时有新任务提交
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			int user = i;
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < 200; j++) {
+					dispatcher.submit(task("u" + user + "-" + j, "0xu" + user, null), BigInteger.ONE);
+					running.keySet().stream().findAny().map(running::remove).ifPresent(future -> future.complete(null));
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(maxRunning.get() <= 2, "running: " + maxRunning.get());
+		assertTrue(dispatcher.getStats().getInFlightTasks() <= 2);
+	}
+
+	@Test
+	void slotIsReleasedWhenSubmissionFails() {
+		TaskDispatchService dispatcher = dispatcher(TaskDispatchService.MODE_PRIORITY, true, 1);
+		doAnswer(invocation -> {
+			submitted.add(invocation.<TaskEntity>getArgument(0).getTaskId());
+			throw new IllegalStateException("backend unavailable");
+		}).when(computeRouter).submit(any(), any());
+		for (int i = 0; i < 3; i++) {
+			dispatcher.submit(task("t-" + i, "0xa", null), BigInteger.ONE);
+		}
+
+		// 每次同步失败都释放槽位，后续任务继续分发
+		assertEquals(List.of("t-0", "t-1", "t-2"), submitted);
+		assertEquals(0, dispatcher.getStats().getInFlightTasks());
+		assertEquals(0, dispatcher.getStats().getQueuedTasks());
+	}
+
+	@Test
+	void synchronousCompletionsDoNotRecurse() {
+		TaskDispatchService dispatcher = dispatcher(TaskDispatchService.MODE_PRIORITY, false, 1);
+		CompletableFuture<Void> blocker = new CompletableFuture<>();
+		doAnswer(invocation -> {
+			submitted.add(invocation.<TaskEntity>getArgument(0).getTaskId());
+			return submitted.size() == 1 ? blocker : CompletableFuture.failedFuture(new IllegalStateException("failed"));
+		}).when(computeRouter).submit(any(), any());
+		dispatcher.submit(task("blocker", "0xa", null), BigInteger.ONE);
+		for (int i = 0; i < 20_000; i++) {
+			dispatcher.submit(task("t-" + i, "0xa", null), BigInteger.ONE);
+		}
+		assertEquals(1, submitted.size());
+
+		// 槽位释放后，同步失败的任务在同一个循环中依次分发，不会逐层递归导致栈溢出
+		blocker.complete(null);
+		assertEquals(20_001, submitted.size());
+		assertEquals(0, dispatcher.getStats().getInFlightTasks());
+	}
+
+	@Test
+	void taskIsNotSubmittedWhenTransitionIsRejected() {
+		TaskDispatchService dispatcher = dispatcher(TaskDispatchService.MODE_PRIORITY, true, 1);
+		// 排队期间已结束的任务不能再进入 Processing
+		when(taskService.updateTaskStatus(eq("finished"), any())).thenReturn(false);
+		dispatcher.submit(task("finished", "0xa", null), BigInteger.ONE);
+		dispatcher.submit(task("next", "0xa", null), BigInteger.ONE);
+
+		assertEquals(List.of("next"), submitted);
+		assertEquals(1, dispatcher.getStats().getInFlightTasks());
+		assertEquals(1, dispatcher.getStats().getDispatchedTasks());
+	}
+
+	private TaskDispatchService dispatcher(String mode, boolean fairQueuing, int maxConcurrentTasks) {
+		TaskSchedulerService.SchedulingStrategy strategy = new TaskSchedulerService.SchedulingStrategy();
+		strategy.setMaxConcurrentTasks(maxConcurrentTasks);
+		when(taskSchedulerService.getAdaptiveSchedulingStrategy()).thenReturn(strategy);
+		when(deadlineService.canMeetDeadline(any())).thenReturn(true);
+		when(taskService.updateTaskStatus(anyString(), any())).thenReturn(true);
+		when(userStatsService.getUserStats(anyString())).thenReturn(new UserStatsService.UserStats(null, 0, 0));
+		when(computeRouter.submit(any(), any())).thenAnswer(invocation -> {
+			String taskId = invocation.<TaskEntity>getArgument(0).getTaskId();
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			submitted.add(taskId);
+			running.put(taskId, future);
+			maxRunning.accumulateAndGet(running.size(), Math::max);
+			return future;
+		});
+
+		TaskDispatchService dispatcher = new TaskDispatchService(mode, fairQueuing);
+		ReflectionTestUtils.setField(dispatcher, "taskSchedulerService", taskSchedulerService);
+		ReflectionTestUtils.setField(dispatcher, "computeRouter", computeRouter);
+		ReflectionTestUtils.setField(dispatcher, "taskService", taskService);
+		ReflectionTestUtils.setField(dispatcher, "deadlineService", deadlineService);
+		ReflectionTestUtils.setField(dispatcher, "userStatsService", userStatsService);
+		return dispatcher;
+	}
+
+	// 依次完成最早提交的运行中任务，直到共提交 count 个任务
+	private void completeAll(int count) {
+		for (int i = 0; i < count; i++) {
+			assertTrue(i < submitted.size(), "only " + submitted.size() + " tasks dispatched");
+			running.remove(submitted.get(i)).complete(null);
+		}
+	}
+
+	private static TaskEntity task(String taskId, String userAddress, LocalDateTime deadline) {
+		TaskEntity task = new TaskEntity();
+		task.setTaskId(taskId);
+		task.setServiceId("1");
+		task.setUserAddress(userAddress);
+		task.setDeadline(deadline);
+		return task;
+	}
+}
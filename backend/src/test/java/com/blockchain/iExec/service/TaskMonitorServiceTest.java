@@ -0,0 +1,96 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TaskMonitorServiceTest {
+
+	private final TaskService taskService = mock(TaskService.class);
+	private final MockIexecService mockIexecService = mock(MockIexecService.class);
+
+	// 按 (createdAt, id) 排序的运行中任务
+	private final List<TaskEntity> running = new ArrayList<>();
+	// 按检查顺序记录的任务
+	private final List<String> checked = new ArrayList<>();
+
+	@Test
+	void batchesRotateThroughAllRunningTasks() {
+		TaskMonitorService monitor = monitor(2);
+		LocalDateTime createdAt = LocalDateTime.now();
+		for (int i = 0; i < 5; i++) {
+			// 前两个任务创建时间相同，按 id 区分先后
+			running.add(task(i, i < 2 ? createdAt : createdAt.plusSeconds(i)));
+		}
+
+		for (int round = 0; round < 3; round++) {
+			monitor.monitorRunningTasks();
+		}
+		// 每个任务都被检查到，最后一轮到末尾后从最早的任务补满
+		assertEquals(List.of("t-0", "t-1", "t-2", "t-3", "t-4", "t-0"), checked);
+
+		checked.clear();
+		monitor.monitorRunningTasks();
+		assertEquals(List.of("t-1", "t-2"), checked);
+	}
+
+	@Test
+	void smallBacklogIsCheckedEveryRound() {
+		TaskMonitorService monitor = monitor(4);
+		LocalDateTime createdAt = LocalDateTime.now();
+		for (int i = 0; i < 3; i++) {
+			running.add(task(i, createdAt.plusSeconds(i)));
+		}
+
+		monitor.monitorRunningTasks();
+		monitor.monitorRunningTasks();
+		assertEquals(List.of("t-0", "t-1", "t-2", "t-0", "t-1", "t-2"), checked);
+	}
+
+	private TaskMonitorService monitor(int batchSize) {
+		when(taskService.getOldestTasksByStatus(eq(TaskStatus.RUNNING), anyInt()))
+			.thenAnswer(invocation -> running.stream().limit(invocation.<Integer>getArgument(1)).toList());
+		when(taskService.getTasksByStatusAfter(eq(TaskStatus.RUNNING), any(), any(), anyInt())).thenAnswer(invocation -> {
+			LocalDateTime createdAt = invocation.getArgument(1);
+			Long id = invocation.getArgument(2);
+			return running.stream()
+				.filter(task -> task.getCreatedAt().isAfter(createdAt)
+					|| (task.getCreatedAt().equals(createdAt) && task.getId() > id))
+				.sorted(Comparator.comparing(TaskEntity::getCreatedAt).thenComparing(TaskEntity::getId))
+				.limit(invocation.<Integer>getArgument(3))
+				.toList();
+		});
+		when(mockIexecService.getMockTaskStatus(anyString())).thenAnswer(invocation -> {
+			checked.add(invocation.getArgument(0));
+			return null;
+		});
+
+		TaskMonitorService monitor = new TaskMonitorService();
+		ReflectionTestUtils.setField(monitor, "taskService", taskService);
+		ReflectionTestUtils.setField(monitor, "mockIexecService", mockIexecService);
+		ReflectionTestUtils.setField(monitor, "monitorBatchSize", batchSize);
+		ReflectionTestUtils.setField(monitor, "taskTimeout", 3_600_000L);
+		ReflectionTestUtils.setField(monitor, "mockEnabled", true);
+		return monitor;
+	}
+
+	private static TaskEntity task(long id, LocalDateTime createdAt) {
+		TaskEntity task = new TaskEntity();
+		task.setId(id);
+		task.setTaskId("t-" + id + "-task");
+		task.setIexecTaskId("t-" + id);
+		task.setCreatedAt(createdAt);
+		task.setStatus(TaskStatus.RUNNING);
+		return task;
+	}
+}
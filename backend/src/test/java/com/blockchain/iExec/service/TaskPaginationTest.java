@@ -0,0 +1,88 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class TaskPaginationTest {
+
+	@Autowired
+	private TaskService taskService;
+
+	@Test
+	void cursorWalksEveryTaskOnceNewestFirst() {
+		String serviceId = "page-" + UUID.randomUUID();
+		LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+		for (int i = 0; i < 25; i++) {
+			TaskEntity task = new TaskEntity();
+			task.setTaskId(serviceId + "-" + i);
+			task.setServiceId(serviceId);
+			task.setUserAddress(i % 2 == 0 ? "0xeven" : "0xodd");
+			task.setStatus(i % 5 == 0 ? TaskStatus.FAILED : TaskStatus.COMPLETED);
+			// 每 3 个任务共用一个创建时间，翻页需要用 id 区分
+			task.setCreatedAt(base.plusMinutes(i / 3));
+			taskService.saveTask(task);
+		}
+
+		List<TaskEntity> seen = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			TaskService.TaskPage page = taskService.getTaskPage(null, null, serviceId, cursor, 10);
+			seen.addAll(page.getItems());
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+
+		assertEquals(3, pages);
+		assertEquals(25, seen.size());
+		Set<Long> ids = new HashSet<>();
+		for (int i = 0; i < seen.size(); i++) {
+			assertTrue(ids.add(seen.get(i).getId()));
+			if (i > 0) {
+				TaskEntity previous = seen.get(i - 1);
+				TaskEntity current = seen.get(i);
+				int order = previous.getCreatedAt().compareTo(current.getCreatedAt());
+				assertTrue(order > 0 || (order == 0 && previous.getId() > current.getId()));
+			}
+		}
+	}
+
+	@Test
+	void filtersAndSizeCap() {
+		String serviceId = "filter-" + UUID.randomUUID();
+		for (int i = 0; i < 10; i++) {
+			TaskEntity task = new TaskEntity();
+			task.setTaskId(serviceId + "-" + i);
+			task.setServiceId(serviceId);
+			task.setUserAddress(i < 4 ? "0xa" : "0xb");
+			task.setStatus(i % 2 == 0 ? TaskStatus.RUNNING : TaskStatus.COMPLETED);
+			taskService.saveTask(task);
+		}
+
+		TaskService.TaskPage page = taskService.getTaskPage(TaskStatus.RUNNING, "0xa", serviceId, null, 50);
+		assertEquals(2, page.getItems().size());
+		assertNull(page.getNextCursor());
+		for (TaskEntity task : page.getItems()) {
+			assertEquals(TaskStatus.RUNNING, task.getStatus());
+			assertEquals("0xa", task.getUserAddress());
+		}
+
+		assertThrows(IllegalArgumentException.class,
+			() -> taskService.getTaskPage(null, null, serviceId, null, TaskService.MAX_PAGE_SIZE + 1));
+		assertThrows(IllegalArgumentException.class,
+			() -> taskService.getTaskPage(null, null, serviceId, "not-a-cursor", 10));
+	}
+}
@@ -0,0 +1,176 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskHistoryEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TaskSchedulerServiceTest {
+
+	@Test
+	void userSketchesAreBoundedByRecency() {
+		TaskSchedulerService scheduler = new TaskSchedulerService(2, 0, 0.1);
+		ReflectionTestUtils.setField(scheduler, "responseCacheService", mock(ResponseCacheService.class));
+		ReflectionTestUtils.setField(scheduler, "userStatsService", mock(UserStatsService.class));
+
+		scheduler.recordTaskHistory(history("0xa", 100));
+		scheduler.recordTaskHistory(history("0xb", 200));
+		// 读取 0xa 后它成为最近使用的用户，新用户加入时淘汰 0xb
+		assertEquals(100, scheduler.predictUserCompletionTimeQuantile("0xa", 0.5), 2);
+		scheduler.recordTaskHistory(history("0xc", 300));
+
+		assertEquals(2, scheduler.getUserLatencySketchCount());
+		assertEquals(100, scheduler.predictUserCompletionTimeQuantile("0xa", 0.5), 2);
+		assertEquals(300, scheduler.predictUserCompletionTimeQuantile("0xc", 0.5), 3);
+		assertEquals(scheduler.predictUserCompletionTimeQuantile("0xunknown", 0.5),
+			scheduler.predictUserCompletionTimeQuantile("0xb", 0.5));
+	}
+
+	@Test
+	void baselineComparisonComesFromOneCachedReplay() {
+		TaskSchedulerService scheduler = new TaskSchedulerService(2, 60_000, 0.1);
+		BacktestService backtestService = mock(BacktestService.class);
+		ReflectionTestUtils.setField(scheduler, "backtestService", backtestService);
+		BacktestService.BacktestReport report = new BacktestService.BacktestReport();
+		report.setScores(List.of(score("CMA", 250.0, 40), score("WMA(20,0.1)", 380.4, 10)));
+		when(backtestService.backtest(eq("1"), anyList())).thenReturn(report);
+
+		TaskSchedulerService.PerformanceComparison comparison = scheduler.compareWithBaseline("1");
+		assertEquals("CMA", comparison.getBaselineName());
+		assertEquals(250, comparison.getBaselinePrediction());
+		assertEquals(40, comparison.getBaselineMae(), 1e-9);
+		assertEquals("WMA(20,0.1)", comparison.getAlgorithmName());
+		assertEquals(380, comparison.getAlgorithmPrediction());
+		assertEquals(10, comparison.getAlgorithmMae(), 1e-9);
+		assertEquals(75, comparison.getImprovementPercentage(), 1e-9);
+
+		// 缓存期内不再回放历史
+		assertSame(comparison, scheduler.compareWithBaseline("1"));
+		verify(backtestService, times(1)).backtest(eq("1"), anyList());
+	}
+
+	@Test
+	void slowReplayDoesNotBlockOtherServices() throws Exception {
+		TaskSchedulerService scheduler = new TaskSchedulerService(2, 60_000, 0.1);
+		BacktestService backtestService = mock(BacktestService.class);
+		ReflectionTestUtils.setField(scheduler, "backtestService", backtestService);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		BacktestService.BacktestReport slow = new BacktestService.BacktestReport();
+		slow.setScores(List.of(score("CMA", 250.0, 40), score("WMA(20,0.1)", 380.4, 10)));
+		when(backtestService.backtest(eq("slow"), anyList())).thenAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return slow;
+		});
+		BacktestService.BacktestReport empty = new BacktestService.BacktestReport();
+		empty.setScores(List.of(score("CMA", null, 0), score("WMA(20,0.1)", null, 0)));
+		empty.getScores().forEach(score -> score.setCount(0));
+		when(backtestService.backtest(eq("unknown"), anyList())).thenReturn(empty);
+
+		CompletableFuture<TaskSchedulerService.PerformanceComparison> first =
+			CompletableFuture.supplyAsync(() -> scheduler.compareWithBaseline("slow"));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<TaskSchedulerService.PerformanceComparison> second =
+			CompletableFuture.supplyAsync(() -> scheduler.compareWithBaseline("slow"));
+
+		// 其他服务不等待正在进行的回放；没有历史的结果同样缓存
+		TaskSchedulerService.PerformanceComparison unknown = assertTimeoutPreemptively(Duration.ofSeconds(5),
+			() -> scheduler.compareWithBaseline("unknown"));
+		assertEquals(0, unknown.getSampleCount());
+		assertSame(unknown, scheduler.compareWithBaseline("unknown"));
+		verify(backtestService, times(1)).backtest(eq("unknown"), anyList());
+
+		// 同一服务的并发请求共用一次回放
+		release.countDown();
+		assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+		verify(backtestService, times(1)).backtest(eq("slow"), anyList());
+	}
+
+	@Test
+	void rebuildRestoresFullHistorySketchesAndResourceStats() {
+		TaskSchedulerService scheduler = new TaskSchedulerService(10, 0, 0.1);
+		TaskHistoryRepository taskHistoryRepository = mock(TaskHistoryRepository.class);
+		HistoryRollupService historyRollupService = mock(HistoryRollupService.class);
+		ReflectionTestUtils.setField(scheduler, "taskHistoryRepository", taskHistoryRepository);
+		ReflectionTestUtils.setField(scheduler, "historyRollupService", historyRollupService);
+		ReflectionTestUtils.setField(scheduler, "responseCacheService", mock(ResponseCacheService.class));
+
+		// 250 条已汇总的记录（100 秒）在汇总表的草图中，随后 50 条尚未汇总（500 秒）
+		LatencySketch rolledUp = new LatencySketch();
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			long actualTime = i < 250 ? 100 : 500;
+			if (i < 250) {
+				rolledUp.add(actualTime);
+			}
+			rows.add(new Object[] {"1", "0xa", actualTime, "{\"cpuCores\":2}", i < 250});
+		}
+		when(historyRollupService.mergeServiceSketches()).thenReturn(Map.of("1", rolledUp));
+		when(taskHistoryRepository.streamCompletedForRebuild()).thenReturn(rows.stream());
+
+		scheduler.rebuildPredictorState();
+
+		assertEquals(300, scheduler.predictCompletionInterval("1", 0.9).getSampleCount());
+		assertEquals(300, scheduler.getResourceUsageStats("1").getCpuCores().getCount());
+		// 用户草图包含全部历史：p80 仍落在前 250 条中（只回放最近 200 条时为 500）
+		assertEquals(100, scheduler.predictUserCompletionTimeQuantile("0xa", 0.8), 2);
+		assertEquals(500, scheduler.predictCompletionTimeQuantile("1", 0.9), 5);
+	}
+
+	@Test
+	void throughputWindowIsSeededFromRecentHistory() {
+		TaskSchedulerService scheduler = new TaskSchedulerService(2, 0, 0.1);
+		TaskHistoryRepository taskHistoryRepository = mock(TaskHistoryRepository.class);
+		ReflectionTestUtils.setField(scheduler, "taskHistoryRepository", taskHistoryRepository);
+		ReflectionTestUtils.setField(scheduler, "responseCacheService", mock(ResponseCacheService.class));
+		LocalDateTime now = LocalDateTime.now();
+		when(taskHistoryRepository.streamFinishedSince(any())).thenReturn(Stream.of(
+			new Object[] {now.minusMinutes(30), TaskStatus.COMPLETED, 100L},
+			new Object[] {now.minusMinutes(3), TaskStatus.FAILED, null},
+			new Object[] {now.minusSeconds(10), TaskStatus.COMPLETED, 200L}));
+
+		assertEquals(3, scheduler.seedThroughputWindow());
+		// 重启前 1 小时内结束的任务计入吞吐与失败率
+		TaskSchedulerService.SchedulingStrategy strategy = scheduler.getAdaptiveSchedulingStrategy();
+		assertEquals(2, strategy.getThroughput());
+		assertEquals(1, strategy.getCompletedLast5Minutes());
+		assertEquals(1, strategy.getCompletedLastMinute());
+		assertEquals(1, strategy.getFailedLastHour());
+		assertEquals(150, strategy.getAverageResponseTime());
+	}
+
+	private static BacktestService.PredictorScore score(String name, Double prediction, double mae) {
+		BacktestService.PredictorScore score = new BacktestService.PredictorScore();
+		score.setName(name);
+		score.setPrediction(prediction);
+		score.setMae(mae);
+		score.setCount(100);
+		return score;
+	}
+
+	private static TaskHistoryEntity history(String userAddress, long actualTime) {
+		TaskHistoryEntity history = new TaskHistoryEntity();
+		history.setTaskId("history-" + userAddress);
+		history.setServiceId("1");
+		history.setUserAddress(userAddress);
+		history.setStatus(TaskStatus.COMPLETED);
+		history.setActualTime(actualTime);
+		return history;
+	}
+}
@@ -0,0 +1,125 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class TaskServiceTest {
+
+	@Autowired
+	private TaskService taskService;
+
+	@Autowired
+	private DeadlineService deadlineService;
+
+	@Test
+	void fullUpdateRejectsStaleVersion() {
+		TaskEntity task = save(null);
+		TaskEntity stale = copy(task);
+		assertTrue(taskService.updateTaskStatus(task.getTaskId(), TaskStatus.RUNNING));
+
+		// 客户端基于旧版本的修改不能覆盖已发生的状态转换
+		stale.setStatus(TaskStatus.PROCESSING);
+		assertThrows(ObjectOptimisticLockingFailureException.class,
+			() -> taskService.updateTaskDetails(task.getId(), stale));
+		assertEquals(TaskStatus.RUNNING, taskService.getTaskByTaskId(task.getTaskId()).getStatus());
+
+		// 带当前版本号时正常更新
+		TaskEntity current = copy(taskService.getTaskByTaskId(task.getTaskId()));
+		current.setResultHash("0xpartial");
+		TaskEntity updated = taskService.updateTaskDetails(task.getId(), current).orElseThrow();
+		assertEquals("0xpartial", updated.getResultHash());
+		assertEquals(current.getVersion() + 1, updated.getVersion());
+	}
+
+	@Test
+	void fullUpdateFollowsStateMachineAndRecordsOutcome() {
+		TaskEntity task = save(LocalDateTime.now().plusHours(1));
+		long met = deadlineService.getStats().getMetTasks();
+
+		TaskEntity completed = copy(task);
+		completed.setStatus(TaskStatus.COMPLETED);
+		completed.setResultHash("0xdone");
+		TaskEntity updated = taskService.updateTaskDetails(task.getId(), completed).orElseThrow();
+		assertNotNull(updated.getCompletedAt());
+		// 与其他更新途径一样记录任务结束
+		assertEquals(met + 1, deadlineService.getStats().getMetTasks());
+
+		TaskEntity reopened = copy(updated);
+		reopened.setStatus(TaskStatus.RUNNING);
+		assertThrows(IllegalStateException.class, () -> taskService.updateTaskDetails(task.getId(), reopened));
+		assertTrue(taskService.updateTaskDetails(Long.MAX_VALUE, reopened).isEmpty());
+	}
+
+	@Test
+	void countsTimedOutTasksWithoutLoadingThem() {
+		long running = taskService.countTasksByStatus(TaskStatus.RUNNING);
+		long timedOut = taskService.countTimedOutTasks(TaskStatus.RUNNING, 3_600_000L);
+		LocalDateTime now = LocalDateTime.now();
+		saveRunning(now.minusHours(2), null, TaskStatus.RUNNING);
+		// 截止时间晚于全局超时的任务以截止时间为准
+		saveRunning(now.minusHours(2), now.plusHours(1), TaskStatus.RUNNING);
+		saveRunning(now.minusHours(2), now.minusMinutes(10), TaskStatus.RUNNING);
+		saveRunning(now, null, TaskStatus.RUNNING);
+		saveRunning(now.minusHours(2), null, TaskStatus.PROCESSING);
+
+		assertEquals(running + 4, taskService.countTasksByStatus(TaskStatus.RUNNING));
+		assertEquals(timedOut + 2, taskService.countTimedOutTasks(TaskStatus.RUNNING, 3_600_000L));
+	}
+
+	@Test
+	void timeoutMarksTaskAsTimeout() {
+		TaskEntity task = save(null);
+		assertTrue(taskService.updateTaskStatus(task.getTaskId(), TaskStatus.RUNNING));
+
+		assertTrue(taskService.updateTaskTimeout(task.getTaskId(), "Task execution timeout after 60 minutes"));
+		TaskEntity timedOut = taskService.getTaskByTaskId(task.getTaskId());
+		assertEquals(TaskStatus.TIMEOUT, timedOut.getStatus());
+		assertEquals("Task execution timeout after 60 minutes", timedOut.getErrorMessage());
+		// 超时是终态，迟到的结果或错误不再覆盖
+		assertFalse(taskService.updateTaskResult(task.getTaskId(), "0xlate"));
+		assertFalse(taskService.updateTaskErrorMessage(task.getTaskId(), "late"));
+		assertEquals(TaskStatus.TIMEOUT, taskService.getTaskByTaskId(task.getTaskId()).getStatus());
+	}
+
+	private void saveRunning(LocalDateTime createdAt, LocalDateTime deadline, TaskStatus status) {
+		TaskEntity task = new TaskEntity();
+		task.setTaskId("timeout-" + UUID.randomUUID());
+		task.setServiceId("1");
+		task.setUserAddress("0xtimeout");
+		task.setStatus(status);
+		task.setCreatedAt(createdAt);
+		task.setDeadline(deadline);
+		taskService.saveTask(task);
+	}
+
+	private TaskEntity save(LocalDateTime deadline) {
+		TaskEntity task = new TaskEntity();
+		task.setTaskId("update-" + UUID.randomUUID());
+		task.setServiceId("1");
+		task.setUserAddress("0xupdate");
+		task.setStatus(TaskStatus.PROCESSING);
+		task.setDeadline(deadline);
+		return taskService.saveTask(task);
+	}
+
+	private static TaskEntity copy(TaskEntity task) {
+		TaskEntity copy = new TaskEntity();
+		copy.setTaskId(task.getTaskId());
+		copy.setIexecTaskId(task.getIexecTaskId());
+		copy.setUserAddress(task.getUserAddress());
+		copy.setStatus(task.getStatus());
+		copy.setResultHash(task.getResultHash());
+		copy.setVersion(task.getVersion());
+		return copy;
+	}
+}
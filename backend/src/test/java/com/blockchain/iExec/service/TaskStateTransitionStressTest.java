@@ -0,0 +1,161 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.blockchain.iExec.repository.TaskRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class TaskStateTransitionStressTest {
+
+	private static final int TASKS = 40;
+	private static final int THREADS = 16;
+	// 每个任务上并发的完成、失败、Running、Arbitrum 交易号更新次数
+	private static final int RESULTS = 4;
+	private static final int ERRORS = 4;
+	private static final int RUNNING = 2;
+	private static final int ARBITRUM = 2;
+
+	@Autowired
+	private TaskService taskService;
+
+	@Autowired
+	private TaskRepository taskRepository;
+
+	@Test
+	void concurrentTransitionsAreNeitherLostNorOverwritten() throws Exception {
+		String prefix = "stress-" + UUID.randomUUID() + "-";
+		List<String> taskIds = new ArrayList<>();
+		for (int i = 0; i < TASKS; i++) {
+			TaskEntity task = new TaskEntity();
+			task.setTaskId(prefix + i);
+			task.setServiceId("1");
+			task.setUserAddress("0xstress");
+			task.setStatus(TaskStatus.PROCESSING);
+			taskService.saveTask(task);
+			taskIds.add(task.getTaskId());
+		}
+
+		// 所有更新在同一时刻放行，尽量制造冲突
+		CountDownLatch start = new CountDownLatch(1);
+		List<Call> calls = new ArrayList<>();
+		for (String taskId : taskIds) {
+			for (int i = 0; i < RESULTS; i++) {
+				String hash = "hash-" + i;
+				calls.add(new Call(taskId, TaskStatus.COMPLETED, hash, () -> taskService.updateTaskResult(taskId, hash)));
+			}
+			for (int i = 0; i < ERRORS; i++) {
+				String error = "error-" + i;
+				calls.add(new Call(taskId, TaskStatus.FAILED, error, () -> taskService.updateTaskErrorMessage(taskId, error)));
+			}
+			for (int i = 0; i < RUNNING; i++) {
+				calls.add(new Call(taskId, TaskStatus.RUNNING, null,
+					() -> taskService.updateTaskStatus(taskId, TaskStatus.RUNNING)));
+			}
+			for (int i = 0; i < ARBITRUM; i++) {
+				calls.add(new Call(taskId, null, "arb-" + taskId,
+					() -> taskService.updateArbitrumTaskId(taskId, "arb-" + taskId, "1")));
+			}
+		}
+		Collections.shuffle(calls, new Random(42));
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (Call call : calls) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return call.action.call();
+				}));
+			}
+			start.countDown();
+			for (int i = 0; i < calls.size(); i++) {
+				calls.get(i).applied = futures.get(i).get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Map<String, List<Call>> byTask = new HashMap<>();
+		for (Call call : calls) {
+			byTask.computeIfAbsent(call.taskId, id -> new ArrayList<>()).add(call);
+		}
+		for (String taskId : taskIds) {
+			List<Call> taskCalls = byTask.get(taskId);
+			List<Call> terminal = taskCalls.stream()
+				.filter(call -> call.applied && call.status != null && call.status.isTerminal())
+				.toList();
+			long applied = taskCalls.stream().filter(call -> call.applied).count();
+			TaskEntity task = taskRepository.findByTaskId(taskId);
+
+			// 恰好一个最终状态生效，且没有被之后的更新覆盖
+			assertEquals(1, terminal.size(), taskId);
+			Call winner = terminal.get(0);
+			assertEquals(winner.status, task.getStatus());
+			if (winner.status == TaskStatus.COMPLETED) {
+				assertEquals(winner.value, task.getResultHash());
+				assertNull(task.getErrorMessage());
+			} else {
+				assertEquals(winner.value, task.getErrorMessage());
+				assertNull(task.getResultHash());
+			}
+			// 只改字段的更新总会成功，且不会被并发的状态更新冲掉
+			assertTrue(taskCalls.stream().filter(call -> call.status == null).allMatch(call -> call.applied));
+			assertEquals("arb-" + taskId, task.getArbitrumTaskId());
+			// 每次成功的更新恰好提交一个版本
+			assertEquals(applied, task.getVersion());
+		}
+	}
+
+	@Test
+	void stateMachineRejectsLeavingTerminalStates() {
+		assertTrue(TaskStatus.canTransition(null, TaskStatus.CREATED));
+		assertTrue(TaskStatus.canTransition(TaskStatus.CREATED, TaskStatus.PROCESSING));
+		assertTrue(TaskStatus.canTransition(TaskStatus.PROCESSING, TaskStatus.PROCESSING));
+		assertTrue(TaskStatus.canTransition(TaskStatus.RUNNING, TaskStatus.COMPLETED));
+		assertFalse(TaskStatus.canTransition(TaskStatus.CREATED, TaskStatus.COMPLETED));
+		assertFalse(TaskStatus.canTransition(TaskStatus.RUNNING, TaskStatus.PROCESSING));
+		assertFalse(TaskStatus.canTransition(TaskStatus.COMPLETED, TaskStatus.FAILED));
+		assertFalse(TaskStatus.canTransition(TaskStatus.FAILED, TaskStatus.COMPLETED));
+		assertFalse(TaskStatus.canTransition(TaskStatus.COMPLETED, TaskStatus.COMPLETED));
+		assertFalse(TaskStatus.canTransition(TaskStatus.RUNNING, null));
+		for (TaskStatus status : TaskStatus.values()) {
+			assertEquals(status, TaskStatus.fromCode(status.getCode()));
+			assertEquals(status, TaskStatus.fromLabel(status.getLabel()));
+		}
+		assertThrows(IllegalArgumentException.class, () -> TaskStatus.fromLabel("Unknown"));
+	}
+
+	private static class Call {
+		private final String taskId;
+		private final TaskStatus status;
+		private final String value;
+		private final Callable<Boolean> action;
+		private volatile boolean applied;
+
+		Call(String taskId, TaskStatus status, String value, Callable<Boolean> action) {
+			this.taskId = taskId;
+			this.status = status;
+			this.value = value;
+			this.action = action;
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package com.blockchain.iExec.service;
+
+import com.blockchain.iExec.model.TaskEntity;
+import com.blockchain.iExec.model.TaskStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// 缩短写入超时，使慢连接测试在几秒内完成
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+	"task.stream.write-timeout=300",
+	"task.stream.write-check-interval=100",
+	"server.tomcat.connection-timeout=5000"
+})
+class TaskStreamServiceTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TaskService taskService;
+
+	@Autowired
+	private TaskStreamService taskStreamService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private final List<Stream<String>> connections = new ArrayList<>();
+	private final List<Socket> sockets = new ArrayList<>();
+
+	@AfterEach
+	void closeConnections() throws IOException {
+		connections.forEach(Stream::close);
+		for (Socket socket : sockets) {
+			socket.close();
+		}
+	}
+
+	@Test
+	void pushesMatchingTransitionsInOrder() throws Exception {
+		String prefix = "stream-" + UUID.randomUUID() + "-";
+		String user = "0xAbC" + UUID.randomUUID().toString().substring(0, 8);
+		BlockingQueue<Event> byTask = open("taskId=" + prefix + "1", null);
+		// 用户地址不区分大小写
+		BlockingQueue<Event> byUser = open("userAddress=" + user.toLowerCase(), null);
+
+		save(prefix + "1", user);
+		save(prefix + "2", user);
+		save(prefix + "3", "0xother");
+		assertTrue(taskService.updateTaskResult(prefix + "1", "0xresult"));
+
+		Event created = next(byTask);
+		assertEquals(TaskStreamService.EVENT_TASK, created.name);
+		assertEquals(prefix + "1", created.data.get("taskId").asText());
+		assertEquals("Processing", created.data.get("status").asText());
+		Event completed = next(byTask);
+		assertEquals("Completed", completed.data.get("status").asText());
+		assertEquals("0xresult", completed.data.get("resultHash").asText());
+		assertTrue(completed.id > created.id);
+		assertNull(byTask.poll(500, TimeUnit.MILLISECONDS));
+
+		List<String> userEvents = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Event event = next(byUser);
+			userEvents.add(event.data.get("taskId").asText() + ":" + event.data.get("status").asText());
+		}
+		assertEquals(List.of(prefix + "1:Processing", prefix + "2:Processing", prefix + "1:Completed"), userEvents);
+		assertNull(byUser.poll(500, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void replaysMissedEventsOnReconnect() throws Exception {
+		String taskId = "stream-" + UUID.randomUUID();
+		long lastSeen = taskStreamService.getStats().getLastSequence();
+		save(taskId, "0xreplay");
+		assertTrue(taskService.updateTaskErrorMessage(taskId, "boom"));
+
+		BlockingQueue<Event> events = open("taskId=" + taskId, lastSeen);
+		assertEquals("Processing", next(events).data.get("status").asText());
+		Event failed = next(events);
+		assertEquals("Failed", failed.data.get("status").asText());
+		assertEquals("boom", failed.data.get("errorMessage").asText());
+
+		// 序号超出当前范围（如服务重启后）时要求客户端重新同步
+		BlockingQueue<Event> stale = open("taskId=" + taskId, Long.MAX_VALUE / 2);
+		assertEquals(TaskStreamService.EVENT_RESYNC, next(stale).name);
+	}
+
+	@Test
+	void overflowingSubscriberGetsResyncAndIsEvicted() throws Exception {
+		String taskId = "stream-" + UUID.randomUUID();
+		long evictions = taskStreamService.getStats().getEvictions();
+		Socket socket = openUnread("taskId=" + taskId);
+
+		// 客户端暂不读取，写入阻塞后缓冲区很快溢出
+		publishLarge(taskId, 600);
+		awaitTrue(() -> taskStreamService.getStats().getEvictions() > evictions, 5000);
+
+		// 开始读取：先收到溢出前已在写的事件，然后是 resync，随后服务端结束响应
+		List<String> names = new ArrayList<>();
+		for (String event : readEvents(socket.getInputStream())) {
+			names.add(event.lines().filter(line -> line.startsWith("event:"))
+				.map(line -> line.substring(6).trim()).findFirst().orElse(""));
+		}
+		assertFalse(names.isEmpty());
+		assertEquals(TaskStreamService.EVENT_RESYNC, names.get(names.size() - 1));
+		assertTrue(names.subList(0, names.size() - 1).stream().allMatch(TaskStreamService.EVENT_TASK::equals));
+		assertTrue(names.size() < 600);
+	}
+
+	@Test
+	void slowConsumersDoNotDelayOtherSubscribers() throws Exception {
+		String fastTask = "stream-" + UUID.randomUUID();
+		BlockingQueue<Event> fast = open("taskId=" + fastTask, null);
+		int connections = taskStreamService.getStats().getConnections();
+		long evictions = taskStreamService.getStats().getEvictions();
+
+		// 与发送线程数相同的慢连接，每个都写入阻塞（事件数不超过缓冲区，只能由写入超时移出）
+		for (int i = 0; i < 4; i++) {
+			String slowTask = "stream-" + UUID.randomUUID();
+			openUnread("taskId=" + slowTask);
+			publishLarge(slowTask, 200);
+		}
+		awaitTrue(() -> taskStreamService.getStats().getEvictions() >= evictions + 4, 5000);
+
+		// 发送线程被卡住时临时增加线程，其他连接照常收到事件
+		long start = System.currentTimeMillis();
+		save(fastTask, "0xfast");
+		assertEquals(fastTask, next(fast).data.get("taskId").asText());
+		assertTrue(System.currentTimeMillis() - start < 2000);
+
+		// 阻塞的写入在连接超时后失败，慢连接被关闭
+		awaitTrue(() -> taskStreamService.getStats().getConnections() <= connections, 15000);
+	}
+
+	private void save(String taskId, String userAddress) {
+		TaskEntity task = new TaskEntity();
+		task.setTaskId(taskId);
+		task.setServiceId("1");
+		task.setUserAddress(userAddress);
+		task.setStatus(TaskStatus.PROCESSING);
+		taskService.saveTask(task);
+	}
+
+	private void publishLarge(String taskId, int count) {
+		String padding = "x".repeat(64 * 1024);
+		for (int i = 0; i < count; i++) {
+			TaskEntity task = new TaskEntity();
+			task.setTaskId(taskId);
+			task.setStatus(TaskStatus.FAILED);
+			task.setErrorMessage(padding);
+			taskStreamService.publish(task);
+		}
+	}
+
+	// 建立订阅但不读取响应，接收缓冲区尽量小，使服务端写入很快阻塞
+	private Socket openUnread(String query) throws Exception {
+		Socket socket = new Socket();
+		sockets.add(socket);
+		socket.setReceiveBufferSize(4096);
+		socket.connect(new InetSocketAddress("localhost", port));
+		socket.getOutputStream().write(("GET /api/tasks/stream?" + query + " HTTP/1.1\r\n"
+			+ "Host: localhost\r\nAccept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		socket.getOutputStream().flush();
+		// 等待订阅登记完成：登记后立即发送心跳提交响应头，只读取状态行
+		// （不比较连接数：之前测试关闭的连接可能同时注销，连接数不一定增加）
+		socket.setSoTimeout(5000);
+		assertTrue(readLine(socket.getInputStream()).contains(" 200"));
+		socket.setSoTimeout(0);
+		return socket;
+	}
+
+	// 读取分块编码的响应直到结束块，按空行拆分为事件（心跳注释除外）
+	private static List<String> readEvents(InputStream in) throws IOException {
+		while (!readLine(in).isEmpty()) {
+			// 跳过响应头
+		}
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		int size;
+		while ((size = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+			body.write(in.readNBytes(size));
+			readLine(in);
+		}
+		List<String> events = new ArrayList<>();
+		for (String event : body.toString(StandardCharsets.UTF_8).split("\n\n")) {
+			if (!event.isBlank() && !event.startsWith(":")) {
+				events.add(event);
+			}
+		}
+		return events;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1 && c != '\n') {
+			if (c != '\r') {
+				line.append((char) c);
+			}
+		}
+		if (c == -1) {
+			throw new IOException("connection closed");
+		}
+		return line.toString();
+	}
+
+	private static void awaitTrue(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+			Thread.sleep(50);
+		}
+	}
+
+	// 在后台线程按 SSE 格式解析事件（id / event / data 行，空行结束一个事件），心跳注释忽略
+	private BlockingQueue<Event> open(String query, Long lastEventId) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(
+			URI.create("http://localhost:" + port + "/api/tasks/stream?" + query))
+			.header("Accept", "text/event-stream");
+		if (lastEventId != null) {
+			request.header("Last-Event-ID", lastEventId.toString());
+		}
+		HttpResponse<Stream<String>> response = client.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+		assertEquals(200, response.statusCode());
+		Stream<String> lines = response.body();
+		connections.add(lines);
+
+		BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+		Thread reader = new Thread(() -> {
+			Event current = new Event();
+			try {
+				for (String line : (Iterable<String>) lines::iterator) {
+					if (line.isEmpty()) {
+						if (current.name != null) {
+							events.add(current);
+						}
+						current = new Event();
+					} else if (line.startsWith("id:")) {
+						current.id = Long.parseLong(line.substring(3).trim());
+					} else if (line.startsWith("event:")) {
+						current.name = line.substring(6).trim();
+					} else if (line.startsWith("data:")) {
+						current.data = objectMapper.readTree(line.substring(5).trim());
+					}
+				}
+			} catch (Exception e) {
+				// 连接在测试结束时关闭
+			}
+		});
+		reader.setDaemon(true);
+		reader.start();
+		return events;
+	}
+
+	private static Event next(BlockingQueue<Event> events) throws InterruptedException {
+		Event event = events.poll(10, TimeUnit.SECONDS);
+		assertNotNull(event, "no event received");
+		return event;
+	}
+
+	private static class Event {
+		private long id;
+		private String name;
+		private JsonNode data;
+	}
+}
@@ -3,6 +3,10 @@ import { API_BASE_URL } from '@/config/env'
 import { ElMessage } from 'element-plus'
 import type {
   TaskEntity,
+  TaskPage,
+  TaskPageQuery,
+  TaskEvent,
+  TaskEventFilter,
   MonitoringStats,
   SchedulingStrategy,
   PerformanceComparison,
@@ -97,10 +101,10 @@ apiClient.interceptors.response.use(
  */
 export const taskApi = {
   /**
-   * 获取所有任务
+   * 分页获取任务（按创建时间倒序），翻页时传入上一页的 nextCursor
    */
-  getAllTasks(): Promise<AxiosResponse<TaskEntity[]>> {
-    return apiClient.get('/tasks')
+  getTasks(query: TaskPageQuery = {}): Promise<AxiosResponse<TaskPage>> {
+    return apiClient.get('/tasks', { params: query })
   },
 
   /**
@@ -152,6 +156,26 @@ export const taskApi = {
    */
   deleteTask(id: number): Promise<AxiosResponse<void>> {
     return apiClient.delete(`/tasks/${id}`)
+  },
+
+  /**
+   * 订阅任务变更（Server-Sent Events），返回的 EventSource 由调用方关闭
+   * 断线后浏览器自动重连，后端补发错过的事件；收到 resync 时表示有事件未送达，应重新查询一次
+   */
+  subscribeTaskEvents(
+    filter: TaskEventFilter,
+    onEvent: (event: TaskEvent) => void,
+    onResync?: () => void
+  ): EventSource {
+    const params = new URLSearchParams()
+    if (filter.userAddress) params.set('userAddress', filter.userAddress)
+    if (filter.taskId) params.set('taskId', filter.taskId)
+    const source = new EventSource(`${API_BASE_URL}/tasks/stream?${params.toString()}`)
+    source.addEventListener('task', (event) => {
+      onEvent(JSON.parse((event as MessageEvent).data) as TaskEvent)
+    })
+    source.addEventListener('resync', () => onResync?.())
+    return source
   }
 }
 
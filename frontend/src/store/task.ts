@@ -1,13 +1,16 @@
 import { defineStore } from 'pinia'
 import { ref, computed } from 'vue'
-import type { TaskEntity } from '@/types'
+import type { TaskEntity, TaskEvent } from '@/types'
 import { taskApi } from '@/services/api'
 import { contractService } from '@/services/contract'
 import { ethers } from 'ethers'
 
+// 从后端获取任务列表时的单页条数（后端上限 200）
+const TASK_PAGE_SIZE = 100
+
 /**
  * 任务状态管理 Store
- * 负责任务数据缓存、轮询刷新等功能
+ * 负责任务数据缓存、自动刷新（后端推送，推送不可用时轮询）等功能
  */
 export const useTaskStore = defineStore('task', () => {
   // ==================== State ====================
@@ -15,6 +18,7 @@ export const useTaskStore = defineStore('task', () => {
   const loading = ref<boolean>(false)
   const pollingTimer = ref<number | null>(null)
   const pollingInterval = ref<number>(30000) // 默认30秒轮询一次
+  let eventSource: EventSource | null = null // 后端任务变更推送连接
   const useBlockchain = ref<boolean>(true) // 是否直接从区块链读取
 
   // ==================== Computed ====================
@@ -139,15 +143,12 @@ export const useTaskStore = defineStore('task', () => {
       // 如果区块链读取失败或为空，尝试从后端读取
       if (fetchedTasks.length === 0) {
         try {
-          const response = await taskApi.getAllTasks()
-          fetchedTasks = response.data
-          
-          // 如果指定了用户地址，进行过滤
-          if (userAddress) {
-            fetchedTasks = fetchedTasks.filter(
-              task => task.userAddress.toLowerCase() === userAddress.toLowerCase()
-            )
-          }
+          // 只取最近一页，按用户过滤由后端完成（链上事件中的地址为小写）
+          const response = await taskApi.getTasks({
+            userAddress: userAddress?.toLowerCase(),
+            size: TASK_PAGE_SIZE
+          })
+          fetchedTasks = response.data.items
           
           console.log('从后端API获取到', fetchedTasks.length, '个任务')
         } catch (apiError) {
@@ -264,29 +265,88 @@ export const useTaskStore = defineStore('task', () => {
   }
 
   /**
-   * 开始轮询
+   * 将推送的任务变更合并到本地缓存；本地没有的任务（新创建的任务）直接由事件内容插入列表头部，不重新加载列表
+   */
+  function applyTaskEvent(event: TaskEvent) {
+    const task = tasks.value.find(item => item.taskId === event.taskId)
+    if (!task) {
+      tasks.value.unshift({
+        id: event.id,
+        taskId: event.taskId,
+        iexecTaskId: event.iexecTaskId || '',
+        userAddress: event.userAddress,
+        serviceId: event.serviceId ? Number(event.serviceId) : undefined,
+        status: event.status,
+        resultHash: event.resultHash || '',
+        createdAt: event.createdAt,
+        updatedAt: event.updatedAt,
+        completedAt: event.completedAt || '',
+        errorMessage: event.errorMessage || '',
+        version: event.version
+      })
+      // 与从后端加载时一致，只保留最近一页
+      if (tasks.value.length > TASK_PAGE_SIZE) {
+        tasks.value.length = TASK_PAGE_SIZE
+      }
+      return
+    }
+    // 乱序到达的旧版本不覆盖较新的状态
+    if (task.version != null && event.version != null && event.version < task.version) {
+      return
+    }
+    task.status = event.status
+    task.updatedAt = event.updatedAt
+    if (event.version != null) task.version = event.version
+    if (event.resultHash) task.resultHash = event.resultHash
+    if (event.errorMessage) task.errorMessage = event.errorMessage
+    if (event.completedAt) task.completedAt = event.completedAt
+  }
+
+  /**
+   * 开始自动刷新：订阅后端推送的任务变更，推送连接不可用时退回定时轮询
    */
   function startPolling(userAddress?: string) {
-    // 如果已经在轮询，先停止
-    if (pollingTimer.value) {
+    // 如果已经在刷新，先停止
+    if (pollingTimer.value || eventSource) {
       stopPolling()
     }
 
     // 立即执行一次
     fetchAllTasks(false, userAddress)
 
-    // 设置定时轮询
+    eventSource = taskApi.subscribeTaskEvents(
+      { userAddress: userAddress?.toLowerCase() },
+      applyTaskEvent,
+      () => fetchAllTasks(false, userAddress)
+    )
+    eventSource.onerror = () => {
+      // 连接中断时浏览器会自动重连；连接被拒绝（CLOSED）时改为轮询
+      if (eventSource && eventSource.readyState === EventSource.CLOSED) {
+        eventSource = null
+        startTimer(userAddress)
+      }
+    }
+
+    console.log('已订阅任务变更推送')
+  }
+
+  function startTimer(userAddress?: string) {
     pollingTimer.value = window.setInterval(() => {
       fetchAllTasks(false, userAddress)
     }, pollingInterval.value)
 
-    console.log('任务轮询已启动，间隔:', pollingInterval.value, 'ms')
+    console.log('任务推送不可用，轮询已启动，间隔:', pollingInterval.value, 'ms')
   }
 
   /**
-   * 停止轮询
+   * 停止自动刷新
    */
   function stopPolling() {
+    if (eventSource) {
+      eventSource.close()
+      eventSource = null
+      console.log('任务变更推送已关闭')
+    }
     if (pollingTimer.value) {
       clearInterval(pollingTimer.value)
       pollingTimer.value = null
@@ -21,12 +21,59 @@ export interface TaskEntity {
   updatedAt: string
   completedAt: string
   errorMessage: string
+  version: number  // 乐观锁版本号，每次更新递增
 }
 
 /**
- * 任务状态枚举
+ * 任务状态枚举（Refunded 仅来自合约，Processing / Timeout 仅来自后端）
  */
-export type TaskStatus = 'Created' | 'Running' | 'Completed' | 'Failed' | 'Refunded'
+export type TaskStatus = 'Created' | 'Processing' | 'Running' | 'Completed' | 'Failed' | 'Timeout' | 'Refunded'
+
+/**
+ * 任务分页查询参数
+ */
+export interface TaskPageQuery {
+  status?: TaskStatus
+  userAddress?: string
+  serviceId?: string
+  cursor?: string
+  size?: number
+}
+
+/**
+ * 任务分页结果（按创建时间倒序）
+ */
+export interface TaskPage {
+  items: TaskEntity[]
+  nextCursor: string | null
+}
+
+/**
+ * 任务变更订阅条件（均为空时接收全部任务的变更）
+ */
+export interface TaskEventFilter {
+  userAddress?: string
+  taskId?: string
+}
+
+/**
+ * 后端推送的任务变更事件（任务变更后的当前状态）
+ */
+export interface TaskEvent {
+  sequence: number
+  id: number
+  version: number
+  taskId: string
+  iexecTaskId: string | null
+  userAddress: string
+  serviceId: string | null
+  status: TaskStatus
+  resultHash: string | null
+  errorMessage: string | null
+  createdAt: string
+  updatedAt: string
+  completedAt: string | null
+}
 
 /**
  * 监控统计信息